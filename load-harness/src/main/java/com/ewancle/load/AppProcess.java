@@ -0,0 +1,128 @@
+package com.ewancle.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 被测应用：
+ *    - app=*.jar：用 java（当前 JVM，或 --java 指定）加 jvm.args 启动
+ *    - app=其它文件：当作 native runner 直接执行
+ *    - url=...：不启动，压已经在运行的应用（可选 pid 用于采样）
+ * 启动时固定 quarkus.http.port，输出写到结果目录的 app.log；轮询 ready-path 直到返回 2xx，
+ * 记下启动到可用的时间。close 时先正常停止（SIGTERM），超时再强杀。
+ */
+final class AppProcess implements AutoCloseable {
+
+    private final Process process;
+    private final URI base;
+    private final long pid;
+    private final long startupMillis;
+
+    private AppProcess(Process process, URI base, long pid, long startupMillis) {
+        this.process = process;
+        this.base = base;
+        this.pid = pid;
+        this.startupMillis = startupMillis;
+    }
+
+    static AppProcess start(HarnessConfig config, HttpClient client, Path out) throws IOException, InterruptedException {
+        String url = config.string("url");
+        if (url != null) {
+            String pid = config.string("pid");
+            return new AppProcess(null, URI.create(url), pid != null ? Long.parseLong(pid) : -1, -1);
+        }
+        Path app = Path.of(config.string("app"));
+        if (!Files.exists(app)) {
+            throw new IllegalArgumentException("Application not found: " + app.toAbsolutePath()
+                    + " (build it first, or pass --url=... for a running instance)");
+        }
+        int port = config.integer("port");
+        List<String> command = new ArrayList<>();
+        if (app.getFileName().toString().endsWith(".jar")) {
+            command.add(config.string("java", Path.of(System.getProperty("java.home"), "bin", "java").toString()));
+            command.addAll(config.arguments("jvm.args"));
+            command.add("-Dquarkus.http.port=" + port);
+            command.addAll(config.arguments("app.args"));
+            command.add("-jar");
+            command.add(app.toString());
+        } else {
+            command.add(app.toAbsolutePath().toString());
+            command.add("-Dquarkus.http.port=" + port);
+            command.addAll(config.arguments("app.args"));
+        }
+        Path logFile = out.resolve("app.log");
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile())
+                .start();
+        URI base = URI.create("http://localhost:" + port);
+        AppProcess running = new AppProcess(process, base, process.pid(), -1);
+        try {
+            long startup = awaitReady(process, client, base.resolve(config.string("ready-path")),
+                    config.duration("startup-timeout"), started, logFile);
+            return new AppProcess(process, base, process.pid(), startup);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            running.close();
+            throw e;
+        }
+    }
+
+    private static long awaitReady(Process process, HttpClient client, URI ready, Duration timeout, long started,
+                                   Path logFile) throws IOException, InterruptedException {
+        long deadline = started + timeout.toNanos();
+        HttpRequest request = HttpRequest.newBuilder(ready).timeout(Duration.ofSeconds(2)).GET().build();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IOException("Application exited with " + process.exitValue() + ", see " + logFile);
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() / 100 == 2) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                }
+            } catch (IOException notYet) {
+                // 端口还没监听
+            }
+            Thread.sleep(20);
+        }
+        throw new IOException("Application not ready after " + timeout + ", see " + logFile);
+    }
+
+    URI base() {
+        return base;
+    }
+
+    /**
+     * 被测进程的 pid，未知时为 -1
+     */
+    long pid() {
+        return pid;
+    }
+
+    /**
+     * 启动到 ready-path 可用的毫秒数，没有由压测工具启动时为 -1
+     */
+    long startupMillis() {
+        return startupMillis;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (process == null) {
+            return;
+        }
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.ewancle.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 压测用的数据和请求模板：
+ *    - 一份 fixture.rows 行的 xlsx，启动后从被测应用的 /excel/download-generated 取得（压测工具不依赖 POI）
+ *    - 把它上传 zip.files 份得到的 storedName，供下载、分页、打包下载使用
+ * 所有请求都带 request-timeout，超时按出错计。
+ */
+final class Fixtures {
+
+    static final String XLSX = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    private static final Pattern STORED_NAME = Pattern.compile("\"storedName\"\\s*:\\s*\"([^\"]+)\"");
+    private static final String BOUNDARY = "----load-harness-7f3a9c";
+
+    final URI base;
+    final int rows;
+    final int exportRows;
+    final int pageLimit;
+    final List<String> storedNames;
+    private final byte[] xlsx;
+    private final Duration timeout;
+
+    private Fixtures(URI base, int rows, int exportRows, int pageLimit, byte[] xlsx, List<String> storedNames,
+                     Duration timeout) {
+        this.base = base;
+        this.rows = rows;
+        this.exportRows = exportRows;
+        this.pageLimit = pageLimit;
+        this.xlsx = xlsx;
+        this.storedNames = storedNames;
+        this.timeout = timeout;
+    }
+
+    /**
+     * 准备数据（在预热之前，同步执行）；生成的 xlsx 同时保存到结果目录
+     */
+    static Fixtures prepare(HttpClient client, URI base, HarnessConfig config, Path out)
+            throws IOException, InterruptedException {
+        int rows = config.integer("fixture.rows");
+        Duration timeout = config.duration("request-timeout");
+        HttpResponse<byte[]> generated = client.send(HttpRequest.newBuilder(base.resolve("/excel/download-generated?rows=" + rows))
+                .timeout(timeout).GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+        check(generated, "generate fixture xlsx");
+        byte[] xlsx = generated.body();
+        Files.write(out.resolve("fixture.xlsx"), xlsx);
+
+        Fixtures fixtures = new Fixtures(base, rows, config.integer("export.rows"), config.integer("page.limit"),
+                xlsx, new ArrayList<>(), timeout);
+        for (int i = 0; i < Math.max(1, config.integer("zip.files")); i++) {
+            HttpResponse<String> uploaded = client.send(fixtures.upload("/files/upload").build(),
+                    HttpResponse.BodyHandlers.ofString());
+            check(uploaded, "upload fixture");
+            Matcher m = STORED_NAME.matcher(uploaded.body());
+            if (!m.find()) {
+                throw new IOException("No storedName in upload response: " + uploaded.body());
+            }
+            fixtures.storedNames.add(m.group(1));
+        }
+        return fixtures;
+    }
+
+    private static void check(HttpResponse<?> response, String what) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(what + " failed: HTTP " + response.statusCode() + " " + response.uri());
+        }
+    }
+
+    HttpRequest.Builder get(String pathAndQuery) {
+        return HttpRequest.newBuilder(base.resolve(pathAndQuery)).timeout(timeout).GET();
+    }
+
+    HttpRequest.Builder postJson(String path, String json) {
+        return HttpRequest.newBuilder(base.resolve(path)).timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * multipart 上传 fixture xlsx：file 字段 + filename 字段（与浏览器表单相同）
+     */
+    HttpRequest.Builder upload(String path) {
+        String head = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"filename\"\r\n\r\n"
+                + "fixture.xlsx\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"fixture.xlsx\"\r\n"
+                + "Content-Type: " + XLSX + "\r\n\r\n";
+        String tail = "\r\n--" + BOUNDARY + "--\r\n";
+        return HttpRequest.newBuilder(base.resolve(path)).timeout(timeout)
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(
+                        head.getBytes(StandardCharsets.UTF_8), xlsx, tail.getBytes(StandardCharsets.UTF_8))));
+    }
+}
@@ -0,0 +1,162 @@
+package com.ewancle.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * 压测参数，按优先级从低到高合并：
+ *    1. harness-defaults.properties
+ *    2. 负载配置 --mix=名称（classpath 下 mixes/名称.properties）或 --mix=文件路径
+ *    3. 命令行 --key=value
+ * 负载配置和命令行用同一组键，命令行可以覆盖负载配置里的任何一项（包括 mix.* 权重）。
+ */
+final class HarnessConfig {
+
+    private final Properties values;
+
+    private HarnessConfig(Properties values) {
+        this.values = values;
+    }
+
+    static HarnessConfig parse(String[] args) {
+        Properties cli = new Properties();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 3) {
+                throw new IllegalArgumentException("Expected --key=value, got: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            cli.setProperty(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        Properties merged = new Properties();
+        load(merged, "harness-defaults.properties");
+        String mix = cli.getProperty("mix", merged.getProperty("mix"));
+        if (mix.endsWith(".properties") || mix.contains("/")) {
+            try (Reader in = Files.newBufferedReader(Path.of(mix), StandardCharsets.UTF_8)) {
+                merged.load(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read mix file " + mix, e);
+            }
+        } else {
+            load(merged, "mixes/" + mix + ".properties");
+        }
+        merged.putAll(cli);
+        return new HarnessConfig(merged);
+    }
+
+    private static void load(Properties into, String resource) {
+        try (InputStream in = HarnessConfig.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Unknown mix or missing resource: " + resource);
+            }
+            into.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    String string(String key) {
+        String value = values.getProperty(key);
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    String string(String key, String defaultValue) {
+        String value = string(key);
+        return value != null ? value : defaultValue;
+    }
+
+    int integer(String key) {
+        return Integer.parseInt(require(key));
+    }
+
+    long longValue(String key) {
+        return Long.parseLong(require(key));
+    }
+
+    double decimal(String key) {
+        return Double.parseDouble(require(key));
+    }
+
+    boolean flag(String key) {
+        return Boolean.parseBoolean(require(key));
+    }
+
+    /**
+     * 500ms / 30s / 5m / 1h，没有单位时按秒
+     */
+    Duration duration(String key) {
+        String value = require(key).toLowerCase(Locale.ROOT);
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        long amount = Long.parseLong(value.replaceAll("[smh]$", ""));
+        return switch (value.charAt(value.length() - 1)) {
+            case 'm' -> Duration.ofMinutes(amount);
+            case 'h' -> Duration.ofHours(amount);
+            default -> Duration.ofSeconds(amount);
+        };
+    }
+
+    /**
+     * 空格分隔的参数列表（jvm.args / app.args）
+     */
+    List<String> arguments(String key) {
+        String value = string(key);
+        return value == null ? List.of() : new ArrayList<>(Arrays.asList(value.split("\\s+")));
+    }
+
+    /**
+     * 以 prefix 开头的键（去掉前缀），按键排序
+     */
+    TreeMap<String, String> withPrefix(String prefix) {
+        TreeMap<String, String> out = new TreeMap<>();
+        for (String key : values.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                out.put(key.substring(prefix.length()), values.getProperty(key).trim());
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 结果目录：--out 指定，否则 target/load/<负载名>-<时间>
+     */
+    Path outDir() {
+        String out = string("out");
+        if (out != null) {
+            return Path.of(out);
+        }
+        String mix = Path.of(string("mix")).getFileName().toString().replaceAll("\\.properties$", "");
+        return Path.of("target", "load",
+                mix + "-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+    }
+
+    /**
+     * 合并后的全部参数，写进结果目录，便于之后对照
+     */
+    TreeMap<String, String> all() {
+        return withPrefix("");
+    }
+
+    private String require(String key) {
+        String value = string(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing setting: " + key);
+        }
+        return value;
+    }
+}
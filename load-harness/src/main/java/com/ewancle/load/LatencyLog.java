@@ -0,0 +1,113 @@
+package com.ewancle.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.FileNotFoundException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各操作的延迟直方图（微秒，3 位有效数字）：
+ *    - <操作>、all：响应时间，从请求排定的发送时刻算到响应体读完（开环下不受协调遗漏影响）
+ *    - service：实际发出到读完，只用来和 all 对比，看排队占了多少
+ * 记录用 {@link Recorder}（多线程写、无锁），每个 report-interval 取一次区间直方图，
+ * 按标签写进 HdrHistogram 日志（可用 HistogramLogProcessor / HistogramLogAnalyzer 打开），同时累加成全程直方图。
+ */
+final class LatencyLog implements AutoCloseable {
+
+    static final String ALL = "all";
+    static final String SERVICE = "service";
+
+    private final Map<String, Recorder> recorders = new LinkedHashMap<>();
+    private final Map<String, Histogram> totals = new LinkedHashMap<>();
+    private final HistogramLogWriter writer;
+    private final ScheduledExecutorService flusher;
+
+    private LatencyLog(List<String> tags, HistogramLogWriter writer, long intervalMillis) {
+        for (String tag : tags) {
+            recorders.put(tag, new Recorder(3));
+            totals.put(tag, new Histogram(3));
+        }
+        recorders.put(ALL, new Recorder(3));
+        totals.put(ALL, new Histogram(3));
+        recorders.put(SERVICE, new Recorder(3));
+        totals.put(SERVICE, new Histogram(3));
+        this.writer = writer;
+        if (writer != null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "latency-log");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleAtFixedRate(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * 写日志文件的正式记录
+     */
+    static LatencyLog open(Path file, List<String> tags, long intervalMillis) throws FileNotFoundException {
+        HistogramLogWriter writer = new HistogramLogWriter(file.toFile());
+        long now = System.currentTimeMillis();
+        writer.outputLogFormatVersion();
+        writer.outputComment("latency in microseconds, measured from the intended send time");
+        writer.outputStartTime(now);
+        writer.setBaseTime(now);
+        writer.outputBaseTime(now);
+        writer.outputLegend();
+        return new LatencyLog(tags, writer, intervalMillis);
+    }
+
+    /**
+     * 预热用：只记录不输出
+     */
+    static LatencyLog discarding(List<String> tags) {
+        return new LatencyLog(tags, null, 0);
+    }
+
+    void record(String tag, long responseMicros, long serviceMicros) {
+        recorders.get(tag).recordValue(responseMicros);
+        recorders.get(ALL).recordValue(responseMicros);
+        recorders.get(SERVICE).recordValue(serviceMicros);
+    }
+
+    private synchronized void flush() {
+        for (Map.Entry<String, Recorder> e : recorders.entrySet()) {
+            Histogram interval = e.getValue().getIntervalHistogram();
+            totals.get(e.getKey()).add(interval);
+            if (writer != null) {
+                interval.setTag(e.getKey());
+                writer.outputIntervalHistogram(interval);
+            }
+        }
+    }
+
+    /**
+     * 全程直方图（close 之后调用）
+     */
+    Map<String, Histogram> totals() {
+        return totals;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (flusher != null) {
+            // 等正在进行的一次写完，再做最后一次
+            flusher.shutdown();
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        flush();
+        if (writer != null) {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.ewancle.load;
+
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 本地压测：启动应用（jar 或 native runner），按负载配置开环发送混合请求，输出 HdrHistogram 格式的延迟分布和资源占用。
+ * <pre>
+ * java -jar load-harness/target/load-harness.jar --mix=mixed --rate=50 --duration=2m
+ * java -jar load-harness/target/load-harness.jar --app=target/quarkus-native-image-1.0-SNAPSHOT-runner --mix=export-heavy
+ * java -jar load-harness/target/load-harness.jar compare target/load/&lt;基准&gt; target/load/&lt;对比&gt;
+ * </pre>
+ * 流程：启动并等待可用 -> 准备数据（{@link Fixtures}）-> 预热（不记录）-> 正式压测 duration -> 写结果 -> 停止应用。
+ * 参数见 harness-defaults.properties。
+ */
+public final class LoadHarness {
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "compare".equals(args[0])) {
+            if (args.length != 3) {
+                System.err.println("Usage: compare <baseline-dir> <candidate-dir>");
+                System.exit(2);
+            }
+            Report.compare(Path.of(args[1]), Path.of(args[2]), System.out);
+            return;
+        }
+        HarnessConfig config = HarnessConfig.parse(args);
+        Path out = config.outDir();
+        Files.createDirectories(out);
+        WorkloadMix mix = WorkloadMix.from(config);
+        List<String> tags = new ArrayList<>();
+        for (var op : mix.operations()) {
+            tags.add(op.tag);
+        }
+        Duration interval = config.duration("report-interval");
+        Duration drainTimeout = config.duration("request-timeout").plusSeconds(10);
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        try (AppProcess app = AppProcess.start(config, client, out)) {
+            System.out.printf("Application ready at %s (pid %d, startup %d ms)%n", app.base(), app.pid(), app.startupMillis());
+            Fixtures fixtures = Fixtures.prepare(client, app.base(), config, out);
+            OpenLoopDriver driver = new OpenLoopDriver(client, mix, fixtures, config);
+
+            Duration warmup = config.duration("warmup");
+            if (!warmup.isZero()) {
+                System.out.printf("Warming up for %s ...%n", warmup);
+                try (LatencyLog discarded = LatencyLog.discarding(tags)) {
+                    driver.run(warmup, drainTimeout, discarded);
+                }
+            }
+
+            long idleRss = app.pid() > 0 ? ResourceSampler.rssKb(app.pid()) : -1;
+            Duration duration = config.duration("duration");
+            System.out.printf("Running %s at %s req/s (%s arrivals) for %s ...%n",
+                    config.string("mix"), config.string("rate"), config.string("arrival"), duration);
+            LatencyLog log = LatencyLog.open(out.resolve("latency.hlog"), tags, interval.toMillis());
+            ResourceSampler sampler = ResourceSampler.start(app.pid(), out.resolve("resources.csv"), interval);
+            OpenLoopDriver.Phase phase;
+            try {
+                phase = driver.run(duration, drainTimeout, log);
+            } finally {
+                log.close();
+                if (sampler != null) {
+                    sampler.close();
+                }
+            }
+            Map<String, String> summary = Report.write(out, config, log, phase, sampler, idleRss, app.startupMillis());
+            tags.add(LatencyLog.ALL);
+            tags.add(LatencyLog.SERVICE);
+            Report.print(System.out, summary, tags);
+            System.out.println("Results written to " + out.toAbsolutePath());
+        }
+    }
+}
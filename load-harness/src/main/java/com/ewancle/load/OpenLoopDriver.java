@@ -0,0 +1,189 @@
+package com.ewancle.load;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 开环负载：第 i 个请求的发送时刻在开始前就排定（uniform 为 i / rate，poisson 为指数分布间隔的累加），
+ * 与之前的请求是否返回无关。响应时间从排定时刻算起，所以应用变慢、连接排队或在途达到上限时，
+ * 推迟发出的请求的等待时间都计入延迟，不会出现闭环压测的协调遗漏（coordinated omission）。
+ * 排定时刻由一个线程按顺序发出，响应体在 HttpClient 的线程上读完（只计字节数，不保存）。
+ * 结束等待超时时还没返回的请求取消掉，按超时时刻计入延迟和错误数，慢到超时的请求不会从直方图里消失。
+ */
+final class OpenLoopDriver {
+
+    /** 实际发出比排定时刻晚这么多时计为 late，说明压测端（或在途上限）跟不上 */
+    private static final long LATE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final HttpClient client;
+    private final WorkloadMix mix;
+    private final Fixtures fixtures;
+    private final double rate;
+    private final boolean poisson;
+    private final int maxInFlight;
+    private final SplittableRandom random;
+
+    OpenLoopDriver(HttpClient client, WorkloadMix mix, Fixtures fixtures, HarnessConfig config) {
+        this.client = client;
+        this.mix = mix;
+        this.fixtures = fixtures;
+        this.rate = config.decimal("rate");
+        if (rate <= 0) {
+            throw new IllegalArgumentException("rate must be > 0");
+        }
+        String arrival = config.string("arrival");
+        if (!"uniform".equals(arrival) && !"poisson".equals(arrival)) {
+            throw new IllegalArgumentException("arrival must be uniform or poisson: " + arrival);
+        }
+        this.poisson = "poisson".equals(arrival);
+        this.maxInFlight = config.integer("max-in-flight");
+        this.random = new SplittableRandom(config.longValue("seed"));
+    }
+
+    /**
+     * 各操作的计数
+     */
+    static final class Counts {
+        final LongAdder completed = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+    }
+
+    /**
+     * @param elapsedNanos 从开始到最后一个响应读完
+     * @param late         实际发出晚于排定时刻 1ms 以上的请求数
+     * @param unfinished   结束等待超时时仍未返回的请求数（已按超时时刻计入直方图和错误数）
+     */
+    record Phase(long elapsedNanos, Map<String, Counts> counts, long late, long unfinished) {
+    }
+
+    /**
+     * 已发出、还没记录的请求
+     */
+    private record Pending(String tag, long intended, long sent, CompletableFuture<?> response) {
+    }
+
+    /**
+     * 按排定时刻发送 duration 内的全部请求，然后等在途请求返回（最多 request-timeout 再加 10 秒）。
+     * 每个请求只记录一次：响应回调和超时处理谁先从 pending 里移除谁记录
+     */
+    Phase run(Duration duration, Duration drainTimeout, LatencyLog log) throws InterruptedException {
+        Map<String, Counts> counts = new LinkedHashMap<>();
+        for (Operation op : mix.operations()) {
+            counts.put(op.tag, new Counts());
+        }
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        Map<Long, Pending> pending = new ConcurrentHashMap<>();
+        long sequence = 0;
+        AtomicLong lastDone = new AtomicLong();
+        long late = 0;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        double intervalNanos = 1e9 / rate;
+        double offset = 0;
+        while (true) {
+            long intended = start + (long) offset;
+            if (intended >= end) {
+                break;
+            }
+            offset += poisson ? -Math.log(1 - random.nextDouble()) * intervalNanos : intervalNanos;
+            for (long wait = intended - System.nanoTime(); wait > 0; wait = intended - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation op = mix.pick(random);
+            // 到达在途上限时在这里等，后面的请求跟着推迟，推迟的时间计入它们的延迟
+            inFlight.acquire();
+            long sent = System.nanoTime();
+            if (sent - intended > LATE_NANOS) {
+                late++;
+            }
+            Counts c = counts.get(op.tag);
+            ByteCounter body = new ByteCounter();
+            CompletableFuture<HttpResponse<Long>> future = client.sendAsync(op.request(fixtures, random),
+                    HttpResponse.BodyHandlers.fromSubscriber(body, ByteCounter::bytes));
+            long id = sequence++;
+            pending.put(id, new Pending(op.tag, intended, sent, future));
+            future.whenComplete((response, failure) -> {
+                if (pending.remove(id) == null) {
+                    return;     // 已经按超时记录
+                }
+                long done = System.nanoTime();
+                log.record(op.tag, (done - intended) / 1000, (done - sent) / 1000);
+                c.completed.increment();
+                if (failure != null || response.statusCode() / 100 != 2) {
+                    c.errors.increment();
+                } else {
+                    c.bytes.add(response.body());
+                }
+                lastDone.accumulateAndGet(done, Math::max);
+                inFlight.release();
+            });
+        }
+        long unfinished = 0;
+        if (!inFlight.tryAcquire(maxInFlight, drainTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            long now = System.nanoTime();
+            for (Long id : pending.keySet()) {
+                Pending p = pending.remove(id);
+                if (p == null) {
+                    continue;   // 刚刚返回，已由响应回调记录
+                }
+                p.response().cancel(true);
+                log.record(p.tag(), (now - p.intended()) / 1000, (now - p.sent()) / 1000);
+                Counts c = counts.get(p.tag());
+                c.completed.increment();
+                c.errors.increment();
+                unfinished++;
+            }
+            if (unfinished > 0) {
+                lastDone.accumulateAndGet(now, Math::max);
+            }
+        }
+        long elapsed = Math.max(lastDone.get(), end) - start;
+        return new Phase(elapsed, counts, late, unfinished);
+    }
+
+    /**
+     * 读完响应体，只计字节数
+     */
+    private static final class ByteCounter implements Flow.Subscriber<List<ByteBuffer>> {
+        private long bytes;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            for (ByteBuffer buffer : buffers) {
+                bytes += buffer.remaining();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        long bytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.ewancle.load;
+
+import java.net.http.HttpRequest;
+import java.util.SplittableRandom;
+
+/**
+ * 负载里可用的操作，负载配置里用 mix.<tag>=权重 选择。
+ * 上传类操作会在上传目录里留下文件，长时间压测注意磁盘空间。
+ */
+enum Operation {
+
+    /** POST /files/upload */
+    UPLOAD("upload") {
+        @Override
+        HttpRequest request(Fixtures f, SplittableRandom random) {
+            return f.upload("/files/upload").build();
+        }
+    },
+    /** GET /files/download/{storedName} */
+    DOWNLOAD("download") {
+        @Override
+        HttpRequest request(Fixtures f, SplittableRandom random) {
+            return f.get("/files/download/" + storedName(f, random)).build();
+        }
+    },
+    /** POST /files/zip，打包全部 fixture 文件 */
+    ZIP("zip") {
+        @Override
+        HttpRequest request(Fixtures f, SplittableRandom random) {
+            StringBuilder json = new StringBuilder("[");
+            for (String name : f.storedNames) {
+                json.append(json.length() > 1 ? ",\"" : "\"").append(name).append('"');
+            }
+            return f.postJson("/files/zip", json.append(']').toString()).build();
+        }
+    },
+    /** POST /excel/upload-parse（JSON 行流） */
+    PARSE("parse") {
+        @Override
+        HttpRequest request(Fixtures f, SplittableRandom random) {
+            return f.upload("/excel/upload-parse").build();
+        }
+    },
+    /** POST /excel/upload-parse-binary（二进制行批） */
+    PARSE_BINARY("parse-binary") {
+        @Override
+        HttpRequest request(Fixtures f, SplittableRandom random) {
+            return f.upload("/excel/upload-parse-binary").build();
+        }
+    },
+    /** GET /excel/page/{storedName}，随机偏移 */
+    PAGE("page") {
+        @Override
+        HttpRequest request(Fixtures f, SplittableRandom random) {
+            int offset = random.nextInt(Math.max(1, f.rows - f.pageLimit + 1));
+            return f.get("/excel/page/" + storedName(f, random) + "?offset=" + offset + "&limit=" + f.pageLimit).build();
+        }
+    },
+    /** GET /excel/download-generated */
+    EXPORT("export") {
+        @Override
+        HttpRequest request(Fixtures f, SplittableRandom random) {
+            return f.get("/excel/download-generated?rows=" + f.exportRows).build();
+        }
+    },
+    /** GET /export/excel */
+    EXPORT_PEOPLE("export-people") {
+        @Override
+        HttpRequest request(Fixtures f, SplittableRandom random) {
+            return f.get("/export/excel?rows=" + f.exportRows).build();
+        }
+    },
+    /** GET /excel1/template（默认模板） */
+    EXPORT_TEMPLATE("export-template") {
+        @Override
+        HttpRequest request(Fixtures f, SplittableRandom random) {
+            return f.get("/excel1/template").build();
+        }
+    };
+
+    final String tag;
+
+    Operation(String tag) {
+        this.tag = tag;
+    }
+
+    abstract HttpRequest request(Fixtures fixtures, SplittableRandom random);
+
+    static Operation byTag(String tag) {
+        for (Operation op : values()) {
+            if (op.tag.equals(tag)) {
+                return op;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation: " + tag);
+    }
+
+    private static String storedName(Fixtures f, SplittableRandom random) {
+        return f.storedNames.get(random.nextInt(f.storedNames.size()));
+    }
+}
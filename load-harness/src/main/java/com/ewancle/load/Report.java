@@ -0,0 +1,158 @@
+package com.ewancle.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * 压测结果，全部写在结果目录里：
+ *    - summary.properties：每个操作的次数、错误、吞吐、p50/p90/p99/p999/max（毫秒），RSS/CPU，启动时间，
+ *      键固定，不同配置、不同版本的结果可以直接用 compare 对比
+ *    - latency-<标签>.hgrm：全程延迟分布（毫秒），rss-mb.hgrm / cpu-percent.hgrm：资源采样分布
+ *    - latency.hlog（{@link LatencyLog}）、resources.csv（{@link ResourceSampler}）：按时间的明细
+ *    - config.properties：合并后的全部参数
+ */
+final class Report {
+
+    private static final double MICROS_PER_MS = 1000.0;
+
+    private Report() {
+    }
+
+    static Map<String, String> write(Path out, HarnessConfig config, LatencyLog log, OpenLoopDriver.Phase phase,
+                                     ResourceSampler sampler, long idleRssKb, long startupMillis) throws IOException {
+        Map<String, String> summary = new LinkedHashMap<>();
+        double seconds = phase.elapsedNanos() / 1e9;
+        summary.put("rate.target", format(config.decimal("rate")));
+        summary.put("duration-s", format(seconds));
+        summary.put("late", Long.toString(phase.late()));
+        summary.put("unfinished", Long.toString(phase.unfinished()));
+        long errors = 0;
+        long bytes = 0;
+        for (Map.Entry<String, Histogram> e : log.totals().entrySet()) {
+            String tag = e.getKey();
+            Histogram h = e.getValue();
+            OpenLoopDriver.Counts counts = phase.counts().get(tag);
+            summary.put(tag + ".count", Long.toString(h.getTotalCount()));
+            if (counts != null) {
+                summary.put(tag + ".errors", Long.toString(counts.errors.sum()));
+                summary.put(tag + ".mb", format(counts.bytes.sum() / (1024.0 * 1024.0)));
+                errors += counts.errors.sum();
+                bytes += counts.bytes.sum();
+            } else if (LatencyLog.ALL.equals(tag)) {
+                summary.put(tag + ".errors", Long.toString(errors));
+                summary.put(tag + ".mb", format(bytes / (1024.0 * 1024.0)));
+            }
+            summary.put(tag + ".rps", format(h.getTotalCount() / seconds));
+            percentiles(summary, tag, h);
+            writeDistribution(out.resolve("latency-" + tag + ".hgrm"), h, MICROS_PER_MS);
+        }
+        summary.put("startup-ms", Long.toString(startupMillis));
+        summary.put("rss.idle-mb", format(idleRssKb >= 0 ? idleRssKb / 1024.0 : -1));
+        if (sampler != null) {
+            Histogram rss = sampler.rss();
+            Histogram cpu = sampler.cpu();
+            if (rss.getTotalCount() > 0) {
+                summary.put("rss.p50-mb", format(rss.getValueAtPercentile(50) / 1024.0));
+                summary.put("rss.max-mb", format(rss.getMaxValue() / 1024.0));
+                writeDistribution(out.resolve("rss-mb.hgrm"), rss, 1024.0);
+            }
+            if (cpu.getTotalCount() > 0) {
+                summary.put("cpu.avg-percent", format(sampler.averageCpuPercent()));
+                summary.put("cpu.p50-percent", format(cpu.getValueAtPercentile(50) / 10.0));
+                summary.put("cpu.p99-percent", format(cpu.getValueAtPercentile(99) / 10.0));
+                writeDistribution(out.resolve("cpu-percent.hgrm"), cpu, 10.0);
+            }
+        }
+        writeProperties(out.resolve("summary.properties"), summary);
+        writeProperties(out.resolve("config.properties"), config.all());
+        return summary;
+    }
+
+    private static void percentiles(Map<String, String> summary, String tag, Histogram h) {
+        summary.put(tag + ".p50-ms", format(h.getValueAtPercentile(50) / MICROS_PER_MS));
+        summary.put(tag + ".p90-ms", format(h.getValueAtPercentile(90) / MICROS_PER_MS));
+        summary.put(tag + ".p99-ms", format(h.getValueAtPercentile(99) / MICROS_PER_MS));
+        summary.put(tag + ".p999-ms", format(h.getValueAtPercentile(99.9) / MICROS_PER_MS));
+        summary.put(tag + ".max-ms", format(h.getMaxValue() / MICROS_PER_MS));
+        summary.put(tag + ".mean-ms", format(h.getMean() / MICROS_PER_MS));
+    }
+
+    private static void writeDistribution(Path file, Histogram h, double scale) throws IOException {
+        try (PrintStream ps = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8)) {
+            h.outputPercentileDistribution(ps, scale);
+        }
+    }
+
+    private static void writeProperties(Path file, Map<String, String> values) throws IOException {
+        StringBuilder text = new StringBuilder();
+        values.forEach((k, v) -> text.append(k).append('=').append(v).append('\n'));
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 控制台表格：每个操作一行
+     */
+    static void print(PrintStream out, Map<String, String> summary, Iterable<String> tags) {
+        out.printf(Locale.ROOT, "%-16s %8s %7s %9s %10s %10s %10s %10s%n",
+                "operation", "count", "errors", "rps", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (String tag : tags) {
+            out.printf(Locale.ROOT, "%-16s %8s %7s %9s %10s %10s %10s %10s%n", tag,
+                    summary.get(tag + ".count"), summary.getOrDefault(tag + ".errors", "-"), summary.get(tag + ".rps"),
+                    summary.get(tag + ".p50-ms"), summary.get(tag + ".p99-ms"), summary.get(tag + ".p999-ms"),
+                    summary.get(tag + ".max-ms"));
+        }
+        out.printf(Locale.ROOT, "startup %s ms, RSS idle %s MB / p50 %s MB / max %s MB, CPU avg %s%%, late %s, unfinished %s%n",
+                summary.get("startup-ms"), summary.get("rss.idle-mb"), summary.getOrDefault("rss.p50-mb", "-"),
+                summary.getOrDefault("rss.max-mb", "-"), summary.getOrDefault("cpu.avg-percent", "-"),
+                summary.get("late"), summary.get("unfinished"));
+    }
+
+    /**
+     * 对比两次结果的 summary.properties：compare <基准目录> <对比目录>
+     */
+    static void compare(Path baseline, Path candidate, PrintStream out) throws IOException {
+        Properties a = load(baseline.resolve("summary.properties"));
+        Properties b = load(candidate.resolve("summary.properties"));
+        TreeSet<String> keys = new TreeSet<>(a.stringPropertyNames());
+        keys.addAll(b.stringPropertyNames());
+        out.printf(Locale.ROOT, "%-28s %14s %14s %9s%n", "metric", baseline.getFileName(), candidate.getFileName(), "change");
+        for (String key : keys) {
+            String va = a.getProperty(key, "-");
+            String vb = b.getProperty(key, "-");
+            String change = "";
+            try {
+                double da = Double.parseDouble(va);
+                double db = Double.parseDouble(vb);
+                if (da != 0) {
+                    change = String.format(Locale.ROOT, "%+.1f%%", (db - da) * 100 / Math.abs(da));
+                }
+            } catch (NumberFormatException ignore) {
+                // 只有一边有这个指标
+            }
+            out.printf(Locale.ROOT, "%-28s %14s %14s %9s%n", key, va, vb, change);
+        }
+    }
+
+    private static Properties load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
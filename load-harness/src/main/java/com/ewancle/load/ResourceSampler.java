@@ -0,0 +1,125 @@
+package com.ewancle.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 report-interval 采样被测进程的 RSS 和 CPU，写 resources.csv，同时记进直方图（RSS 单位 KB，CPU 单位 0.1%，
+ * 100% 为一个核）：
+ *    - RSS：/proc/<pid>/status 的 VmRSS，只在 Linux 上有
+ *    - CPU：ProcessHandle 的累计 CPU 时间的差值 / 墙钟时间
+ * pid 未知（压外部应用且没有给 pid）时不采样。
+ */
+final class ResourceSampler implements AutoCloseable {
+
+    private final long pid;
+    private final PrintWriter csv;
+    private final ScheduledExecutorService timer;
+    private final Histogram rssKb = new Histogram(3);
+    private final Histogram cpuPermille = new Histogram(3);
+    private final long startNanos = System.nanoTime();
+    private final long startCpuNanos;
+    private long lastNanos = startNanos;
+    private long lastCpuNanos;
+    private long endNanos;
+    private long endCpuNanos;
+
+    private ResourceSampler(long pid, Path file, Duration interval) throws IOException {
+        this.pid = pid;
+        this.csv = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+        csv.println("elapsed_s,rss_mb,cpu_percent");
+        this.startCpuNanos = cpuNanos(pid);
+        this.lastCpuNanos = startCpuNanos;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "resource-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(this::sample, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return pid <= 0 时返回 null
+     */
+    static ResourceSampler start(long pid, Path file, Duration interval) throws IOException {
+        return pid > 0 ? new ResourceSampler(pid, file, interval) : null;
+    }
+
+    private synchronized void sample() {
+        long now = System.nanoTime();
+        long cpu = cpuNanos(pid);
+        long rss = rssKb(pid);
+        double percent = cpu >= 0 && now > lastNanos ? (cpu - lastCpuNanos) * 100.0 / (now - lastNanos) : -1;
+        if (rss >= 0) {
+            rssKb.recordValue(rss);
+        }
+        if (percent >= 0) {
+            cpuPermille.recordValue(Math.round(percent * 10));
+        }
+        csv.printf(Locale.ROOT, "%.1f,%.1f,%.1f%n", (now - startNanos) / 1e9, rss >= 0 ? rss / 1024.0 : -1.0, percent);
+        lastNanos = now;
+        lastCpuNanos = cpu;
+    }
+
+    /**
+     * 当前 RSS（KB），取不到时为 -1；压测开始前调用得到空闲时的 RSS
+     */
+    static long rssKb(long pid) {
+        try {
+            List<String> lines = Files.readAllLines(Path.of("/proc", Long.toString(pid), "status"));
+            for (String line : lines) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | RuntimeException ignore) {
+            // 非 Linux 或进程已退出
+        }
+        return -1;
+    }
+
+    private static long cpuNanos(long pid) {
+        Optional<Duration> cpu = ProcessHandle.of(pid).flatMap(p -> p.info().totalCpuDuration());
+        return cpu.map(Duration::toNanos).orElse(-1L);
+    }
+
+    Histogram rss() {
+        return rssKb;
+    }
+
+    Histogram cpu() {
+        return cpuPermille;
+    }
+
+    /**
+     * 整个采样期间的平均 CPU（%），取不到时为 -1
+     */
+    double averageCpuPercent() {
+        return startCpuNanos >= 0 && endCpuNanos >= 0 && endNanos > startNanos
+                ? (endCpuNanos - startCpuNanos) * 100.0 / (endNanos - startNanos) : -1;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        timer.shutdown();
+        timer.awaitTermination(10, TimeUnit.SECONDS);
+        synchronized (this) {
+            sample();
+            endNanos = System.nanoTime();
+            endCpuNanos = cpuNanos(pid);
+            csv.close();
+        }
+    }
+}
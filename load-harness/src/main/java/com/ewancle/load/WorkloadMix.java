@@ -0,0 +1,60 @@
+package com.ewancle.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * 按权重随机选操作（mix.<tag>=权重，权重为 0 的不参与）。
+ * 随机数由 seed 决定，同样的参数每次得到同样的请求序列。
+ */
+final class WorkloadMix {
+
+    private final Operation[] operations;
+    private final double[] cumulative;
+
+    private WorkloadMix(Operation[] operations, double[] cumulative) {
+        this.operations = operations;
+        this.cumulative = cumulative;
+    }
+
+    static WorkloadMix from(HarnessConfig config) {
+        List<Operation> ops = new ArrayList<>();
+        List<Double> sums = new ArrayList<>();
+        double total = 0;
+        for (Map.Entry<String, String> e : config.withPrefix("mix.").entrySet()) {
+            double weight = Double.parseDouble(e.getValue());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight for " + e.getKey());
+            }
+            if (weight > 0) {
+                total += weight;
+                ops.add(Operation.byTag(e.getKey()));
+                sums.add(total);
+            }
+        }
+        if (ops.isEmpty()) {
+            throw new IllegalArgumentException("Mix has no operations (mix.<operation>=weight)");
+        }
+        double[] cumulative = new double[sums.size()];
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] = sums.get(i) / total;
+        }
+        return new WorkloadMix(ops.toArray(Operation[]::new), cumulative);
+    }
+
+    Operation pick(SplittableRandom random) {
+        double r = random.nextDouble();
+        for (int i = 0; i < cumulative.length - 1; i++) {
+            if (r < cumulative[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    List<Operation> operations() {
+        return List.of(operations);
+    }
+}
@@ -0,0 +1,78 @@
+#!/usr/bin/env bash
+# native 镜像的 PGO（profile-guided optimization）流程，在项目根目录外也可以直接运行：
+#    1. 构建 JVM 版本和普通 native 镜像（对照组）
+#    2. 构建插桩镜像（-Pnative-pgo-instrument），用训练负载（load-harness 的 pgo-training）跑一遍，
+#       停止时写出 target/pgo/default.iprof
+#    3. 用这份 profile 重新构建（-Pnative-pgo）
+#    4. 三个版本用同一负载各压一次，对比结果写到 target/pgo/comparison.txt
+# 需要 Oracle GraalVM（GraalVM CE / Mandrel 不支持 --pgo）。额外参数原样传给每次 native 构建，
+# 例如 -Dquarkus.native.container-build=true -Dquarkus.native.builder-image=<Oracle GraalVM 镜像>
+#
+# 环境变量：BENCH_MIX（默认 mixed）、RATE（默认 20）、DURATION（默认 2m）、TRAINING（默认 3m）
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+OUT=target/pgo
+BENCH_MIX=${BENCH_MIX:-mixed}
+RATE=${RATE:-20}
+DURATION=${DURATION:-2m}
+TRAINING=${TRAINING:-3m}
+NATIVE_ARGS=("$@")
+
+mkdir -p "$OUT"
+./mvnw -B -q -f load-harness/pom.xml package
+harness() {
+    java -jar load-harness/target/load-harness.jar "$@"
+}
+
+# 构建 native 镜像并复制到 $OUT/<名称>-runner（之后的构建会覆盖 target 下的 runner）
+build_native() {
+    local name=$1
+    shift
+    rm -f target/*-runner
+    ./mvnw -B package -DskipTests "$@" ${NATIVE_ARGS[@]+"${NATIVE_ARGS[@]}"}
+    cp target/*-runner "$OUT/$name-runner"
+}
+
+echo "==> JVM build"
+./mvnw -B package -DskipTests
+rm -rf "$OUT/jvm-app"
+cp -r target/quarkus-app "$OUT/jvm-app"
+
+echo "==> Baseline native image"
+build_native baseline -Dnative
+
+echo "==> Instrumented native image"
+build_native instrumented -Pnative-pgo-instrument
+
+echo "==> Training workload ($TRAINING)"
+rm -f "$OUT/default.iprof"
+# 压测工具停止应用时发 SIGTERM，正常退出时写出 profile
+harness --app="$OUT/instrumented-runner" --mix=pgo-training --duration="$TRAINING" \
+        --app.args="-XX:ProfilesDumpFile=$OUT/default.iprof" --out="$OUT/training"
+if [[ ! -s "$OUT/default.iprof" ]]; then
+    echo "No profile written to $OUT/default.iprof (is this Oracle GraalVM?)" >&2
+    exit 1
+fi
+
+echo "==> Optimized native image"
+build_native optimized -Pnative-pgo -Dpgo.profile="$PWD/$OUT/default.iprof"
+
+echo "==> Benchmark: $BENCH_MIX at $RATE req/s for $DURATION"
+for variant in jvm baseline optimized; do
+    if [[ $variant == jvm ]]; then
+        app="$OUT/jvm-app/quarkus-run.jar"
+    else
+        app="$OUT/$variant-runner"
+    fi
+    rm -rf "$OUT/bench-$variant"
+    harness --app="$app" --mix="$BENCH_MIX" --rate="$RATE" --duration="$DURATION" --out="$OUT/bench-$variant"
+done
+
+{
+    echo "# native PGO: baseline -> optimized"
+    harness compare "$OUT/bench-baseline" "$OUT/bench-optimized"
+    echo
+    echo "# optimized native -> JVM"
+    harness compare "$OUT/bench-optimized" "$OUT/bench-jvm"
+} | tee "$OUT/comparison.txt"
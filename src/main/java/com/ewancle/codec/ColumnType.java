@@ -0,0 +1,28 @@
+package com.ewancle.codec;
+
+/**
+ * 二进制行流（{@link RowBatchWriter}）中的列类型。
+ * 类型按批次声明：同一列在某个批次里出现混合值时，该批次退化为 UTF8，读取方按批次解码即可。
+ */
+public enum ColumnType {
+    INT64((byte) 1),
+    FLOAT64((byte) 2),
+    UTF8((byte) 3),
+    TIMESTAMP((byte) 4),   // epoch 毫秒（LocalDateTime 按 UTC 编码，不带时区）
+    UTF8_DICT((byte) 5);   // 字典编码：批次内只携带新增的字典项 + 每行的字典下标
+
+    final byte code;
+
+    ColumnType(byte code) {
+        this.code = code;
+    }
+
+    static ColumnType of(byte code) {
+        for (ColumnType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column type: " + code);
+    }
+}
@@ -0,0 +1,182 @@
+package com.ewancle.codec;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link RowBatchWriter} 格式的增量解码器（下游服务使用）。
+ * 可以直接喂入 HTTP 响应的任意分块，凑齐一帧就解码一帧；非线程安全。
+ */
+public class RowBatchReader {
+
+    private Buffer pending = Buffer.buffer();
+    private int pos;
+    private boolean headerRead;
+    private boolean ended;
+    private List<String> columns;
+    private final List<List<String>> dictionaries = new ArrayList<>();
+
+    /**
+     * 喂入一个分块，返回本次凑齐的所有行（可能为空）
+     */
+    public List<Object[]> feed(Buffer chunk) {
+        if (ended) {
+            throw new IllegalStateException("Stream already ended");
+        }
+        pending.appendBuffer(chunk);
+        List<Object[]> rows = new ArrayList<>();
+
+        if (!headerRead) {
+            if (pending.length() - pos < RowBatchWriter.MAGIC.length + 1) {
+                return rows;
+            }
+            byte[] magic = pending.getBytes(pos, pos + RowBatchWriter.MAGIC.length);
+            if (!Arrays.equals(magic, RowBatchWriter.MAGIC)) {
+                throw new IllegalArgumentException("Not a row batch stream");
+            }
+            byte version = pending.getByte(pos + RowBatchWriter.MAGIC.length);
+            if (version != RowBatchWriter.VERSION) {
+                throw new IllegalArgumentException("Unsupported row batch version: " + version);
+            }
+            pos += RowBatchWriter.MAGIC.length + 1;
+            headerRead = true;
+        }
+
+        while (!ended && pending.length() - pos >= 5) {
+            int length = pending.getIntLE(pos);
+            if (pending.length() - pos - 4 < length) {
+                break;
+            }
+            Cursor in = new Cursor(pos + 5);
+            byte kind = pending.getByte(pos + 4);
+            switch (kind) {
+                case RowBatchWriter.FRAME_SCHEMA -> readSchema(in);
+                case RowBatchWriter.FRAME_BATCH -> readBatch(in, rows);
+                case RowBatchWriter.FRAME_END -> ended = true;
+                default -> throw new IllegalArgumentException("Unknown frame type: " + kind);
+            }
+            pos += 4 + length;
+        }
+
+        // 丢弃已消费的字节，避免 pending 无限增长
+        if (pos > 0) {
+            pending = pending.getBuffer(pos, pending.length());
+            pos = 0;
+        }
+        return rows;
+    }
+
+    public List<String> columns() {
+        return columns;
+    }
+
+    public boolean isEnded() {
+        return ended;
+    }
+
+    private void readSchema(Cursor in) {
+        int count = in.varInt();
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(in.string());
+        }
+        // 流中间再次出现的 SCHEMA 只追加列，已有列的字典保留
+        while (dictionaries.size() < count) {
+            dictionaries.add(new ArrayList<>());
+        }
+        columns = names;
+    }
+
+    private void readBatch(Cursor in, List<Object[]> out) {
+        if (columns == null) {
+            throw new IllegalStateException("Batch before schema");
+        }
+        int n = in.varInt();
+        Object[][] rows = new Object[n][columns.size()];
+        for (int c = 0; c < columns.size(); c++) {
+            ColumnType type = ColumnType.of(in.readByte());
+            byte[] validity = in.bytes((n + 7) >>> 3);
+            List<String> dictionary = dictionaries.get(c);
+            if (type == ColumnType.UTF8_DICT) {
+                int added = in.varInt();
+                for (int i = 0; i < added; i++) {
+                    dictionary.add(in.string());
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                boolean present = (validity[i >>> 3] & (1 << (i & 7))) != 0;
+                switch (type) {
+                    case INT64 -> {
+                        long v = in.longLE();
+                        if (present) rows[i][c] = v;
+                    }
+                    case FLOAT64 -> {
+                        long v = in.longLE();
+                        if (present) rows[i][c] = Double.longBitsToDouble(v);
+                    }
+                    case TIMESTAMP -> {
+                        long v = in.longLE();
+                        if (present) rows[i][c] = LocalDateTime.ofInstant(Instant.ofEpochMilli(v), ZoneOffset.UTC);
+                    }
+                    case UTF8 -> {
+                        if (present) rows[i][c] = in.string();
+                    }
+                    case UTF8_DICT -> {
+                        if (present) rows[i][c] = dictionary.get(in.varInt());
+                    }
+                }
+            }
+        }
+        out.addAll(Arrays.asList(rows));
+    }
+
+    private final class Cursor {
+        private int at;
+
+        Cursor(int at) {
+            this.at = at;
+        }
+
+        byte readByte() {
+            return pending.getByte(at++);
+        }
+
+        byte[] bytes(int len) {
+            byte[] b = pending.getBytes(at, at + len);
+            at += len;
+            return b;
+        }
+
+        long longLE() {
+            long v = pending.getLongLE(at);
+            at += 8;
+            return v;
+        }
+
+        int varInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = pending.getByte(at++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        String string() {
+            int len = varInt();
+            String s = pending.getString(at, at + len, StandardCharsets.UTF_8.name());
+            at += len;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.ewancle.codec;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 紧凑的二进制列式行流编码（服务间传输解析/导出结果，替代 JSON 字符串数组）。
+ *
+ * 格式（整数均为小端）：
+ *   "EWRB" + 版本号(1 字节)
+ *   之后是若干帧：int32 帧长度 + 1 字节帧类型 + 帧内容
+ *     SCHEMA：varint 列数 + 每列名称（varint 长度 + UTF-8）
+ *     BATCH ：varint 行数 + 每列 [类型(1 字节) + 非空位图 + 值]
+ *             INT64 / FLOAT64 / TIMESTAMP：每行 8 字节（空值写 0）
+ *             UTF8     ：每个非空值 varint 长度 + UTF-8
+ *             UTF8_DICT：varint 新增字典项数 + 字典项，然后每个非空值一个 varint 下标
+ *     END   ：无内容
+ *   SCHEMA 帧可以再次出现（见 {@link #extend}）：列只增不减，之后的批次按新的列数编码。
+ *
+ * 字典在整个流内按列累积；基数过高的列（如邮箱）在第一个批次后自动改为普通 UTF8。
+ * 一个 writer 对应一条流，非线程安全。
+ */
+public class RowBatchWriter {
+
+    public static final String MEDIA_TYPE = "application/vnd.ewancle.rowbatch";
+
+    static final byte[] MAGIC = {'E', 'W', 'R', 'B'};
+    static final byte VERSION = 1;
+
+    static final byte FRAME_SCHEMA = 1;
+    static final byte FRAME_BATCH = 2;
+    static final byte FRAME_END = 3;
+
+    private static final int DEFAULT_MAX_DICTIONARY_SIZE = 65536;
+
+    private List<String> columns;
+    private final int maxDictionarySize;
+    // 每列的字典，null 表示该列已退化为普通 UTF8
+    private final List<Map<String, Integer>> dictionaries;
+    private long batches;
+
+    public RowBatchWriter(List<String> columns) {
+        this(columns, DEFAULT_MAX_DICTIONARY_SIZE);
+    }
+
+    public RowBatchWriter(List<String> columns, int maxDictionarySize) {
+        this.columns = List.copyOf(columns);
+        this.maxDictionarySize = maxDictionarySize;
+        this.dictionaries = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            dictionaries.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * 流头：魔数 + 版本 + SCHEMA 帧
+     */
+    public Buffer start() {
+        Buffer buf = Buffer.buffer(64 + columns.size() * 16);
+        buf.appendBytes(MAGIC).appendByte(VERSION);
+        return appendSchema(buf);
+    }
+
+    /**
+     * 追加列（事先不知道最宽的行时使用，如流式解析）：names 的前面部分必须与已有列相同。
+     * 返回新的 SCHEMA 帧，之后的批次按新的列数编码；已有列的字典保留
+     */
+    public Buffer extend(List<String> names) {
+        if (names.size() < columns.size() || !names.subList(0, columns.size()).equals(columns)) {
+            throw new IllegalArgumentException("Columns can only be appended");
+        }
+        for (int i = columns.size(); i < names.size(); i++) {
+            dictionaries.add(new HashMap<>());
+        }
+        columns = List.copyOf(names);
+        return appendSchema(Buffer.buffer(16 + columns.size() * 16));
+    }
+
+    public List<String> columns() {
+        return columns;
+    }
+
+    private Buffer appendSchema(Buffer buf) {
+        int frame = beginFrame(buf, FRAME_SCHEMA);
+        writeVarInt(buf, columns.size());
+        for (String column : columns) {
+            writeString(buf, column);
+        }
+        endFrame(buf, frame);
+        return buf;
+    }
+
+    /**
+     * 编码一个批次。行数组长度不足列数时，缺失的列视为空值
+     */
+    public Buffer writeBatch(List<Object[]> rows) {
+        int n = rows.size();
+        Buffer buf = Buffer.buffer(64 + n * columns.size() * 9);
+        int frame = beginFrame(buf, FRAME_BATCH);
+        writeVarInt(buf, n);
+        for (int c = 0; c < columns.size(); c++) {
+            writeColumn(buf, rows, c);
+        }
+        endFrame(buf, frame);
+        batches++;
+        return buf;
+    }
+
+    public Buffer end() {
+        Buffer buf = Buffer.buffer(5);
+        endFrame(buf, beginFrame(buf, FRAME_END));
+        return buf;
+    }
+
+    private void writeColumn(Buffer buf, List<Object[]> rows, int c) {
+        int n = rows.size();
+        ColumnType type = inferType(rows, c);
+        buf.appendByte(type.code);
+
+        byte[] validity = new byte[(n + 7) >>> 3];
+        int present = 0;
+        for (int i = 0; i < n; i++) {
+            if (value(rows.get(i), c) != null) {
+                validity[i >>> 3] |= (byte) (1 << (i & 7));
+                present++;
+            }
+        }
+        buf.appendBytes(validity);
+
+        switch (type) {
+            case INT64 -> {
+                for (Object[] row : rows) {
+                    Object v = value(row, c);
+                    buf.appendLongLE(v == null ? 0L : ((Number) v).longValue());
+                }
+            }
+            case FLOAT64 -> {
+                for (Object[] row : rows) {
+                    Object v = value(row, c);
+                    buf.appendLongLE(v == null ? 0L : Double.doubleToRawLongBits(((Number) v).doubleValue()));
+                }
+            }
+            case TIMESTAMP -> {
+                for (Object[] row : rows) {
+                    Object v = value(row, c);
+                    buf.appendLongLE(v == null ? 0L : epochMillis(v));
+                }
+            }
+            case UTF8 -> {
+                for (Object[] row : rows) {
+                    Object v = value(row, c);
+                    if (v != null) {
+                        writeString(buf, text(v));
+                    }
+                }
+            }
+            case UTF8_DICT -> writeDictionaryColumn(buf, rows, c, present);
+        }
+    }
+
+    private void writeDictionaryColumn(Buffer buf, List<Object[]> rows, int c, int present) {
+        Map<String, Integer> dictionary = dictionaries.get(c);
+        List<String> added = new ArrayList<>();
+        int[] codes = new int[present];
+        int k = 0;
+        for (Object[] row : rows) {
+            Object v = value(row, c);
+            if (v == null) {
+                continue;
+            }
+            String s = text(v);
+            Integer code = dictionary.get(s);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.put(s, code);
+                added.add(s);
+            }
+            codes[k++] = code;
+        }
+        writeVarInt(buf, added.size());
+        for (String s : added) {
+            writeString(buf, s);
+        }
+        for (int code : codes) {
+            writeVarInt(buf, code);
+        }
+        // 首批去重效果差（超过一半是新值）或字典过大时，后续批次改用普通 UTF8
+        if ((batches == 0 && added.size() * 2 > present) || dictionary.size() > maxDictionarySize) {
+            dictionaries.set(c, null);
+        }
+    }
+
+    private ColumnType inferType(List<Object[]> rows, int c) {
+        boolean any = false;
+        boolean integral = true;
+        boolean numeric = true;
+        boolean temporal = true;
+        for (Object[] row : rows) {
+            Object v = value(row, c);
+            if (v == null) {
+                continue;
+            }
+            any = true;
+            if (!(v instanceof Long || v instanceof Integer || v instanceof Short || v instanceof Byte)) {
+                integral = false;
+            }
+            if (!(v instanceof Number)) {
+                numeric = false;
+            }
+            if (!(v instanceof LocalDateTime || v instanceof LocalDate || v instanceof Instant || v instanceof Date)) {
+                temporal = false;
+            }
+            if (!integral && !numeric && !temporal) {
+                break;
+            }
+        }
+        if (any && integral) return ColumnType.INT64;
+        if (any && numeric) return ColumnType.FLOAT64;
+        if (any && temporal) return ColumnType.TIMESTAMP;
+        return dictionaries.get(c) != null ? ColumnType.UTF8_DICT : ColumnType.UTF8;
+    }
+
+    private static Object value(Object[] row, int c) {
+        return c < row.length ? row[c] : null;
+    }
+
+    private static String text(Object v) {
+        return v instanceof String s ? s : String.valueOf(v);
+    }
+
+    private static long epochMillis(Object v) {
+        if (v instanceof LocalDateTime t) return t.toInstant(ZoneOffset.UTC).toEpochMilli();
+        if (v instanceof LocalDate d) return d.atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+        if (v instanceof Instant i) return i.toEpochMilli();
+        return ((Date) v).getTime();
+    }
+
+    private static int beginFrame(Buffer buf, byte kind) {
+        int pos = buf.length();
+        buf.appendIntLE(0).appendByte(kind);
+        return pos;
+    }
+
+    private static void endFrame(Buffer buf, int pos) {
+        buf.setIntLE(pos, buf.length() - pos - 4);
+    }
+
+    private static void writeString(Buffer buf, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(buf, bytes.length);
+        buf.appendBytes(bytes);
+    }
+
+    static void writeVarInt(Buffer buf, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf.appendByte((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buf.appendByte((byte) value);
+    }
+}
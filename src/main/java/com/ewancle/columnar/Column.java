@@ -0,0 +1,36 @@
+package com.ewancle.columnar;
+
+import java.util.function.IntPredicate;
+
+/**
+ * 列式缓存中的一列（只读，可被多个查询线程并发扫描）
+ */
+interface Column {
+
+    String name();
+
+    /**
+     * 输出给 JSON 的值（数字 / 字符串 / null）
+     */
+    Object value(int row);
+
+    /**
+     * 分组键：文本列返回字典下标，数值列返回 double，空值返回 null
+     */
+    Object groupKey(int row);
+
+    Object groupValue(Object key);
+
+    double number(int row);
+
+    boolean isNull(int row);
+
+    /**
+     * 排序比较，空值排在最后
+     */
+    int compare(int a, int b);
+
+    IntPredicate predicate(String op, String value);
+
+    long bytes();
+}
@@ -0,0 +1,128 @@
+package com.ewancle.columnar;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 逐行追加构建一列：先按数值（或时间）列收集，遇到第一个不兼容的值时整体升级为字典编码的文本列
+ */
+final class ColumnBuilder {
+
+    private enum Kind { UNKNOWN, NUMBER, TIMESTAMP, TEXT }
+
+    private final String name;
+    private Kind kind = Kind.UNKNOWN;
+    private int size;
+    private double[] numbers = new double[1024];
+    private final BitSet nulls = new BitSet();
+    private int[] codes;
+    private Map<String, Integer> dictionary;
+
+    ColumnBuilder(String name) {
+        this.name = name;
+    }
+
+    void add(Object v) {
+        Kind incoming = v == null ? null
+                : v instanceof Number ? Kind.NUMBER
+                : v instanceof LocalDateTime || v instanceof LocalDate ? Kind.TIMESTAMP
+                : Kind.TEXT;
+        if (incoming != null && kind != incoming && kind != Kind.TEXT) {
+            if (kind == Kind.UNKNOWN && incoming != Kind.TEXT) {
+                kind = incoming;
+            } else {
+                promoteToText();
+            }
+        }
+        if (kind == Kind.TEXT) {
+            ensureCodes(size + 1);
+            codes[size] = v == null ? -1 : code(v instanceof String s ? s : String.valueOf(v));
+        } else {
+            ensureNumbers(size + 1);
+            if (v == null) {
+                nulls.set(size);
+            } else {
+                numbers[size] = v instanceof Number n ? n.doubleValue() : epochMillis(v);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * 补齐到 rows 行（较短的行缺失的单元格为空）
+     */
+    void padTo(int rows) {
+        while (size < rows) {
+            add(null);
+        }
+    }
+
+    Column build(boolean offHeap) {
+        if (kind == Kind.TEXT) {
+            IntBuffer buf = offHeap
+                    ? ByteBuffer.allocateDirect(size * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer()
+                    : IntBuffer.allocate(size);
+            buf.put(codes, 0, size).flip();
+            String[] dict = new String[dictionary.size()];
+            dictionary.forEach((s, i) -> dict[i] = s);
+            return new TextColumn(name, buf, dict);
+        }
+        DoubleBuffer buf = offHeap
+                ? ByteBuffer.allocateDirect(size * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer()
+                : DoubleBuffer.allocate(size);
+        buf.put(numbers, 0, size).flip();
+        return new NumberColumn(name, buf, nulls, kind == Kind.TIMESTAMP);
+    }
+
+    private void promoteToText() {
+        Kind previous = kind;
+        kind = Kind.TEXT;
+        dictionary = new HashMap<>();
+        codes = new int[Math.max(numbers.length, 16)];
+        for (int i = 0; i < size; i++) {
+            if (nulls.get(i)) {
+                codes[i] = -1;
+            } else if (previous == Kind.TIMESTAMP) {
+                codes[i] = code(LocalDateTime.ofEpochSecond((long) numbers[i] / 1000, 0, ZoneOffset.UTC).toString());
+            } else {
+                codes[i] = code(Double.toString(numbers[i]));
+            }
+        }
+        numbers = null;
+    }
+
+    private int code(String s) {
+        Integer code = dictionary.get(s);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.put(s, code);
+        }
+        return code;
+    }
+
+    private void ensureNumbers(int capacity) {
+        if (capacity > numbers.length) {
+            numbers = Arrays.copyOf(numbers, numbers.length * 2);
+        }
+    }
+
+    private void ensureCodes(int capacity) {
+        if (capacity > codes.length) {
+            codes = Arrays.copyOf(codes, codes.length * 2);
+        }
+    }
+
+    private static double epochMillis(Object v) {
+        LocalDateTime t = v instanceof LocalDate d ? d.atStartOfDay() : (LocalDateTime) v;
+        return t.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
@@ -0,0 +1,151 @@
+package com.ewancle.columnar;
+
+import com.ewancle.model.FileMetadata;
+import com.ewancle.service.WorkbookRowCursor;
+import com.ewancle.storage.TempFileManager;
+import com.ewancle.storage.UploadStore;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 已上传工作簿的列式内存缓存（按 storedName 寻址）。
+ *    - 第一次查询时解析一次（第一行作为列名），之后的查询直接扫描列
+ *    - 行数达到 off-heap-rows 的表放在堆外，减少 GC 压力
+ *    - 按字节预算做 LRU 淘汰
+ */
+@ApplicationScoped
+public class ColumnStore {
+
+    @Inject
+    UploadStore uploadStore;
+
+    @Inject
+    TempFileManager tempFiles;
+
+    @ConfigProperty(name = "app.column-cache.max-bytes", defaultValue = "268435456")
+    long maxBytes;
+
+    @ConfigProperty(name = "app.column-cache.off-heap-rows", defaultValue = "100000")
+    int offHeapRows;
+
+    // accessOrder=true：LinkedHashMap 按访问顺序排列，队首即最久未使用
+    private final LinkedHashMap<String, ColumnTable> tables = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<ColumnTable>> loading = new ConcurrentHashMap<>();
+    private long usedBytes;
+
+    public Uni<ColumnTable> table(String storedName) {
+        final String safe = Paths.get(storedName).getFileName().toString();
+        synchronized (this) {
+            ColumnTable cached = tables.get(safe);
+            if (cached != null) {
+                return Uni.createFrom().item(cached);
+            }
+        }
+        // 同一个文件的并发首次查询只解析一次
+        CompletableFuture<ColumnTable> future = loading.computeIfAbsent(safe, name ->
+                Uni.createFrom().item(() -> load(name))
+                        .runSubscriptionOn(Infrastructure.getDefaultExecutor())
+                        .subscribeAsCompletionStage()
+                        .whenComplete((table, failure) -> {
+                            if (table != null) {
+                                put(name, table);
+                            }
+                            loading.remove(name);
+                        }));
+        return Uni.createFrom().completionStage(future);
+    }
+
+    public synchronized void evict(String storedName) {
+        ColumnTable removed = tables.remove(Paths.get(storedName).getFileName().toString());
+        if (removed != null) {
+            usedBytes -= removed.bytes();
+        }
+    }
+
+    private ColumnTable load(String storedName) {
+        File file = uploadStore.resolve(storedName).toFile();
+        if (!file.isFile()) {
+            throw new WebApplicationException("文件不存在: " + storedName, 404);
+        }
+        FileMetadata meta = uploadStore.metadata(storedName);
+        if (meta == null || !meta.gzipped()) {
+            return load(storedName, file);
+        }
+        // gzip 存储的文件（如 .xls / .csv）：POI 需要随机访问，先解压到临时文件（计入临时目录配额）
+        try (TempFileManager.TempFile decoded = tempFiles.allocateBlocking("column-store", "-" + meta.originalName(), meta.size())) {
+            try (InputStream in = uploadStore.openDecoded(meta)) {
+                Files.copy(in, decoded.path(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return load(storedName, decoded.path().toFile());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decode workbook: " + storedName, e);
+        }
+    }
+
+    private ColumnTable load(String storedName, File file) {
+        try (WorkbookRowCursor cursor = WorkbookRowCursor.open(file, 0)) {
+            List<String> names = cursor.columnNames(true);
+            List<ColumnBuilder> builders = new ArrayList<>(names.size());
+            for (String name : names) {
+                builders.add(new ColumnBuilder(name));
+            }
+            int rows = 0;
+            for (List<Object[]> batch = cursor.nextBatch(4096); !batch.isEmpty(); batch = cursor.nextBatch(4096)) {
+                for (Object[] values : batch) {
+                    for (int c = 0; c < values.length && c < builders.size(); c++) {
+                        builders.get(c).add(values[c]);
+                    }
+                    rows++;
+                    for (ColumnBuilder builder : builders) {
+                        builder.padTo(rows);
+                    }
+                }
+            }
+            boolean offHeap = rows >= offHeapRows;
+            List<Column> columns = new ArrayList<>(builders.size());
+            for (ColumnBuilder builder : builders) {
+                columns.add(builder.build(offHeap));
+            }
+            return new ColumnTable(columns, rows);
+        } catch (WebApplicationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load workbook: " + storedName, e);
+        }
+    }
+
+    private synchronized void put(String storedName, ColumnTable table) {
+        ColumnTable previous = tables.put(storedName, table);
+        if (previous != null) {
+            usedBytes -= previous.bytes();
+        }
+        usedBytes += table.bytes();
+        Iterator<Map.Entry<String, ColumnTable>> it = tables.entrySet().iterator();
+        while (usedBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, ColumnTable> eldest = it.next();
+            if (eldest.getValue() == table) {
+                continue;   // 刚加载的表即使超预算也保留，供本次查询使用
+            }
+            usedBytes -= eldest.getValue().bytes();
+            it.remove();
+        }
+    }
+}
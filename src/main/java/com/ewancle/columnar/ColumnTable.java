@@ -0,0 +1,298 @@
+package com.ewancle.columnar;
+
+import com.ewancle.model.QueryResult;
+import com.ewancle.model.TableQuery;
+import jakarta.ws.rs.WebApplicationException;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * 一个 sheet 的只读列式快照。
+ * 查询按 CHUNK_ROWS 行切块，过滤和分组聚合在 ForkJoin 公共池上并行扫描各块，再按块顺序合并。
+ */
+public class ColumnTable {
+
+    static final int CHUNK_ROWS = 64 * 1024;
+
+    private final List<Column> columns;
+    private static final List<String> AGGREGATES = List.of("count", "sum", "avg", "min", "max");
+
+    private final Map<String, Column> byName = new HashMap<>();
+    private final int rowCount;
+    private final long bytes;
+
+    ColumnTable(List<Column> columns, int rowCount) {
+        this.columns = columns;
+        this.rowCount = rowCount;
+        long total = 0;
+        for (Column column : columns) {
+            byName.putIfAbsent(column.name(), column);
+            total += column.bytes();
+        }
+        this.bytes = total;
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    public long bytes() {
+        return bytes;
+    }
+
+    public List<String> columnNames() {
+        return columns.stream().map(Column::name).toList();
+    }
+
+    /**
+     * 检查聚合操作（count/sum/avg/min/max），不需要表就能做，接口在加载缓存之前先调用
+     */
+    public static void checkAggregates(TableQuery q) {
+        for (TableQuery.Aggregate a : q.aggregates) {
+            if (a == null || a.op == null || !AGGREGATES.contains(a.op)) {
+                throw new WebApplicationException("不支持的聚合: " + (a == null ? null : a.op), 400);
+            }
+        }
+    }
+
+    public QueryResult query(TableQuery q) {
+        long start = System.nanoTime();
+        int[] matched = filter(q.filters);
+        QueryResult result = q.groupBy.isEmpty() && q.aggregates.isEmpty()
+                ? select(matched, q)
+                : aggregate(matched, q);
+        result.tookMillis = (System.nanoTime() - start) / 1_000_000;
+        return result;
+    }
+
+    private int[] filter(List<TableQuery.Filter> filters) {
+        if (filters.isEmpty()) {
+            return IntStream.range(0, rowCount).toArray();
+        }
+        IntPredicate predicate = row -> true;
+        for (TableQuery.Filter f : filters) {
+            predicate = predicate.and(column(f.column).predicate(f.op, f.value));
+        }
+        IntPredicate test = predicate;
+        int chunks = (rowCount + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        int[][] parts = new int[chunks][];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int from = chunk * CHUNK_ROWS;
+            int to = Math.min(from + CHUNK_ROWS, rowCount);
+            int[] hits = new int[to - from];
+            int n = 0;
+            for (int row = from; row < to; row++) {
+                if (test.test(row)) {
+                    hits[n++] = row;
+                }
+            }
+            parts[chunk] = Arrays.copyOf(hits, n);
+        });
+        int total = 0;
+        for (int[] part : parts) {
+            total += part.length;
+        }
+        int[] rows = new int[total];
+        int at = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, rows, at, part.length);
+            at += part.length;
+        }
+        return rows;
+    }
+
+    private QueryResult select(int[] matched, TableQuery q) {
+        List<Column> projection = q.select.isEmpty() ? columns : q.select.stream().map(this::column).toList();
+        int[] page = page(matched, q);
+        List<List<Object>> rows = new ArrayList<>(page.length);
+        for (int row : page) {
+            List<Object> values = new ArrayList<>(projection.size());
+            for (Column column : projection) {
+                values.add(column.value(row));
+            }
+            rows.add(values);
+        }
+        return new QueryResult(projection.stream().map(Column::name).toList(), matched.length, rows, 0);
+    }
+
+    /**
+     * 排序 + 分页。只要前 offset+limit 行且远小于命中数时用有界堆做部分排序，避免全量排序
+     */
+    private int[] page(int[] matched, TableQuery q) {
+        int offset = Math.max(q.offset, 0);
+        int limit = Math.max(q.limit, 0);
+        if (offset >= matched.length) {
+            return new int[0];
+        }
+        int end = (int) Math.min((long) offset + limit, matched.length);
+        if (q.sort.isEmpty()) {
+            return Arrays.copyOfRange(matched, offset, end);
+        }
+        Comparator<Integer> order = rowComparator(q.sort);
+        Integer[] sorted;
+        if (end < matched.length / 8) {
+            PriorityQueue<Integer> top = new PriorityQueue<>(end + 1, order.reversed());
+            for (int row : matched) {
+                top.offer(row);
+                if (top.size() > end) {
+                    top.poll();
+                }
+            }
+            sorted = top.toArray(new Integer[0]);
+            Arrays.sort(sorted, order);
+        } else {
+            sorted = Arrays.stream(matched).boxed().toArray(Integer[]::new);
+            Arrays.parallelSort(sorted, order);
+        }
+        int[] page = new int[end - offset];
+        for (int i = offset; i < end; i++) {
+            page[i - offset] = sorted[i];
+        }
+        return page;
+    }
+
+    private Comparator<Integer> rowComparator(List<TableQuery.Sort> sort) {
+        Comparator<Integer> order = null;
+        for (TableQuery.Sort s : sort) {
+            Column column = column(s.column);
+            Comparator<Integer> next = s.desc ? (a, b) -> column.compare(b, a) : column::compare;
+            order = order == null ? next : order.thenComparing(next);
+        }
+        // 相同键保持原始行序，结果稳定
+        return order.thenComparing(Comparator.naturalOrder());
+    }
+
+    private QueryResult aggregate(int[] matched, TableQuery q) {
+        List<Column> keys = q.groupBy.stream().map(this::column).toList();
+        List<TableQuery.Aggregate> aggs = q.aggregates;
+        List<Column> aggColumns = new ArrayList<>(aggs.size());
+        checkAggregates(q);
+        for (TableQuery.Aggregate a : aggs) {
+            aggColumns.add(a.column == null ? null : column(a.column));
+        }
+
+        // 每块一个局部分组表，最后合并
+        int chunks = Math.max((matched.length + CHUNK_ROWS - 1) / CHUNK_ROWS, 1);
+        List<Map<List<Object>, Accumulator[]>> partials = IntStream.range(0, chunks).parallel().mapToObj(chunk -> {
+            Map<List<Object>, Accumulator[]> groups = new HashMap<>();
+            int to = Math.min((chunk + 1) * CHUNK_ROWS, matched.length);
+            for (int i = chunk * CHUNK_ROWS; i < to; i++) {
+                int row = matched[i];
+                Object[] key = new Object[keys.size()];
+                for (int k = 0; k < key.length; k++) {
+                    key[k] = keys.get(k).groupKey(row);
+                }
+                Accumulator[] acc = groups.computeIfAbsent(Arrays.asList(key), x -> newAccumulators(aggs.size()));
+                for (int a = 0; a < acc.length; a++) {
+                    Column column = aggColumns.get(a);
+                    if (column == null) {
+                        acc[a].add(0);
+                    } else if (!column.isNull(row)) {
+                        acc[a].add("count".equals(aggs.get(a).op) ? 0 : column.number(row));
+                    }
+                }
+            }
+            return groups;
+        }).toList();
+
+        Map<List<Object>, Accumulator[]> merged = new HashMap<>();
+        for (Map<List<Object>, Accumulator[]> partial : partials) {
+            partial.forEach((key, acc) -> merged.merge(key, acc, (x, y) -> {
+                for (int a = 0; a < x.length; a++) {
+                    x[a].merge(y[a]);
+                }
+                return x;
+            }));
+        }
+
+        List<String> names = new ArrayList<>(q.groupBy);
+        for (TableQuery.Aggregate a : aggs) {
+            names.add(a.as != null ? a.as : a.op + "(" + (a.column == null ? "*" : a.column) + ")");
+        }
+        List<List<Object>> rows = new ArrayList<>(merged.size());
+        merged.forEach((key, acc) -> {
+            List<Object> values = new ArrayList<>(names.size());
+            for (int k = 0; k < keys.size(); k++) {
+                values.add(keys.get(k).groupValue(key.get(k)));
+            }
+            for (int a = 0; a < acc.length; a++) {
+                values.add(acc[a].result(aggs.get(a).op));
+            }
+            rows.add(values);
+        });
+
+        if (!q.sort.isEmpty()) {
+            Comparator<List<Object>> order = null;
+            for (TableQuery.Sort s : q.sort) {
+                int index = names.indexOf(s.column);
+                if (index < 0) {
+                    throw new WebApplicationException("分组结果中没有列: " + s.column, 400);
+                }
+                Comparator<List<Object>> next = Comparator.comparing(r -> comparable(r.get(index)),
+                        Comparator.nullsLast(Comparator.naturalOrder()));
+                next = s.desc ? next.reversed() : next;
+                order = order == null ? next : order.thenComparing(next);
+            }
+            rows.sort(order);
+        }
+        int from = Math.min(Math.max(q.offset, 0), rows.size());
+        int to = (int) Math.min((long) from + Math.max(q.limit, 0), rows.size());
+        return new QueryResult(names, rows.size(), new ArrayList<>(rows.subList(from, to)), 0);
+    }
+
+    // 分组结果里同一列的值类型相同（String / Double / Long），可以互相比较
+    @SuppressWarnings("unchecked")
+    private static Comparable<Object> comparable(Object value) {
+        return (Comparable<Object>) value;
+    }
+
+    private Column column(String name) {
+        Column column = byName.get(name);
+        if (column == null) {
+            throw new WebApplicationException("未知列: " + name, 400);
+        }
+        return column;
+    }
+
+    private static Accumulator[] newAccumulators(int n) {
+        Accumulator[] acc = new Accumulator[n];
+        for (int i = 0; i < n; i++) {
+            acc[i] = new Accumulator();
+        }
+        return acc;
+    }
+
+    private static final class Accumulator {
+        long count;
+        double sum;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        void add(double v) {
+            count++;
+            sum += v;
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+
+        void merge(Accumulator o) {
+            count += o.count;
+            sum += o.sum;
+            min = Math.min(min, o.min);
+            max = Math.max(max, o.max);
+        }
+
+        Object result(String op) {
+            return switch (op) {
+                case "count" -> count;
+                case "sum" -> sum;
+                case "avg" -> count == 0 ? null : sum / count;
+                case "min" -> count == 0 ? null : min;
+                case "max" -> count == 0 ? null : max;
+                default -> throw new IllegalArgumentException(op);
+            };
+        }
+    }
+}
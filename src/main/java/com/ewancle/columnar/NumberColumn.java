@@ -0,0 +1,110 @@
+package com.ewancle.columnar;
+
+import jakarta.ws.rs.WebApplicationException;
+
+import java.nio.DoubleBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+/**
+ * 数值列（时间列以 epoch 毫秒存储），值放在 DoubleBuffer 里：小表是堆内数组，大表是堆外 direct buffer
+ */
+final class NumberColumn implements Column {
+
+    private final String name;
+    private final DoubleBuffer values;
+    private final BitSet nulls;
+    private final boolean timestamp;
+
+    NumberColumn(String name, DoubleBuffer values, BitSet nulls, boolean timestamp) {
+        this.name = name;
+        this.values = values;
+        this.nulls = nulls;
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public Object value(int row) {
+        if (nulls.get(row)) {
+            return null;
+        }
+        return timestamp ? format(values.get(row)) : (Object) values.get(row);
+    }
+
+    @Override
+    public Object groupKey(int row) {
+        return nulls.get(row) ? null : (Object) values.get(row);
+    }
+
+    @Override
+    public Object groupValue(Object key) {
+        return key == null ? null : timestamp ? format((Double) key) : key;
+    }
+
+    @Override
+    public double number(int row) {
+        return values.get(row);
+    }
+
+    @Override
+    public boolean isNull(int row) {
+        return nulls.get(row);
+    }
+
+    @Override
+    public int compare(int a, int b) {
+        boolean na = nulls.get(a);
+        boolean nb = nulls.get(b);
+        if (na || nb) {
+            return na == nb ? 0 : na ? 1 : -1;
+        }
+        return Double.compare(values.get(a), values.get(b));
+    }
+
+    @Override
+    public IntPredicate predicate(String op, String value) {
+        switch (op) {
+            case "isNull": return nulls::get;
+            case "notNull": return row -> !nulls.get(row);
+            default: break;
+        }
+        double operand = parse(value);
+        return switch (op) {
+            case "eq" -> row -> !nulls.get(row) && values.get(row) == operand;
+            case "ne" -> row -> !nulls.get(row) && values.get(row) != operand;
+            case "gt" -> row -> !nulls.get(row) && values.get(row) > operand;
+            case "ge" -> row -> !nulls.get(row) && values.get(row) >= operand;
+            case "lt" -> row -> !nulls.get(row) && values.get(row) < operand;
+            case "le" -> row -> !nulls.get(row) && values.get(row) <= operand;
+            default -> throw new WebApplicationException("数值列不支持操作: " + op, 400);
+        };
+    }
+
+    @Override
+    public long bytes() {
+        return (long) values.capacity() * Double.BYTES + nulls.size() / 8;
+    }
+
+    private double parse(String value) {
+        try {
+            return timestamp
+                    ? LocalDateTime.parse(value).toInstant(ZoneOffset.UTC).toEpochMilli()
+                    : Double.parseDouble(value);
+        } catch (Exception e) {
+            throw new WebApplicationException("无法解析过滤值: " + value, 400);
+        }
+    }
+
+    private static String format(double epochMillis) {
+        long millis = (long) epochMillis;
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), Math.floorMod(millis, 1000) * 1_000_000,
+                ZoneOffset.UTC).toString();
+    }
+}
@@ -0,0 +1,118 @@
+package com.ewancle.columnar;
+
+import jakarta.ws.rs.WebApplicationException;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * 文本列：字典编码，每行只存一个 int 下标（-1 表示空）。
+ * 过滤时先在字典上求值一次，扫描阶段只比较 int。
+ */
+final class TextColumn implements Column {
+
+    private final String name;
+    private final IntBuffer codes;
+    private final String[] dictionary;
+    // 字典项的排序名次，排序时按名次比较
+    private final int[] rank;
+
+    TextColumn(String name, IntBuffer codes, String[] dictionary) {
+        this.name = name;
+        this.codes = codes;
+        this.dictionary = dictionary;
+        Integer[] order = new Integer[dictionary.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(i -> dictionary[i]));
+        this.rank = new int[dictionary.length];
+        for (int r = 0; r < order.length; r++) {
+            rank[order[r]] = r;
+        }
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public Object value(int row) {
+        int code = codes.get(row);
+        return code < 0 ? null : dictionary[code];
+    }
+
+    @Override
+    public Object groupKey(int row) {
+        int code = codes.get(row);
+        return code < 0 ? null : (Object) code;
+    }
+
+    @Override
+    public Object groupValue(Object key) {
+        return key == null ? null : dictionary[(Integer) key];
+    }
+
+    @Override
+    public double number(int row) {
+        throw new WebApplicationException("文本列不能做数值聚合: " + name, 400);
+    }
+
+    @Override
+    public boolean isNull(int row) {
+        return codes.get(row) < 0;
+    }
+
+    @Override
+    public int compare(int a, int b) {
+        int ca = codes.get(a);
+        int cb = codes.get(b);
+        if (ca < 0 || cb < 0) {
+            return ca == cb ? 0 : ca < 0 ? 1 : -1;
+        }
+        return Integer.compare(rank[ca], rank[cb]);
+    }
+
+    @Override
+    public IntPredicate predicate(String op, String value) {
+        switch (op) {
+            case "isNull": return row -> codes.get(row) < 0;
+            case "notNull": return row -> codes.get(row) >= 0;
+            default: break;
+        }
+        if (value == null) {
+            throw new WebApplicationException("过滤值不能为空: " + name, 400);
+        }
+        Predicate<String> test = switch (op) {
+            case "eq" -> value::equals;
+            case "ne" -> s -> !value.equals(s);
+            case "gt" -> s -> s.compareTo(value) > 0;
+            case "ge" -> s -> s.compareTo(value) >= 0;
+            case "lt" -> s -> s.compareTo(value) < 0;
+            case "le" -> s -> s.compareTo(value) <= 0;
+            case "contains" -> s -> s.contains(value);
+            default -> throw new WebApplicationException("文本列不支持操作: " + op, 400);
+        };
+        boolean[] accept = new boolean[dictionary.length];
+        for (int i = 0; i < dictionary.length; i++) {
+            accept[i] = test.test(dictionary[i]);
+        }
+        return row -> {
+            int code = codes.get(row);
+            return code >= 0 && accept[code];
+        };
+    }
+
+    @Override
+    public long bytes() {
+        long dict = 0;
+        for (String s : dictionary) {
+            dict += 40 + 2L * s.length();
+        }
+        return (long) codes.capacity() * Integer.BYTES + dict + rank.length * 4L;
+    }
+}
@@ -0,0 +1,145 @@
+package com.ewancle.diff;
+
+import java.util.Arrays;
+
+/**
+ * 一个 sheet 的行摘要：每行只留 (键哈希, 整行哈希, 行序号) 三个原始值，按键哈希分区存放，
+ * 约 20 字节 / 行，与行内容的大小无关。各分区互不相交，可以在不同线程上分别比对。
+ */
+final class RowDigest {
+
+    static final int REMOVED = -1;
+    static final int UNCHANGED = -2;
+
+    static final byte ADDED = 0;
+    static final byte SAME = 1;
+    static final byte CHANGED = 2;
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private final Partition[] partitions;
+    private int rows;
+
+    RowDigest(int partitions) {
+        this.partitions = new Partition[Math.max(1, partitions)];
+        for (int i = 0; i < this.partitions.length; i++) {
+            this.partitions[i] = new Partition();
+        }
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int partitions() {
+        return partitions.length;
+    }
+
+    /**
+     * 追加一行；同一个 sheet 内按行顺序调用，ordinal 从 0 递增
+     */
+    void add(long keyHash, long rowHash, int ordinal) {
+        partitions[partitionOf(keyHash)].add(keyHash, rowHash, ordinal);
+        rows = Math.max(rows, ordinal + 1);
+    }
+
+    private int partitionOf(long keyHash) {
+        return (int) Long.remainderUnsigned(mix(keyHash), partitions.length);
+    }
+
+    /**
+     * 比对左右两边的第 p 个分区（两边的分区数必须相同）：
+     * 同一个键按出现顺序一一配对（重复键第 n 次出现对第 n 次出现），整行哈希相同为未变，不同为修改；
+     * 结果写进 leftPartner（REMOVED / UNCHANGED / 配对的右边行序号）和 rightStatus（ADDED / SAME / CHANGED）。
+     * 不同分区写的是两个数组里不同的下标，可以并发执行。
+     */
+    static void match(RowDigest left, RowDigest right, int p, int[] leftPartner, byte[] rightStatus) {
+        Partition l = left.partitions[p];
+        Partition r = right.partitions[p];
+        int capacity = 4;
+        while (capacity < l.size * 2) {
+            capacity <<= 1;
+        }
+        int mask = capacity - 1;
+        long[] tableKeys = new long[capacity];
+        int[] heads = new int[capacity];
+        Arrays.fill(heads, EMPTY);
+        int[] next = new int[l.size];
+        // 倒序插入链表头，链表里同一个键的行保持原来的先后顺序
+        for (int i = l.size - 1; i >= 0; i--) {
+            int slot = slot(tableKeys, heads, mask, l.keys[i]);
+            next[i] = heads[slot] == EMPTY ? -1 : heads[slot];
+            tableKeys[slot] = l.keys[i];
+            heads[slot] = i;
+            leftPartner[l.ordinals[i]] = REMOVED;
+        }
+        for (int j = 0; j < r.size; j++) {
+            int slot = slot(tableKeys, heads, mask, r.keys[j]);
+            int i = heads[slot];
+            if (i == EMPTY || i < 0) {
+                rightStatus[r.ordinals[j]] = ADDED;
+                continue;
+            }
+            heads[slot] = next[i];
+            if (l.hashes[i] == r.hashes[j]) {
+                leftPartner[l.ordinals[i]] = UNCHANGED;
+                rightStatus[r.ordinals[j]] = SAME;
+            } else {
+                leftPartner[l.ordinals[i]] = r.ordinals[j];
+                rightStatus[r.ordinals[j]] = CHANGED;
+            }
+        }
+    }
+
+    private static int slot(long[] keys, int[] heads, int mask, long key) {
+        int i = (int) mix(key) & mask;
+        while (heads[i] != EMPTY && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * 64 位 FNV-1a，用于单元格文本
+     */
+    static long hash(String text) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * murmur3 的 64 位收尾混合
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Partition {
+        private long[] keys = new long[16];
+        private long[] hashes = new long[16];
+        private int[] ordinals = new int[16];
+        private int size;
+
+        void add(long keyHash, long rowHash, int ordinal) {
+            if (size == keys.length) {
+                int capacity = size * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                hashes = Arrays.copyOf(hashes, capacity);
+                ordinals = Arrays.copyOf(ordinals, capacity);
+            }
+            keys[size] = keyHash;
+            hashes[size] = rowHash;
+            ordinals[size] = ordinal;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package com.ewancle.diff;
+
+import com.ewancle.model.RowDiff;
+import com.ewancle.service.StoredWorkbooks;
+import com.ewancle.service.StoredWorkbooks.SheetRowSource;
+import com.ewancle.storage.TempFileManager;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import org.apache.poi.ss.util.CellReference;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 两个已上传工作簿的按键比对（对账）：
+ *    1. 读两边的表头，按列名对齐列（列顺序不同也能比，只有一边有的列追加在后面）；header=false 时按列位置对齐
+ *    2. 两边同时各自流式解析一遍，每行只留键哈希和整行哈希（{@link RowDigest}，按键哈希分区）
+ *    3. 各分区并行配对：键相同、整行哈希不同的为修改，左边多出来的为删除，右边多出来的为新增
+ *    4. 再按顺序各读一遍输出：先输出删除的行（左边的顺序），再输出新增和修改的行（右边的顺序），
+ *       修改行带上变化的单元格
+ * 内存里只有每行约 20 字节的摘要；修改行左边的内容在第 4 步读左边时写进临时文件（计入临时目录配额），
+ * 内存里每个修改行只留一个文件偏移，读右边时按顺序取回（见 {@link ChangedRows}）。
+ * 值统一按文本比较（数字 1 和文本 "1.0" 不同）；哈希为 64 位，冲突的概率可以忽略。
+ */
+@ApplicationScoped
+public class SheetDiff {
+
+    @Inject
+    StoredWorkbooks workbooks;
+
+    @Inject
+    TempFileManager tempFiles;
+
+    /** 0 表示使用 CPU 核数 */
+    @ConfigProperty(name = "app.diff.parallelism", defaultValue = "0")
+    int parallelism;
+
+    // 每个工作线程分到的分区数，分区多一些各线程的负载更均匀
+    private static final int PARTITIONS_PER_WORKER = 4;
+
+    private record LeftRow(int rowNum, String[] cells) {}
+
+    @FunctionalInterface
+    private interface RowVisitor {
+        RowDiff visit(int ordinal, int rowNum, String[] cells);
+    }
+
+    /**
+     * @param key    键列：header=true 时为列名（找不到时再按列字母），否则为列字母（A、B…）
+     * @param header 第一行是否为表头
+     */
+    public Multi<RowDiff> diff(String left, String right, int sheet, String key, boolean header) {
+        int workers = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        int partitions = workers * PARTITIONS_PER_WORKER;
+        return Uni.createFrom().item(() -> layout(left, right, sheet, key, header))
+                .runSubscriptionOn(Infrastructure.getDefaultExecutor())
+                .onItem().transformToMulti(layout -> Uni.combine().all()
+                        .unis(digest(left, sheet, layout, layout.leftMap, partitions),
+                                digest(right, sheet, layout, layout.rightMap, partitions))
+                        .asTuple()
+                        .flatMap(digests -> compare(digests.getItem1(), digests.getItem2(), workers))
+                        .onItem().transformToMulti(matches -> output(left, right, sheet, layout, matches)));
+    }
+
+    private record Matches(int[] leftPartner, byte[] rightStatus) {}
+
+    private Uni<RowDigest> digest(String storedName, int sheet, Layout layout, int[] map, int partitions) {
+        return Uni.createFrom().item(() -> {
+            RowDigest digest = new RowDigest(partitions);
+            try (SheetRowSource rows = workbooks.open(storedName, sheet)) {
+                if (layout.header && rows.hasNext()) {
+                    rows.next();
+                }
+                for (int ordinal = 0; rows.hasNext(); ordinal++) {
+                    String[] cells = layout.cells(rows.next().values(), map);
+                    digest.add(layout.keyHash(cells), Layout.rowHash(cells), ordinal);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return digest;
+        }).runSubscriptionOn(Infrastructure.getDefaultExecutor());
+    }
+
+    private Uni<Matches> compare(RowDigest left, RowDigest right, int workers) {
+        int[] leftPartner = new int[left.rows()];
+        byte[] rightStatus = new byte[right.rows()];
+        return Multi.createFrom().range(0, left.partitions())
+                .onItem().transformToUni(p -> Uni.createFrom().item(() -> {
+                            RowDigest.match(left, right, p, leftPartner, rightStatus);
+                            return p;
+                        }).runSubscriptionOn(Infrastructure.getDefaultExecutor()))
+                .merge(workers)
+                .collect().last()
+                .map(ignore -> new Matches(leftPartner, rightStatus));
+    }
+
+    private Multi<RowDiff> output(String left, String right, int sheet, Layout layout, Matches matches) {
+        return Multi.createFrom().<ChangedRows, RowDiff>resource(() -> new ChangedRows(matches.rightStatus()),
+                        changedLeft -> Multi.createBy().concatenating().streams(
+                                removed(left, sheet, layout, matches, changedLeft),
+                                addedOrChanged(right, sheet, layout, matches, changedLeft)))
+                .withFinalizer(ChangedRows::close);
+    }
+
+    private Multi<RowDiff> removed(String left, int sheet, Layout layout, Matches matches, ChangedRows changedLeft) {
+        return scan(left, sheet, layout, layout.leftMap, (ordinal, rowNum, cells) -> {
+            int partner = matches.leftPartner()[ordinal];
+            if (partner == RowDigest.REMOVED) {
+                return new RowDiff(RowDiff.REMOVED, layout.key(cells), rowNum, null, layout.named(cells), null);
+            }
+            if (partner >= 0) {
+                changedLeft.put(partner, rowNum, cells);
+            }
+            return null;
+        });
+    }
+
+    private Multi<RowDiff> addedOrChanged(String right, int sheet, Layout layout, Matches matches,
+                                          ChangedRows changedLeft) {
+        return scan(right, sheet, layout, layout.rightMap, (ordinal, rowNum, cells) -> {
+            byte status = matches.rightStatus()[ordinal];
+            if (status == RowDigest.ADDED) {
+                return new RowDiff(RowDiff.ADDED, layout.key(cells), null, rowNum, layout.named(cells), null);
+            }
+            if (status != RowDigest.CHANGED) {
+                return null;
+            }
+            LeftRow before = changedLeft.next();
+            List<RowDiff.CellChange> changes = new ArrayList<>();
+            int width = Math.max(before.cells().length, cells.length);
+            for (int c = 0; c < width; c++) {
+                String from = c < before.cells().length ? before.cells()[c] : null;
+                String to = c < cells.length ? cells[c] : null;
+                if (!Objects.equals(from, to)) {
+                    changes.add(new RowDiff.CellChange(layout.name(c), from, to));
+                }
+            }
+            return new RowDiff(RowDiff.CHANGED, layout.key(cells), before.rowNum(), rowNum, layout.named(cells), changes);
+        });
+    }
+
+    /**
+     * 修改行左边的内容：读左边时按左边的顺序追加到临时文件，读右边时按右边的顺序依次取回。
+     * 每个修改行在内存里只留一个文件偏移，按它在右边修改行中的名次（rank）存放；
+     * 名次由每 64 行一个的前缀计数加上块内计数得到，不需要按右边行数分配的数组
+     */
+    private final class ChangedRows implements AutoCloseable {
+        private static final int BLOCK_SHIFT = 6;
+        // 估算临时文件大小（申请临时文件配额用）
+        private static final int BYTES_PER_ROW = 64;
+
+        private final byte[] rightStatus;
+        // blockRanks[b]：右边前 b * 64 行里的修改行数
+        private final int[] blockRanks;
+        private final long[] offsets;
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+        private final DataOutputStream recordData = new DataOutputStream(record);
+        private TempFileManager.TempFile file;
+        private DataOutputStream out;
+        private long written;
+        private FileChannel channel;
+        private int next;
+
+        ChangedRows(byte[] rightStatus) {
+            this.rightStatus = rightStatus;
+            this.blockRanks = new int[(rightStatus.length >> BLOCK_SHIFT) + 1];
+            int changed = 0;
+            for (int i = 0; i < rightStatus.length; i++) {
+                if ((i & ((1 << BLOCK_SHIFT) - 1)) == 0) {
+                    blockRanks[i >> BLOCK_SHIFT] = changed;
+                }
+                if (rightStatus[i] == RowDigest.CHANGED) {
+                    changed++;
+                }
+            }
+            this.offsets = new long[changed];
+        }
+
+        private int rank(int rightOrdinal) {
+            int rank = blockRanks[rightOrdinal >> BLOCK_SHIFT];
+            for (int i = rightOrdinal & -(1 << BLOCK_SHIFT); i < rightOrdinal; i++) {
+                if (rightStatus[i] == RowDigest.CHANGED) {
+                    rank++;
+                }
+            }
+            return rank;
+        }
+
+        /**
+         * 记下与右边第 partner 行配对的左边行（阻塞）
+         */
+        void put(int partner, int rowNum, String[] cells) {
+            try {
+                if (out == null) {
+                    file = tempFiles.allocateBlocking("diff-changed", ".bin", (long) offsets.length * BYTES_PER_ROW);
+                    out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.path())));
+                }
+                record.reset();
+                recordData.writeInt(rowNum);
+                recordData.writeInt(cells.length);
+                for (String cell : cells) {
+                    if (cell == null) {
+                        recordData.writeInt(-1);
+                    } else {
+                        byte[] bytes = cell.getBytes(StandardCharsets.UTF_8);
+                        recordData.writeInt(bytes.length);
+                        recordData.write(bytes);
+                    }
+                }
+                offsets[rank(partner)] = written;
+                out.writeInt(record.size());
+                record.writeTo(out);
+                written += Integer.BYTES + record.size();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * 右边下一个修改行对应的左边行（按右边的顺序调用，阻塞）
+         */
+        LeftRow next() {
+            try {
+                if (channel == null) {
+                    out.close();
+                    channel = FileChannel.open(file.path(), StandardOpenOption.READ);
+                }
+                long offset = offsets[next++];
+                ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+                readFully(length, offset);
+                ByteBuffer body = ByteBuffer.allocate(length.getInt(0));
+                readFully(body, offset + Integer.BYTES);
+                DataInputStream data = new DataInputStream(new ByteArrayInputStream(body.array()));
+                int rowNum = data.readInt();
+                String[] cells = new String[data.readInt()];
+                for (int c = 0; c < cells.length; c++) {
+                    int size = data.readInt();
+                    cells[c] = size < 0 ? null : new String(data.readNBytes(size), StandardCharsets.UTF_8);
+                }
+                return new LeftRow(rowNum, cells);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void readFully(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("Truncated diff spill file " + file.path());
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (channel != null) {
+                    channel.close();
+                } else if (out != null) {
+                    out.close();
+                }
+            } catch (IOException ignore) {
+                // 文件马上删除
+            }
+            if (file != null) {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * 按顺序读一遍 sheet，visitor 返回 null 的行不输出
+     */
+    private Multi<RowDiff> scan(String storedName, int sheet, Layout layout, int[] map, RowVisitor visitor) {
+        return Multi.createFrom().<SheetRowSource, RowDiff>resource(() -> {
+                    try {
+                        return workbooks.open(storedName, sheet);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, rows -> {
+                    if (layout.header && rows.hasNext()) {
+                        rows.next();
+                    }
+                    int[] ordinal = {0};
+                    return Multi.createFrom().iterable(() -> rows)
+                            .onItem().transformToIterable(row -> {
+                                RowDiff diff = visitor.visit(ordinal[0]++, row.rowNum(), layout.cells(row.values(), map));
+                                return diff != null ? List.of(diff) : List.of();
+                            });
+                })
+                .withFinalizer(SheetRowSource::close)
+                .runSubscriptionOn(Infrastructure.getDefaultExecutor());
+    }
+
+    private Layout layout(String left, String right, int sheet, String key, boolean header) {
+        if (!header) {
+            int keyColumn = letterColumn(key);
+            if (keyColumn < 0) {
+                throw new BadRequestException("Key must be a column letter when header=false: " + key);
+            }
+            return new Layout(false, List.of(), null, null, keyColumn);
+        }
+        List<String> leftNames = headerOf(left, sheet);
+        List<String> rightNames = headerOf(right, sheet);
+        // 按列名配对，重复的列名按出现顺序依次配对
+        Map<String, ArrayDeque<Integer>> leftPositions = new HashMap<>();
+        for (int c = 0; c < leftNames.size(); c++) {
+            leftPositions.computeIfAbsent(leftNames.get(c), n -> new ArrayDeque<>()).add(c);
+        }
+        List<String> columns = new ArrayList<>(leftNames);
+        List<Integer> rightMap = new ArrayList<>();
+        for (int c = 0; c < leftNames.size(); c++) {
+            rightMap.add(-1);
+        }
+        for (int c = 0; c < rightNames.size(); c++) {
+            ArrayDeque<Integer> positions = leftPositions.get(rightNames.get(c));
+            Integer position = positions != null ? positions.poll() : null;
+            if (position != null) {
+                rightMap.set(position, c);
+            } else {
+                columns.add(rightNames.get(c));
+                rightMap.add(c);
+            }
+        }
+        int[] leftMap = new int[columns.size()];
+        int[] rightColumns = new int[columns.size()];
+        for (int c = 0; c < columns.size(); c++) {
+            leftMap[c] = c < leftNames.size() ? c : -1;
+            rightColumns[c] = rightMap.get(c);
+        }
+        int keyColumn = columns.indexOf(key);
+        if (keyColumn < 0) {
+            keyColumn = letterColumn(key);
+        }
+        if (keyColumn < 0 || keyColumn >= columns.size() || leftMap[keyColumn] < 0 || rightColumns[keyColumn] < 0) {
+            throw new BadRequestException("Key column not found in both workbooks: " + key);
+        }
+        return new Layout(true, columns, leftMap, rightColumns, keyColumn);
+    }
+
+    private List<String> headerOf(String storedName, int sheet) {
+        try (SheetRowSource rows = workbooks.open(storedName, sheet)) {
+            List<String> names = new ArrayList<>();
+            Object[] values = rows.hasNext() ? rows.next().values() : new Object[0];
+            for (int c = 0; c < values.length; c++) {
+                names.add(values[c] != null ? values[c].toString() : CellReference.convertNumToColString(c));
+            }
+            return names;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int letterColumn(String key) {
+        if (key == null || key.isEmpty() || !key.chars().allMatch(ch -> ch >= 'A' && ch <= 'Z' || ch >= 'a' && ch <= 'z')) {
+            return -1;
+        }
+        return CellReference.convertColStringToIndex(key.toUpperCase());
+    }
+
+    /**
+     * 列对齐：统一的列顺序（columns），以及每边“统一列下标 -> 该边的列下标”（-1 表示这边没有这一列，null 表示按位置）
+     */
+    private static final class Layout {
+        private final boolean header;
+        private final List<String> columns;
+        private final int[] leftMap;
+        private final int[] rightMap;
+        private final int keyColumn;
+
+        Layout(boolean header, List<String> columns, int[] leftMap, int[] rightMap, int keyColumn) {
+            this.header = header;
+            this.columns = columns;
+            this.leftMap = leftMap;
+            this.rightMap = rightMap;
+            this.keyColumn = keyColumn;
+        }
+
+        String[] cells(Object[] values, int[] map) {
+            int width = map != null ? map.length : values.length;
+            String[] cells = new String[width];
+            for (int c = 0; c < width; c++) {
+                int source = map != null ? map[c] : c;
+                Object value = source >= 0 && source < values.length ? values[source] : null;
+                cells[c] = value != null ? value.toString() : null;
+            }
+            return cells;
+        }
+
+        String key(String[] cells) {
+            String key = keyColumn < cells.length ? cells[keyColumn] : null;
+            return key != null ? key : "";
+        }
+
+        long keyHash(String[] cells) {
+            return RowDigest.mix(RowDigest.hash(key(cells)));
+        }
+
+        /**
+         * 整行哈希（末尾的空单元格不计，空单元格和空字符串不同）
+         */
+        static long rowHash(String[] cells) {
+            int end = cells.length;
+            while (end > 0 && cells[end - 1] == null) {
+                end--;
+            }
+            long h = end;
+            for (int c = 0; c < end; c++) {
+                h = h * 0x9E3779B97F4A7C15L + (cells[c] != null ? RowDigest.hash(cells[c]) | 1 : 0);
+            }
+            return RowDigest.mix(h);
+        }
+
+        String name(int column) {
+            return header && column < columns.size() ? columns.get(column) : CellReference.convertNumToColString(column);
+        }
+
+        Map<String, String> named(String[] cells) {
+            Map<String, String> named = new LinkedHashMap<>();
+            for (int c = 0; c < cells.length; c++) {
+                if (cells[c] != null) {
+                    named.put(name(c), cells[c]);
+                }
+            }
+            return named;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.ewancle.formula;
+
+import org.apache.poi.hssf.usermodel.HSSFEvaluationWorkbook;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.formula.EvaluationWorkbook;
+import org.apache.poi.ss.formula.ExternSheetReferenceToken;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaParsingWorkbook;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.ptg.AreaPtgBase;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.Pxg;
+import org.apache.poi.ss.formula.ptg.RefPtgBase;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 工作簿公式的依赖图 + 记忆化求值。
+ *
+ *    - build()：解析每个公式的引用（单元格 / 区域 / 跨 sheet），只在公式单元格之间建边，得到依赖图
+ *    - evaluateAll()：按弱连通分量切分，互不相关的分量在 ForkJoin 公共池上并行求值；
+ *      分量内按拓扑序求值，每个分量独占一个 POI evaluator（evaluator 自带缓存，上游结果不会重复计算）
+ *    - value()：直接读取记忆化结果，解析阶段不再触发任何计算；求值结果为空也会记下，不会再退回文件里的旧缓存值
+ *    - update()：输入单元格变化后只重算受影响（传递依赖）的公式，其余公式的记忆化结果和 evaluator 缓存照旧使用
+ *
+ * 并行求值期间只读访问 workbook；同一个实例不要和写操作并发使用。
+ */
+public class FormulaGraph {
+
+    private final Workbook workbook;
+    // 公式单元格 -> 序号
+    private final Map<Long, Integer> index = new HashMap<>();
+    private final List<Cell> cells = new ArrayList<>();
+    // 每个公式引用的区域（包括普通输入单元格，update 时据此找到直接依赖输入的公式）
+    private final List<List<Region>> regions = new ArrayList<>();
+    // 被依赖方 -> 依赖它的公式
+    private final List<List<Integer>> dependents = new ArrayList<>();
+    private final List<List<Integer>> precedents = new ArrayList<>();
+    private int[] componentOf;
+    private List<int[]> components;
+    private final Map<Integer, FormulaEvaluator> evaluators = new ConcurrentHashMap<>();
+    private final Map<Long, Object> memo = new ConcurrentHashMap<>();
+    // ConcurrentHashMap 不能存 null：求值结果为空时记这个值
+    private static final Object BLANK = new Object();
+
+    private record Region(int sheet, int firstRow, int lastRow, int firstCol, int lastCol) {
+        boolean contains(int s, int row, int col) {
+            return s == sheet && row >= firstRow && row <= lastRow && col >= firstCol && col <= lastCol;
+        }
+    }
+
+    private FormulaGraph(Workbook workbook) {
+        this.workbook = workbook;
+    }
+
+    /**
+     * 单元格键：sheet(16 位) | 行(20 位) | 列(14 位)
+     */
+    static long key(int sheet, int row, int col) {
+        return ((long) sheet << 34) | ((long) row << 14) | col;
+    }
+
+    public static FormulaGraph build(Workbook workbook) {
+        FormulaGraph graph = new FormulaGraph(workbook);
+        graph.collect();
+        graph.link();
+        return graph;
+    }
+
+    public int size() {
+        return cells.size();
+    }
+
+    public void evaluateAll() {
+        components.stream()
+                .sorted(Comparator.comparingInt((int[] c) -> c.length).reversed())
+                .parallel()
+                .forEach(component -> evaluate(component, topologicalOrder(component)));
+    }
+
+    /**
+     * 公式单元格的求值结果：Double / String / Boolean / 错误码字符串，结果为空时为 null；未求值时退回缓存值
+     */
+    public Object value(Cell cell) {
+        Object v = memo.get(key(workbook.getSheetIndex(cell.getSheet()), cell.getRowIndex(), cell.getColumnIndex()));
+        if (v == null) {
+            return cachedValue(cell);
+        }
+        return v == BLANK ? null : v;
+    }
+
+    /**
+     * 输入单元格（调用方已修改其值）变化后，只重算传递依赖它的公式（被修改的单元格本身是公式时也算在内），
+     * 返回被重算的公式单元格（按建图时的顺序：sheet、行、列）
+     */
+    public List<Cell> update(Cell changed) {
+        int sheet = workbook.getSheetIndex(changed.getSheet());
+        int row = changed.getRowIndex();
+        int col = changed.getColumnIndex();
+
+        // 直接依赖：引用区域包含该单元格的公式；再沿 dependents 求传递闭包
+        BitSet affected = new BitSet(cells.size());
+        Deque<Integer> queue = new ArrayDeque<>();
+        Integer self = index.get(key(sheet, row, col));
+        if (self != null) {
+            queue.add(self);
+        }
+        for (int f = 0; f < cells.size(); f++) {
+            for (Region region : regions.get(f)) {
+                if (region.contains(sheet, row, col)) {
+                    queue.add(f);
+                    break;
+                }
+            }
+        }
+        while (!queue.isEmpty()) {
+            int f = queue.poll();
+            if (!affected.get(f)) {
+                affected.set(f);
+                queue.addAll(dependents.get(f));
+            }
+        }
+
+        // 按分量并行；分量内按拓扑序只求值受影响的公式，evaluator 先丢掉依赖该单元格的缓存结果
+        Map<Integer, BitSet> byComponent = new HashMap<>();
+        affected.stream().forEach(f -> byComponent.computeIfAbsent(componentOf[f], c -> new BitSet()).set(f));
+        byComponent.entrySet().parallelStream().forEach(e -> {
+            FormulaEvaluator evaluator = evaluators.computeIfAbsent(e.getKey(), c -> newEvaluator());
+            evaluator.notifyUpdateCell(changed);
+            int[] component = components.get(e.getKey());
+            evaluate(component, Arrays.stream(topologicalOrder(component)).filter(e.getValue()::get).toArray());
+        });
+        return affected.stream().mapToObj(cells::get).toList();
+    }
+
+    private void collect() {
+        for (int s = 0; s < workbook.getNumberOfSheets(); s++) {
+            for (Row row : workbook.getSheetAt(s)) {
+                for (Cell cell : row) {
+                    if (cell.getCellType() == CellType.FORMULA) {
+                        index.put(key(s, cell.getRowIndex(), cell.getColumnIndex()), cells.size());
+                        cells.add(cell);
+                        dependents.add(new ArrayList<>());
+                        precedents.add(new ArrayList<>());
+                    }
+                }
+            }
+        }
+    }
+
+    private void link() {
+        FormulaParsingWorkbook parsing = workbook instanceof XSSFWorkbook x ? XSSFEvaluationWorkbook.create(x)
+                : workbook instanceof HSSFWorkbook h ? HSSFEvaluationWorkbook.create(h)
+                : null;
+
+        // 每个 sheet 按列索引公式所在行，区域引用只需查区域内的公式单元格
+        Map<Integer, TreeMap<Integer, TreeSet<Integer>>> formulaCells = new HashMap<>();
+        for (Cell cell : cells) {
+            formulaCells.computeIfAbsent(workbook.getSheetIndex(cell.getSheet()), s -> new TreeMap<>())
+                    .computeIfAbsent(cell.getColumnIndex(), c -> new TreeSet<>())
+                    .add(cell.getRowIndex());
+        }
+
+        int[] parent = new int[cells.size()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        for (int f = 0; f < cells.size(); f++) {
+            Cell cell = cells.get(f);
+            int sheet = workbook.getSheetIndex(cell.getSheet());
+            List<Region> refs = parsing != null ? references(parsing, cell, sheet) : List.of();
+            regions.add(refs);
+            for (Region region : refs) {
+                TreeMap<Integer, TreeSet<Integer>> columns = formulaCells.get(region.sheet());
+                if (columns == null) {
+                    continue;
+                }
+                for (Map.Entry<Integer, TreeSet<Integer>> column : columns.subMap(region.firstCol(), true, region.lastCol(), true).entrySet()) {
+                    for (int row : column.getValue().subSet(region.firstRow(), true, region.lastRow(), true)) {
+                        int p = index.get(key(region.sheet(), row, column.getKey()));
+                        if (p != f) {
+                            precedents.get(f).add(p);
+                            dependents.get(p).add(f);
+                            union(parent, p, f);
+                        }
+                    }
+                }
+            }
+        }
+
+        Map<Integer, List<Integer>> groups = new HashMap<>();
+        componentOf = new int[cells.size()];
+        for (int f = 0; f < cells.size(); f++) {
+            groups.computeIfAbsent(find(parent, f), r -> new ArrayList<>()).add(f);
+        }
+        components = new ArrayList<>(groups.size());
+        for (List<Integer> members : groups.values()) {
+            for (int f : members) {
+                componentOf[f] = components.size();
+            }
+            components.add(members.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    private List<Region> references(FormulaParsingWorkbook parsing, Cell cell, int sheet) {
+        Ptg[] ptgs;
+        try {
+            ptgs = FormulaParser.parse(cell.getCellFormula(), parsing, FormulaType.CELL, sheet, cell.getRowIndex());
+        } catch (RuntimeException e) {
+            // 无法解析的公式没有已知依赖，求值时由 POI 自行处理
+            return List.of();
+        }
+        List<Region> refs = new ArrayList<>();
+        for (Ptg ptg : ptgs) {
+            int target = targetSheet(ptg, parsing, sheet);
+            if (target < 0) {
+                continue;
+            }
+            if (ptg instanceof AreaPtgBase area) {
+                refs.add(new Region(target, area.getFirstRow(), area.getLastRow(), area.getFirstColumn(), area.getLastColumn()));
+            } else if (ptg instanceof RefPtgBase ref) {
+                refs.add(new Region(target, ref.getRow(), ref.getRow(), ref.getColumn(), ref.getColumn()));
+            }
+        }
+        return refs;
+    }
+
+    /**
+     * 引用所在 sheet；外部工作簿引用返回 -1
+     */
+    private int targetSheet(Ptg ptg, FormulaParsingWorkbook parsing, int current) {
+        if (ptg instanceof Pxg pxg) {
+            if (pxg.getExternalWorkbookNumber() > 0) {
+                return -1;
+            }
+            return pxg.getSheetName() != null ? workbook.getSheetIndex(pxg.getSheetName()) : current;
+        }
+        if (ptg instanceof ExternSheetReferenceToken token && parsing instanceof EvaluationWorkbook evaluation) {
+            EvaluationWorkbook.ExternalSheet external = evaluation.getExternalSheet(token.getExternSheetIndex());
+            if (external == null) {
+                return current;
+            }
+            return external.getWorkbookName() != null ? -1 : workbook.getSheetIndex(external.getSheetName());
+        }
+        return current;
+    }
+
+    /**
+     * 分量内的拓扑序（Kahn）；有循环引用的单元格排在最后，交给 POI 报循环错误
+     */
+    private int[] topologicalOrder(int[] component) {
+        Map<Integer, Integer> inDegree = new HashMap<>(component.length * 2);
+        for (int f : component) {
+            inDegree.put(f, precedents.get(f).size());
+        }
+        Deque<Integer> ready = new ArrayDeque<>();
+        inDegree.forEach((f, d) -> {
+            if (d == 0) ready.add(f);
+        });
+        int[] order = new int[component.length];
+        int n = 0;
+        while (!ready.isEmpty()) {
+            int f = ready.poll();
+            order[n++] = f;
+            for (int d : dependents.get(f)) {
+                if (inDegree.merge(d, -1, Integer::sum) == 0) {
+                    ready.add(d);
+                }
+            }
+        }
+        for (int f : component) {
+            if (inDegree.get(f) > 0) {
+                order[n++] = f;
+            }
+        }
+        return order;
+    }
+
+    private void evaluate(int[] component, int[] order) {
+        if (component.length == 0) {
+            return;
+        }
+        FormulaEvaluator evaluator = evaluators.computeIfAbsent(componentOf[component[0]], c -> newEvaluator());
+        for (int f : order) {
+            Cell cell = cells.get(f);
+            Object v;
+            try {
+                v = toValue(evaluator.evaluate(cell));
+            } catch (RuntimeException e) {
+                // 不支持的函数等：退回文件里的缓存值
+                v = cachedValue(cell);
+            }
+            memo.put(key(workbook.getSheetIndex(cell.getSheet()), cell.getRowIndex(), cell.getColumnIndex()),
+                    v != null ? v : BLANK);
+        }
+    }
+
+    private FormulaEvaluator newEvaluator() {
+        FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+        evaluator.setIgnoreMissingWorkbooks(true);
+        return evaluator;
+    }
+
+    private static Object toValue(CellValue cv) {
+        if (cv == null) {
+            return null;
+        }
+        return switch (cv.getCellType()) {
+            case NUMERIC -> cv.getNumberValue();
+            case STRING -> cv.getStringValue();
+            case BOOLEAN -> cv.getBooleanValue();
+            case ERROR -> FormulaError.forInt(cv.getErrorValue()).getString();
+            default -> null;
+        };
+    }
+
+    private static Object cachedValue(Cell cell) {
+        return switch (cell.getCachedFormulaResultType()) {
+            case NUMERIC -> cell.getNumericCellValue();
+            case STRING -> cell.getStringCellValue();
+            case BOOLEAN -> cell.getBooleanCellValue();
+            case ERROR -> FormulaError.forInt(cell.getErrorCellValue()).getString();
+            default -> null;
+        };
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        parent[find(parent, a)] = find(parent, b);
+    }
+}
@@ -0,0 +1,29 @@
+package com.ewancle.model;
+
+/**
+ * 上传文件的元数据（上传时计算一次，持久化在 uploads 目录的索引日志里并常驻内存）
+ * size / sha256 / crc32 都是针对原始内容的；encoding 为 gzip 时磁盘上存的是压缩后的 storedSize 字节。
+ */
+public record FileMetadata(String storedName,
+                           String originalName,
+                           long size,
+                           String mimeType,
+                           String sha256,
+                           long crc32,
+                           long modifiedAt,
+                           String encoding,
+                           long storedSize) {
+
+    public static final String GZIP = "gzip";
+
+    public boolean gzipped() {
+        return GZIP.equals(encoding);
+    }
+
+    /**
+     * 磁盘上的字节数（旧记录没有 storedSize，按原样存储处理）
+     */
+    public long storedBytes() {
+        return encoding == null ? size : storedSize;
+    }
+}
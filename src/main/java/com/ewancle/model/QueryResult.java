@@ -0,0 +1,19 @@
+package com.ewancle.model;
+
+import java.util.List;
+
+public class QueryResult {
+    public List<String> columns;
+    // 过滤（或分组）后的总行数，分页前
+    public long total;
+    public List<List<Object>> rows;
+    public long tookMillis;
+
+    public QueryResult() {}
+    public QueryResult(List<String> columns, long total, List<List<Object>> rows, long tookMillis) {
+        this.columns = columns;
+        this.total = total;
+        this.rows = rows;
+        this.tookMillis = tookMillis;
+    }
+}
@@ -0,0 +1,44 @@
+package com.ewancle.model;
+
+import java.util.List;
+import java.util.Map;
+
+public class RowDiff {
+    public static final String ADDED = "added";
+    public static final String REMOVED = "removed";
+    public static final String CHANGED = "changed";
+
+    public String type;
+    public String key;
+    // Excel 里显示的行号（从 1 开始），新增行没有 leftRow，删除行没有 rightRow
+    public Integer leftRow;
+    public Integer rightRow;
+    // 列名 -> 值（只含非空单元格）：新增和修改为右边的行，删除为左边的行
+    public Map<String, String> cells;
+    // 修改行中有变化的单元格
+    public List<CellChange> changes;
+
+    public RowDiff() {}
+    public RowDiff(String type, String key, Integer leftRow, Integer rightRow, Map<String, String> cells,
+                   List<CellChange> changes) {
+        this.type = type;
+        this.key = key;
+        this.leftRow = leftRow;
+        this.rightRow = rightRow;
+        this.cells = cells;
+        this.changes = changes;
+    }
+
+    public static class CellChange {
+        public String column;
+        public String from;
+        public String to;
+
+        public CellChange() {}
+        public CellChange(String column, String from, String to) {
+            this.column = column;
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
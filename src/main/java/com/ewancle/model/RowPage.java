@@ -0,0 +1,29 @@
+package com.ewancle.model;
+
+import java.util.List;
+
+public class RowPage {
+    // sheet 的总行数（文件里出现的行，不含完全没有记录的空行）
+    public long total;
+    public long offset;
+    public List<PageRow> rows;
+
+    public RowPage() {}
+    public RowPage(long total, long offset, List<PageRow> rows) {
+        this.total = total;
+        this.offset = offset;
+        this.rows = rows;
+    }
+
+    public static class PageRow {
+        // Excel 里显示的行号（从 1 开始）
+        public int row;
+        public List<String> cells;
+
+        public PageRow() {}
+        public PageRow(int row, List<String> cells) {
+            this.row = row;
+            this.cells = cells;
+        }
+    }
+}
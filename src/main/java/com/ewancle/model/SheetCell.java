@@ -0,0 +1,21 @@
+package com.ewancle.model;
+
+/**
+ * 一个单元格及其值：/excel/recalculate 的输入（要修改的单元格）和输出（重算后的公式结果）
+ *   {"sheet":"输入","cell":"B2","value":"120"}
+ */
+public class SheetCell {
+    // sheet 名称或从 0 开始的序号，输入时为空表示第一个 sheet
+    public String sheet;
+    // A1 形式的单元格地址
+    public String cell;
+    // 输入：能解析为数字时写数字，为空时清空单元格，否则写文本；输出：公式结果的文本形式，结果为空时为 null
+    public String value;
+
+    public SheetCell() {}
+    public SheetCell(String sheet, String cell, String value) {
+        this.sheet = sheet;
+        this.cell = cell;
+        this.value = value;
+    }
+}
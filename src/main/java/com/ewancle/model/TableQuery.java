@@ -0,0 +1,38 @@
+package com.ewancle.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 列式缓存查询请求：投影 + 过滤 + 排序 + 分页 + 分组聚合
+ * 例：按部门汇总薪资
+ *   {"groupBy":["部门"],"aggregates":[{"op":"sum","column":"薪资"}],"sort":[{"column":"sum(薪资)","desc":true}]}
+ */
+public class TableQuery {
+    public List<String> select = new ArrayList<>();
+    public List<Filter> filters = new ArrayList<>();
+    public List<Sort> sort = new ArrayList<>();
+    public List<String> groupBy = new ArrayList<>();
+    public List<Aggregate> aggregates = new ArrayList<>();
+    public int offset = 0;
+    public int limit = 100;
+
+    public static class Filter {
+        public String column;
+        // eq / ne / gt / ge / lt / le / contains / isNull / notNull
+        public String op = "eq";
+        public String value;
+    }
+
+    public static class Sort {
+        public String column;
+        public boolean desc;
+    }
+
+    public static class Aggregate {
+        // count / sum / avg / min / max
+        public String op;
+        public String column;
+        public String as;
+    }
+}
@@ -0,0 +1,20 @@
+package com.ewancle.model;
+
+/**
+ * 导入校验的一条列规则，例：工号必填、为整数且不重复，邮箱格式正确
+ *   [{"column":"工号","required":true,"type":"integer","unique":true},{"column":"邮箱","type":"email"}]
+ */
+public class ValidationRule {
+    // 列名（header=false 时为列字母）
+    public String column;
+    public boolean required;
+    // text / number / integer / email / date，为空时不检查类型
+    public String type;
+    // number / integer 比较数值，text / email 比较文本长度，date 不检查
+    public Double min;
+    public Double max;
+    // 文本形式必须整体匹配的正则
+    public String pattern;
+    // 整列不能有重复值（空值不参与）
+    public boolean unique;
+}
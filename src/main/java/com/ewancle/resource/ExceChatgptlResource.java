@@ -1,7 +1,9 @@
 package com.ewancle.resource;
 
+import com.ewancle.codec.RowBatchWriter;
 import com.ewancle.service.ExcelExport1Service;
 import com.ewancle.service.ExcelExportService;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import io.smallrye.mutiny.unchecked.Unchecked;
 import jakarta.inject.Inject;
@@ -10,10 +12,9 @@ import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.jboss.resteasy.reactive.RestForm;
+import org.jboss.resteasy.reactive.RestResponse;
 
-import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -26,16 +27,25 @@ public class ExceChatgptlResource {
     @GET
     @Path("/excel")
     @Produces("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
-    public Uni<Response> exportExcel(@QueryParam("rows") @DefaultValue("10000") int rows) {
+    public RestResponse<Multi<io.vertx.core.buffer.Buffer>> exportExcel(@QueryParam("rows") @DefaultValue("10000") int rows) {
+        if (rows < 0) {
+            throw new BadRequestException("rows must be >= 0");
+        }
         String filename = "people-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".xlsx";
-        return service.loadData(rows)
-                .flatMap(list -> service.generateReactive(list)
-                        .map(fileBuffer -> Response.ok(fileBuffer)
-                                .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
-                                .type("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
-                                .build()
-                        )
-                );
+        // 不再先把所有行物化成 List：按行号生成，超过 1048576 行自动拆 sheet
+        return RestResponse.ResponseBuilder.ok(service.streamXlsx(rows))
+                .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
+                .type("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                .build();
+    }
+
+    // 服务间传输：二进制列式行流（替代 JSON），按批次背压输出；rows 为负数或 batchSize 不是正数时返回 400
+    @GET
+    @Path("/binary")
+    @Produces(RowBatchWriter.MEDIA_TYPE)
+    public Multi<io.vertx.core.buffer.Buffer> exportBinary(@QueryParam("rows") @DefaultValue("10000") int rows,
+                                                          @QueryParam("batchSize") @DefaultValue("4096") int batchSize) {
+        return service.streamAsRowBatches(rows, batchSize);
     }
 
     /*@POST
@@ -71,14 +81,8 @@ public class ExceChatgptlResource {
             if (uploads.isEmpty()) throw new RuntimeException("No file uploaded");
             var upload = uploads.getFirst();
             return upload.uploadedFileName(); // 临时路径
-        })).flatMap(Unchecked.function(pathStr -> {
-            java.nio.file.Path path = java.nio.file.Path.of(pathStr);
-            try (InputStream in = Files.newInputStream(path)) {
-                return excelService.processExcelReactive(in);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        })).map(p -> "File processed: " + p.toAbsolutePath());
+        })).flatMap(pathStr -> excelService.processExcelReactive(java.nio.file.Path.of(pathStr)))
+                .map(p -> "File processed: " + p.toAbsolutePath());
     }
 
     @POST
@@ -11,6 +11,7 @@ import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.StreamingOutput;
+import org.jboss.resteasy.reactive.RestResponse;
 import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -129,6 +130,21 @@ public class ExcelPlusResource {
         });
     }
 
+    // 方式7: 基于预编译模板导出，静态部分直接复用，只生成数据行
+    @GET
+    @Path("/template")
+    @Produces("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+    public RestResponse<Multi<Buffer>> downloadFromTemplate(@QueryParam("name") @DefaultValue(ExcelService.DEFAULT_TEMPLATE) String name,
+                                                          @QueryParam("groupByDept") boolean groupByDept) {
+        String filename = name.replaceAll("[^A-Za-z0-9_-]", "_") + "_" +
+                LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) +
+                ".xlsx";
+        return RestResponse.ResponseBuilder
+                .ok(excelService.generateFromTemplate(name, groupByDept))
+                .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
+                .build();
+    }
+
     // 获取数据预览
     @GET
     @Path("/preview")
@@ -1,5 +1,29 @@
 package com.ewancle.resource;
 
+import com.ewancle.codec.RowBatchWriter;
+import com.ewancle.columnar.ColumnStore;
+import com.ewancle.columnar.ColumnTable;
+import com.ewancle.diff.SheetDiff;
+import com.ewancle.formula.FormulaGraph;
+import com.ewancle.model.QueryResult;
+import com.ewancle.model.RowDiff;
+import com.ewancle.model.RowPage;
+import com.ewancle.model.SheetCell;
+import com.ewancle.model.TableQuery;
+import com.ewancle.model.ValidationRule;
+import com.ewancle.service.CellDecoder;
+import com.ewancle.service.ExcelParseService;
+import com.ewancle.service.RecalculationService;
+import com.ewancle.service.SheetPageService;
+import com.ewancle.storage.RowSpillQueue;
+import com.ewancle.storage.TempFileManager;
+import com.ewancle.validation.ImportValidator;
+import com.ewancle.xlsx.XlsEventReader;
+import com.ewancle.xlsx.XlsxBulkExporter;
+import com.ewancle.xlsx.XlsxSheetReader;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import io.smallrye.mutiny.infrastructure.Infrastructure;
@@ -7,19 +31,19 @@ import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.smallrye.mutiny.unchecked.Unchecked;
 import io.vertx.ext.web.FileUpload;
 import io.vertx.mutiny.core.Vertx;
-import io.vertx.mutiny.core.file.FileSystem;
 import io.vertx.mutiny.core.buffer.Buffer;
-import io.vertx.core.file.OpenOptions;
 
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.HttpHeaders;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.resteasy.reactive.RestForm;
 import org.jboss.resteasy.reactive.RestResponse;
 import org.jboss.resteasy.reactive.RestResponse.ResponseBuilder;
 
+import org.apache.poi.poifs.filesystem.FileMagic;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
@@ -36,6 +60,44 @@ public class ExcelResource {
     @Inject
     Vertx vertx;
 
+    @Inject
+    ExcelParseService parseService;
+
+    @Inject
+    ColumnStore columnStore;
+
+    @Inject
+    XlsxBulkExporter bulkExporter;
+
+    @Inject
+    TempFileManager tempFiles;
+
+    @ConfigProperty(name = "app.parse.spill.memory-rows", defaultValue = "10000")
+    int spillMemoryRows;
+
+    @ConfigProperty(name = "app.parse.spill.segment-rows", defaultValue = "4096")
+    int spillSegmentRows;
+
+    private static final int SPILL_DRAIN_BATCH = 256;
+
+    @Inject
+    SheetPageService sheetPages;
+
+    @Inject
+    SheetDiff sheetDiff;
+
+    @ConfigProperty(name = "app.parse.page-index.max-limit", defaultValue = "10000")
+    int pageMaxLimit;
+
+    @Inject
+    ImportValidator importValidator;
+
+    @Inject
+    RecalculationService recalculationService;
+
+    @Inject
+    ObjectMapper objectMapper;
+
     private final java.nio.file.Path uploadDir = java.nio.file.Path.of("uploads");
 
     public ExcelResource() throws IOException {
@@ -59,15 +121,25 @@ public class ExcelResource {
      * 1) 上传并解析 Excel（返回一个 Multi，每一项为一行）
      *    - Quarkus 已经把上传的 part 写入临时文件（传入为 java.io.File）
      *    - 解析工作在后台 worker 池执行，解析出的每一行 emit 出去（流式）
+     *    - formulas=cached（默认）使用文件里缓存的公式结果；
+     *      formulas=evaluate 先建公式依赖图并行求值一次，适用于没有缓存结果的文件
      */
     @POST
     @Path("/upload-parse")
     @Consumes(MediaType.MULTIPART_FORM_DATA)
     @Produces(MediaType.APPLICATION_JSON)
-    public Multi<RowDto> uploadAndParse(@RestForm("file") File uploadedTempFile) {
+    public Multi<RowDto> uploadAndParse(@RestForm("file") File uploadedTempFile,
+                                        @QueryParam("formulas") @DefaultValue("cached") String formulas) {
         // 注意：不要在事件循环线程里执行 POI 操作
-        return Multi.createFrom().emitter(emitter -> {
+        // 解析结果先进有界队列（超出部分溢写到磁盘），解析全速完成后立即释放 workbook 和线程，响应按客户端的速度读取
+        return Multi.createFrom().deferred(() -> {
+            RowSpillQueue queue = new RowSpillQueue(tempFiles, spillMemoryRows, spillSegmentRows);
             bgPool.submit(() -> {
+                // .xls 按 BIFF 记录流解析，不加载 HSSF 对象模型；公式求值需要完整的 workbook，仍走下面的路径
+                if (!"evaluate".equals(formulas) && isLegacyXls(uploadedTempFile)) {
+                    parseLegacyXls(uploadedTempFile, queue);
+                    return;
+                }
                 try (InputStream is = new FileInputStream(uploadedTempFile)) {
                     // 判断是否 xlsx/xls：这里简单用文件名后缀，或用内容检测
                     String name = uploadedTempFile.getName().toLowerCase();
@@ -85,11 +157,19 @@ public class ExcelResource {
                     // 以第一个 sheet 为例（或循环多个 sheet）
                     Sheet sheet = workbook.getNumberOfSheets() > 0 ? workbook.getSheetAt(0) : null;
                     if (sheet == null) {
-                        emitter.complete();
+                        queue.complete();
                         workbook.close();
                         return;
                     }
 
+                    FormulaGraph formulaGraph = null;
+                    if ("evaluate".equals(formulas)) {
+                        formulaGraph = FormulaGraph.build(workbook);
+                        formulaGraph.evaluateAll();
+                    }
+
+                    // 数字格式按样式分类一次，数值按分类直接转文本（日期为 ISO 格式）
+                    CellDecoder decoder = new CellDecoder(workbook);
                     for (Row row : sheet) {
                         // 解析一行为 List<String>（按 cell 类型转换）
                         List<String> cells = new ArrayList<>();
@@ -98,117 +178,260 @@ public class ExcelResource {
                             Cell cell = row.getCell(i, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
                             if (cell == null) {
                                 cells.add(null);
+                            } else if (cell.getCellType() == CellType.FORMULA && formulaGraph != null) {
+                                // 公式结果：求值模式取依赖图的记忆化结果，否则按缓存结果的类型读取
+                                Object result = formulaGraph.value(cell);
+                                cells.add(result != null ? result.toString() : null);
                             } else {
-                                switch (cell.getCellType()) {
-                                    case STRING: cells.add(cell.getStringCellValue()); break;
-                                    case NUMERIC:
-                                        if (DateUtil.isCellDateFormatted(cell)) {
-                                            cells.add(cell.getDateCellValue().toString());
-                                        } else {
-                                            cells.add(Double.toString(cell.getNumericCellValue()));
-                                        }
-                                        break;
-                                    case BOOLEAN: cells.add(Boolean.toString(cell.getBooleanCellValue())); break;
-                                    case FORMULA:
-                                        // 获取公式结果（简化处理）
-                                        try {
-                                            cells.add(cell.getStringCellValue());
-                                        } catch (Exception e) {
-                                            cells.add(String.valueOf(cell.getNumericCellValue()));
-                                        }
-                                        break;
-                                    case BLANK: cells.add(null); break;
-                                    default: cells.add(cell.toString());
-                                }
+                                cells.add(decoder.text(cell));
                             }
                         }
-                        emitter.emit(new RowDto(cells));
-                        // 这里可以考虑在大量数据时做一次性检查 emitter.isCancelled()
-                        if (emitter.isCancelled()) {
+                        // 客户端已断开（队列已关闭）时停止解析
+                        if (!queue.offer(cells.toArray())) {
                             break;
                         }
                     }
 
                     workbook.close();
-                    emitter.complete();
+                    queue.complete();
                 } catch (Throwable t) {
-                    emitter.fail(t);
+                    queue.fail(t);
                 } finally {
                     // 可选：删除 Quarkus 临时上传文件
                     try { Files.deleteIfExists(uploadedTempFile.toPath()); } catch (Exception ignore) {}
                 }
             });
+            return queue.drain(SPILL_DRAIN_BATCH).map(row -> {
+                List<String> cells = new ArrayList<>(row.length);
+                for (Object value : row) {
+                    cells.add(value != null ? value.toString() : null);
+                }
+                return new RowDto(cells);
+            });
         });
     }
 
+    private static boolean isLegacyXls(File file) {
+        try {
+            return FileMagic.valueOf(file) == FileMagic.OLE2;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 流式解析 .xls 的第一个 sheet（见 {@link XlsEventReader}），行格式与 xlsx 相同；结束后删除上传临时文件
+     */
+    private static void parseLegacyXls(File file, RowSpillQueue queue) {
+        try (XlsEventReader reader = XlsEventReader.open(file.toPath(), 0, true)) {
+            while (reader.hasNext()) {
+                XlsxSheetReader.ParsedRow row = reader.next();
+                if (!queue.offer(row.values())) {
+                    break;
+                }
+            }
+            queue.complete();
+        } catch (Throwable t) {
+            queue.fail(t);
+        } finally {
+            try { Files.deleteIfExists(file.toPath()); } catch (Exception ignore) {}
+        }
+    }
+
+    public static class SheetRowDto {
+        public String sheet;
+        public int row;
+        public List<String> cells;
+        public SheetRowDto() {}
+        public SheetRowDto(String sheet, int row, List<String> cells) {
+            this.sheet = sheet;
+            this.row = row;
+            this.cells = cells;
+        }
+    }
+
+    /**
+     * 1.0) 上传 xlsx 并并行解析多个 sheet，每一项为带 sheet 名称和行号的一行
+     *    - sheets 不传时解析全部 sheet，否则为逗号分隔的 sheet 名称或从 0 开始的序号，如 sheets=销售,2
+     *    - 各 sheet 同时解析（并发数见 app.parse.sheet-parallelism），不同 sheet 的行交错输出，同一 sheet 内按行顺序
+     *    curl -F file=@book.xlsx 'http://localhost:8080/excel/upload-parse-sheets?sheets=0,汇总'
+     */
+    @POST
+    @Path("/upload-parse-sheets")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Multi<SheetRowDto> uploadAndParseSheets(@RestForm("file") File uploadedTempFile,
+                                                   @QueryParam("sheets") String sheets) {
+        List<String> selectors = sheets == null || sheets.isBlank() ? List.of() : Arrays.asList(sheets.split(","));
+        return parseService.parseSheets(uploadedTempFile, selectors)
+                .map(row -> {
+                    List<String> cells = new ArrayList<>(row.values().length);
+                    for (Object value : row.values()) {
+                        cells.add(value != null ? value.toString() : null);
+                    }
+                    return new SheetRowDto(row.sheet(), row.rowNum(), cells);
+                });
+    }
+
+    /**
+     * 1.1) 上传并解析为二进制列式行流（服务间传输用，避免 JSON 编解码）
+     *    - xlsx / xls 都流式读取，header=true 时第一行作为列名
+     *    - 每批 batchSize 行，下游读多少解析多少（背压）；batchSize 不是正数或文件不是工作簿时返回 400
+     */
+    @POST
+    @Path("/upload-parse-binary")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces(RowBatchWriter.MEDIA_TYPE)
+    public Multi<io.vertx.core.buffer.Buffer> uploadAndParseBinary(@RestForm("file") File uploadedTempFile,
+                                                                  @QueryParam("header") @DefaultValue("true") boolean header,
+                                                                  @QueryParam("batchSize") @DefaultValue("4096") int batchSize) {
+        return parseService.parseAsRowBatches(uploadedTempFile, header, batchSize);
+    }
+
+    /**
+     * 1.2) 对已上传（/files/upload）的工作簿做查询：投影、过滤、排序、分页、分组聚合
+     *    - 第一次查询解析并缓存为列式结构，后续查询不再重新解析文件
+     *    curl -H 'Content-Type: application/json' -d '{"groupBy":["部门"],"aggregates":[{"op":"sum","column":"薪资"}]}' \
+     *         http://localhost:8080/excel/query/<storedName>
+     */
+    @POST
+    @Path("/query/{storedName}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<QueryResult> query(@PathParam("storedName") String storedName, TableQuery query) {
+        TableQuery q = query != null ? query : new TableQuery();
+        // 聚合操作不对时直接 400，不为它解析、缓存文件
+        ColumnTable.checkAggregates(q);
+        return columnStore.table(storedName)
+                .flatMap(table -> Uni.createFrom().item(() -> table.query(q))
+                        .runSubscriptionOn(Infrastructure.getDefaultExecutor()));
+    }
+
+    @DELETE
+    @Path("/query/{storedName}")
+    public void evict(@PathParam("storedName") String storedName) {
+        columnStore.evict(storedName);
+    }
+
+    /**
+     * 1.3) 对已上传（/files/upload）的 xlsx 按行分页读取，深分页与第一页开销相同
+     *    - offset 从 0 开始（按文件里的行顺序计），limit 最多 app.parse.page-index.max-limit
+     *    - 每个 sheet 第一次请求时建行偏移索引并持久化，之后从最近的检查点开始解析
+     *    curl 'http://localhost:8080/excel/page/<storedName>?sheet=0&offset=40000000&limit=100'
+     */
+    @GET
+    @Path("/page/{storedName}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<RowPage> page(@PathParam("storedName") String storedName,
+                             @QueryParam("sheet") @DefaultValue("0") int sheet,
+                             @QueryParam("offset") @DefaultValue("0") long offset,
+                             @QueryParam("limit") @DefaultValue("100") int limit) {
+        if (limit > pageMaxLimit) {
+            throw new BadRequestException("limit must be <= " + pageMaxLimit);
+        }
+        return sheetPages.page(storedName, sheet, offset, limit);
+    }
+
+    /**
+     * 1.4) 两个已上传（/files/upload）工作簿的按键比对：流式输出删除、新增和修改的行（修改行带变化的单元格）
+     *    - key 为键列的列名（header=false 时为列字母），两边按列名对齐，列顺序可以不同
+     *    - 两边只在内存里保留每行的哈希摘要，按分区并行配对
+     *    curl 'http://localhost:8080/excel/diff?left=<昨天的 storedName>&right=<今天的 storedName>&key=工号'
+     */
+    @GET
+    @Path("/diff")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Multi<RowDiff> diff(@QueryParam("left") String left,
+                               @QueryParam("right") String right,
+                               @QueryParam("key") String key,
+                               @QueryParam("sheet") @DefaultValue("0") int sheet,
+                               @QueryParam("header") @DefaultValue("true") boolean header) {
+        if (left == null || right == null || key == null || key.isBlank() || sheet < 0) {
+            throw new BadRequestException("left, right and key are required");
+        }
+        return sheetDiff.diff(left, right, sheet, key, header);
+    }
+
+    /**
+     * 1.5) 导入前校验：按列规则（必填、类型、范围、正则、唯一）检查上传的表格，返回错误报告 xlsx
+     *    - rules 为 JSON 数组（见 {@link ValidationRule}），列为列名（header=false 时为列字母）
+     *    - 按批在线程池里并行校验，报告保持源表的行顺序，出错的单元格标红；第二个 sheet 为汇总
+     *    curl -F file=@employees.xlsx -F 'rules=[{"column":"工号","required":true,"type":"integer","unique":true},{"column":"邮箱","type":"email"}]' \
+     *         -o errors.xlsx http://localhost:8080/excel/validate
+     */
+    @POST
+    @Path("/validate")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    public Uni<RestResponse<Multi<Buffer>>> validate(@RestForm("file") File uploadedTempFile,
+                                                     @RestForm("rules") String rules,
+                                                     @QueryParam("sheet") @DefaultValue("0") int sheet,
+                                                     @QueryParam("header") @DefaultValue("true") boolean header) {
+        if (uploadedTempFile == null || rules == null || rules.isBlank() || sheet < 0) {
+            throw new BadRequestException("file and rules are required");
+        }
+        List<ValidationRule> parsed;
+        try {
+            parsed = objectMapper.readValue(rules, new TypeReference<List<ValidationRule>>() {});
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("rules must be a JSON array of validation rules", e);
+        }
+        // 文件打不开、规则里的列不存在时在响应头发出之前失败（400）
+        return importValidator.validate(uploadedTempFile, sheet, header, parsed)
+                .map(body -> ResponseBuilder.ok(body)
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"validation-errors.xlsx\"")
+                        .type("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                        .build());
+    }
+
+    /**
+     * 1.6) 假设分析：修改上传工作簿里的若干输入单元格，返回受影响的公式的新结果
+     *    - changes 为 JSON 数组（见 {@link SheetCell}）；value 能解析为数字时写数字，为空时清空单元格，否则写文本
+     *    - 先建公式依赖图求值一次，之后每个修改只重算传递依赖它的公式，只返回这些公式
+     *    curl -F file=@budget.xlsx -F 'changes=[{"sheet":"输入","cell":"B2","value":"120"}]' \
+     *         http://localhost:8080/excel/recalculate
+     */
+    @POST
+    @Path("/recalculate")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<List<SheetCell>> recalculate(@RestForm("file") File uploadedTempFile,
+                                            @RestForm("changes") String changes) {
+        if (uploadedTempFile == null || changes == null || changes.isBlank()) {
+            throw new BadRequestException("file and changes are required");
+        }
+        List<SheetCell> parsed;
+        try {
+            parsed = objectMapper.readValue(changes, new TypeReference<List<SheetCell>>() {});
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("changes must be a JSON array of cells", e);
+        }
+        return recalculationService.recalculate(uploadedTempFile, parsed);
+    }
+
     /**
      * 2) 生成 Excel 并非阻塞流式下载
-     *    - 生成工作在 worker 线程（将 Workbook 写入临时文件）
-     *    - 然后用 Vert.x FileSystem 打开临时文件并通过 AsyncFile.toMulti() 流式返回
+     *    - 超过单个 sheet 行数上限（app.export.max-rows-per-sheet）时自动拆成多个 sheet
+     *    - 各 sheet 在 worker 线程上并行生成、压缩到临时文件（TempFileManager 配额内），按顺序流式写出
      */
     @GET
     @Path("/download-generated")
-    public Uni<RestResponse<Multi<Buffer>>> generateAndDownload(@QueryParam("rows") @DefaultValue("1000") int rows) {
-        // 生成临时文件路径
-        String generatedName = UUID.randomUUID() + "-report.xlsx";
-        FileSystem fs = vertx.fileSystem();
-
-        // 1) 在 worker 线程生成 Excel 到临时文件（阻塞写）
-        Uni<java.nio.file.Path> generateUni = Uni.createFrom().item(Unchecked.supplier(() -> {
-            try (SXSSFWorkbook wb = new SXSSFWorkbook(100)) { // 使用流式 SXSSFWorkbook，防止内存爆炸
-                Sheet sheet = wb.createSheet("sheet1");
-                // 简单生成数据
-                for (int r = 0; r < rows; r++) {
-                    Row row = sheet.createRow(r);
-                    for (int c = 0; c < 10; c++) {
-                        Cell cell = row.createCell(c);
-                        cell.setCellValue("R" + r + "C" + c);
-                    }
-                }
-                //System.out.println("java.io.tmpdir = "+System.getProperty("java.io.tmpdir"));
-                // 写入临时文件（阻塞）
-                try (OutputStream os = Files.newOutputStream(
-                        Paths.get(System.getProperty("java.io.tmpdir"), generatedName),
-                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-
-                    wb.write(os);
-                }
-                // SXSSFWorkbook 推荐 dispose 临时资源
-                wb.dispose();
-                //wb.close();
-                return  Paths.get(System.getProperty("java.io.tmpdir"), generatedName);
-            } catch (Throwable ex) {
-                // 确保删除临时文件（若已创建）
-                try { Files.deleteIfExists(
-                        Paths.get(System.getProperty("java.io.tmpdir"),
-                                generatedName)); } catch (Exception ignore) {}
-                throw new RuntimeException(ex);
+    public RestResponse<Multi<Buffer>> generateAndDownload(@QueryParam("rows") @DefaultValue("1000") int rows) {
+        if (rows < 0) {
+            throw new BadRequestException("rows must be >= 0");
+        }
+        Multi<Buffer> body = bulkExporter.export("sheet1", List.of(), rows, r -> {
+            List<String> cells = new ArrayList<>(10);
+            for (int c = 0; c < 10; c++) {
+                cells.add("R" + r + "C" + c);
             }
-        })).runSubscriptionOn(Infrastructure.getDefaultExecutor());
-
-        // 2) 生成后打开 AsyncFile 返回 Multi<Buffer>
-        return generateUni.flatMap(path ->
-                fs.open(path.toString(), new OpenOptions().setRead(true))
-                        .map(asyncFile -> {
-                            Multi<Buffer> body = asyncFile.toMulti()
-                                    .onTermination().call(() -> {
-                                        // 关闭句柄后删除临时文件（异步）
-                                        return asyncFile.close().call(() -> {
-                                            try { Files.deleteIfExists(path); }
-                                            catch (Exception ignore) {}
-                                            return Uni.createFrom().voidItem();
-                                        });
-                                    });
-
-                            String attachmentName = "report.xlsx";
-                            String mime = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
-
-                            return ResponseBuilder.ok(body)
-                                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + attachmentName + "\"")
-                                    .type(mime)
-                                    .build();
-                        })
-        );
+            return cells;
+        });
+        String attachmentName = "report.xlsx";
+        String mime = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+        return ResponseBuilder.ok(body)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + attachmentName + "\"")
+                .type(mime)
+                .build();
     }
 
 
@@ -231,7 +454,6 @@ public class ExcelResource {
                 }
                 try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
                     wb.write(baos);
-                    wb.dispose();
                     return baos.toByteArray();
                 }
             } catch (IOException e) {
@@ -0,0 +1,147 @@
+package com.ewancle.resource;
+
+import com.ewancle.service.ExcelParseService;
+import com.ewancle.storage.BufferPipeInputStream;
+import com.ewancle.xlsx.XlsxSheetReader;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.Cancellable;
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 直接挂在 Vert.x Router 上的路由：JAX-RS 的 multipart 处理要先把整个请求体写进上传目录才调用方法，
+ * 这里不挂 BodyHandler，请求体边收边交给解析器
+ */
+@ApplicationScoped
+public class ExcelStreamingRoutes {
+
+    private static final int ROWS_PER_WRITE = 256;
+
+    @Inject
+    ExcelParseService parseService;
+
+    @ConfigProperty(name = "app.parse.stream.buffer-bytes", defaultValue = "4194304")
+    long bufferBytes;
+
+    void init(@Observes Router router) {
+        router.post("/excel/upload-parse-stream").handler(this::uploadAndParse);
+    }
+
+    /**
+     * 边上传边解析（/excel/upload-parse 的流水线版本），响应格式相同：[{"cells":[...]}, ...]
+     *    - multipart/form-data 时取第一个文件字段；其它 Content-Type 时整个请求体就是 xlsx 文件
+     *    - 解析跟不上上传时暂停读取请求体，未解析的数据最多 app.parse.stream.buffer-bytes
+     *    - 出错时如果还没开始输出，返回 400 / 500；已经开始输出则断开连接
+     *    curl -F file=@big.xlsx http://localhost:8080/excel/upload-parse-stream
+     *    curl --data-binary @big.xlsx -H 'Content-Type: application/octet-stream' http://localhost:8080/excel/upload-parse-stream
+     */
+    void uploadAndParse(RoutingContext rc) {
+        HttpServerRequest request = rc.request();
+        HttpServerResponse response = rc.response();
+        Context context = rc.vertx().getOrCreateContext();
+        AtomicReference<ReadStream<Buffer>> source = new AtomicReference<>(request);
+        BufferPipeInputStream pipe = new BufferPipeInputStream(bufferBytes,
+                () -> source.get().pause(),
+                () -> context.runOnContext(v -> source.get().resume()));
+
+        String contentType = request.getHeader(HttpHeaders.CONTENT_TYPE);
+        if (contentType != null && contentType.toLowerCase().startsWith("multipart/form-data")) {
+            AtomicBoolean uploaded = new AtomicBoolean();
+            request.setExpectMultipart(true);
+            request.uploadHandler(upload -> {
+                if (!uploaded.compareAndSet(false, true)) {
+                    // 只解析第一个文件，其余的丢弃
+                    upload.handler(ignore -> {});
+                    return;
+                }
+                source.set(upload);
+                upload.handler(pipe::write)
+                        .endHandler(v -> pipe.end())
+                        .exceptionHandler(pipe::fail);
+            });
+            request.endHandler(v -> {
+                if (!uploaded.get()) {
+                    pipe.fail(new IOException("No file uploaded"));
+                }
+            });
+        } else {
+            request.handler(pipe::write)
+                    .endHandler(v -> pipe.end());
+        }
+        request.exceptionHandler(pipe::fail);
+
+        long expectedBytes = contentLength(request);
+        AtomicBoolean started = new AtomicBoolean();
+        response.setChunked(true).putHeader(HttpHeaders.CONTENT_TYPE, "application/json");
+        Cancellable subscription = parseService.parseStreaming(pipe, 0, expectedBytes)
+                // 只按行数分批：带超时的分组在下游没有请求时到点发出会抛 BackPressureFailure，
+                // 而这里下游要等上一批写出才请求；最后不满一批的行在解析结束时发出
+                .group().intoLists().of(ROWS_PER_WRITE)
+                // 上一批写出后再写下一批：响应慢时解析也随之暂停，进而暂停读取上传
+                .onItem().transformToUniAndConcatenate(batch -> {
+                    Buffer chunk = encode(batch, started);
+                    return Uni.createFrom().completionStage(() -> response.write(chunk).toCompletionStage());
+                })
+                .subscribe().with(
+                        ignore -> {},
+                        failure -> context.runOnContext(v -> {
+                            pipe.close();
+                            if (response.headWritten()) {
+                                response.reset();
+                            } else {
+                                rc.fail(isBadUpload(failure) ? 400 : 500, failure);
+                            }
+                        }),
+                        () -> response.end(started.get() ? "]" : "[]"));
+        // 客户端提前断开：取消解析（释放临时文件），剩余的上传内容丢弃
+        response.closeHandler(v -> {
+            subscription.cancel();
+            pipe.close();
+        });
+    }
+
+    private static Buffer encode(List<XlsxSheetReader.ParsedRow> batch, AtomicBoolean started) {
+        Buffer chunk = Buffer.buffer(batch.size() * 64);
+        for (XlsxSheetReader.ParsedRow row : batch) {
+            List<String> cells = new ArrayList<>(row.values().length);
+            for (Object value : row.values()) {
+                cells.add(value != null ? value.toString() : null);
+            }
+            chunk.appendString(started.getAndSet(true) ? "," : "[");
+            chunk.appendBuffer(new JsonObject().put("cells", new JsonArray(cells)).toBuffer());
+        }
+        return chunk;
+    }
+
+    private static long contentLength(HttpServerRequest request) {
+        String value = request.getHeader(HttpHeaders.CONTENT_LENGTH);
+        try {
+            return value != null ? Long.parseLong(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static boolean isBadUpload(Throwable failure) {
+        return failure instanceof IOException || failure instanceof UncheckedIOException;
+    }
+}
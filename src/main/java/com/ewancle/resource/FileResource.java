@@ -1,26 +1,35 @@
 package com.ewancle.resource;
 
+import com.ewancle.model.FileMetadata;
 import com.ewancle.model.UploadResponse;
+import com.ewancle.storage.GzipDecoder;
+import com.ewancle.storage.HotFileCache;
+import com.ewancle.storage.TempFileManager;
+import com.ewancle.storage.UploadStore;
+import com.ewancle.zip.ZipArchiveStreamer;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
-import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.vertx.core.file.OpenOptions;
 import io.vertx.mutiny.core.Vertx;
 import io.vertx.mutiny.core.buffer.Buffer;
-import io.vertx.mutiny.core.file.AsyncFile;
 import io.vertx.mutiny.core.file.FileSystem;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
-import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.resteasy.reactive.RestForm;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.resteasy.reactive.RestResponse;
 
 import java.io.File;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 @ApplicationScoped
@@ -38,13 +47,26 @@ public class FileResource {
     @Inject
     Vertx vertx;
 
-    @ConfigProperty(name = "app.uploads.dir", defaultValue = "uploads")
-    String uploadsDir;
+    @Inject
+    UploadStore uploadStore;
+
+    @Inject
+    HotFileCache hotFileCache;
+
+    @Inject
+    ZipArchiveStreamer zipArchiveStreamer;
+
+    @Inject
+    TempFileManager tempFiles;
+
+    @ConfigProperty(name = "app.zip.max-entries", defaultValue = "500")
+    int zipMaxEntries;
 
     /**
      * 非阻塞上传：
      * 接收 multipart 的 file（这里用 java.io.File，Quarkus 会把 multipart 内容临时写到一个文件）
      * 建议同时传一个 "filename" 表单字段来保存原始文件名（客户端通常会这样做）。
+     * 文件按哈希前缀分片存放，元数据（MIME、校验和等）在上传时一次算好写入索引。
      */
     @POST
     @Path("/upload")
@@ -60,36 +82,128 @@ public class FileResource {
         final String safeOriginal = Paths.get(originalName).getFileName().toString();
 
         final String storedName = UUID.randomUUID() + "-" + safeOriginal;
-        final String targetPath = uploadsDir + "/" + storedName;
 
-        FileSystem fs = vertx.fileSystem();
-
-        // 确保目录存在 -> 异步 copy -> 删除上传时的临时文件 -> 返回文件元信息
-        return fs.mkdirs(uploadsDir)
-                .chain(() -> fs.copy(uploadedTempFile.getAbsolutePath(), targetPath))
-                // 删除 Quarkus 临时文件（非阻塞）
-                .call(() -> fs.unlink(uploadedTempFile.getAbsolutePath()))
-                .chain(() -> fs.props(targetPath))
-                .map(props -> new UploadResponse(safeOriginal, storedName, props.size()));
+        // 拷贝 + 计算校验和（worker 线程）-> 删除上传时的临时文件 -> 返回文件元信息
+        return uploadStore.store(uploadedTempFile, storedName, safeOriginal)
+                .map(meta -> new UploadResponse(meta.originalName(), meta.storedName(), meta.size()));
     }
 
     /**
      * 非阻塞下载：
      * 传入之前返回的 storedName（UUID-原名）
      * 返回 Multi<Buffer>，Quarkus 将以流方式把内容写回客户端（application/octet-stream）
+     * gzip 存储的文件在这里边读边解压
      */
     @GET
     @Path("/download/{storedName}")
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
     public Multi<Buffer> download(@PathParam("storedName") String storedName) {
-        final String safe = Paths.get(storedName).getFileName().toString();
-        final String path = uploadsDir + "/" + safe;
+        FileMetadata meta = uploadStore.metadata(storedName);
+        Multi<Buffer> stored = storedContent(storedName, meta);
+        return meta != null && meta.gzipped() ? GzipDecoder.decode(stored) : stored;
+    }
+
+
+    @GET
+    @Path("/download/{storedName}")
+    public Uni<RestResponse<Multi<Buffer>>> download1(@PathParam("storedName") String storedName,
+                                                       @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
+        // 原始文件名和 MIME 直接取自内存索引（旧文件第一次访问时探测并补录）
+        return uploadStore.metadataOrProbe(storedName)
+                .onItem().ifNull().failWith(() -> new NotFoundException("File not found: " + storedName))
+                .map(meta -> {
+                    Multi<Buffer> body = storedContent(storedName, meta);
+                    RestResponse.ResponseBuilder<Multi<Buffer>> response;
+                    if (meta.gzipped() && acceptsGzip(acceptEncoding)) {
+                        // 客户端支持 gzip：磁盘上的压缩字节原样发出，不解压也不重新压缩
+                        response = RestResponse.ResponseBuilder.ok(body)
+                                .header(HttpHeaders.CONTENT_ENCODING, FileMetadata.GZIP);
+                    } else {
+                        response = RestResponse.ResponseBuilder.ok(meta.gzipped() ? GzipDecoder.decode(body) : body);
+                    }
+                    if (meta.gzipped()) {
+                        response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                    }
+                    return response
+                            .header(HttpHeaders.CONTENT_DISPOSITION,
+                                    "attachment; filename=\"" + meta.originalName() + "\"")
+                            .type(meta.mimeType())
+                            .build();
+                });
+    }
+
+    /**
+     * 批量打包下载：请求体是 storedName 数组，边读边压缩边输出 ZIP（不生成临时归档文件）
+     * curl -OJ -H 'Content-Type: application/json' -d '["<storedName1>","<storedName2>"]' http://localhost:8080/files/zip
+     */
+    @POST
+    @Path("/zip")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Uni<RestResponse<Multi<Buffer>>> zip(List<String> storedNames) {
+        if (storedNames == null || storedNames.isEmpty()) {
+            throw new BadRequestException("storedNames 不能为空");
+        }
+        if (storedNames.size() > zipMaxEntries) {
+            throw new BadRequestException("一次最多打包 " + zipMaxEntries + " 个文件");
+        }
+        List<Uni<FileMetadata>> lookups = new ArrayList<>(storedNames.size());
+        for (String storedName : storedNames) {
+            lookups.add(uploadStore.metadataOrProbe(storedName)
+                    .onItem().ifNull().failWith(() -> new NotFoundException("File not found: " + storedName)));
+        }
+        // 先确认全部文件存在再开始输出，响应头发出后就无法再返回 404
+        return Uni.join().all(lookups).andFailFast()
+                .map(metas -> {
+                    List<ZipArchiveStreamer.Source> sources = new ArrayList<>(metas.size());
+                    for (FileMetadata meta : metas) {
+                        sources.add(new ZipArchiveStreamer.Source(meta, uploadStore.resolve(meta.storedName())));
+                    }
+                    String archiveName = "files-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss")) + ".zip";
+                    return RestResponse.ResponseBuilder
+                            .ok(zipArchiveStreamer.stream(sources))
+                            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + archiveName + "\"")
+                            .type("application/zip")
+                            .build();
+                });
+    }
+
+    /**
+     * 热点缓存统计（命中率、淘汰数、占用字节等）
+     */
+    @GET
+    @Path("/cache/stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    public HotFileCache.Stats cacheStats() {
+        return hotFileCache.stats();
+    }
+
+    /**
+     * 临时文件统计（配额占用、排队数、按归属汇总的字节数等）
+     */
+    @GET
+    @Path("/temp/stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    public TempFileManager.Stats tempStats() {
+        return tempFiles.stats();
+    }
+
+    /**
+     * 磁盘上存储的字节（可能是 gzip）：热点文件直接从堆外缓存返回，否则 AsyncFile 按需读取
+     */
+    private Multi<Buffer> storedContent(String storedName, FileMetadata meta) {
+        final java.nio.file.Path file = uploadStore.resolve(storedName);
+        ByteBuffer cached = meta != null ? hotFileCache.get(meta, file) : null;
+        if (cached != null) {
+            return slices(cached);
+        }
 
         FileSystem fs = vertx.fileSystem();
 
         // open() -> Uni<AsyncFile>, transformToMulti(asyncFile -> asyncFile.toMulti())
-        // 并在流终止时关闭文件句柄（防资源泄露）
-        return fs.open(path, new OpenOptions().setRead(true))
+        // 并在流终止时关闭文件句柄（防资源泄露）；create=false：文件不存在时报错，而不是建出空文件
+        return fs.open(file.toString(), new OpenOptions().setRead(true).setCreate(false))
+                .onFailure(e -> e.getCause() instanceof NoSuchFileException)
+                .transform(e -> new NotFoundException("File not found: " + storedName, e))
                 .onItem().transformToMulti(asyncFile ->
                         asyncFile.toMulti()
                                 // 当 Multi 终止（完成/失败/取消）时，关闭文件（非阻塞 Uni）
@@ -97,42 +211,49 @@ public class FileResource {
                 );
     }
 
+    /**
+     * Accept-Encoding 里是否接受 gzip（q=0 表示明确拒绝，无法解析的 q 值按不接受处理）
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim();
+            if (coding.equalsIgnoreCase(FileMetadata.GZIP) || coding.equals("*")) {
+                for (int i = 1; i < tokens.length; i++) {
+                    String param = tokens[i].trim().replace(" ", "");
+                    if (param.startsWith("q=") && !positive(param.substring(2))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
 
-    @GET
-    @Path("/download/{storedName}")
-    public Uni<RestResponse<Multi<Buffer>>> download1(@PathParam("storedName") String storedName) {
-        final String safe = Paths.get(storedName).getFileName().toString();
-        final String path = uploadsDir + "/" + safe;
-
-        // 从 storedName 截取原始文件名（假设格式 UUID-原名）
-        String originalName = safe.contains("-") ? safe.substring(safe.indexOf('-') + 1) : safe;
-
-        FileSystem fs = vertx.fileSystem();
+    private static boolean positive(String qValue) {
+        try {
+            return Double.parseDouble(qValue) > 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
 
-        // 异步获取 MIME 类型（阻塞操作走工作线程）
-        Uni<String> mimeUni = Uni.createFrom().item(() -> {
-            try {
-                String mime = Files.probeContentType(Paths.get(path));
-                return mime != null ? mime : MediaType.APPLICATION_OCTET_STREAM;
-            } catch (Exception e) {
-                return MediaType.APPLICATION_OCTET_STREAM;
-            }
-        }).runSubscriptionOn(Infrastructure.getDefaultExecutor());
-
-        return mimeUni
-                .flatMap(mime ->
-                        fs.open(path, new OpenOptions().setRead(true))
-                                .map((AsyncFile asyncFile) -> {
-                                    Multi<Buffer> body = asyncFile.toMulti()
-                                            .onTermination().call(asyncFile::close);
-
-                                    return RestResponse.ResponseBuilder
-                                            .ok(body)
-                                            .header(HttpHeaders.CONTENT_DISPOSITION,
-                                                    "attachment; filename=\"" + originalName + "\"")
-                                            .type(mime)
-                                            .build();
-                                })
-                );
+    /**
+     * 把缓存的堆外内容按 64KB 一块复制成 Buffer（下游按需取块，同一时间只有在途的几块占堆）
+     */
+    private static Multi<Buffer> slices(ByteBuffer data) {
+        final int chunkSize = 64 * 1024;
+        int chunks = (data.remaining() + chunkSize - 1) / chunkSize;
+        return Multi.createFrom().range(0, chunks)
+                .map(i -> {
+                    int from = data.position() + i * chunkSize;
+                    byte[] chunk = new byte[Math.min(chunkSize, data.limit() - from)];
+                    data.get(from, chunk);
+                    return Buffer.buffer(chunk);
+                });
     }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.ewancle.service;
+
+import com.ewancle.xlsx.NumberFormatKind;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+
+import java.util.Arrays;
+
+/**
+ * 一个 workbook 内的单元格解码：每个样式的数字格式只分类一次（按样式下标缓存），
+ * 数字单元格按 double 读取后再按分类决定输出，不再逐个单元格调 DateUtil.isCellDateFormatted。
+ *    - value(cell)：类型化的值（String/Double/Boolean/LocalDateTime/错误文本），公式单元格取缓存的结果
+ *    - text(cell)：需要输出文本时才转成 String，日期为 ISO 格式，见 {@link NumberFormatKind#format}
+ * 非线程安全，跟 workbook 一起在同一个 worker 线程里使用。
+ */
+public final class CellDecoder {
+
+    private final Workbook workbook;
+    private final boolean date1904;
+    private NumberFormatKind[] kinds = new NumberFormatKind[64];
+
+    public CellDecoder(Workbook workbook) {
+        this.workbook = workbook;
+        this.date1904 = workbook instanceof Date1904Support support && support.isDate1904();
+    }
+
+    /**
+     * 单元格数字格式的分类（公式单元格按其样式）
+     */
+    public NumberFormatKind kind(Cell cell) {
+        // XSSF 直接取 s 属性，避免每次 getCellStyle() 都新建样式包装对象
+        int index = cell instanceof XSSFCell xssf
+                ? (int) xssf.getCTCell().getS()
+                : cell.getCellStyle().getIndex() & 0xFFFF;
+        if (index >= kinds.length) {
+            kinds = Arrays.copyOf(kinds, Math.max(index + 1, kinds.length * 2));
+        }
+        NumberFormatKind kind = kinds[index];
+        if (kind == null) {
+            CellStyle style = index < workbook.getNumCellStyles() ? workbook.getCellStyleAt(index) : null;
+            kind = style != null
+                    ? NumberFormatKind.classify(style.getDataFormat(), style.getDataFormatString())
+                    : NumberFormatKind.GENERAL;
+            kinds[index] = kind;
+        }
+        return kind;
+    }
+
+    public Object value(Cell cell) {
+        CellType type = cell.getCellType() == CellType.FORMULA ? cell.getCachedFormulaResultType() : cell.getCellType();
+        return switch (type) {
+            case STRING -> cell.getStringCellValue();
+            case NUMERIC -> {
+                double number = cell.getNumericCellValue();
+                yield kind(cell).isDate() && DateUtil.isValidExcelDate(number)
+                        ? DateUtil.getLocalDateTime(number, date1904)
+                        : number;
+            }
+            case BOOLEAN -> cell.getBooleanCellValue();
+            case ERROR -> FormulaError.forInt(cell.getErrorCellValue()).getString();
+            default -> null;
+        };
+    }
+
+    public String text(Cell cell) {
+        CellType type = cell.getCellType() == CellType.FORMULA ? cell.getCachedFormulaResultType() : cell.getCellType();
+        return switch (type) {
+            case STRING -> cell.getStringCellValue();
+            case NUMERIC -> kind(cell).format(cell.getNumericCellValue(), date1904);
+            case BOOLEAN -> Boolean.toString(cell.getBooleanCellValue());
+            case ERROR -> FormulaError.forInt(cell.getErrorCellValue()).getString();
+            default -> null;
+        };
+    }
+}
@@ -1,60 +1,56 @@
 package com.ewancle.service;
 
+import com.ewancle.storage.TempFileManager;
+import com.ewancle.xlsx.SheetPatch;
+import com.ewancle.xlsx.XlsxPatchEngine;
 import io.smallrye.mutiny.Uni;
-import io.vertx.core.Vertx;
-import io.vertx.core.file.FileSystem;
-import io.vertx.core.file.OpenOptions;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.unchecked.Unchecked;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
 
 @ApplicationScoped
 public class ExcelExport1Service {
 
     @Inject
-    Vertx vertx;
+    TempFileManager tempFiles;
 
     /**
-     * 上传 → 解析 → 生成新 Excel（全 Reactive）
+     * 上传 → 在 sheet 0 末尾追加一行 → 生成新 Excel（全 Reactive）
+     * 用 XlsxPatchEngine 流式改写，不把整个工作簿载入内存；未改动的部件按原始压缩数据直接拷贝
      */
-    public Uni<Path> processExcelReactive(InputStream uploadedFile) {
-        return Uni.createFrom().<Path>emitter(em -> {
-            vertx.<Path>executeBlocking(
-                    promise -> {
-                        try (// 解析 Excel
-                             XSSFWorkbook workbook = new XSSFWorkbook(uploadedFile);){
-
+    public Uni<Path> processExcelReactive(Path uploadedFile) {
+        return Uni.createFrom().item(Unchecked.supplier(() -> patch(uploadedFile)))
+                .runSubscriptionOn(Infrastructure.getDefaultExecutor());
+    }
 
-                            // 在这里处理解析结果，比如新增一行
-                            var sheet = workbook.getSheetAt(0);
-                            var row = sheet.createRow(sheet.getLastRowNum() + 1);
-                            row.createCell(0).setCellValue("新增数据");
+    /**
+     * InputStream 版本：先落到临时文件（zip 需要随机访问），处理完删除
+     */
+    public Uni<Path> processExcelReactive(InputStream uploadedFile) {
+        return Uni.createFrom().item(Unchecked.supplier(() -> {
+            try (TempFileManager.TempFile input = tempFiles.allocateBlocking("processed-input", ".xlsx", 0)) {
+                Files.copy(uploadedFile, input.path(), StandardCopyOption.REPLACE_EXISTING);
+                return patch(input.path());
+            }
+        })).runSubscriptionOn(Infrastructure.getDefaultExecutor());
+    }
 
-                            // 写入新 Excel
-                            Path outputFile = Files.createTempFile("processed-", ".xlsx");
-                            try (OutputStream os = Files.newOutputStream(outputFile)) {
-                                workbook.write(os);
-                            }
-                            promise.complete(outputFile);
-                        } catch (Exception e) {
-                            promise.fail(e);
-                        }
-                    },
-                    false, // false = 使用共享 worker pool
-                    ar -> {
-                        if (ar.succeeded()) {
-                            em.complete(ar.result());
-                        } else {
-                            em.fail(ar.cause());
-                        }
-                    }
-            );
-        });
+    private Path patch(Path source) throws Exception {
+        // 结果文件登记在 TempFileManager，调用方不再使用后由清理任务按 max-age 回收
+        TempFileManager.TempFile output = tempFiles.allocateBlocking("processed", ".xlsx", Files.size(source) + 4096);
+        try {
+            XlsxPatchEngine.apply(source, output.path(), new SheetPatch(0).append(List.of("新增数据")));
+            return output.path();
+        } catch (Exception e) {
+            output.close();
+            throw e;
+        }
     }
-}
\ No newline at end of file
+}
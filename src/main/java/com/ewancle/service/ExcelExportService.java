@@ -1,62 +1,69 @@
 package com.ewancle.service;
 
+import com.ewancle.codec.RowBatchWriter;
 import com.ewancle.model.Person;
-import io.smallrye.mutiny.Uni;
-import io.smallrye.mutiny.unchecked.Unchecked;
+import com.ewancle.xlsx.XlsxBulkExporter;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.vertx.core.buffer.Buffer;
 import jakarta.enterprise.context.ApplicationScoped;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
 
-import java.io.ByteArrayOutputStream;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.IntStream;
 
 @ApplicationScoped
 public class ExcelExportService {
 
-    public Uni<List<Person>> loadData(int rows) {
-        return Uni.createFrom().item(() -> {
-            List<Person> list = new ArrayList<>();
-            IntStream.rangeClosed(1, rows).forEach(i -> list.add(
-                    new Person((long) i, "Name" + i, "user" + i + "@example.com", 20 + (i % 30), LocalDateTime.now())
-            ));
-            return list;
-        });
+    private static final String[] TITLES = {"ID", "Name", "Email", "Age", "Created At"};
+
+    @Inject
+    XlsxBulkExporter bulkExporter;
+
+    /**
+     * 导出数据的二进制列式行流（服务间传输用，格式见 {@link RowBatchWriter}）
+     * 数据按需生成、按批次编码，不会先物化整个 List；生成和编码在 worker 线程上进行，不占 event loop
+     *
+     * @throws BadRequestException rows 为负数或 batchSize 不是正数（同步抛出）
+     */
+    public Multi<Buffer> streamAsRowBatches(int rows, int batchSize) {
+        if (rows < 0) {
+            throw new BadRequestException("rows must be >= 0");
+        }
+        if (batchSize <= 0) {
+            throw new BadRequestException("batchSize must be > 0");
+        }
+        return Multi.createFrom().deferred(() -> {
+            RowBatchWriter writer = new RowBatchWriter(List.of(TITLES));
+            Multi<Buffer> batches = Multi.createFrom().range(1, rows + 1)
+                    .map(i -> {
+                        Person p = newPerson(i);
+                        return new Object[]{p.id(), p.name(), p.email(), p.age(), p.createdAt()};
+                    })
+                    .group().intoLists().of(batchSize)
+                    .map(writer::writeBatch);
+            return Multi.createBy().concatenating().streams(
+                    Multi.createFrom().item(writer::start),
+                    batches,
+                    Multi.createFrom().item(writer::end));
+        }).runSubscriptionOn(Infrastructure.getDefaultExecutor());
     }
 
-    public Uni<Buffer> generateReactive(List<Person> people) {
-        return Uni.createFrom().item(Unchecked.supplier(() -> {
-            try (XSSFWorkbook workbook = new XSSFWorkbook();
-                 ByteArrayOutputStream out = new ByteArrayOutputStream()
-            ) {
-                Sheet sheet = workbook.createSheet("People");
-                createHeader(sheet);
-                int rowIdx = 1;
-                for (Person p : people) {
-                    Row row = sheet.createRow(rowIdx++);
-                    row.createCell(0).setCellValue(p.id());
-                    row.createCell(1).setCellValue(p.name());
-                    row.createCell(2).setCellValue(p.email());
-                    row.createCell(3).setCellValue(p.age());
-                    row.createCell(4).setCellValue(p.createdAt().toString());
-                }
-                workbook.write(out);
-                return Buffer.buffer(out.toByteArray());
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to generate Excel", e);
-            }
-        }));
+    private Person newPerson(int i) {
+        return new Person((long) i, "Name" + i, "user" + i + "@example.com", 20 + (i % 30), LocalDateTime.now());
     }
 
-    private void createHeader(Sheet sheet) {
-        Row header = sheet.createRow(0);
-        String[] titles = {"ID", "Name", "Email", "Age", "Created At"};
-        for (int i = 0; i < titles.length; i++) {
-            header.createCell(i).setCellValue(titles[i]);
-        }
+    /**
+     * 流式导出 xlsx：数据按行号生成，超过单 sheet 行数上限时自动拆分，各 sheet 并行生成
+     */
+    public Multi<Buffer> streamXlsx(int rows) {
+        return bulkExporter.export("People", List.of(TITLES), rows, i -> row(newPerson((int) i + 1)))
+                .map(io.vertx.mutiny.core.buffer.Buffer::getDelegate);
+    }
+
+    private static List<?> row(Person p) {
+        return Arrays.asList(p.id(), p.name(), p.email(), p.age(), p.createdAt().toString());
     }
 }
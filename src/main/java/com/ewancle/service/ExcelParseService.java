@@ -0,0 +1,177 @@
+package com.ewancle.service;
+
+import com.ewancle.codec.RowBatchWriter;
+import com.ewancle.storage.TempFileManager;
+import com.ewancle.xlsx.XlsxSheetReader;
+import com.ewancle.xlsx.XlsxStreamingReader;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.core.buffer.Buffer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import org.apache.poi.ss.util.CellReference;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+@ApplicationScoped
+public class ExcelParseService {
+
+    @Inject
+    TempFileManager tempFiles;
+
+    /** 0 表示使用 CPU 核数 */
+    @ConfigProperty(name = "app.parse.sheet-parallelism", defaultValue = "0")
+    int sheetParallelism;
+
+    /**
+     * 多 sheet 解析的一行：sheet 名称、行号（从 1 开始）和类型化的单元格值
+     */
+    public record SheetRow(String sheet, int rowNum, Object[] values) {}
+
+    /**
+     * 把上传的表格解析成二进制列式行流（格式见 {@link RowBatchWriter}）
+     *    - 按内容区分 xlsx / xls，都流式读取（{@link StoredWorkbooks#openFile}），不建 POI Workbook
+     *    - 每个批次在下游请求时才去 worker 线程解析（repeating + runSubscriptionOn），客户端读得慢就不解析，天然背压
+     *    - 列数事先不知道：先按表头（header=false 时为 0 列）声明，遇到更宽的批次时补发 SCHEMA 帧追加列（列名为列字母）
+     *    - 流终止（完成/失败/取消）时关闭文件并删除上传临时文件
+     *
+     * @throws BadRequestException batchSize 不是正数（同步抛出）；不是可读的工作簿时流以 400 失败
+     */
+    public Multi<Buffer> parseAsRowBatches(File file, boolean header, int batchSize) {
+        if (batchSize <= 0) {
+            throw new BadRequestException("batchSize must be > 0");
+        }
+        return Multi.createFrom().resourceFromUni(
+                () -> Uni.createFrom().item(() -> {
+                    try {
+                        return StoredWorkbooks.openFile(file.toPath(), 0);
+                    } catch (IOException e) {
+                        // 没打开就不会走到 withFinalizer，这里删除上传临时文件
+                        try { Files.deleteIfExists(file.toPath()); } catch (Exception ignore) {}
+                        throw new BadRequestException("Not a readable workbook", e);
+                    }
+                }).runSubscriptionOn(Infrastructure.getDefaultExecutor()),
+                rows -> {
+                    List<String> names = new ArrayList<>();
+                    if (header && rows.hasNext()) {
+                        Object[] first = rows.next().values();
+                        for (int c = 0; c < first.length; c++) {
+                            names.add(first[c] != null ? first[c].toString() : CellReference.convertNumToColString(c));
+                        }
+                    }
+                    RowBatchWriter writer = new RowBatchWriter(names);
+                    Multi<Buffer> batches = Multi.createBy().repeating()
+                            .uni(() -> Uni.createFrom().item(() -> nextBatch(rows, batchSize))
+                                    .runSubscriptionOn(Infrastructure.getDefaultExecutor()))
+                            .until(List::isEmpty)
+                            .map(batch -> encode(writer, batch));
+                    return Multi.createBy().concatenating().streams(
+                            Multi.createFrom().item(writer::start),
+                            batches,
+                            Multi.createFrom().item(writer::end));
+                })
+                .withFinalizer(rows -> {
+                    rows.close();
+                    try { Files.deleteIfExists(file.toPath()); } catch (Exception ignore) {}
+                });
+    }
+
+    private static List<Object[]> nextBatch(StoredWorkbooks.SheetRowSource rows, int max) {
+        List<Object[]> batch = new ArrayList<>(Math.min(max, 1024));
+        while (batch.size() < max && rows.hasNext()) {
+            batch.add(rows.next().values());
+        }
+        return batch;
+    }
+
+    /**
+     * 编码一个批次；有比已声明的列更宽的行时，前面先加一个追加列的 SCHEMA 帧
+     */
+    private static Buffer encode(RowBatchWriter writer, List<Object[]> batch) {
+        int width = 0;
+        for (Object[] row : batch) {
+            width = Math.max(width, row.length);
+        }
+        if (width <= writer.columns().size()) {
+            return writer.writeBatch(batch);
+        }
+        List<String> names = new ArrayList<>(writer.columns());
+        for (int c = names.size(); c < width; c++) {
+            names.add(CellReference.convertNumToColString(c));
+        }
+        return writer.extend(names).appendBuffer(writer.writeBatch(batch));
+    }
+
+    /**
+     * 并行解析 xlsx 的多个 sheet（不经过 POI Workbook，见 {@link XlsxSheetReader}）
+     *    - sheets 为空时解析全部，否则按名称或从 0 开始的序号选择
+     *    - 每个 sheet 一个任务，在 worker 线程上用各自的 StAX reader 读取对应的 XML 部件，共享同一份只读的共享字符串表
+     *    - 同时解析的 sheet 数不超过 app.parse.sheet-parallelism；不同 sheet 的行交错输出，同一 sheet 内保持行顺序
+     *    - 流终止（完成/失败/取消）时关闭文件并删除上传临时文件
+     */
+    public Multi<SheetRow> parseSheets(File file, List<String> sheets) {
+        int parallelism = sheetParallelism > 0 ? sheetParallelism : Runtime.getRuntime().availableProcessors();
+        return Multi.createFrom().resourceFromUni(
+                () -> Uni.createFrom().item(() -> {
+                    try {
+                        return XlsxSheetReader.open(file.toPath());
+                    } catch (IOException e) {
+                        throw new BadRequestException("Not a readable xlsx workbook", e);
+                    }
+                }).runSubscriptionOn(Infrastructure.getDefaultExecutor()),
+                reader -> {
+                    List<XlsxSheetReader.SheetInfo> selected;
+                    try {
+                        selected = reader.select(sheets);
+                    } catch (IllegalArgumentException e) {
+                        return Multi.createFrom().failure(new BadRequestException(e.getMessage()));
+                    }
+                    return Multi.createFrom().iterable(selected)
+                            .onItem().transformToMulti(sheet -> sheetRows(reader, sheet))
+                            .merge(parallelism);
+                })
+                .withFinalizer(reader -> {
+                    try { reader.close(); } catch (Exception ignore) {}
+                    try { Files.deleteIfExists(file.toPath()); } catch (Exception ignore) {}
+                });
+    }
+
+    private static Multi<SheetRow> sheetRows(XlsxSheetReader reader, XlsxSheetReader.SheetInfo sheet) {
+        return Multi.createFrom().<XlsxSheetReader.SheetRows, SheetRow>resource(() -> {
+                    try {
+                        return reader.rows(sheet);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, rows -> Multi.createFrom().iterable(() -> rows)
+                        .map(row -> new SheetRow(sheet.name(), row.rowNum(), row.values())))
+                .withFinalizer(XlsxSheetReader.SheetRows::close)
+                // 打开和后续每次 request 都在 worker 线程上执行，解析不占用事件循环
+                .runSubscriptionOn(Infrastructure.getDefaultExecutor());
+    }
+
+    /**
+     * 边上传边解析一个 sheet（见 {@link XlsxStreamingReader}）：upload 是还在接收中的请求体，
+     * 行在下游请求时才在 worker 线程上解析，读不到数据时等待上传
+     */
+    public Multi<XlsxSheetReader.ParsedRow> parseStreaming(InputStream upload, int sheetIndex, long expectedBytes) {
+        return Multi.createFrom().<XlsxStreamingReader, XlsxSheetReader.ParsedRow>resource(() -> {
+                    try {
+                        return new XlsxStreamingReader(upload, tempFiles, sheetIndex, expectedBytes);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, reader -> Multi.createFrom().iterable(() -> reader))
+                .withFinalizer(XlsxStreamingReader::close)
+                .runSubscriptionOn(Infrastructure.getDefaultExecutor());
+    }
+}
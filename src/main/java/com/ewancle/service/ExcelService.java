@@ -1,13 +1,22 @@
 package com.ewancle.service;
 
 import com.ewancle.model.Employee;
+import com.ewancle.sort.ExternalSorter;
+import com.ewancle.sort.GroupBy;
+import com.ewancle.storage.TempFileManager;
+import com.ewancle.xlsx.ColumnWidthTracker;
+import com.ewancle.xlsx.SharedStrings;
+import com.ewancle.xlsx.XlsxTemplateRegistry;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.vertx.core.buffer.Buffer;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.time.Duration;
@@ -18,6 +27,23 @@ import java.util.concurrent.atomic.AtomicInteger;
 @ApplicationScoped
 public class ExcelService {
 
+    public static final String DEFAULT_TEMPLATE = "employees";
+
+    @Inject
+    XlsxTemplateRegistry templates;
+
+    @Inject
+    TempFileManager tempFiles;
+
+    @Inject
+    ExternalSorter sorter;
+
+    @ConfigProperty(name = "app.templates.shared-strings.max-entries", defaultValue = "65536")
+    int sstMaxEntries;
+
+    @ConfigProperty(name = "app.templates.shared-strings.max-chars", defaultValue = "4194304")
+    long sstMaxChars;
+
     // 模拟数据源 - 实际项目中可能来自数据库
     public Multi<Employee> getEmployeeStream() {
         List<Employee> employees = Arrays.asList(
@@ -78,15 +104,11 @@ public class ExcelService {
                                     // 复制表头
                                     createHeaderRow(tempSheet, tempHeaderStyle);
 
-                                    // 复制到当前为止的所有数据
-                                    fillDataRows(tempSheet, employees.subList(0, endIndex), tempDataStyle);
-
-                                    /*if( i == 0){
-                                        // 自动调整列宽
-                                        for (int col = 0; col < 5; col++) {
-                                            tempSheet.autoSizeColumn(col+1);
-                                        }
-                                    }*/
+                                    // 复制到当前为止的所有数据，同时估算列宽
+                                    ColumnWidthTracker widths = new ColumnWidthTracker();
+                                    widths.track(tempSheet.getRow(0));
+                                    fillDataRows(tempSheet, employees.subList(0, endIndex), tempDataStyle, widths);
+                                    widths.applyTo(tempSheet);
 
                                     tempWorkbook.write(batchOut);
 
@@ -152,8 +174,8 @@ public class ExcelService {
         return getEmployeeStream()
                 .collect().asList()
                 .map(employees -> {
+                    SXSSFWorkbook workbook = new SXSSFWorkbook(1000);
                     try {
-                        SXSSFWorkbook workbook = new SXSSFWorkbook(1000);
                         Sheet sheet = workbook.createSheet("员工信息");
 
                         // 创建样式
@@ -163,21 +185,22 @@ public class ExcelService {
                         // 创建标题行
                         createHeaderRow(sheet, headerStyle);
 
-                        // 填充数据
-                        fillDataRows(sheet, employees, dataStyle);
+                        // 填充数据，写行时记录每列最大显示宽度
+                        ColumnWidthTracker widths = new ColumnWidthTracker();
+                        widths.track(sheet.getRow(0));
+                        fillDataRows(sheet, employees, dataStyle, widths);
 
-                        // 自动调整列宽
-                        for (int i = 0; i < 5; i++) {
-                            sheet.autoSizeColumn(i);
-                        }
+                        // 按估算结果设置列宽（不用 autoSizeColumn：依赖 AWT，且 SXSSF 只能量到窗口内的行）
+                        widths.applyTo(sheet);
 
                         ByteArrayOutputStream out = new ByteArrayOutputStream();
                         workbook.write(out);
-                        workbook.close();
 
                         return Buffer.buffer(out.toByteArray());
                     } catch (IOException e) {
                         throw new RuntimeException("生成Excel文件失败", e);
+                    } finally {
+                        try { workbook.close(); } catch (IOException ignore) {}
                     }
                 });
     }
@@ -188,6 +211,74 @@ public class ExcelService {
                 .map(buffer -> buffer.getBytes());
     }
 
+    /**
+     * 基于预编译模板导出：样式、表头、列宽等静态部分来自模板（编译一次后缓存），
+     * 每次只生成数据行 XML 并流式压缩，不再创建 Workbook / 样式，也不需要临时文件
+     */
+    public Multi<Buffer> generateFromTemplate(String templateName) {
+        return generateFromTemplate(templateName, false);
+    }
+
+    /**
+     * @param groupByDepartment 按部门分组导出：按部门、薪资降序排序（外部归并排序，数据量超过内存也可以），
+     *                          每个部门后插入一行薪资小计
+     */
+    public Multi<Buffer> generateFromTemplate(String templateName, boolean groupByDepartment) {
+        return Uni.createFrom().item(() -> templates.get(templateName,
+                        DEFAULT_TEMPLATE.equals(templateName) ? this::createEmployeeTemplate : null))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                .onItem().transformToMulti(template -> Multi.createFrom().resourceFromUni(
+                                // 溢写文件在行写完之前不知道大小，按去重表上限能写出的最大字节数预留配额
+                                () -> tempFiles.allocate("template-sst", ".xml",
+                                        SharedStrings.maxSpillBytes(sstMaxEntries, sstMaxChars)),
+                                spill -> {
+                                    // 部门重复多，进共享字符串表；姓名按采样的重复率自动选择；邮箱几乎不重复，直接 inline
+                                    SharedStrings strings = new SharedStrings(spill.path(), sstMaxEntries, sstMaxChars,
+                                            SharedStrings.Mode.INLINE, SharedStrings.Mode.AUTO, SharedStrings.Mode.SHARED,
+                                            SharedStrings.Mode.INLINE, SharedStrings.Mode.INLINE);
+                                    return template.render(employeeRows(groupByDepartment).map(Arrays::asList), strings)
+                                            .onTermination().invoke(strings::close);
+                                })
+                        .withFinalizer(TempFileManager.TempFile::close))
+                .map(io.vertx.mutiny.core.buffer.Buffer::getDelegate);
+    }
+
+    private Multi<Object[]> employeeRows(boolean groupByDepartment) {
+        Multi<Object[]> rows = getEmployeeStream()
+                .map(e -> new Object[]{e.getId(), e.getName(), e.getDepartment(), e.getSalary(), e.getEmail()});
+        if (!groupByDepartment) {
+            return rows;
+        }
+        Multi<Object[]> sorted = sorter.sort(rows, List.of("id", "name", "department", "salary", "email"),
+                ExternalSorter.by(2).thenComparing(ExternalSorter.by(3).reversed()));
+        return GroupBy.subtotals(sorted, 2, new int[]{3}, "小计");
+    }
+
+    /**
+     * 没有提供模板文件时的默认员工模板：表头 + 一行只有格式的样式原型行
+     */
+    private byte[] createEmployeeTemplate() {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+        try {
+            Sheet sheet = workbook.createSheet("员工信息");
+            createHeaderRow(sheet, createHeaderStyle(workbook));
+            CellStyle dataStyle = createDataStyle(workbook);
+            Row prototype = sheet.createRow(1);
+            int[] widths = {8, 12, 12, 12, 28};
+            for (int i = 0; i < widths.length; i++) {
+                prototype.createCell(i).setCellStyle(dataStyle);
+                sheet.setColumnWidth(i, widths[i] * 256);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            workbook.write(out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("生成默认模板失败", e);
+        } finally {
+            try { workbook.close(); } catch (IOException ignore) {}
+        }
+    }
+
     private CellStyle createHeaderStyle(SXSSFWorkbook workbook) {
         CellStyle style = workbook.createCellStyle();
         Font font = workbook.createFont();
@@ -223,7 +314,7 @@ public class ExcelService {
         }
     }
 
-    private void fillDataRows(Sheet sheet, List<Employee> employees, CellStyle dataStyle) {
+    private void fillDataRows(Sheet sheet, List<Employee> employees, CellStyle dataStyle, ColumnWidthTracker widths) {
         int rowNum = 1;
         for (Employee employee : employees) {
             Row row = sheet.createRow(rowNum++);
@@ -247,6 +338,8 @@ public class ExcelService {
             Cell cell4 = row.createCell(4);
             cell4.setCellValue(employee.getEmail());
             cell4.setCellStyle(dataStyle);
+
+            widths.track(row);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,154 @@
+package com.ewancle.service;
+
+import com.ewancle.formula.FormulaGraph;
+import com.ewancle.model.SheetCell;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.BadRequestException;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.ss.util.CellReference;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 假设分析：修改上传工作簿里的若干输入单元格，返回受影响的公式的新结果。
+ * 先建公式依赖图并求值一次（{@link FormulaGraph}），之后每个修改只重算传递依赖它的公式；
+ * 工作簿只在内存里修改，不写回文件
+ */
+@ApplicationScoped
+public class RecalculationService {
+
+    /**
+     * 在 worker 线程上执行，结束后删除上传临时文件
+     *
+     * @throws BadRequestException 没有修改（同步抛出）；不是可读的工作簿、sheet 或单元格地址无效时 Uni 以 400 失败
+     */
+    public Uni<List<SheetCell>> recalculate(File file, List<SheetCell> changes) {
+        if (changes == null || changes.isEmpty()) {
+            throw new BadRequestException("At least one change is required");
+        }
+        return Uni.createFrom().item(() -> {
+            try (InputStream in = Files.newInputStream(file.toPath()); Workbook workbook = open(in)) {
+                return recalculate(workbook, changes);
+            } catch (IOException e) {
+                throw new BadRequestException("Not a readable workbook", e);
+            } finally {
+                try { Files.deleteIfExists(file.toPath()); } catch (Exception ignore) {}
+            }
+        }).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    private static Workbook open(InputStream in) throws IOException {
+        try {
+            return WorkbookFactory.create(in);
+        } catch (RuntimeException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * 依次应用修改，返回被重算过的公式单元格（按第一次被重算的顺序，值为全部修改之后的结果）
+     */
+    static List<SheetCell> recalculate(Workbook workbook, List<SheetCell> changes) {
+        List<Cell> targets = new ArrayList<>(changes.size());
+        for (SheetCell change : changes) {
+            targets.add(resolve(workbook, change));
+        }
+        FormulaGraph graph = FormulaGraph.build(workbook);
+        graph.evaluateAll();
+
+        Map<String, Cell> recalculated = new LinkedHashMap<>();
+        for (int i = 0; i < changes.size(); i++) {
+            Cell cell = targets.get(i);
+            write(cell, changes.get(i).value);
+            for (Cell updated : graph.update(cell)) {
+                if (updated.getCellType() == CellType.FORMULA) {
+                    recalculated.putIfAbsent(updated.getSheet().getSheetName() + "!"
+                            + updated.getAddress().formatAsString(), updated);
+                }
+            }
+        }
+        List<SheetCell> results = new ArrayList<>(recalculated.size());
+        for (Cell cell : recalculated.values()) {
+            Object value = graph.value(cell);
+            results.add(new SheetCell(cell.getSheet().getSheetName(), cell.getAddress().formatAsString(),
+                    value != null ? value.toString() : null));
+        }
+        return results;
+    }
+
+    private static Cell resolve(Workbook workbook, SheetCell change) {
+        if (change == null || change.cell == null || change.cell.isBlank()) {
+            throw new BadRequestException("Every change needs a cell address");
+        }
+        Sheet sheet = sheet(workbook, change.sheet);
+        CellReference ref;
+        try {
+            ref = new CellReference(change.cell.trim());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cell address: " + change.cell);
+        }
+        if (ref.getSheetName() != null || ref.getRow() < 0 || ref.getCol() < 0
+                || ref.getRow() > workbook.getSpreadsheetVersion().getLastRowIndex()
+                || ref.getCol() > workbook.getSpreadsheetVersion().getLastColumnIndex()) {
+            throw new BadRequestException("Invalid cell address: " + change.cell);
+        }
+        Row row = sheet.getRow(ref.getRow()) != null ? sheet.getRow(ref.getRow()) : sheet.createRow(ref.getRow());
+        return row.getCell(ref.getCol(), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
+    }
+
+    /**
+     * sheet 名称或从 0 开始的序号，为空时为第一个 sheet
+     */
+    private static Sheet sheet(Workbook workbook, String selector) {
+        if (selector == null || selector.isBlank()) {
+            if (workbook.getNumberOfSheets() == 0) {
+                throw new BadRequestException("Workbook has no sheets");
+            }
+            return workbook.getSheetAt(0);
+        }
+        Sheet sheet = workbook.getSheet(selector);
+        if (sheet != null) {
+            return sheet;
+        }
+        try {
+            int index = Integer.parseInt(selector.trim());
+            if (index >= 0 && index < workbook.getNumberOfSheets()) {
+                return workbook.getSheetAt(index);
+            }
+        } catch (NumberFormatException ignore) {
+            // 不是序号
+        }
+        throw new BadRequestException("Sheet not found: " + selector);
+    }
+
+    private static void write(Cell cell, String value) {
+        if (value == null || value.isBlank()) {
+            cell.setBlank();
+            return;
+        }
+        try {
+            double number = Double.parseDouble(value.trim());
+            if (Double.isFinite(number)) {
+                cell.setCellValue(number);
+                return;
+            }
+        } catch (NumberFormatException ignore) {
+            // 不是数字
+        }
+        cell.setCellValue(value);
+    }
+}
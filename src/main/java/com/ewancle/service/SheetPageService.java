@@ -0,0 +1,285 @@
+package com.ewancle.service;
+
+import com.ewancle.model.FileMetadata;
+import com.ewancle.model.RowPage;
+import com.ewancle.storage.TempFileManager;
+import com.ewancle.storage.UploadStore;
+import com.ewancle.xlsx.SheetPageIndex;
+import com.ewancle.xlsx.XlsxSheetReader;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.WebApplicationException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 已上传（/files/upload）xlsx 的随机访问分页（见 {@link SheetPageIndex}）：
+ *    - 每个 sheet 第一次分页时建索引，解压后的 sheet XML 和检查点持久化在上传目录的 .index/derived 下，重启后直接复用
+ *    - 文件被覆盖上传（SHA-256 变化）后自动重建
+ *    - 载入的索引（含共享字符串表）按 LRU 缓存 cache-entries 个
+ *    - 磁盘开销：每个建过索引的 sheet 占用解压后的 sheet XML 大小（通常是 xlsx 文件的 5~20 倍）外加每 interval 行
+ *      12 字节的检查点；派生目录合计超过 max-bytes 时按最近使用时间删除最久未用的 sheet，下次分页时重建。
+ *      内存缓存里的和正在建的索引不删，所以单个 sheet 超过上限时仍能分页，只是其余 sheet 都会被删掉；
+ *      已被挤出内存缓存、读页时 XML 刚好被删掉的，丢掉这个索引重建后再读一次
+ */
+@ApplicationScoped
+public class SheetPageService {
+
+    @Inject
+    UploadStore uploadStore;
+
+    @Inject
+    TempFileManager tempFiles;
+
+    @ConfigProperty(name = "app.parse.page-index.interval", defaultValue = "1000")
+    int interval;
+
+    @ConfigProperty(name = "app.parse.page-index.cache-entries", defaultValue = "16")
+    int cacheEntries;
+
+    @ConfigProperty(name = "app.parse.page-index.max-bytes", defaultValue = "2147483648")
+    long maxBytes;
+
+    // accessOrder=true：按访问顺序排列，队首即最久未使用
+    private final LinkedHashMap<String, SheetPageIndex> indexes = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<SheetPageIndex>> loading = new ConcurrentHashMap<>();
+    private final Object evicting = new Object();
+
+    public Uni<RowPage> page(String storedName, int sheet, long offset, int limit) {
+        if (sheet < 0 || offset < 0 || limit <= 0) {
+            return Uni.createFrom().failure(new BadRequestException("sheet and offset must be >= 0, limit > 0"));
+        }
+        String safe = Paths.get(storedName).getFileName().toString();
+        return uploadStore.metadataOrProbe(safe)
+                .flatMap(meta -> {
+                    if (meta == null) {
+                        return Uni.createFrom().failure(new WebApplicationException("文件不存在: " + safe, 404));
+                    }
+                    // 拿到索引之后、打开 XML 之前，索引可能已被挤出内存缓存、派生文件被 evict 删掉：丢掉它重建一次
+                    return index(meta, sheet).flatMap(index -> read(index, offset, limit)
+                            .onFailure(SheetPageService::derivedDeleted).recoverWithUni(e -> {
+                                forget(meta, sheet, index);
+                                return index(meta, sheet).flatMap(rebuilt -> read(rebuilt, offset, limit));
+                            }));
+                });
+    }
+
+    private static Uni<RowPage> read(SheetPageIndex index, long offset, int limit) {
+        return Uni.createFrom().item(() -> {
+            try {
+                List<RowPage.PageRow> rows = new ArrayList<>(limit);
+                for (XlsxSheetReader.ParsedRow row : index.page(offset, limit)) {
+                    List<String> cells = new ArrayList<>(row.values().length);
+                    for (Object value : row.values()) {
+                        cells.add(value != null ? value.toString() : null);
+                    }
+                    rows.add(new RowPage.PageRow(row.rowNum(), cells));
+                }
+                return new RowPage(index.rows(), offset, rows);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).runSubscriptionOn(Infrastructure.getDefaultExecutor());
+    }
+
+    private static boolean derivedDeleted(Throwable failure) {
+        return failure instanceof UncheckedIOException e && e.getCause() instanceof NoSuchFileException;
+    }
+
+    private static String key(FileMetadata meta, int sheet) {
+        return meta.storedName() + "#" + sheet;
+    }
+
+    /**
+     * 派生文件已不在的索引从内存缓存里去掉（缓存里已换成别的索引时不动）
+     */
+    private synchronized void forget(FileMetadata meta, int sheet, SheetPageIndex stale) {
+        indexes.remove(key(meta, sheet), stale);
+    }
+
+    private Uni<SheetPageIndex> index(FileMetadata meta, int sheet) {
+        String key = key(meta, sheet);
+        String stamp = stampOf(meta);
+        synchronized (this) {
+            SheetPageIndex cached = indexes.get(key);
+            if (cached != null && cached.stamp().equals(stamp)) {
+                return Uni.createFrom().item(cached);
+            }
+        }
+        // 同一个 sheet 的并发首次请求只建一次索引；先登记再开始建，建的过程中 evict 能看到它，
+        // 建好后先放进缓存再移出 loading，两处之间没有空档
+        CompletableFuture<SheetPageIndex> future = new CompletableFuture<>();
+        CompletableFuture<SheetPageIndex> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            return Uni.createFrom().completionStage(existing);
+        }
+        Uni.createFrom().item(() -> load(meta, sheet, stamp))
+                .runSubscriptionOn(Infrastructure.getDefaultExecutor())
+                .subscribe().with(index -> {
+                    put(key, index);
+                    loading.remove(key, future);
+                    future.complete(index);
+                }, failure -> {
+                    loading.remove(key, future);
+                    future.completeExceptionally(failure);
+                });
+        return Uni.createFrom().completionStage(future);
+    }
+
+    private SheetPageIndex load(FileMetadata meta, int sheet, String stamp) {
+        Path file = uploadStore.resolve(meta.storedName());
+        if (!Files.isRegularFile(file)) {
+            throw new WebApplicationException("文件不存在: " + meta.storedName(), 404);
+        }
+        if (!meta.gzipped()) {
+            return load(meta, file, sheet, stamp);
+        }
+        // gzip 存储的文件：zip 需要随机访问，先解压到临时文件（计入临时目录配额）
+        try (TempFileManager.TempFile decoded = tempFiles.allocateBlocking("page-index", ".xlsx", meta.size())) {
+            try (InputStream in = uploadStore.openDecoded(meta)) {
+                Files.copy(in, decoded.path(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return load(meta, decoded.path(), sheet, stamp);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private SheetPageIndex load(FileMetadata meta, Path file, int sheet, String stamp) {
+        Path xmlFile = uploadStore.derivedPath(meta.storedName(), "-sheet" + sheet + ".xml");
+        Path indexFile = uploadStore.derivedPath(meta.storedName(), "-sheet" + sheet + ".rowidx");
+        XlsxSheetReader reader;
+        try {
+            reader = XlsxSheetReader.open(file);
+        } catch (IOException e) {
+            throw new BadRequestException("Not a readable xlsx workbook", e);
+        }
+        // 只留下共享字符串和样式供读页使用，zip 用完即关
+        try (reader) {
+            SheetPageIndex index = SheetPageIndex.load(reader, xmlFile, indexFile, stamp, interval);
+            if (index != null) {
+                // 修改时间即最近使用时间，淘汰时按它排序
+                Files.setLastModifiedTime(xmlFile, FileTime.fromMillis(System.currentTimeMillis()));
+                return index;
+            }
+            XlsxSheetReader.SheetInfo info;
+            try {
+                info = reader.select(List.of(String.valueOf(sheet))).get(0);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException(e.getMessage());
+            }
+            SheetPageIndex built = SheetPageIndex.build(reader, info, xmlFile, indexFile, stamp, interval);
+            evict(xmlFile.getParent());
+            return built;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 派生目录合计超过 max-bytes 时，按 XML 文件的修改时间从旧到新删除 sheet 的 XML 和索引，
+     * 跳过内存缓存里的（读页时还要打开 XML）和正在建 / 载入的
+     */
+    private void evict(Path derivedDir) throws IOException {
+        synchronized (evicting) {
+            Set<String> inUse;
+            synchronized (this) {
+                inUse = new HashSet<>(indexes.keySet());
+            }
+            inUse.addAll(loading.keySet());
+            Map<String, Derived> sheets = new HashMap<>();
+            long total = 0;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(derivedDir)) {
+                for (Path file : files) {
+                    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (!attrs.isRegularFile()) {
+                        continue;
+                    }
+                    total += attrs.size();
+                    String key = keyOf(file.getFileName().toString());
+                    if (key != null && !inUse.contains(key)) {
+                        Derived sheet = sheets.computeIfAbsent(key, k -> new Derived());
+                        sheet.files.add(file);
+                        sheet.bytes += attrs.size();
+                        sheet.lastUsed = Math.max(sheet.lastUsed, attrs.lastModifiedTime().toMillis());
+                    }
+                }
+            }
+            if (total <= maxBytes) {
+                return;
+            }
+            List<Derived> oldestFirst = new ArrayList<>(sheets.values());
+            oldestFirst.sort(Comparator.comparingLong(d -> d.lastUsed));
+            for (Derived sheet : oldestFirst) {
+                if (total <= maxBytes) {
+                    break;
+                }
+                // 先删索引再删 XML：载入时两个都在才复用
+                sheet.files.sort(Comparator.comparing(f -> f.getFileName().toString().endsWith(".xml")));
+                for (Path file : sheet.files) {
+                    Files.deleteIfExists(file);
+                }
+                total -= sheet.bytes;
+            }
+        }
+    }
+
+    private static final class Derived {
+        private final List<Path> files = new ArrayList<>(2);
+        private long bytes;
+        private long lastUsed;
+    }
+
+    /**
+     * 派生文件名 storedName-sheetN.xml / .rowidx 对应的缓存键 storedName#N；建索引中的 .part 等其他文件返回 null
+     */
+    private static String keyOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        String suffix = dot < 0 ? "" : fileName.substring(dot);
+        if (!suffix.equals(".xml") && !suffix.equals(".rowidx")) {
+            return null;
+        }
+        String base = fileName.substring(0, dot);
+        int sheet = base.lastIndexOf("-sheet");
+        if (sheet <= 0 || sheet + 6 == base.length()
+                || !base.substring(sheet + 6).chars().allMatch(c -> c >= '0' && c <= '9')) {
+            return null;
+        }
+        return base.substring(0, sheet) + "#" + base.substring(sheet + 6);
+    }
+
+    private synchronized void put(String key, SheetPageIndex index) {
+        indexes.put(key, index);
+        while (indexes.size() > Math.max(1, cacheEntries)) {
+            indexes.remove(indexes.keySet().iterator().next());
+        }
+    }
+
+    private static String stampOf(FileMetadata meta) {
+        return meta.sha256() != null ? meta.sha256() : meta.size() + ":" + meta.modifiedAt();
+    }
+}
@@ -0,0 +1,137 @@
+package com.ewancle.service;
+
+import com.ewancle.model.FileMetadata;
+import com.ewancle.storage.TempFileManager;
+import com.ewancle.storage.UploadStore;
+import com.ewancle.xlsx.XlsEventReader;
+import com.ewancle.xlsx.XlsxSheetReader;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.WebApplicationException;
+import org.apache.poi.poifs.filesystem.FileMagic;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 流式读取已上传（/files/upload）工作簿的某个 sheet，不创建 POI Workbook：
+ * xlsx 走 {@link XlsxSheetReader}，xls 走 {@link XlsEventReader}（按内容判断），gzip 存储的先解压到临时文件。
+ * 行与 {@link XlsxSheetReader.ParsedRow} 相同，值为类型化的 String / Double / Boolean / LocalDateTime / 错误文本。
+ */
+@ApplicationScoped
+public class StoredWorkbooks {
+
+    @Inject
+    UploadStore uploadStore;
+
+    @Inject
+    TempFileManager tempFiles;
+
+    /**
+     * 打开一个 sheet 的行（阻塞，worker 线程上使用）；用完必须 close
+     *
+     * @throws WebApplicationException 404：文件不存在；400：不是可读的工作簿或 sheet 不存在
+     */
+    public SheetRowSource open(String storedName, int sheet) throws IOException {
+        String safe = Paths.get(storedName).getFileName().toString();
+        Path file = uploadStore.resolve(safe);
+        if (!Files.isRegularFile(file)) {
+            throw new WebApplicationException("文件不存在: " + safe, 404);
+        }
+        FileMetadata meta = uploadStore.metadata(safe);
+        TempFileManager.TempFile decoded = null;
+        try {
+            if (meta != null && meta.gzipped()) {
+                // POI / zip 需要随机访问，先解压到临时文件（计入临时目录配额）
+                decoded = tempFiles.allocateBlocking("stored-workbook", "-" + meta.originalName(), meta.size());
+                try (InputStream in = uploadStore.openDecoded(meta)) {
+                    Files.copy(in, decoded.path(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                file = decoded.path();
+            }
+            return open(file, sheet, decoded);
+        } catch (IOException | RuntimeException e) {
+            if (decoded != null) {
+                decoded.close();
+            }
+            if (e instanceof IOException) {
+                throw new BadRequestException("Not a readable workbook: " + safe, e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 打开本地工作簿文件（如上传的临时文件）的一个 sheet，按内容区分 xlsx / xls；用完必须 close
+     *
+     * @throws IOException         不是可读的工作簿
+     * @throws BadRequestException sheet 不存在
+     */
+    public static SheetRowSource openFile(Path file, int sheet) throws IOException {
+        return open(file, sheet, null);
+    }
+
+    private static SheetRowSource open(Path file, int sheet, TempFileManager.TempFile decoded) throws IOException {
+        return FileMagic.valueOf(file.toFile()) == FileMagic.OLE2
+                ? new SheetRowSource(XlsEventReader.open(file, sheet, false), null, decoded)
+                : openXlsx(file, sheet, decoded);
+    }
+
+    private static SheetRowSource openXlsx(Path file, int sheet, TempFileManager.TempFile decoded) throws IOException {
+        XlsxSheetReader reader = XlsxSheetReader.open(file);
+        try {
+            XlsxSheetReader.SheetInfo info;
+            try {
+                info = reader.select(List.of(String.valueOf(sheet))).get(0);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException(e.getMessage());
+            }
+            return new SheetRowSource(reader.rows(info), reader, decoded);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 一个 sheet 的行迭代器，close 时关闭底层文件并删除解压出来的临时文件
+     */
+    public static final class SheetRowSource implements Iterator<XlsxSheetReader.ParsedRow>, AutoCloseable {
+        private final Iterator<XlsxSheetReader.ParsedRow> rows;
+        private final AutoCloseable owner;
+        private final TempFileManager.TempFile decoded;
+
+        private SheetRowSource(Iterator<XlsxSheetReader.ParsedRow> rows, AutoCloseable owner,
+                               TempFileManager.TempFile decoded) {
+            this.rows = rows;
+            this.owner = owner;
+            this.decoded = decoded;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return rows.hasNext();
+        }
+
+        @Override
+        public XlsxSheetReader.ParsedRow next() {
+            return rows.next();
+        }
+
+        @Override
+        public void close() {
+            try { if (rows instanceof AutoCloseable closeable) closeable.close(); } catch (Exception ignore) {}
+            try { if (owner != null) owner.close(); } catch (Exception ignore) {}
+            if (decoded != null) {
+                decoded.close();
+            }
+        }
+    }
+}
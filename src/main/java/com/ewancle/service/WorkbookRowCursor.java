@@ -0,0 +1,92 @@
+package com.ewancle.service;
+
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellReference;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 按批次读取某个 sheet 的类型化行（Long/Double/String/Boolean/LocalDateTime/null）。
+ * 只在 worker 线程使用；用完必须 close() 释放 workbook。
+ */
+public class WorkbookRowCursor implements AutoCloseable {
+
+    private final Workbook workbook;
+    private final Sheet sheet;
+    private final Iterator<Row> rows;
+    private final int width;
+    private final CellDecoder decoder;
+
+    private WorkbookRowCursor(Workbook workbook, Sheet sheet) {
+        this.workbook = workbook;
+        this.sheet = sheet;
+        this.decoder = new CellDecoder(workbook);
+        int max = 0;
+        if (sheet != null) {
+            for (Row row : sheet) {
+                max = Math.max(max, row.getLastCellNum());
+            }
+        }
+        this.width = max;
+        this.rows = sheet != null ? sheet.iterator() : Collections.emptyIterator();
+    }
+
+    public static WorkbookRowCursor open(File file, int sheetIndex) throws IOException {
+        // 只读方式打开（xlsx 走 OPCPackage 文件模式，比 InputStream 少一次整体拷贝）
+        Workbook workbook = WorkbookFactory.create(file, null, true);
+        Sheet sheet = sheetIndex < workbook.getNumberOfSheets() ? workbook.getSheetAt(sheetIndex) : null;
+        return new WorkbookRowCursor(workbook, sheet);
+    }
+
+    /**
+     * sheet 的最大列数
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * 列名：header=true 时消费第一行作为列名，缺失的列用 A/B/C... 补齐
+     */
+    public List<String> columnNames(boolean header) {
+        List<String> names = new ArrayList<>(width);
+        Row first = header && rows.hasNext() ? rows.next() : null;
+        for (int i = 0; i < width; i++) {
+            Cell cell = first != null ? first.getCell(i, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL) : null;
+            Object v = cell != null ? decoder.value(cell) : null;
+            names.add(v != null ? v.toString() : CellReference.convertNumToColString(i));
+        }
+        return names;
+    }
+
+    /**
+     * 读取最多 max 行；返回空列表表示已读完
+     */
+    public List<Object[]> nextBatch(int max) {
+        List<Object[]> batch = new ArrayList<>(Math.min(max, 1024));
+        while (batch.size() < max && rows.hasNext()) {
+            Row row = rows.next();
+            Object[] values = new Object[Math.max(row.getLastCellNum(), 0)];
+            for (int i = 0; i < values.length; i++) {
+                Cell cell = row.getCell(i, Row.MissingCellPolicy.RETURN_BLANK_AS_NULL);
+                values[i] = cell != null ? decoder.value(cell) : null;
+            }
+            batch.add(values);
+        }
+        return batch;
+    }
+
+    public Sheet sheet() {
+        return sheet;
+    }
+
+    @Override
+    public void close() throws IOException {
+        workbook.close();
+    }
+}
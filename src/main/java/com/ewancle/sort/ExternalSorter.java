@@ -0,0 +1,310 @@
+package com.ewancle.sort;
+
+import com.ewancle.codec.RowBatchReader;
+import com.ewancle.codec.RowBatchWriter;
+import com.ewancle.storage.TempFileManager;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.core.buffer.Buffer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * 外部归并排序（数据量超过内存时的导出排序）：
+ *    - 输入按 run-rows 行一段在内存中排序，写成有序段（run）到临时文件，格式复用 RowBatchWriter 的二进制列式编码
+ *      （字典编码的部门之类重复列很紧凑）
+ *    - 全部输入只有一段时直接在内存中输出，不落盘
+ *    - 多段时用优先队列 k 路归并，段数超过 merge-fan-in 时先分批归并成更大的段
+ * 内存占用约为 2 × run-rows 行（排序中的一段 + 正在接收的一段）加上每段一个读缓冲区。
+ * 落盘后的值按 RowBatchWriter 的类型还原（整数为 Long，日期为 LocalDateTime），比较器需要兼容。
+ */
+@ApplicationScoped
+public class ExternalSorter {
+
+    private static final int BATCH_ROWS = 4096;
+    private static final int READ_CHUNK = 64 * 1024;
+    // 估算段文件大小（申请临时文件配额用）
+    private static final int BYTES_PER_ROW = 64;
+
+    @Inject
+    TempFileManager tempFiles;
+
+    @ConfigProperty(name = "app.sort.run-rows", defaultValue = "200000")
+    int runRows;
+
+    @ConfigProperty(name = "app.sort.merge-fan-in", defaultValue = "64")
+    int mergeFanIn;
+
+    /**
+     * 排序；columns 为列名（写入段文件的 schema），order 为行比较器（可用 {@link #by(int)} 组合）
+     */
+    public Multi<Object[]> sort(Multi<Object[]> rows, List<String> columns, Comparator<Object[]> order) {
+        return Multi.createFrom().deferred(() -> {
+            Runs runs = new Runs(columns, order);
+            return rows.group().intoLists().of(runRows)
+                    // 排序和写段文件都是阻塞操作，放到 worker 线程上顺序执行
+                    .emitOn(Infrastructure.getDefaultWorkerPool())
+                    .collect().in(() -> runs, Runs::add)
+                    .onItem().transformToMulti(Runs::merged)
+                    .onTermination().invoke(runs::close);
+        });
+    }
+
+    /**
+     * 按第 column 列的自然顺序比较，null 排在最后；数值统一按数值比较（Integer 和 Long、Double 可以互相比较）
+     */
+    public static Comparator<Object[]> by(int column) {
+        return (a, b) -> compareValues(column < a.length ? a[column] : null, column < b.length ? b[column] : null);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compareValues(Object x, Object y) {
+        if (x == null || y == null) {
+            return x == null ? (y == null ? 0 : 1) : -1;
+        }
+        if (x instanceof Number nx && y instanceof Number ny) {
+            if ((x instanceof Long || x instanceof Integer) && (y instanceof Long || y instanceof Integer)) {
+                return Long.compare(nx.longValue(), ny.longValue());
+            }
+            return Double.compare(nx.doubleValue(), ny.doubleValue());
+        }
+        if (x.getClass() == y.getClass() && x instanceof Comparable cx) {
+            return cx.compareTo(y);
+        }
+        return x.toString().compareTo(y.toString());
+    }
+
+    /**
+     * 一次排序的所有段：最后一段先留在内存里，只有后面还有数据时才落盘
+     */
+    private final class Runs {
+        private final List<String> columns;
+        private final Comparator<Object[]> order;
+        private final List<TempFileManager.TempFile> files = new ArrayList<>();
+        private List<Object[]> pending;
+        private MergeIterator merging;
+
+        Runs(List<String> columns, Comparator<Object[]> order) {
+            this.columns = columns;
+            this.order = order;
+        }
+
+        void add(List<Object[]> chunk) {
+            List<Object[]> sorted = new ArrayList<>(chunk);
+            sorted.sort(order);
+            if (pending != null) {
+                files.add(spill(pending.iterator(), (long) pending.size() * BYTES_PER_ROW));
+            }
+            pending = sorted;
+        }
+
+        Multi<Object[]> merged() {
+            if (pending == null) {
+                return Multi.createFrom().empty();
+            }
+            if (files.isEmpty()) {
+                return Multi.createFrom().iterable(pending);
+            }
+            // 已经有段落盘：最后一段也落盘，保证参与比较的值类型一致
+            return Multi.createFrom().<Object[]>iterable(() -> {
+                        files.add(spill(pending.iterator(), (long) pending.size() * BYTES_PER_ROW));
+                        pending = null;
+                        reduceRuns();
+                        merging = merge(files);
+                        return merging;
+                    })
+                    .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+        }
+
+        /**
+         * 段数超过 fan-in 时逐层归并：每层把相邻的 fan-in 段合并成一段（保持段的先后顺序，排序稳定），
+         * 直到剩余段数不超过 fan-in
+         */
+        private void reduceRuns() {
+            int fanIn = Math.max(2, mergeFanIn);
+            while (files.size() > fanIn) {
+                List<TempFileManager.TempFile> level = new ArrayList<>(files);
+                files.clear();
+                for (int from = 0; from < level.size(); from += fanIn) {
+                    List<TempFileManager.TempFile> batch = level.subList(from, Math.min(level.size(), from + fanIn));
+                    if (batch.size() == 1) {
+                        files.add(batch.get(0));
+                        continue;
+                    }
+                    long estimate = 0;
+                    for (TempFileManager.TempFile file : batch) {
+                        estimate += sizeOf(file);
+                    }
+                    MergeIterator it = merge(batch);
+                    try {
+                        files.add(spill(it, estimate));
+                    } finally {
+                        it.close();
+                        batch.forEach(TempFileManager.TempFile::close);
+                    }
+                }
+            }
+        }
+
+        private MergeIterator merge(List<TempFileManager.TempFile> runs) {
+            List<RunCursor> cursors = new ArrayList<>(runs.size());
+            for (TempFileManager.TempFile file : runs) {
+                cursors.add(new RunCursor(file, cursors.size()));
+            }
+            return new MergeIterator(cursors, order);
+        }
+
+        private TempFileManager.TempFile spill(Iterator<Object[]> rows, long expectedBytes) {
+            TempFileManager.TempFile file = tempFiles.allocateBlocking("sort-run", ".ewrb", expectedBytes);
+            RowBatchWriter writer = new RowBatchWriter(columns);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file.path()), READ_CHUNK)) {
+                write(out, writer.start());
+                List<Object[]> batch = new ArrayList<>(BATCH_ROWS);
+                while (rows.hasNext()) {
+                    batch.add(rows.next());
+                    if (batch.size() == BATCH_ROWS) {
+                        write(out, writer.writeBatch(batch));
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    write(out, writer.writeBatch(batch));
+                }
+                write(out, writer.end());
+                return file;
+            } catch (IOException | RuntimeException e) {
+                file.close();
+                throw e instanceof IOException io ? new UncheckedIOException(io) : (RuntimeException) e;
+            }
+        }
+
+        void close() {
+            pending = null;
+            if (merging != null) {
+                merging.close();
+            }
+            files.forEach(TempFileManager.TempFile::close);
+            files.clear();
+        }
+    }
+
+    private static void write(OutputStream out, Buffer buffer) throws IOException {
+        out.write(buffer.getBytes());
+    }
+
+    private static long sizeOf(TempFileManager.TempFile file) {
+        try {
+            return Files.size(file.path());
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 顺序读取一个段文件，每次解码一个分块
+     */
+    private static final class RunCursor implements AutoCloseable {
+        private final InputStream in;
+        private final int index;
+        private final RowBatchReader reader = new RowBatchReader();
+        private final ArrayDeque<Object[]> buffered = new ArrayDeque<>();
+        private Object[] head;
+
+        RunCursor(TempFileManager.TempFile file, int index) {
+            this.index = index;
+            try {
+                this.in = Files.newInputStream(file.path());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            advance();
+        }
+
+        Object[] head() {
+            return head;
+        }
+
+        void advance() {
+            try {
+                while (buffered.isEmpty() && !reader.isEnded()) {
+                    byte[] chunk = in.readNBytes(READ_CHUNK);
+                    if (chunk.length == 0) {
+                        throw new IOException("Truncated sort run");
+                    }
+                    buffered.addAll(reader.feed(Buffer.buffer(chunk)));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            head = buffered.poll();
+        }
+
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    private static final class MergeIterator implements Iterator<Object[]>, AutoCloseable {
+        private final List<RunCursor> cursors;
+        private final PriorityQueue<RunCursor> queue;
+
+        MergeIterator(List<RunCursor> cursors, Comparator<Object[]> order) {
+            this.cursors = cursors;
+            // 相等的行按段的先后输出，保持排序稳定
+            Comparator<RunCursor> byHead = (a, b) -> order.compare(a.head(), b.head());
+            this.queue = new PriorityQueue<>(Math.max(1, cursors.size()), byHead.thenComparingInt(c -> c.index));
+            for (RunCursor cursor : cursors) {
+                if (cursor.head() != null) {
+                    queue.add(cursor);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (queue.isEmpty()) {
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public Object[] next() {
+            RunCursor cursor = queue.poll();
+            if (cursor == null) {
+                throw new NoSuchElementException();
+            }
+            Object[] row = cursor.head();
+            cursor.advance();
+            if (cursor.head() != null) {
+                queue.add(cursor);
+            }
+            return row;
+        }
+
+        @Override
+        public void close() {
+            cursors.forEach(RunCursor::close);
+        }
+    }
+}
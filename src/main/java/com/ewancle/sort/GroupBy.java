@@ -0,0 +1,85 @@
+package com.ewancle.sort;
+
+import io.smallrye.mutiny.Multi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 在已按分组列排好序的行流上做分组汇总：每组结束后插入一行小计，内存只保留当前组的累计值
+ */
+public final class GroupBy {
+
+    private GroupBy() {
+    }
+
+    /**
+     * @param sorted     按 keyColumn 排好序的行
+     * @param keyColumn  分组列
+     * @param sumColumns 需要求和的数值列
+     * @param label      小计行分组列上显示的后缀，如 "小计" 显示为 "技术部 小计"
+     */
+    public static Multi<Object[]> subtotals(Multi<Object[]> sorted, int keyColumn, int[] sumColumns, String label) {
+        return Multi.createFrom().deferred(() -> {
+            Subtotal state = new Subtotal(keyColumn, sumColumns, label);
+            return sorted.onItem().transformToIterable(state::accept)
+                    .onCompletion().continueWith(state::finish);
+        });
+    }
+
+    private static final class Subtotal {
+        private final int keyColumn;
+        private final int[] sumColumns;
+        private final String label;
+        private Object key;
+        private boolean started;
+        private int width;
+        private final double[] sums;
+
+        Subtotal(int keyColumn, int[] sumColumns, String label) {
+            this.keyColumn = keyColumn;
+            this.sumColumns = sumColumns.clone();
+            this.label = label;
+            this.sums = new double[sumColumns.length];
+        }
+
+        List<Object[]> accept(Object[] row) {
+            Object rowKey = keyColumn < row.length ? row[keyColumn] : null;
+            List<Object[]> out = new ArrayList<>(2);
+            if (started && ExternalSorter.compareValues(key, rowKey) != 0) {
+                out.add(subtotalRow());
+            }
+            if (!started || ExternalSorter.compareValues(key, rowKey) != 0) {
+                key = rowKey;
+                started = true;
+                width = 0;
+                Arrays.fill(sums, 0);
+            }
+            width = Math.max(width, row.length);
+            for (int i = 0; i < sumColumns.length; i++) {
+                int c = sumColumns[i];
+                if (c < row.length && row[c] instanceof Number n) {
+                    sums[i] += n.doubleValue();
+                }
+            }
+            out.add(row);
+            return out;
+        }
+
+        List<Object[]> finish() {
+            return started ? List.<Object[]>of(subtotalRow()) : List.of();
+        }
+
+        private Object[] subtotalRow() {
+            Object[] total = new Object[Math.max(width, keyColumn + 1)];
+            total[keyColumn] = (key == null ? "" : key + " ") + label;
+            for (int i = 0; i < sumColumns.length; i++) {
+                if (sumColumns[i] < total.length) {
+                    total[sumColumns[i]] = sums[i];
+                }
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.ewancle.storage;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+
+/**
+ * 把事件循环上陆续收到的 Buffer 交给 worker 线程按 InputStream 阻塞读取（边上传边解析用）：
+ *    - 未读数据达到 highWater 字节时调用 pause，读到不足 highWater / 2 时调用 resume，内存占用有上限
+ *    - end() 之后读完剩余数据返回 -1；fail() 之后读取抛出 IOException
+ *    - close() 之后收到的数据直接丢弃并保持 resume（读取方提前结束时，上传的剩余部分照常收完）
+ * pause / resume 回调负责切换到数据源所在的线程。
+ */
+public final class BufferPipeInputStream extends InputStream {
+
+    private final ArrayDeque<Buffer> chunks = new ArrayDeque<>();
+    private final long highWater;
+    private final Runnable pause;
+    private final Runnable resume;
+    private long queued;
+    private boolean paused;
+    private boolean ended;
+    private boolean closed;
+    private Throwable failure;
+    private Buffer current;
+    private int position;
+
+    public BufferPipeInputStream(long highWater, Runnable pause, Runnable resume) {
+        this.highWater = Math.max(1, highWater);
+        this.pause = pause;
+        this.resume = resume;
+    }
+
+    /**
+     * 写入一块数据（数据源线程调用）
+     */
+    public void write(Buffer chunk) {
+        boolean pauseNow = false;
+        synchronized (this) {
+            if (closed || ended || chunk.length() == 0) {
+                return;
+            }
+            chunks.add(chunk);
+            queued += chunk.length();
+            if (!paused && queued >= highWater) {
+                paused = pauseNow = true;
+            }
+            notifyAll();
+        }
+        if (pauseNow) {
+            pause.run();
+        }
+    }
+
+    public synchronized void end() {
+        ended = true;
+        notifyAll();
+    }
+
+    public synchronized void fail(Throwable cause) {
+        if (!ended && failure == null) {
+            failure = cause;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n;
+        boolean resumeNow = false;
+        synchronized (this) {
+            while (current == null || position == current.length()) {
+                if (closed) {
+                    throw new IOException("Stream closed");
+                }
+                Buffer next = chunks.poll();
+                if (next != null) {
+                    current = next;
+                    position = 0;
+                    continue;
+                }
+                if (failure != null) {
+                    throw failure instanceof IOException io ? io : new IOException(failure);
+                }
+                if (ended) {
+                    return -1;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for upload data");
+                }
+            }
+            n = Math.min(len, current.length() - position);
+            current.getBytes(position, position + n, b, off);
+            position += n;
+            queued -= n;
+            if (paused && queued < highWater / 2) {
+                paused = false;
+                resumeNow = true;
+            }
+        }
+        if (resumeNow) {
+            resume.run();
+        }
+        return n;
+    }
+
+    @Override
+    public synchronized int available() {
+        return (int) Math.min(Integer.MAX_VALUE, queued);
+    }
+
+    /**
+     * 丢弃未读数据，之后写入的数据也直接丢弃
+     */
+    @Override
+    public void close() {
+        boolean resumeNow;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            chunks.clear();
+            current = null;
+            queued = 0;
+            resumeNow = paused;
+            paused = false;
+            notifyAll();
+        }
+        if (resumeNow) {
+            resume.run();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.ewancle.storage;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 按 MIME / 扩展名判断内容是否已经压缩过（再压缩只浪费 CPU）
+ */
+public final class ContentTypes {
+
+    // OOXML（xlsx/docx/pptx）、jar 本身就是 zip；pdf 的内容流一般已 Flate 压缩
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "zst", "jar", "war",
+            "xlsx", "xlsm", "docx", "pptx", "odt", "ods", "epub", "pdf",
+            "jpg", "jpeg", "png", "gif", "webp", "heic", "avif",
+            "mp3", "aac", "ogg", "flac", "m4a", "mp4", "m4v", "mov", "mkv", "webm", "avi");
+
+    private ContentTypes() {
+    }
+
+    public static boolean isAlreadyCompressed(String mimeType, String fileName) {
+        String ext = extension(fileName);
+        if (COMPRESSED_EXTENSIONS.contains(ext)) {
+            return true;
+        }
+        if (mimeType == null) {
+            return false;
+        }
+        String mime = mimeType.toLowerCase(Locale.ROOT);
+        if (mime.startsWith("image/")) {
+            // svg 是文本，bmp/tiff 通常未压缩
+            return !(mime.contains("svg") || mime.contains("bmp") || mime.contains("tiff"));
+        }
+        return mime.startsWith("video/") || mime.startsWith("audio/")
+                || mime.equals("application/pdf") || mime.equals("application/zip")
+                || mime.equals("application/gzip") || mime.equals("application/x-7z-compressed")
+                || mime.startsWith("application/vnd.openxmlformats-officedocument.");
+    }
+
+    /**
+     * 文本类内容（CSV、日志、JSON、XML 等），通常能压缩数倍，不需要试压缩
+     */
+    public static boolean isText(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        String mime = mimeType.toLowerCase(Locale.ROOT);
+        return mime.startsWith("text/") || mime.endsWith("+xml") || mime.endsWith("+json")
+                || mime.equals("application/json") || mime.equals("application/xml")
+                || mime.equals("application/javascript") || mime.equals("application/x-ndjson")
+                || mime.equals("application/sql") || mime.equals("application/yaml")
+                || mime.equals("image/svg+xml");
+    }
+
+    static String extension(String fileName) {
+        if (fileName == null) {
+            return "";
+        }
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,82 @@
+package com.ewancle.storage;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.mutiny.core.buffer.Buffer;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * gzip 流式解压：上游每来一块就解出一块，背压由上游（AsyncFile / 缓存切片）传递，不整体读入内存。
+ * 只处理 UploadStore 写出的格式（单个 member、10 字节固定头、无 FEXTRA/FNAME 等可选字段）。
+ */
+public final class GzipDecoder {
+
+    private static final int HEADER_SIZE = 10;
+
+    private final Inflater inflater = new Inflater(true);
+    private final byte[] out = new byte[64 * 1024];
+    private final byte[] header = new byte[HEADER_SIZE];
+    private int headerRead;
+    private boolean ended;
+
+    private GzipDecoder() {
+    }
+
+    public static Multi<Buffer> decode(Multi<Buffer> gzip) {
+        return Multi.createFrom().deferred(() -> {
+            GzipDecoder decoder = new GzipDecoder();
+            Multi<Buffer> data = gzip.emitOn(Infrastructure.getDefaultWorkerPool())
+                    .map(decoder::feed)
+                    .filter(buffer -> buffer.length() > 0);
+            // 上游结束时 deflate 流还没结束：文件被截断，不能当作完整内容发出
+            Multi<Buffer> check = Multi.createFrom().deferred(() -> decoder.finished()
+                    ? Multi.createFrom().empty()
+                    : Multi.createFrom().failure(new IllegalStateException("Truncated gzip data")));
+            return Multi.createBy().concatenating().streams(data, check)
+                    .onTermination().invoke(decoder::end);
+        });
+    }
+
+    private synchronized Buffer feed(Buffer chunk) {
+        byte[] input = chunk.getBytes();
+        int offset = 0;
+        if (headerRead < HEADER_SIZE) {
+            int n = Math.min(HEADER_SIZE - headerRead, input.length);
+            System.arraycopy(input, 0, header, headerRead, n);
+            headerRead += n;
+            offset = n;
+            if (headerRead == HEADER_SIZE
+                    && ((header[0] & 0xFF) != 0x1f || (header[1] & 0xFF) != 0x8b || header[2] != 8 || header[3] != 0)) {
+                throw new IllegalStateException("Unsupported gzip header");
+            }
+        }
+        Buffer result = Buffer.buffer();
+        // 解压完成后剩下的是 8 字节 trailer（CRC32 + 长度），忽略
+        if (offset >= input.length || inflater.finished()) {
+            return result;
+        }
+        inflater.setInput(input, offset, input.length - offset);
+        try {
+            while (!inflater.finished() && !inflater.needsInput()) {
+                int n = inflater.inflate(out);
+                result.appendBytes(out, 0, n);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted gzip data", e);
+        }
+        return result;
+    }
+
+    private synchronized boolean finished() {
+        return inflater.finished();
+    }
+
+    private synchronized void end() {
+        if (!ended) {
+            ended = true;
+            inflater.end();
+        }
+    }
+}
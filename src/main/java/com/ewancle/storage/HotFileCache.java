@@ -0,0 +1,280 @@
+package com.ewancle.storage;
+
+import com.ewancle.model.FileMetadata;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热点下载文件的堆外缓存（按字节限额），淘汰策略近似 W-TinyLFU：
+ *    - 计数草图（count-min，4 位饱和计数，周期性减半老化）估计每个文件的访问频率
+ *    - 新文件先进小窗口 LRU（max-bytes 的 1%），窗口溢出的候选只有比主区 probation 段的淘汰对象更热才能进入主区；
+ *      比整个窗口还大的文件放进窗口后马上溢出，直接作为候选参与比较
+ *    - 主区为分段 LRU：probation 命中后晋升到 protected（约 80%）
+ *    - 文件内容放在 direct ByteBuffer，命中时按 64KB 一块复制输出，不打开文件，缓存本身不占堆
+ *    - 只有第二次及以后的未命中才会在 worker 线程加载进缓存，避免一次性访问污染缓存
+ * 缓存的是磁盘上的字节（gzip 存储的文件缓存压缩后的内容，按压缩后大小计费）。
+ * 元数据的 modifiedAt 变化（覆盖写）或显式 invalidate 时条目失效。
+ */
+@ApplicationScoped
+public class HotFileCache {
+
+    @ConfigProperty(name = "app.hot-cache.max-bytes", defaultValue = "67108864")
+    long maxBytes;
+
+    @ConfigProperty(name = "app.hot-cache.max-entry-bytes", defaultValue = "4194304")
+    long maxEntryBytes;
+
+    private final FrequencySketch sketch = new FrequencySketch(1 << 16);
+    // 三个段都按访问顺序排列，迭代器第一个即 LRU
+    private final LinkedHashMap<String, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private long windowBytes;
+    private long probationBytes;
+    private long protectedBytes;
+    private final Set<String> loading = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    private record Entry(String key, ByteBuffer data, long modifiedAt) {
+        long size() {
+            return data.capacity();
+        }
+    }
+
+    public record Stats(long hits, long misses, double hitRate, long loads, long evictions, long rejections,
+                        long entries, long usedBytes, long maxBytes) {}
+
+    /**
+     * 命中返回只读的 ByteBuffer 视图（每次调用独立的 position），未命中返回 null。
+     * 未命中且文件足够热时在后台加载。
+     */
+    public ByteBuffer get(FileMetadata meta, Path path) {
+        String key = meta.storedName();
+        Entry entry;
+        synchronized (this) {
+            sketch.increment(key);
+            entry = lookup(key);
+            if (entry != null && entry.modifiedAt() != meta.modifiedAt()) {
+                remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            hits.increment();
+            return entry.data().duplicate();
+        }
+        misses.increment();
+        if (meta.storedBytes() <= maxEntryBytes && meta.storedBytes() > 0 && sketch.frequency(key) >= 2 && loading.add(key)) {
+            Infrastructure.getDefaultExecutor().execute(() -> {
+                try {
+                    load(meta, path);
+                } finally {
+                    loading.remove(key);
+                }
+            });
+        }
+        return null;
+    }
+
+    public synchronized void invalidate(String storedName) {
+        remove(storedName);
+    }
+
+    public synchronized Stats stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        return new Stats(h, m, h + m == 0 ? 0 : (double) h / (h + m), loads.sum(), evictions.sum(), rejections.sum(),
+                window.size() + probation.size() + protectedSegment.size(),
+                windowBytes + probationBytes + protectedBytes, maxBytes);
+    }
+
+    private void load(FileMetadata meta, Path path) {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size != meta.storedBytes() || size > maxEntryBytes) {
+                return;
+            }
+            data = ByteBuffer.allocateDirect((int) size);
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+                // 读满为止
+            }
+            data.flip();
+        } catch (IOException e) {
+            return;
+        }
+        loads.increment();
+        synchronized (this) {
+            remove(meta.storedName());
+            admit(new Entry(meta.storedName(), data.asReadOnlyBuffer(), meta.modifiedAt()));
+        }
+    }
+
+    private Entry lookup(String key) {
+        Entry e = window.get(key);
+        if (e != null) {
+            return e;
+        }
+        e = protectedSegment.get(key);
+        if (e != null) {
+            return e;
+        }
+        e = probation.remove(key);
+        if (e != null) {
+            // probation 命中：晋升到 protected，protected 超额时把它的 LRU 降回 probation
+            probationBytes -= e.size();
+            protectedSegment.put(key, e);
+            protectedBytes += e.size();
+            long protectedMax = mainMax() * 8 / 10;
+            while (protectedBytes > protectedMax && protectedSegment.size() > 1) {
+                Entry demoted = pollFirst(protectedSegment);
+                protectedBytes -= demoted.size();
+                probation.put(demoted.key(), demoted);
+                probationBytes += demoted.size();
+            }
+        }
+        return e;
+    }
+
+    private void admit(Entry entry) {
+        window.put(entry.key(), entry);
+        windowBytes += entry.size();
+        while (windowBytes > windowMax() && !window.isEmpty()) {
+            Entry candidate = pollFirst(window);
+            windowBytes -= candidate.size();
+            admitToMain(candidate);
+        }
+    }
+
+    private void admitToMain(Entry candidate) {
+        int candidateFreq = sketch.frequency(candidate.key());
+        while (probationBytes + protectedBytes + candidate.size() > mainMax()) {
+            LinkedHashMap<String, Entry> segment = !probation.isEmpty() ? probation : protectedSegment;
+            if (segment.isEmpty()) {
+                break;
+            }
+            Entry victim = segment.values().iterator().next();
+            if (sketch.frequency(victim.key()) >= candidateFreq) {
+                rejections.increment();
+                return;
+            }
+            segment.remove(victim.key());
+            if (segment == probation) {
+                probationBytes -= victim.size();
+            } else {
+                protectedBytes -= victim.size();
+            }
+            evictions.increment();
+        }
+        probation.put(candidate.key(), candidate);
+        probationBytes += candidate.size();
+    }
+
+    private void remove(String key) {
+        Entry e;
+        if ((e = window.remove(key)) != null) {
+            windowBytes -= e.size();
+        } else if ((e = probation.remove(key)) != null) {
+            probationBytes -= e.size();
+        } else if ((e = protectedSegment.remove(key)) != null) {
+            protectedBytes -= e.size();
+        }
+    }
+
+    private long windowMax() {
+        return maxBytes / 100;
+    }
+
+    private long mainMax() {
+        return maxBytes - windowMax();
+    }
+
+    private static Entry pollFirst(LinkedHashMap<String, Entry> segment) {
+        Map.Entry<String, Entry> first = segment.entrySet().iterator().next();
+        segment.remove(first.getKey());
+        return first.getValue();
+    }
+
+    /**
+     * count-min 草图：4 组哈希，每个计数器 4 位（上限 15），累计增量次数达到宽度的 10/16 时全部减半
+     * （每次增量加 4 个计数器，老化前平均每个计数器约 2.5，不会在老化前整体饱和）
+     */
+    static final class FrequencySketch {
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int width) {
+            // 每个 long 放 16 个 4 位计数器
+            this.table = new long[width / 16];
+            this.mask = width - 1;
+            this.sampleSize = width / 16 * 10;
+        }
+
+        int frequency(String key) {
+            int h = spread(key.hashCode());
+            int min = 15;
+            for (int i = 0; i < 4; i++) {
+                min = Math.min(min, counter(index(h, i)));
+            }
+            return min;
+        }
+
+        void increment(String key) {
+            int h = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int idx = index(h, i);
+                if (counter(idx) < 15) {
+                    table[idx >>> 4] += 1L << ((idx & 15) << 2);
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        private int counter(int idx) {
+            return (int) ((table[idx >>> 4] >>> ((idx & 15) << 2)) & 0xF);
+        }
+
+        private int index(int h, int i) {
+            int seeded = (h + i * 0x9E3779B9) * 0x85EBCA6B;
+            return (seeded ^ (seeded >>> 16)) & mask;
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                // 每个 4 位计数器右移 1 位（清掉跨计数器借位）
+                table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+            }
+            additions /= 2;
+        }
+
+        private static int spread(int h) {
+            h ^= h >>> 17;
+            h *= 0xED5AD4BB;
+            h ^= h >>> 11;
+            return h;
+        }
+    }
+}
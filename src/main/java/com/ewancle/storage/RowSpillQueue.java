@@ -0,0 +1,296 @@
+package com.ewancle.storage;
+
+import com.ewancle.codec.RowBatchReader;
+import com.ewancle.codec.RowBatchWriter;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.core.buffer.Buffer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 生产者（解析线程）和慢消费者（HTTP 响应）之间的行队列，内存有上限，超出部分写到磁盘段文件：
+ *    - 队列由三段组成：head（内存，最先输出）→ 若干段文件 → tail（内存，正在攒的下一段）
+ *    - 没有溢写时行直接进 head；head 满 memory-rows 行后新行进 tail，tail 攒满 segment-rows 行写成一个段文件
+ *    - 消费者读完 head 后按顺序整段读回段文件（读完即删），段文件都读完再接上 tail，保持行顺序
+ *    - offer 从不阻塞，解析可以全速完成并尽早释放 workbook 和线程；内存中最多约 memory-rows + 2 × segment-rows 行
+ * 段文件沿用 {@link RowBatchWriter} 的二进制列式编码（每段一个独立的流，第 0 列记录原始行宽），
+ * 因此值类型限于 String / 整数 / 浮点数 / 日期时间，其它类型按字符串保存。
+ * 单生产者、单消费者。
+ */
+public final class RowSpillQueue implements AutoCloseable {
+
+    private static final int WIDTH_COLUMN = 1;
+    // 估算段文件大小（申请临时文件配额用）
+    private static final int BYTES_PER_ROW = 64;
+
+    private final TempFileManager tempFiles;
+    private final int memoryRows;
+    private final int segmentRows;
+
+    private final ArrayDeque<Object[]> head = new ArrayDeque<>();
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private List<Object[]> tail = new ArrayList<>();
+    // 不在 head 里的行数（段文件 + 正在读回的段 + tail），大于 0 时新行不能直接进 head
+    private long spilledRows;
+    private boolean completed;
+    private boolean closed;
+    private Throwable failure;
+    private CompletableFuture<Void> waiter;
+
+    private static final class Segment {
+        private TempFileManager.TempFile file;
+        private int rows;
+        private boolean written;
+        private IOException error;
+    }
+
+    public RowSpillQueue(TempFileManager tempFiles, int memoryRows, int segmentRows) {
+        this.tempFiles = tempFiles;
+        this.memoryRows = Math.max(1, memoryRows);
+        this.segmentRows = Math.max(1, segmentRows);
+    }
+
+    /**
+     * 追加一行（生产者线程调用，可能写段文件，不要在事件循环上调用）
+     *
+     * @return false 表示消费者已经取消，生产者应停止
+     */
+    public boolean offer(Object[] row) {
+        Segment segment = null;
+        List<Object[]> full = null;
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            if (spilledRows == 0 && head.size() < memoryRows) {
+                head.add(row);
+            } else {
+                tail.add(row);
+                spilledRows++;
+                if (tail.size() >= segmentRows) {
+                    // 先占好段的位置再在锁外写文件，消费者读到未写完的段时等待
+                    full = tail;
+                    tail = new ArrayList<>(segmentRows);
+                    segment = new Segment();
+                    segment.rows = full.size();
+                    segments.add(segment);
+                }
+            }
+        }
+        if (segment != null) {
+            write(segment, full);
+        }
+        signal();
+        return true;
+    }
+
+    public void complete() {
+        synchronized (this) {
+            completed = true;
+        }
+        signal();
+    }
+
+    public void fail(Throwable cause) {
+        synchronized (this) {
+            if (failure == null) {
+                failure = cause;
+            }
+        }
+        signal();
+    }
+
+    /**
+     * 消费端：按下游的请求量逐批取出（段文件在 worker 线程上读回），生产者完成且取空后结束；
+     * 流终止（完成/失败/取消）时关闭队列并删除所有段文件
+     */
+    public Multi<Object[]> drain(int batchSize) {
+        return Multi.createBy().repeating().uni(() -> poll(batchSize))
+                .until(List::isEmpty)
+                .onItem().<Object[]>disjoint()
+                .onTermination().invoke(this::close);
+    }
+
+    /**
+     * 取出最多 max 行；暂时没有数据时等生产者；返回空列表表示已全部取完
+     */
+    private Uni<List<Object[]>> poll(int max) {
+        return Uni.createFrom().deferred(() -> {
+            CompletableFuture<Void> wait;
+            synchronized (this) {
+                if (failure != null) {
+                    return Uni.createFrom().failure(failure);
+                }
+                if (!head.isEmpty()) {
+                    return Uni.createFrom().item(take(max));
+                }
+                if (spilledRows > 0) {
+                    return Uni.createFrom().item(() -> load(max))
+                            .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+                }
+                if (completed || closed) {
+                    return Uni.createFrom().item(List.<Object[]>of());
+                }
+                wait = waiter = new CompletableFuture<>();
+            }
+            return Uni.createFrom().completionStage(wait).chain(() -> poll(max));
+        });
+    }
+
+    private synchronized List<Object[]> take(int max) {
+        List<Object[]> batch = new ArrayList<>(Math.min(max, head.size()));
+        while (batch.size() < max && !head.isEmpty()) {
+            batch.add(head.poll());
+        }
+        return batch;
+    }
+
+    /**
+     * head 已取空：读回下一个段文件，没有段文件时接上 tail
+     */
+    private List<Object[]> load(int max) {
+        Segment segment;
+        synchronized (this) {
+            segment = segments.poll();
+            if (segment == null) {
+                head.addAll(tail);
+                spilledRows -= tail.size();
+                tail = new ArrayList<>();
+                return take(max);
+            }
+        }
+        List<Object[]> rows = read(segment);
+        synchronized (this) {
+            // spilledRows > 0 期间生产者不会往 head 里放行，head 此时为空
+            head.addAll(rows);
+            spilledRows -= segment.rows;
+            return take(max);
+        }
+    }
+
+    private void write(Segment segment, List<Object[]> rows) {
+        TempFileManager.TempFile file = null;
+        IOException error = null;
+        try {
+            file = tempFiles.allocateBlocking("spill-queue", ".ewrb", (long) rows.size() * BYTES_PER_ROW);
+            int width = 0;
+            for (Object[] row : rows) {
+                width = Math.max(width, row.length);
+            }
+            List<String> columns = new ArrayList<>(width + WIDTH_COLUMN);
+            columns.add("width");
+            for (int c = 0; c < width; c++) {
+                columns.add("c" + c);
+            }
+            List<Object[]> encoded = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                Object[] values = new Object[row.length + WIDTH_COLUMN];
+                values[0] = row.length;
+                System.arraycopy(row, 0, values, WIDTH_COLUMN, row.length);
+                encoded.add(values);
+            }
+            RowBatchWriter writer = new RowBatchWriter(columns);
+            try (OutputStream out = Files.newOutputStream(file.path())) {
+                out.write(writer.start().getBytes());
+                out.write(writer.writeBatch(encoded).getBytes());
+                out.write(writer.end().getBytes());
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (RuntimeException e) {
+            error = new IOException("Failed to spill rows", e);
+        }
+        boolean discard;
+        synchronized (this) {
+            segment.file = file;
+            segment.error = error;
+            segment.written = true;
+            discard = closed;
+            notifyAll();
+        }
+        if (discard && file != null) {
+            file.close();
+        }
+    }
+
+    private List<Object[]> read(Segment segment) {
+        synchronized (this) {
+            while (!segment.written) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for spill segment"));
+                }
+            }
+        }
+        try (TempFileManager.TempFile file = segment.file) {
+            if (segment.error != null) {
+                throw new UncheckedIOException(segment.error);
+            }
+            RowBatchReader reader = new RowBatchReader();
+            List<Object[]> decoded = reader.feed(Buffer.buffer(Files.readAllBytes(file.path())));
+            List<Object[]> rows = new ArrayList<>(decoded.size());
+            for (Object[] values : decoded) {
+                int width = ((Number) values[0]).intValue();
+                rows.add(Arrays.copyOfRange(values, WIDTH_COLUMN, WIDTH_COLUMN + width));
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void signal() {
+        CompletableFuture<Void> wake;
+        synchronized (this) {
+            wake = waiter;
+            waiter = null;
+        }
+        if (wake != null) {
+            wake.complete(null);
+        }
+    }
+
+    /**
+     * 丢弃剩余的行并删除段文件；之后 offer 返回 false
+     */
+    @Override
+    public void close() {
+        List<Segment> pending;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            head.clear();
+            tail = new ArrayList<>();
+            spilledRows = 0;
+            pending = new ArrayList<>(segments);
+            segments.clear();
+        }
+        for (Segment segment : pending) {
+            // 还没写完的段由写入方在写完后删除
+            synchronized (this) {
+                if (!segment.written) {
+                    continue;
+                }
+            }
+            if (segment.file != null) {
+                segment.file.close();
+            }
+        }
+        signal();
+    }
+}
@@ -0,0 +1,449 @@
+package com.ewancle.storage;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+import io.vertx.mutiny.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.ServiceUnavailableException;
+import org.apache.poi.util.DefaultTempFileCreationStrategy;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 临时文件统一管理：
+ *    - 每个临时文件登记归属（owner，如 "download-generated"）、创建时间和预留字节数
+ *    - 磁盘配额：预留超过配额时请求排队等待其他文件释放，等待超时返回 503（背压，而不是把磁盘写满）
+ *    - 预计很小的临时文件可放到 tmpfs（app.temp.small-dir，如 /dev/shm），单独计配额
+ *    - 后台定期清理：
+ *        - 登记文件只有在持有方不再引用 TempFile（忘记 close 或只把路径交给了调用方）且超过 max-age 后才删除，
+ *          仍被持有的文件（长时间导出等）不论多久都不会被删
+ *        - 临时目录里未登记的过期文件、进程启动前遗留的文件
+ *        - Quarkus 的 multipart 上传目录：请求结束时不删除上传文件（由业务代码删除），客户端断开、参数校验失败等
+ *          没走到删除的遗留文件与临时目录相同，超过 max-age 或进程启动前的删除
+ *        - POI（SXSSF 等，临时目录指向本目录下的 poi/）的目录：文件归 POI 管理，本进程运行期间创建的可能仍在使用，
+ *          只删除进程启动前遗留的
+ */
+@ApplicationScoped
+public class TempFileManager {
+
+    private static final Logger LOG = Logger.getLogger(TempFileManager.class);
+
+    @Inject
+    Vertx vertx;
+
+    @ConfigProperty(name = "app.temp.dir", defaultValue = "${java.io.tmpdir}/ewancle-temp")
+    String dir;
+
+    @ConfigProperty(name = "app.temp.quota-bytes", defaultValue = "2147483648")
+    long quotaBytes;
+
+    @ConfigProperty(name = "app.temp.small-dir")
+    Optional<String> smallDir;
+
+    @ConfigProperty(name = "app.temp.small-max-bytes", defaultValue = "4194304")
+    long smallMaxBytes;
+
+    @ConfigProperty(name = "app.temp.small-quota-bytes", defaultValue = "268435456")
+    long smallQuotaBytes;
+
+    @ConfigProperty(name = "app.temp.max-age", defaultValue = "30M")
+    Duration maxAge;
+
+    @ConfigProperty(name = "app.temp.reap-interval", defaultValue = "60S")
+    Duration reapInterval;
+
+    @ConfigProperty(name = "app.temp.acquire-timeout", defaultValue = "5S")
+    Duration acquireTimeout;
+
+    @ConfigProperty(name = "quarkus.http.body.uploads-directory", defaultValue = "${java.io.tmpdir}/quarkus-http-body-uploads")
+    String uploadsDirectory;
+
+    private Area disk;
+    private Area small;
+    private Path poiDir;
+    private long timerId = -1;
+    private final long startedAt = System.currentTimeMillis();
+    private final Map<Path, Lease> live = new ConcurrentHashMap<>();
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder reaped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile long untrackedBytes;
+
+    public record Stats(long liveFiles, long reservedBytes, long quotaBytes, long smallReservedBytes,
+                        long smallQuotaBytes, long untrackedBytes, int waiting, long created, long released,
+                        long reaped, long rejected, Map<String, Long> bytesByOwner) {}
+
+    /**
+     * 登记的临时文件；close() 删除文件并归还配额（可重复调用）。
+     * 使用期间要一直持有这个对象（不只是 path()），清理任务据此判断文件是否仍在使用
+     */
+    public final class TempFile implements AutoCloseable {
+        private final Lease lease;
+
+        private TempFile(Lease lease) {
+            this.lease = lease;
+        }
+
+        public Path path() {
+            return lease.path;
+        }
+
+        public String owner() {
+            return lease.owner;
+        }
+
+        @Override
+        public void close() {
+            lease.release();
+        }
+    }
+
+    /**
+     * 登记信息，由 live 持有；只弱引用 TempFile，持有方丢掉 TempFile 后可以被清理任务发现
+     */
+    private final class Lease {
+        private final Path path;
+        private final String owner;
+        private final Area area;
+        private final long createdAt = System.currentTimeMillis();
+        private WeakReference<TempFile> handle;
+        private long reserved;
+        private boolean closed;
+
+        private Lease(Path path, String owner, Area area, long reserved) {
+            this.path = path;
+            this.owner = owner;
+            this.area = area;
+            this.reserved = reserved;
+        }
+
+        boolean inUse() {
+            return handle.get() != null;
+        }
+
+        void release() {
+            long toRelease;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                toRelease = reserved;
+            }
+            live.remove(path);
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                LOG.warnf("Failed to delete temp file %s: %s", path, e.getMessage());
+            }
+            released.increment();
+            area.release(toRelease);
+        }
+
+        /**
+         * 文件实际写得比预留的多时补记差额（不等待，只影响后续申请）
+         */
+        synchronized void adjustToActualSize() {
+            if (closed) {
+                return;
+            }
+            try {
+                long actual = Files.size(path);
+                if (actual > reserved) {
+                    area.forceReserve(actual - reserved);
+                    reserved = actual;
+                }
+            } catch (IOException ignore) {
+                // 文件可能还没创建或已被删除
+            }
+        }
+
+        synchronized long reserved() {
+            return reserved;
+        }
+    }
+
+    void onStart(@Observes StartupEvent event) throws IOException {
+        Path base = Paths.get(dir);
+        Files.createDirectories(base);
+        disk = new Area(base, quotaBytes);
+        if (smallDir.isPresent() && !smallDir.get().isBlank()) {
+            Path smallBase = Paths.get(smallDir.get());
+            Files.createDirectories(smallBase);
+            small = new Area(smallBase, smallQuotaBytes);
+        }
+        // SXSSF 的 sheet 溢写文件等 POI 临时文件统一放到这里，便于统计和清理
+        poiDir = base.resolve("poi");
+        Files.createDirectories(poiDir);
+        org.apache.poi.util.TempFile.setTempFileCreationStrategy(new DefaultTempFileCreationStrategy(poiDir.toFile()));
+        timerId = vertx.setPeriodic(reapInterval.toMillis(), id ->
+                vertx.executeBlocking(Uni.createFrom().item(() -> {
+                    reap();
+                    return null;
+                })).subscribe().with(ignore -> {}, e -> LOG.warn("Temp file reaper failed", e)));
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (timerId >= 0) {
+            vertx.cancelTimer(timerId);
+        }
+        for (Lease lease : new ArrayList<>(live.values())) {
+            lease.release();
+        }
+    }
+
+    /**
+     * 申请一个临时文件（文件本身不创建，只分配路径并预留配额）。
+     * 配额不足时排队等待，超过 acquire-timeout 失败为 503。
+     */
+    public Uni<TempFile> allocate(String owner, String suffix, long expectedBytes) {
+        long bytes = Math.max(expectedBytes, 0);
+        Area area = small != null && bytes <= smallMaxBytes ? small : disk;
+        return area.reserve(bytes)
+                .map(ignore -> register(owner, suffix, area, bytes));
+    }
+
+    /**
+     * 阻塞版本，给已经在 worker 线程上的生成逻辑使用
+     */
+    public TempFile allocateBlocking(String owner, String suffix, long expectedBytes) {
+        return allocate(owner, suffix, expectedBytes)
+                .await().atMost(acquireTimeout.plusSeconds(1));
+    }
+
+    public Stats stats() {
+        Map<String, Long> byOwner = new TreeMap<>();
+        for (Lease lease : live.values()) {
+            byOwner.merge(lease.owner, lease.reserved(), Long::sum);
+        }
+        return new Stats(live.size(), disk.reserved(), disk.quota, small != null ? small.reserved() : 0,
+                small != null ? small.quota : 0, untrackedBytes, disk.waiting() + (small != null ? small.waiting() : 0),
+                created.sum(), released.sum(), reaped.sum(), rejected.sum(), byOwner);
+    }
+
+    private TempFile register(String owner, String suffix, Area area, long bytes) {
+        Path path = area.base.resolve(owner + "-" + UUID.randomUUID() + (suffix != null ? suffix : ".tmp"));
+        Lease lease = new Lease(path, owner, area, bytes);
+        TempFile file = new TempFile(lease);
+        lease.handle = new WeakReference<>(file);
+        live.put(path, lease);
+        created.increment();
+        return file;
+    }
+
+    /**
+     * 清理一轮：持有方已不再引用的过期登记文件、临时目录和上传临时目录里未登记的过期文件、POI 目录里进程启动前的文件
+     */
+    void reap() {
+        long cutoff = System.currentTimeMillis() - maxAge.toMillis();
+        for (Lease lease : new ArrayList<>(live.values())) {
+            if (lease.createdAt < cutoff && !lease.inUse()) {
+                LOG.debugf("Reaping abandoned temp file %s (owner %s)", lease.path, lease.owner);
+                lease.release();
+                reaped.increment();
+            } else {
+                lease.adjustToActualSize();
+            }
+        }
+        long untracked = 0;
+        untracked += sweep(disk.base, cutoff);
+        if (small != null) {
+            untracked += sweep(small.base, cutoff);
+        }
+        untracked += sweep(poiDir, startedAt);
+        untracked += sweep(Paths.get(uploadsDirectory), cutoff);
+        untrackedBytes = untracked;
+    }
+
+    /**
+     * 删除目录下未登记、修改时间早于 cutoff 或本进程启动的文件，返回剩余未登记文件的字节数
+     */
+    private long sweep(Path base, long cutoff) {
+        if (!Files.isDirectory(base)) {
+            return 0;
+        }
+        long remaining = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(base)) {
+            for (Path path : files) {
+                if (live.containsKey(path)) {
+                    continue;
+                }
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    continue;
+                }
+                if (!attrs.isRegularFile()) {
+                    continue;
+                }
+                long modified = attrs.lastModifiedTime().toMillis();
+                if (modified < cutoff || modified < startedAt) {
+                    try {
+                        Files.deleteIfExists(path);
+                        reaped.increment();
+                    } catch (IOException e) {
+                        remaining += attrs.size();
+                    }
+                } else {
+                    remaining += attrs.size();
+                }
+            }
+        } catch (IOException e) {
+            LOG.warnf("Failed to sweep %s: %s", base, e.getMessage());
+        }
+        return remaining;
+    }
+
+    /**
+     * 一个临时目录及其配额；等待者按 FIFO 获得配额，避免大申请饿死。
+     * 订阅取消（客户端断开）时：还在排队的移出队列；已经分到配额、但配额没交到订阅方手里的，把配额还回去
+     */
+    private final class Area {
+        final Path base;
+        final long quota;
+        private long reserved;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+
+        private static final class Waiter {
+            final long bytes;
+            UniEmitter<? super Long> emitter;
+            long timer = -1;
+            /** 已计入 reserved（在锁内设置） */
+            boolean granted;
+            volatile boolean cancelled;
+
+            Waiter(long bytes) {
+                this.bytes = bytes;
+            }
+        }
+
+        Area(Path base, long quota) {
+            this.base = base;
+            this.quota = quota;
+        }
+
+        Uni<Long> reserve(long bytes) {
+            Waiter waiter = new Waiter(bytes);
+            return Uni.createFrom().<Long>emitter(emitter -> {
+                synchronized (this) {
+                    waiter.emitter = emitter;
+                    // 单个文件超过整个配额时只要当前没有其他占用就放行，否则永远等不到
+                    if (waiters.isEmpty() && (reserved + bytes + external() <= quota || reserved == 0)) {
+                        reserved += bytes;
+                        waiter.granted = true;
+                    } else {
+                        waiter.timer = vertx.setTimer(acquireTimeout.toMillis(), id -> timeout(waiter));
+                        waiters.add(waiter);
+                        return;
+                    }
+                }
+                emitter.complete(bytes);
+            }).onCancellation().invoke(() -> abandon(waiter));
+        }
+
+        /**
+         * 订阅在拿到配额之前取消（与交付配额互斥，二者只会发生一个）
+         */
+        private void abandon(Waiter waiter) {
+            waiter.cancelled = true;
+            boolean queued;
+            boolean granted;
+            synchronized (this) {
+                queued = waiters.remove(waiter);
+                granted = waiter.granted;
+            }
+            if (queued) {
+                vertx.cancelTimer(waiter.timer);
+                // 队首被移出后，后面的等待者可能已经放得下
+                release(0);
+            } else if (granted) {
+                release(waiter.bytes);
+            }
+        }
+
+        /**
+         * 上传临时目录、POI 目录里未登记的文件只和主临时目录共用磁盘
+         */
+        private long external() {
+            return this == disk ? untrackedBytes : 0;
+        }
+
+        synchronized void forceReserve(long bytes) {
+            reserved += bytes;
+        }
+
+        void release(long bytes) {
+            List<Waiter> granted = new ArrayList<>();
+            List<Waiter> dropped = new ArrayList<>();
+            synchronized (this) {
+                reserved = Math.max(0, reserved - bytes);
+                while (!waiters.isEmpty()) {
+                    Waiter next = waiters.peek();
+                    // 已取消、abandon 还没来得及移出的等待者直接丢弃，不分配额
+                    if (next.cancelled) {
+                        waiters.poll();
+                        dropped.add(next);
+                        continue;
+                    }
+                    if (reserved + next.bytes + external() > quota && reserved > 0) {
+                        break;
+                    }
+                    waiters.poll();
+                    reserved += next.bytes;
+                    next.granted = true;
+                    granted.add(next);
+                }
+            }
+            for (Waiter waiter : dropped) {
+                vertx.cancelTimer(waiter.timer);
+            }
+            for (Waiter waiter : granted) {
+                vertx.cancelTimer(waiter.timer);
+                waiter.emitter.complete(waiter.bytes);
+            }
+        }
+
+        private void timeout(Waiter waiter) {
+            synchronized (this) {
+                if (!waiters.remove(waiter)) {
+                    return;
+                }
+            }
+            rejected.increment();
+            waiter.emitter.fail(new ServiceUnavailableException("临时磁盘空间不足，请稍后重试", 1L));
+        }
+
+        synchronized long reserved() {
+            return reserved;
+        }
+
+        synchronized int waiting() {
+            return waiters.size();
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.ewancle.storage;
+
+import com.ewancle.model.FileMetadata;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.MediaType;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 上传文件存储：
+ *    - 目录按 storedName 的哈希前缀分两级（uploadsDir/ab/cd/storedName），单目录文件数保持在很小的量级
+ *    - 元数据（原名、大小、MIME、SHA-256、CRC32、修改时间）上传时计算一次，
+ *      追加写入 uploadsDir/.index/metadata.log（JSON Lines），启动时整体载入内存
+ *    - 旧版平铺在 uploadsDir 下的文件仍可读取，第一次访问时补录元数据并搬进分片目录
+ *    - 可压缩的内容（文本类 MIME，或试压缩开头 64KB 有明显收益）以 gzip 落盘，已压缩格式原样存储
+ */
+@ApplicationScoped
+public class UploadStore {
+
+    private static final String INDEX_DIR = ".index";
+    private static final String INDEX_LOG = "metadata.log";
+
+    @ConfigProperty(name = "app.uploads.dir", defaultValue = "uploads")
+    String uploadsDir;
+
+    @ConfigProperty(name = "app.uploads.compress-min-bytes", defaultValue = "4096")
+    long compressMinBytes;
+
+    @ConfigProperty(name = "app.uploads.compress-level", defaultValue = "6")
+    int compressLevel;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    HotFileCache hotFileCache;
+
+    private final Map<String, FileMetadata> index = new ConcurrentHashMap<>();
+    private FileChannel log;
+
+    @PostConstruct
+    void init() {
+        try {
+            Path dir = Paths.get(uploadsDir, INDEX_DIR);
+            Files.createDirectories(dir);
+            Path logFile = dir.resolve(INDEX_LOG);
+            long lines = 0;
+            if (Files.exists(logFile)) {
+                try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                        if (!line.isBlank()) {
+                            FileMetadata m = objectMapper.readValue(line, FileMetadata.class);
+                            index.put(m.storedName(), m);
+                            lines++;
+                        }
+                    }
+                }
+            }
+            // 同一文件被多次记录（覆盖写）导致日志膨胀时，启动时压缩一次
+            if (lines > 2L * index.size() + 1024) {
+                compact(logFile);
+            }
+            log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load upload index from " + uploadsDir, e);
+        }
+    }
+
+    /**
+     * 文件在磁盘上的位置：分片路径存在就走分片目录，否则兼容旧版平铺目录（搬迁失败的旧文件有元数据但仍在平铺目录）；
+     * 两处都没有时返回分片路径
+     */
+    public Path resolve(String storedName) {
+        String safe = Paths.get(storedName).getFileName().toString();
+        Path sharded = shardedPath(safe);
+        if (Files.exists(sharded)) {
+            return sharded;
+        }
+        Path flat = Paths.get(uploadsDir, safe);
+        return Files.exists(flat) ? flat : sharded;
+    }
+
+    /**
+     * 存储文件的派生数据（如分页索引）的位置：uploadsDir/.index/derived/ 下，文件名为 storedName + suffix，内容由调用方维护
+     */
+    public Path derivedPath(String storedName, String suffix) {
+        String safe = Paths.get(storedName).getFileName().toString();
+        return Paths.get(uploadsDir, INDEX_DIR, "derived", safe + suffix);
+    }
+
+    public FileMetadata metadata(String storedName) {
+        return index.get(Paths.get(storedName).getFileName().toString());
+    }
+
+    /**
+     * 元数据；旧文件没有记录时探测一次，搬进分片目录后补录，之后的下载不再重新计算摘要
+     */
+    public Uni<FileMetadata> metadataOrProbe(String storedName) {
+        String safe = Paths.get(storedName).getFileName().toString();
+        FileMetadata known = index.get(safe);
+        if (known != null) {
+            return Uni.createFrom().item(known);
+        }
+        return Uni.createFrom().item(() -> {
+            Path path = resolve(safe);
+            if (!Files.isRegularFile(path)) {
+                return null;
+            }
+            // 从 storedName 截取原始文件名（格式 UUID-原名）
+            String originalName = safe.contains("-") ? safe.substring(safe.indexOf('-') + 1) : safe;
+            try {
+                Digest d;
+                try (InputStream in = Files.newInputStream(path)) {
+                    d = digest(in, OutputStream.nullOutputStream());
+                }
+                FileMetadata m = new FileMetadata(safe, originalName, d.size(), mimeType(originalName), d.sha256(),
+                        d.crc32(), System.currentTimeMillis(), null, d.size());
+                migrate(path, shardedPath(safe));
+                record(m);
+                return m;
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to index " + safe, e);
+            }
+        }).runSubscriptionOn(Infrastructure.getDefaultExecutor());
+    }
+
+    /**
+     * 按存储编码解码后的内容（阻塞，worker 线程上使用）
+     */
+    public InputStream openDecoded(FileMetadata meta) throws IOException {
+        InputStream in = Files.newInputStream(resolve(meta.storedName()));
+        return meta.gzipped() ? new GZIPInputStream(in, 64 * 1024) : in;
+    }
+
+    /**
+     * 把 Quarkus 的上传临时文件搬进存储：一次读取同时完成拷贝（按需 gzip）、SHA-256 和 CRC32，然后删除临时文件
+     */
+    public Uni<FileMetadata> store(File uploadedTempFile, String storedName, String originalName) {
+        return Uni.createFrom().item(() -> {
+            Path target = shardedPath(storedName);
+            Path partial = target.resolveSibling(storedName + ".part");
+            try {
+                Files.createDirectories(target.getParent());
+                String mime = mimeType(originalName);
+                boolean compress = shouldCompress(uploadedTempFile.toPath(), mime, originalName);
+                Digest d;
+                try (InputStream in = Files.newInputStream(uploadedTempFile.toPath());
+                     OutputStream file = Files.newOutputStream(partial);
+                     OutputStream out = compress ? new LeveledGzipOutputStream(file, compressLevel) : file) {
+                    d = digest(in, out);
+                }
+                FileMetadata m = new FileMetadata(storedName, originalName, d.size(), mime, d.sha256(), d.crc32(),
+                        System.currentTimeMillis(), compress ? FileMetadata.GZIP : null, Files.size(partial));
+                Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                record(m);
+                // 覆盖写时让热点缓存里的旧内容失效
+                hotFileCache.invalidate(storedName);
+                return m;
+            } catch (IOException e) {
+                try { Files.deleteIfExists(partial); } catch (IOException ignore) {}
+                throw new RuntimeException("Failed to store upload " + storedName, e);
+            } finally {
+                try { Files.deleteIfExists(uploadedTempFile.toPath()); } catch (IOException ignore) {}
+            }
+        }).runSubscriptionOn(Infrastructure.getDefaultExecutor());
+    }
+
+    /**
+     * 旧版平铺文件搬进分片目录；失败时文件留在原处，resolve 仍能找到
+     */
+    private static void migrate(Path path, Path sharded) {
+        if (path.equals(sharded)) {
+            return;
+        }
+        try {
+            Files.createDirectories(sharded.getParent());
+            Files.move(path, sharded, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ignore) {
+            // 例如跨文件系统或目标已存在，下次访问继续读平铺路径
+        }
+    }
+
+    Path shardedPath(String storedName) {
+        CRC32 crc = new CRC32();
+        crc.update(storedName.getBytes(StandardCharsets.UTF_8));
+        String hex = String.format("%08x", crc.getValue());
+        return Paths.get(uploadsDir, hex.substring(0, 2), hex.substring(2, 4), storedName);
+    }
+
+    private record Digest(long size, String sha256, long crc32) {}
+
+    /**
+     * 是否以 gzip 落盘：太小或已压缩的不压；文本类直接压；其他类型试压缩开头 64KB，压到 80% 以下才压
+     */
+    private boolean shouldCompress(Path file, String mime, String originalName) throws IOException {
+        long size = Files.size(file);
+        if (size < compressMinBytes || ContentTypes.isAlreadyCompressed(mime, originalName)) {
+            return false;
+        }
+        if (ContentTypes.isText(mime)) {
+            return true;
+        }
+        byte[] sample = new byte[(int) Math.min(size, 64 * 1024)];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n = in.readNBytes(sample, 0, sample.length);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+            try {
+                deflater.setInput(sample, 0, n);
+                deflater.finish();
+                byte[] buf = new byte[sample.length];
+                long compressed = 0;
+                while (!deflater.finished()) {
+                    compressed += deflater.deflate(buf);
+                }
+                return compressed < n * 0.8;
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    private static String mimeType(String originalName) throws IOException {
+        String mime = Files.probeContentType(Paths.get(originalName));
+        return mime != null ? mime : MediaType.APPLICATION_OCTET_STREAM;
+    }
+
+    private Digest digest(InputStream in, OutputStream out) throws IOException {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        CRC32 crc = new CRC32();
+        byte[] buf = new byte[64 * 1024];
+        long size = 0;
+        for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+            sha256.update(buf, 0, n);
+            crc.update(buf, 0, n);
+            out.write(buf, 0, n);
+            size += n;
+        }
+        return new Digest(size, HexFormat.of().formatHex(sha256.digest()), crc.getValue());
+    }
+
+    private synchronized void record(FileMetadata m) throws IOException {
+        byte[] line = (objectMapper.writeValueAsString(m) + "\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.wrap(line);
+        while (buf.hasRemaining()) {
+            log.write(buf);
+        }
+        index.put(m.storedName(), m);
+    }
+
+    /**
+     * GZIPOutputStream 默认压缩级别不可配，子类里调整（头部固定 10 字节，ZIP 打包时直接复用其中的 deflate 数据）
+     */
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+        LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, 64 * 1024);
+            def.setLevel(level);
+        }
+    }
+
+    private void compact(Path logFile) throws IOException {
+        Path tmp = logFile.resolveSibling(INDEX_LOG + ".compact");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            for (FileMetadata m : index.values()) {
+                out.write((objectMapper.writeValueAsString(m) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Files.move(tmp, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,236 @@
+package com.ewancle.validation;
+
+import com.ewancle.model.ValidationRule;
+import com.ewancle.service.StoredWorkbooks;
+import com.ewancle.service.StoredWorkbooks.SheetRowSource;
+import com.ewancle.validation.RuleSet.CheckedRow;
+import com.ewancle.validation.RuleSet.Violation;
+import com.ewancle.xlsx.XlsxBulkExporter;
+import com.ewancle.xlsx.XlsxErrorReport;
+import com.ewancle.xlsx.XlsxSheetReader;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.mutiny.core.buffer.Buffer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.BadRequestException;
+import org.apache.poi.ss.util.CellReference;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 上传表格的导入前校验，输出错误报告 xlsx（见 {@link XlsxErrorReport}）：
+ *    0. 先在 worker 线程上打开文件、读表头并把规则绑定到列，失败时在响应开始之前就返回 400
+ *    1. 解析在一个 worker 线程上按下游请求进行（与 /excel/upload-parse 同一条路径，不建 POI Workbook）
+ *    2. 每 batch-rows 行一批，批一到就交给 worker 线程池跑列规则（必填、类型、范围、正则），
+ *       同时最多 2 × parallelism 批在途，解析不等校验
+ *    3. 各批的结果按批的顺序取回，输出保持源表的行顺序
+ *    4. 唯一性在取回后按行顺序检查（{@link UniqueSet}，每个不同值只存哈希和行号），重复值标在后出现的行上
+ *    5. 出错的行流式写进报告，全部读完后再写汇总 sheet
+ * 流终止（完成/失败/取消）或打开、绑定失败时关闭文件并删除上传临时文件。
+ */
+@ApplicationScoped
+public class ImportValidator {
+
+    @ConfigProperty(name = "app.validation.batch-rows", defaultValue = "2048")
+    int batchRows;
+
+    /** 0 表示使用 CPU 核数 */
+    @ConfigProperty(name = "app.validation.parallelism", defaultValue = "0")
+    int parallelism;
+
+    @ConfigProperty(name = "app.export.level", defaultValue = "6")
+    int level;
+
+    /**
+     * 已打开的源表：第一行（header=true 时为表头）已读出，规则已绑定到列
+     */
+    private record Opened(SheetRowSource rows, XlsxSheetReader.ParsedRow first, List<String> names, RuleSet bound) {}
+
+    /**
+     * @param header 第一行是否为表头；规则里的列为列名（找不到时再按列字母），header=false 时为列字母
+     * @return 打开并绑定成功后给出报告流（订阅后才开始解析）
+     * @throws BadRequestException 规则无效（同步抛出）；不是可读的工作簿、列不存在时 Uni 以 400 失败
+     */
+    public Uni<Multi<Buffer>> validate(File file, int sheet, boolean header, List<ValidationRule> rules) {
+        RuleSet compiled;
+        try {
+            compiled = RuleSet.compile(rules);
+        } catch (BadRequestException e) {
+            delete(file);
+            throw e;
+        }
+        int workers = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return Uni.createFrom().item(() -> open(file, sheet, header, compiled))
+                .runSubscriptionOn(Infrastructure.getDefaultExecutor())
+                .map(opened -> Multi.createFrom().<Opened, Buffer>resource(() -> opened,
+                                o -> report(o, header, workers))
+                        .withFinalizer(o -> {
+                            o.rows().close();
+                            delete(file);
+                        })
+                        // 之后每次 request 都在 worker 线程上执行
+                        .runSubscriptionOn(Infrastructure.getDefaultExecutor()));
+    }
+
+    private static Opened open(File file, int sheet, boolean header, RuleSet compiled) {
+        SheetRowSource rows;
+        try {
+            rows = StoredWorkbooks.openFile(file.toPath(), sheet);
+        } catch (IOException e) {
+            delete(file);
+            throw new BadRequestException("Not a readable workbook", e);
+        }
+        try {
+            XlsxSheetReader.ParsedRow first = rows.hasNext() ? rows.next() : null;
+            List<String> names = new ArrayList<>();
+            Object[] firstValues = first != null ? first.values() : new Object[0];
+            for (int c = 0; c < firstValues.length; c++) {
+                names.add(header && firstValues[c] != null ? firstValues[c].toString() : CellReference.convertNumToColString(c));
+            }
+            return new Opened(rows, first, names, compiled.bind(names, header));
+        } catch (RuntimeException e) {
+            rows.close();
+            delete(file);
+            throw e;
+        }
+    }
+
+    private static void delete(File file) {
+        try { Files.deleteIfExists(file.toPath()); } catch (Exception ignore) {}
+    }
+
+    private Multi<Buffer> report(Opened source, boolean header, int workers) {
+        SheetRowSource rows = source.rows();
+        XlsxSheetReader.ParsedRow first = source.first();
+        List<String> names = source.names();
+        RuleSet bound = source.bound();
+        Multi<XlsxSheetReader.ParsedRow> data = Multi.createFrom().iterable(() -> rows);
+        if (!header && first != null) {
+            data = Multi.createBy().concatenating().streams(Multi.createFrom().item(first), data);
+        }
+        Multi<CheckedRow> checked = data
+                .group().intoLists().of(Math.max(1, batchRows))
+                // 解析线程上只提交任务，校验在线程池里进行
+                .map(batch -> Uni.createFrom().item(() -> bound.check(batch))
+                        .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                        .subscribeAsCompletionStage())
+                // 预取：最多这么多批同时在途
+                .emitOn(Infrastructure.getDefaultExecutor(), workers * 2)
+                .onItem().transformToUniAndConcatenate((CompletionStage<List<CheckedRow>> batch) ->
+                        Uni.createFrom().completionStage(batch))
+                .onItem().transformToIterable(batch -> batch);
+        Tally tally = new Tally(bound);
+        Multi<XlsxErrorReport.Row> failed = checked
+                .invoke(tally::accept)
+                .filter(tally::detailed)
+                .map(ImportValidator::reportRow);
+        return XlsxErrorReport.write(reportColumns(names, bound), failed, tally::summary, level);
+    }
+
+    /**
+     * 报告的表头：header=false 时规则可以指向第一行之外的列，补上列字母到最右边的规则列，
+     * 出错的单元格都在表头范围内
+     */
+    private static List<String> reportColumns(List<String> names, RuleSet rules) {
+        List<String> columns = new ArrayList<>(names);
+        for (int i = 0; i < rules.size(); i++) {
+            for (int c = columns.size(); c <= rules.column(i); c++) {
+                columns.add(CellReference.convertNumToColString(c));
+            }
+        }
+        return columns;
+    }
+
+    // 明细 sheet 除表头外最多的行数（Excel 上限），超出的只计入汇总
+    private static final int MAX_DETAIL_ROWS = XlsxBulkExporter.EXCEL_MAX_ROWS - 1;
+
+    private static XlsxErrorReport.Row reportRow(CheckedRow row) {
+        int[] columns = new int[row.violations.size()];
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            Violation v = row.violations.get(i);
+            columns[i] = v.column();
+            if (i > 0) {
+                message.append("；");
+            }
+            message.append(v.message());
+        }
+        return new XlsxErrorReport.Row(row.rowNum, row.values, columns, message.toString());
+    }
+
+    /**
+     * 按行顺序做的部分：唯一性检查和计数（只在一个阶段里调用，不需要同步）
+     */
+    private static final class Tally {
+        private final RuleSet rules;
+        private final UniqueSet[] uniques;
+        private final long[] errors;
+        private long rows;
+        private long failedRows;
+        private long detailed;
+
+        Tally(RuleSet rules) {
+            this.rules = rules;
+            this.uniques = new UniqueSet[rules.size()];
+            this.errors = new long[rules.size()];
+            for (int i = 0; i < rules.size(); i++) {
+                if (rules.unique(i)) {
+                    uniques[i] = new UniqueSet();
+                }
+            }
+        }
+
+        void accept(CheckedRow row) {
+            rows++;
+            for (int i = 0; i < uniques.length; i++) {
+                if (uniques[i] == null) {
+                    continue;
+                }
+                Object value = RuleSet.valueAt(row.values, rules.column(i));
+                if (RuleSet.blank(value)) {
+                    continue;
+                }
+                int previous = uniques[i].putIfAbsent(RuleSet.text(value), row.rowNum);
+                if (previous >= 0) {
+                    row.add(i, rules.column(i), rules.name(i) + ": 与第 " + previous + " 行重复");
+                }
+            }
+            if (!row.failed()) {
+                return;
+            }
+            failedRows++;
+            for (Violation v : row.violations) {
+                errors[v.rule()]++;
+            }
+        }
+
+        /**
+         * 出错且明细还没写满时写进明细
+         */
+        boolean detailed(CheckedRow row) {
+            return row.failed() && detailed++ < MAX_DETAIL_ROWS;
+        }
+
+        List<List<?>> summary() {
+            List<List<?>> out = new ArrayList<>();
+            out.add(List.of("检查行数", rows));
+            out.add(List.of("出错行数", failedRows));
+            if (failedRows > MAX_DETAIL_ROWS) {
+                out.add(List.of("明细只列出前", (long) MAX_DETAIL_ROWS));
+            }
+            out.add(List.of());
+            out.add(List.of("列", "规则", "出错次数"));
+            for (int i = 0; i < rules.size(); i++) {
+                out.add(List.of(rules.name(i), rules.describe(i), errors[i]));
+            }
+            return out;
+        }
+    }
+}
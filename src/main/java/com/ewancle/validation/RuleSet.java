@@ -0,0 +1,291 @@
+package com.ewancle.validation;
+
+import com.ewancle.model.ValidationRule;
+import com.ewancle.xlsx.XlsxSheetReader;
+import jakarta.ws.rs.BadRequestException;
+import org.apache.poi.ss.util.CellReference;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 编译好的列规则：正则、类型在收到请求时检查并编译一次，读到表头后再绑定到列下标（{@link #bind}）。
+ * 绑定后的 RuleSet 只读，{@link #check} 可以在多个线程上同时调用；唯一性不在这里检查（见 {@link UniqueSet}）。
+ */
+final class RuleSet {
+
+    private static final Pattern EMAIL = Pattern.compile("[^@\\s]+@[^@\\s.]+(\\.[^@\\s.]+)+");
+    private static final List<String> TYPES = List.of("text", "number", "integer", "email", "date");
+
+    /** 一个单元格的校验失败：rule 为规则下标，column 为源表的列下标 */
+    record Violation(int rule, int column, String message) {}
+
+    /**
+     * 一行的校验结果；violations 为 null 表示没有问题，唯一性检查时可能再追加
+     */
+    static final class CheckedRow {
+        final int rowNum;
+        final Object[] values;
+        List<Violation> violations;
+
+        CheckedRow(int rowNum, Object[] values) {
+            this.rowNum = rowNum;
+            this.values = values;
+        }
+
+        void add(int rule, int column, String message) {
+            if (violations == null) {
+                violations = new ArrayList<>(2);
+            }
+            violations.add(new Violation(rule, column, message));
+        }
+
+        boolean failed() {
+            return violations != null;
+        }
+    }
+
+    private record Rule(ValidationRule source, String type, Pattern pattern) {}
+
+    private final List<Rule> rules;
+    private final int[] columns;
+    private final String[] names;
+
+    private RuleSet(List<Rule> rules, int[] columns, String[] names) {
+        this.rules = rules;
+        this.columns = columns;
+        this.names = names;
+    }
+
+    /**
+     * @throws BadRequestException 规则不完整、类型未知或正则无效
+     */
+    static RuleSet compile(List<ValidationRule> rules) {
+        if (rules == null || rules.isEmpty()) {
+            throw new BadRequestException("At least one validation rule is required");
+        }
+        List<Rule> compiled = new ArrayList<>(rules.size());
+        for (ValidationRule rule : rules) {
+            if (rule == null || rule.column == null || rule.column.isBlank()) {
+                throw new BadRequestException("Validation rule without column");
+            }
+            String type = rule.type == null || rule.type.isBlank() ? "text" : rule.type.toLowerCase(Locale.ROOT);
+            if (!TYPES.contains(type)) {
+                throw new BadRequestException("Unknown rule type for " + rule.column + ": " + rule.type
+                        + " (expected one of " + TYPES + ")");
+            }
+            Pattern pattern = null;
+            if (rule.pattern != null && !rule.pattern.isEmpty()) {
+                try {
+                    pattern = Pattern.compile(rule.pattern);
+                } catch (PatternSyntaxException e) {
+                    throw new BadRequestException("Invalid pattern for " + rule.column + ": " + e.getDescription());
+                }
+            }
+            compiled.add(new Rule(rule, type, pattern));
+        }
+        return new RuleSet(compiled, null, null);
+    }
+
+    /**
+     * 绑定到列：header=true 时按表头的列名找（找不到时再按列字母），否则按列字母
+     *
+     * @param header    第一行各列的名称（header=false 时为列字母）
+     * @param useHeader 是否按列名找
+     * @throws BadRequestException 找不到规则里的列
+     */
+    RuleSet bind(List<String> header, boolean useHeader) {
+        int[] bound = new int[rules.size()];
+        String[] boundNames = new String[rules.size()];
+        for (int i = 0; i < rules.size(); i++) {
+            String column = rules.get(i).source().column;
+            int c = useHeader ? header.indexOf(column) : -1;
+            if (c < 0) {
+                c = letterColumn(column);
+            }
+            if (c < 0 || useHeader && c >= header.size()) {
+                throw new BadRequestException("Validation column not found: " + column);
+            }
+            bound[i] = c;
+            boundNames[i] = column;
+        }
+        return new RuleSet(rules, bound, boundNames);
+    }
+
+    /**
+     * 校验一批行（不含唯一性），结果与输入同序
+     */
+    List<CheckedRow> check(List<XlsxSheetReader.ParsedRow> batch) {
+        List<CheckedRow> out = new ArrayList<>(batch.size());
+        for (XlsxSheetReader.ParsedRow row : batch) {
+            CheckedRow checked = new CheckedRow(row.rowNum(), row.values());
+            for (int i = 0; i < rules.size(); i++) {
+                String message = check(rules.get(i), valueAt(row.values(), columns[i]));
+                if (message != null) {
+                    checked.add(i, columns[i], names[i] + ": " + message);
+                }
+            }
+            out.add(checked);
+        }
+        return out;
+    }
+
+    int size() {
+        return rules.size();
+    }
+
+    int column(int rule) {
+        return columns[rule];
+    }
+
+    String name(int rule) {
+        return names[rule];
+    }
+
+    boolean unique(int rule) {
+        return rules.get(rule).source().unique;
+    }
+
+    /**
+     * 规则的简短说明，用于报告的汇总
+     */
+    String describe(int rule) {
+        Rule compiled = rules.get(rule);
+        ValidationRule r = compiled.source();
+        List<String> parts = new ArrayList<>();
+        if (r.required) {
+            parts.add("必填");
+        }
+        parts.add(compiled.type());
+        if (r.min != null) {
+            parts.add("min=" + text(r.min));
+        }
+        if (r.max != null) {
+            parts.add("max=" + text(r.max));
+        }
+        if (r.pattern != null && !r.pattern.isEmpty()) {
+            parts.add("pattern=" + r.pattern);
+        }
+        if (r.unique) {
+            parts.add("唯一");
+        }
+        return String.join(", ", parts);
+    }
+
+    /**
+     * 单元格的文本形式：整数值的数字不带 ".0"，这样数字 1001 和文本 "1001" 视为同一个值
+     */
+    static String text(Object value) {
+        if (value instanceof Double d && d == Math.rint(d) && Math.abs(d) < 1e15) {
+            return Long.toString(d.longValue());
+        }
+        return value.toString();
+    }
+
+    static boolean blank(Object value) {
+        return value == null || value instanceof String s && s.isBlank();
+    }
+
+    static Object valueAt(Object[] values, int column) {
+        return column < values.length ? values[column] : null;
+    }
+
+    private static String check(Rule rule, Object value) {
+        ValidationRule r = rule.source();
+        if (blank(value)) {
+            return r.required ? "不能为空" : null;
+        }
+        String text = text(value);
+        Double number = null;
+        switch (rule.type()) {
+            case "number", "integer" -> {
+                number = number(value);
+                if (number == null || number.isNaN() || number.isInfinite()) {
+                    return "不是数字";
+                }
+                if (rule.type().equals("integer") && number != Math.rint(number)) {
+                    return "不是整数";
+                }
+            }
+            case "email" -> {
+                if (!EMAIL.matcher(text).matches()) {
+                    return "邮箱格式不正确";
+                }
+            }
+            case "date" -> {
+                if (!date(value)) {
+                    return "不是日期";
+                }
+            }
+            default -> {
+            }
+        }
+        if (number != null) {
+            if (r.min != null && number < r.min) {
+                return "不能小于 " + text(r.min);
+            }
+            if (r.max != null && number > r.max) {
+                return "不能大于 " + text(r.max);
+            }
+        } else if (!rule.type().equals("date")) {
+            if (r.min != null && text.length() < r.min) {
+                return "长度不能小于 " + text(r.min);
+            }
+            if (r.max != null && text.length() > r.max) {
+                return "长度不能大于 " + text(r.max);
+            }
+        }
+        if (rule.pattern() != null && !rule.pattern().matcher(text).matches()) {
+            return "格式不符合 " + r.pattern;
+        }
+        return null;
+    }
+
+    private static Double number(Object value) {
+        if (value instanceof Double d) {
+            return d;
+        }
+        if (value instanceof String s) {
+            try {
+                return Double.parseDouble(s.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean date(Object value) {
+        if (value instanceof LocalDateTime) {
+            return true;
+        }
+        if (!(value instanceof String s)) {
+            return false;
+        }
+        String trimmed = s.trim();
+        try {
+            if (trimmed.length() <= 10) {
+                LocalDate.parse(trimmed);
+            } else {
+                LocalDateTime.parse(trimmed.replace(' ', 'T'));
+            }
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static int letterColumn(String column) {
+        if (column.isEmpty() || column.length() > 3
+                || !column.chars().allMatch(ch -> ch >= 'A' && ch <= 'Z' || ch >= 'a' && ch <= 'z')) {
+            return -1;
+        }
+        return CellReference.convertColStringToIndex(column.toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,81 @@
+package com.ewancle.validation;
+
+/**
+ * 一列值的去重集合：只存值的 64 位哈希和第一次出现的行号（开放寻址，每个槽 13 字节，装载因子不超过 1/2），
+ * 与值本身的长度无关。百万级不同值时哈希冲突导致误报重复的概率约 1e-8，可以忽略。
+ * 不是线程安全的，按行顺序在同一个阶段里调用。
+ */
+final class UniqueSet {
+
+    private long[] hashes = new long[64];
+    private int[] rows = new int[64];
+    private boolean[] used = new boolean[64];
+    private int size;
+
+    /**
+     * 记录一个值；已经出现过时返回第一次出现的行号，否则返回 -1
+     */
+    int putIfAbsent(String value, int rowNum) {
+        if (size * 2 >= hashes.length) {
+            grow();
+        }
+        long h = hash(value);
+        int mask = hashes.length - 1;
+        int i = (int) h & mask;
+        while (used[i]) {
+            if (hashes[i] == h) {
+                return rows[i];
+            }
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        hashes[i] = h;
+        rows[i] = rowNum;
+        size++;
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] oldHashes = hashes;
+        int[] oldRows = rows;
+        boolean[] oldUsed = used;
+        int capacity = oldHashes.length * 2;
+        hashes = new long[capacity];
+        rows = new int[capacity];
+        used = new boolean[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldHashes.length; j++) {
+            if (!oldUsed[j]) {
+                continue;
+            }
+            int i = (int) oldHashes[j] & mask;
+            while (used[i]) {
+                i = (i + 1) & mask;
+            }
+            used[i] = true;
+            hashes[i] = oldHashes[j];
+            rows[i] = oldRows[j];
+        }
+    }
+
+    /**
+     * 64 位 FNV-1a，再做 murmur3 收尾混合，让低位也均匀（下标取低位）
+     */
+    private static long hash(String text) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,173 @@
+package com.ewancle.xlsx;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * 写行时顺带记录每列内容的最大显示宽度，写完后一次性设置列宽，代替 Sheet.autoSizeColumn：
+ *    - autoSizeColumn 依赖 AWT 字体度量（native image 下不可用 / 很慢），SXSSF 下还只能量到窗口内的行
+ *    - 这里按字符估算：中日韩全角字符算 2 个字符宽，其余算 1 个；多行文本取最长的一行
+ *    - 数值按 Excel "常规" 格式的显示长度估算（最多 11 位），日期按格式串长度估算
+ * 只是估算，不保证和 Excel 的"自动调整列宽"完全一致，但不会出现截断成 ### 的情况。
+ */
+public final class ColumnWidthTracker {
+
+    /** 单元格左右留白（字符数） */
+    private static final int PADDING = 2;
+    /** POI / Excel 允许的最大列宽是 255 个字符 */
+    private static final int MAX_CHARS = 255;
+    /** Excel "常规" 格式数值最多显示的字符数 */
+    private static final int GENERAL_NUMBER_CHARS = 11;
+
+    private final int minChars;
+    private final int maxChars;
+    private int[] widths = new int[16];
+    private int columns;
+
+    public ColumnWidthTracker() {
+        this(4, 60);
+    }
+
+    /**
+     * @param minChars 最小列宽（字符数）
+     * @param maxChars 最大列宽（字符数），避免个别超长文本把列撑得过宽
+     */
+    public ColumnWidthTracker(int minChars, int maxChars) {
+        this.minChars = minChars;
+        this.maxChars = Math.min(maxChars, MAX_CHARS);
+    }
+
+    /**
+     * 记录一行中所有单元格（行创建并赋值之后调用）
+     */
+    public void track(Row row) {
+        if (row == null) {
+            return;
+        }
+        for (Cell cell : row) {
+            track(cell);
+        }
+    }
+
+    public void track(Cell cell) {
+        int chars = switch (cell.getCellType()) {
+            case STRING -> displayWidth(cell.getStringCellValue());
+            case NUMERIC -> DateUtil.isCellDateFormatted(cell)
+                    ? dateWidth(cell.getCellStyle().getDataFormatString())
+                    : numberWidth(cell.getNumericCellValue());
+            case BOOLEAN -> cell.getBooleanCellValue() ? 4 : 5;
+            // 公式结果在写出时还没有计算，按空单元格处理
+            default -> 0;
+        };
+        track(cell.getColumnIndex(), chars);
+    }
+
+    /**
+     * 记录直接输出的值（不经过 POI Cell 的场景，如 SheetXml 生成的行）
+     */
+    public void track(int col, Object value) {
+        if (value == null) {
+            return;
+        }
+        int chars;
+        if (value instanceof Number n) {
+            chars = numberWidth(n.doubleValue());
+        } else if (value instanceof Boolean b) {
+            chars = b ? 4 : 5;
+        } else {
+            chars = displayWidth(value.toString());
+        }
+        track(col, chars);
+    }
+
+    private void track(int col, int chars) {
+        if (col >= widths.length) {
+            widths = Arrays.copyOf(widths, Math.max(col + 1, widths.length * 2));
+        }
+        if (chars > widths[col]) {
+            widths[col] = chars;
+        }
+        columns = Math.max(columns, col + 1);
+    }
+
+    /**
+     * 第 col 列的估算宽度，单位同 Sheet.setColumnWidth（1/256 字符宽）；没有记录过的列返回 -1
+     */
+    public int width(int col) {
+        if (col >= columns || widths[col] == 0) {
+            return -1;
+        }
+        int chars = Math.max(minChars, Math.min(maxChars, widths[col] + PADDING));
+        return chars * 256;
+    }
+
+    /**
+     * 把估算的列宽设置到 sheet 上（没有内容的列保持默认宽度）
+     */
+    public void applyTo(Sheet sheet) {
+        for (int col = 0; col < columns; col++) {
+            int width = width(col);
+            if (width > 0) {
+                sheet.setColumnWidth(col, width);
+            }
+        }
+    }
+
+    /**
+     * 文本的显示宽度（字符数）：全角字符算 2，换行分隔的多行文本取最长一行
+     */
+    public static int displayWidth(CharSequence text) {
+        int max = 0;
+        int line = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = Character.codePointAt(text, i);
+            i += Character.charCount(cp);
+            if (cp == '\n') {
+                max = Math.max(max, line);
+                line = 0;
+            } else if (cp >= 0x20) {
+                line += isWide(cp) ? 2 : 1;
+            }
+        }
+        return Math.max(max, line);
+    }
+
+    /**
+     * 东亚宽字符（Unicode East Asian Width 为 W / F 的主要区段）
+     */
+    static boolean isWide(int cp) {
+        return (cp >= 0x1100 && cp <= 0x115F)      // 朝鲜文字母
+                || (cp >= 0x2E80 && cp <= 0x303E)  // CJK 部首、符号和标点
+                || (cp >= 0x3041 && cp <= 0x33FF)  // 假名、注音、CJK 兼容字符
+                || (cp >= 0x3400 && cp <= 0x4DBF)  // CJK 扩展 A
+                || (cp >= 0x4E00 && cp <= 0x9FFF)  // CJK 统一汉字
+                || (cp >= 0xA000 && cp <= 0xA4CF)  // 彝文
+                || (cp >= 0xAC00 && cp <= 0xD7A3)  // 朝鲜文音节
+                || (cp >= 0xF900 && cp <= 0xFAFF)  // CJK 兼容汉字
+                || (cp >= 0xFE30 && cp <= 0xFE4F)  // CJK 兼容形式
+                || (cp >= 0xFF00 && cp <= 0xFF60)  // 全角 ASCII、全角标点
+                || (cp >= 0xFFE0 && cp <= 0xFFE6)  // 全角符号
+                || (cp >= 0x1F300 && cp <= 0x1F64F) // emoji
+                || (cp >= 0x20000 && cp <= 0x3FFFD); // CJK 扩展 B 及以后
+    }
+
+    private static int numberWidth(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return 7;   // #NUM!
+        }
+        String text = value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value)
+                : BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+        return Math.min(text.length(), GENERAL_NUMBER_CHARS);
+    }
+
+    private static int dateWidth(String format) {
+        // 去掉格式串里的引号、转义和区段标记，剩下的长度与显示长度接近
+        return format == null ? 10 : Math.max(8, format.replaceAll("\\[[^]]*]|[\"\\\\]", "").length());
+    }
+}
@@ -0,0 +1,150 @@
+package com.ewancle.xlsx;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import java.time.LocalDate;
+
+/**
+ * 单元格数字格式的分类（每个样式只分类一次，按样式缓存），以及按分类把数值转成文本：
+ *    - DATE / TIME / DATETIME：ISO 文本 yyyy-MM-dd / HH:mm:ss / yyyy-MM-ddTHH:mm:ss（精确到秒，四舍五入）
+ *    - GENERAL / INTEGER：整数值不带 ".0"，其余同 Double.toString
+ *    - DECIMAL / PERCENT / TEXT：Double.toString（百分比保留原始比例值，不乘 100）
+ * 日期换算直接从序列号算 epoch day，不经过 Date / Calendar / 时区。
+ */
+public enum NumberFormatKind {
+    GENERAL, INTEGER, DECIMAL, PERCENT, TEXT, DATE, TIME, DATETIME;
+
+    private static final int SECONDS_PER_DAY = 86_400;
+    // 1900 日期系统：序列号 1 = 1900-01-01，并且把不存在的 1900-02-29 算作第 60 天
+    private static final long EPOCH_OFFSET_1900 = 25_568;
+    private static final long EPOCH_OFFSET_1904 = 24_107;
+    // 大于这个值的整数 double 不再精确，按 Double.toString 输出
+    private static final double MAX_EXACT_INTEGER = 1e15;
+
+    public boolean isDate() {
+        return this == DATE || this == TIME || this == DATETIME;
+    }
+
+    /**
+     * 按格式编号和格式串分类（formatString 为空时按 General）
+     */
+    public static NumberFormatKind classify(int formatIndex, String formatString) {
+        if (formatString == null || formatString.isEmpty() || "General".equalsIgnoreCase(formatString)) {
+            return GENERAL;
+        }
+        String plain = firstSection(formatString);
+        if (DateUtil.isADateFormat(formatIndex, formatString)) {
+            boolean date = plain.indexOf('y') >= 0 || plain.indexOf('d') >= 0;
+            boolean time = plain.indexOf('h') >= 0 || plain.indexOf('s') >= 0;
+            return date && time ? DATETIME : time ? TIME : DATE;
+        }
+        if (plain.contains("general")) {
+            return GENERAL;
+        }
+        if (plain.indexOf('%') >= 0) {
+            return PERCENT;
+        }
+        if (plain.contains("e+") || plain.contains("e-")) {
+            // 科学计数 0.00E+00
+            return DECIMAL;
+        }
+        int dot = plain.indexOf('.');
+        if (dot >= 0 && dot + 1 < plain.length() && isDigitPlaceholder(plain.charAt(dot + 1))) {
+            return DECIMAL;
+        }
+        for (int i = 0; i < plain.length(); i++) {
+            if (isDigitPlaceholder(plain.charAt(i))) {
+                return INTEGER;
+            }
+        }
+        return plain.indexOf('@') >= 0 ? TEXT : GENERAL;
+    }
+
+    /**
+     * 数值按本分类转成文本；日期类但不是合法 Excel 日期的值按普通数字输出
+     */
+    public String format(double value, boolean date1904) {
+        if (isDate() && DateUtil.isValidExcelDate(value)) {
+            long seconds = Math.round(value * SECONDS_PER_DAY);
+            long serial = Math.floorDiv(seconds, SECONDS_PER_DAY);
+            int secondOfDay = Math.floorMod(seconds, SECONDS_PER_DAY);
+            StringBuilder sb = new StringBuilder(19);
+            if (this == TIME && serial == 0) {
+                appendTime(sb, secondOfDay);
+            } else {
+                appendDate(sb, epochDay(serial, date1904));
+                if (this != DATE) {
+                    appendTime(sb.append('T'), secondOfDay);
+                }
+            }
+            return sb.toString();
+        }
+        if ((this == GENERAL || this == INTEGER) && value == Math.rint(value) && Math.abs(value) < MAX_EXACT_INTEGER) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static long epochDay(long serial, boolean date1904) {
+        if (date1904) {
+            return serial - EPOCH_OFFSET_1904;
+        }
+        // 第 60 天（1900-02-29）之后的序列号多算了一天
+        return serial > 60 ? serial - EPOCH_OFFSET_1900 - 1 : serial - EPOCH_OFFSET_1900;
+    }
+
+    private static void appendDate(StringBuilder sb, long epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        appendPadded(sb, date.getYear(), 4);
+        appendPadded(sb.append('-'), date.getMonthValue(), 2);
+        appendPadded(sb.append('-'), date.getDayOfMonth(), 2);
+    }
+
+    private static void appendTime(StringBuilder sb, int secondOfDay) {
+        appendPadded(sb, secondOfDay / 3600, 2);
+        appendPadded(sb.append(':'), secondOfDay / 60 % 60, 2);
+        appendPadded(sb.append(':'), secondOfDay % 60, 2);
+    }
+
+    private static void appendPadded(StringBuilder sb, int value, int width) {
+        for (int limit = 10, i = 1; i < width; i++, limit *= 10) {
+            if (value < limit) {
+                sb.append('0');
+            }
+        }
+        sb.append(value);
+    }
+
+    private static boolean isDigitPlaceholder(char c) {
+        return c == '0' || c == '#' || c == '?';
+    }
+
+    /**
+     * 取正数部分的格式（第一个 ; 之前），去掉引号文本、转义字符和 [颜色/条件]（保留 [h] [mm] [ss] 这类时长），转小写
+     */
+    private static String firstSection(String format) {
+        StringBuilder sb = new StringBuilder(format.length());
+        for (int i = 0; i < format.length(); i++) {
+            char c = format.charAt(i);
+            if (c == ';') {
+                break;
+            } else if (c == '"') {
+                int end = format.indexOf('"', i + 1);
+                i = end < 0 ? format.length() : end;
+            } else if (c == '\\' || c == '_' || c == '*') {
+                // 转义 / 占位宽度 / 重复填充：跳过后面一个字符
+                i++;
+            } else if (c == '[') {
+                int end = format.indexOf(']', i + 1);
+                String inner = end < 0 ? "" : format.substring(i + 1, end).toLowerCase();
+                if (!inner.isEmpty() && inner.chars().allMatch(ch -> ch == 'h' || ch == 'm' || ch == 's')) {
+                    sb.append(inner);
+                }
+                i = end < 0 ? format.length() : end;
+            } else {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+}
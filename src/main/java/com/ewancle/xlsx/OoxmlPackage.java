@@ -0,0 +1,134 @@
+package com.ewancle.xlsx;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * xlsx 包内的部件定位：从 _rels/.rels 找到 workbook，再从 workbook 的关系里找到指定 sheet、calcChain 和 sharedStrings
+ * （后两者不存在时为 null）
+ */
+record OoxmlPackage(String workbookPart, String workbookDir, String workbookRels, String sheetPart,
+                    String calcChainPart, String sharedStringsPart) {
+
+    private static final String ROOT_RELS = "_rels/.rels";
+    private static final String PKG_REL_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+
+    record Relationship(String id, String type, String target) {}
+
+    static OoxmlPackage open(ZipFile zip, int sheetIndex) throws IOException, XMLStreamException {
+        String workbookPart = workbookPart(zip);
+        String workbookDir = directoryOf(workbookPart);
+        String workbookRels = relsOf(workbookPart);
+
+        Map<String, String> targetsById = new HashMap<>();
+        String calcChainPart = null;
+        String sharedStringsPart = null;
+        for (Relationship rel : relationships(zip, workbookRels)) {
+            targetsById.put(rel.id(), resolve(workbookDir, rel.target()));
+            if (rel.type().endsWith("/calcChain")) {
+                calcChainPart = resolve(workbookDir, rel.target());
+            } else if (rel.type().endsWith("/sharedStrings")) {
+                sharedStringsPart = resolve(workbookDir, rel.target());
+            }
+        }
+        String sheetPart = targetsById.get(sheetRelationshipId(zip, workbookPart, sheetIndex));
+        if (sheetPart == null || zip.getEntry(sheetPart) == null) {
+            throw new IOException("Sheet part not found for sheet index " + sheetIndex);
+        }
+        return new OoxmlPackage(workbookPart, workbookDir, workbookRels, sheetPart, calcChainPart, sharedStringsPart);
+    }
+
+    /**
+     * _rels/.rels 里 officeDocument 关系指向的 workbook 部件
+     */
+    static String workbookPart(ZipFile zip) throws IOException, XMLStreamException {
+        for (Relationship rel : relationships(zip, ROOT_RELS)) {
+            if (rel.type().endsWith("/officeDocument")) {
+                return resolve("", rel.target());
+            }
+        }
+        throw new IOException("Not an xlsx package: missing officeDocument relationship");
+    }
+
+    static String directoryOf(String part) {
+        return part.substring(0, part.lastIndexOf('/') + 1);
+    }
+
+    static String relsOf(String part) {
+        String dir = directoryOf(part);
+        return dir + "_rels/" + part.substring(dir.length()) + ".rels";
+    }
+
+    private static String sheetRelationshipId(ZipFile zip, String workbookPart, int sheetIndex)
+            throws IOException, XMLStreamException {
+        try (InputStream in = zip.getInputStream(zip.getEntry(workbookPart))) {
+            XMLStreamReader r = XmlCopier.reader(in);
+            int index = 0;
+            while (r.hasNext()) {
+                if (r.next() == XMLStreamConstants.START_ELEMENT && XmlCopier.isMain(r, "sheet")) {
+                    if (index++ == sheetIndex) {
+                        return r.getAttributeValue(SheetXml.REL_NS, "id");
+                    }
+                }
+            }
+        }
+        throw new IOException("Sheet index out of range: " + sheetIndex);
+    }
+
+    static List<Relationship> relationships(ZipFile zip, String relsPart) throws IOException, XMLStreamException {
+        List<Relationship> rels = new ArrayList<>();
+        ZipArchiveEntry entry = zip.getEntry(relsPart);
+        if (entry == null) {
+            return rels;
+        }
+        try (InputStream in = zip.getInputStream(entry)) {
+            return relationships(in);
+        }
+    }
+
+    /**
+     * 解析 .rels 部件（不关闭 in）
+     */
+    static List<Relationship> relationships(InputStream in) throws XMLStreamException {
+        List<Relationship> rels = new ArrayList<>();
+        XMLStreamReader r = XmlCopier.reader(in);
+        while (r.hasNext()) {
+            if (r.next() == XMLStreamConstants.START_ELEMENT && "Relationship".equals(r.getLocalName())
+                    && PKG_REL_NS.equals(r.getNamespaceURI())) {
+                rels.add(new Relationship(r.getAttributeValue(null, "Id"), r.getAttributeValue(null, "Type"),
+                        r.getAttributeValue(null, "Target")));
+            }
+        }
+        return rels;
+    }
+
+    /**
+     * 关系里的 Target 可以是相对路径（相对 base 目录）或以 / 开头的包内绝对路径
+     */
+    static String resolve(String baseDir, String target) {
+        if (target.startsWith("/")) {
+            return target.substring(1);
+        }
+        List<String> parts = new ArrayList<>(List.of((baseDir + target).split("/")));
+        for (int i = 0; i < parts.size(); i++) {
+            if (parts.get(i).equals("..") && i > 0) {
+                parts.remove(i);
+                parts.remove(i - 1);
+                i -= 2;
+            } else if (parts.get(i).equals(".") || parts.get(i).isEmpty()) {
+                parts.remove(i--);
+            }
+        }
+        return String.join("/", parts);
+    }
+}
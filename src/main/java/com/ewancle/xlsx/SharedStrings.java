@@ -0,0 +1,209 @@
+package com.ewancle.xlsx;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.mutiny.core.buffer.Buffer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 导出时按列选择字符串的存储方式：
+ *    - SHARED：写进 sharedStrings.xml，单元格只存下标（部门、状态这类大量重复的列文件更小，Excel 加载更快）
+ *    - INLINE：直接写成 inline string（邮箱、单号这类几乎不重复的列，进共享表只会多一次查找和一份索引）
+ *    - AUTO：先按 SHARED 处理，前 SAMPLE_SIZE 个值里新字符串占比超过一半就改为 INLINE
+ * 去重用的 HashMap 有条目数和字符数上限，超过后新字符串一律写成 inline，已有的仍然命中；
+ * &lt;si&gt; 的 XML 边生成边写到溢写文件，最后和模板原有的共享字符串拼成 sharedStrings.xml，不常驻堆内存。
+ * 单次导出使用，非线程安全。
+ */
+public final class SharedStrings implements AutoCloseable {
+
+    public enum Mode { AUTO, SHARED, INLINE }
+
+    private static final int SAMPLE_SIZE = 1000;
+    private static final int CHUNK_BYTES = 64 * 1024;
+    /** 每条 &lt;si&gt; 除文本外的标记最多占的字节数：&lt;si&gt;&lt;t xml:space="preserve"&gt;&lt;/t&gt;&lt;/si&gt; */
+    private static final int ITEM_MARKUP_BYTES = 37;
+
+    private final Path spillFile;
+    private final int maxEntries;
+    private final long maxChars;
+    private Mode[] modes;
+    private int[] seen = new int[0];
+    private int[] added = new int[0];
+
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private long chars;
+    private int base;
+    private Writer spill;
+
+    /**
+     * @param spillFile   &lt;si&gt; 溢写文件（调用方负责创建路径和删除）
+     * @param maxEntries  去重表最多条目数
+     * @param maxChars    去重表最多字符数
+     * @param columnModes 各列的存储方式，未指定的列使用 AUTO
+     */
+    public SharedStrings(Path spillFile, int maxEntries, long maxChars, Mode... columnModes) {
+        this.spillFile = spillFile;
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+        this.modes = columnModes.clone();
+    }
+
+    /**
+     * 溢写文件大小的上限，用于预留临时文件配额：每个字符 UTF-8 编码加转义后最多 5 字节（&amp;amp;），
+     * 再加上每条 &lt;si&gt; 的标记；默认上限（4M 字符、64K 条）约 22MB
+     */
+    public static long maxSpillBytes(int maxEntries, long maxChars) {
+        return maxChars * 5 + (long) maxEntries * ITEM_MARKUP_BYTES;
+    }
+
+    /**
+     * 模板里已有的共享字符串数量，新字符串的下标从这里开始
+     */
+    void startAt(int existing) {
+        this.base = existing;
+    }
+
+    /**
+     * 新增的共享字符串数量
+     */
+    public int size() {
+        return indexes.size();
+    }
+
+    /**
+     * 返回 text 在共享表中的下标；该列使用 inline 或去重表已满时返回 -1
+     */
+    public int indexOf(int col, String text) throws IOException {
+        Mode mode = mode(col);
+        if (mode == Mode.INLINE) {
+            return -1;
+        }
+        Integer index = indexes.get(text);
+        if (mode == Mode.AUTO) {
+            sample(col, index == null);
+        }
+        if (index != null) {
+            return index;
+        }
+        if (indexes.size() >= maxEntries || chars + text.length() > maxChars) {
+            return -1;
+        }
+        if (spill == null) {
+            spill = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(spillFile), StandardCharsets.UTF_8),
+                    CHUNK_BYTES);
+        }
+        spill.write("<si>");
+        SheetXml.text(spill, text);
+        spill.write("</si>");
+        int newIndex = base + indexes.size();
+        indexes.put(text, newIndex);
+        chars += text.length();
+        return newIndex;
+    }
+
+    private Mode mode(int col) {
+        return col < modes.length && modes[col] != null ? modes[col] : Mode.AUTO;
+    }
+
+    private void sample(int col, boolean isNew) {
+        if (col >= seen.length) {
+            seen = Arrays.copyOf(seen, col + 1);
+            added = Arrays.copyOf(added, col + 1);
+        }
+        seen[col]++;
+        if (isNew) {
+            added[col]++;
+        }
+        if (seen[col] >= SAMPLE_SIZE) {
+            if (col >= modes.length) {
+                modes = Arrays.copyOf(modes, col + 1);
+            }
+            // 采样结束：重复率低的列之后都写 inline（已进表的字符串保留，单元格照常引用）
+            modes[col] = added[col] * 2 > seen[col] ? Mode.INLINE : Mode.SHARED;
+        }
+    }
+
+    /**
+     * 新增的 &lt;si&gt; 片段（写完所有行之后调用），在 worker 线程上按块读取溢写文件
+     */
+    Multi<Buffer> spilled() {
+        return Multi.createFrom().deferred(() -> {
+            if (spill == null) {
+                return Multi.createFrom().empty();
+            }
+            try {
+                spill.close();
+            } catch (IOException e) {
+                return Multi.createFrom().failure(e);
+            }
+            return Multi.createFrom().<InputStream, Buffer>resource(() -> {
+                        try {
+                            return Files.newInputStream(spillFile);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, in -> Multi.createFrom().iterable(() -> chunks(in)))
+                    .withFinalizer(in -> {
+                        try {
+                            in.close();
+                        } catch (IOException ignore) {
+                        }
+                    })
+                    .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+        });
+    }
+
+    private static Iterator<Buffer> chunks(InputStream in) {
+        return new Iterator<>() {
+            private byte[] next = read();
+
+            private byte[] read() {
+                try {
+                    byte[] chunk = in.readNBytes(CHUNK_BYTES);
+                    return chunk.length == 0 ? null : chunk;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Buffer next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Buffer buffer = Buffer.buffer(next);
+                next = read();
+                return buffer;
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        if (spill != null) {
+            try {
+                spill.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.ewancle.xlsx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 一个 sheet 的行偏移索引，深分页时不再从头解析：
+ *    - 建索引时把 sheet 部件解压成普通文件（可按位置读取），同时逐字节扫描 &lt;row&gt; 开始标签，
+ *      每 interval 行记一个检查点：该行开始标签的字节偏移 + 前一行的行号（解析器唯一的跨行状态）
+ *    - 读某一页时从不超过 offset 的最近检查点开始：文件头（到 &lt;sheetData&gt; 开始标签为止，保留命名空间声明）
+ *      拼上检查点之后的内容交给 {@link XlsxSheetReader.SheetRows}，最多跳过 interval - 1 行，第 N 页和第一页开销相同
+ *    - 索引文件记录 stamp（存储文件的 SHA-256）和 interval，不一致时由调用方重建
+ * 建好后不可变，可以在多个线程上同时读取不同的页。
+ */
+public final class SheetPageIndex {
+
+    private static final int MAGIC = 0x45575049;
+    private static final int VERSION = 1;
+
+    private final XlsxSheetReader decoding;
+    private final Path xmlFile;
+    private final String stamp;
+    private final int interval;
+    private final long rows;
+    private final byte[] head;
+    private final long[] offsets;
+    private final int[] lastRowNums;
+
+    private SheetPageIndex(XlsxSheetReader decoding, Path xmlFile, String stamp, int interval, long rows,
+                           byte[] head, long[] offsets, int[] lastRowNums) {
+        this.decoding = decoding;
+        this.xmlFile = xmlFile;
+        this.stamp = stamp;
+        this.interval = interval;
+        this.rows = rows;
+        this.head = head;
+        this.offsets = offsets;
+        this.lastRowNums = lastRowNums;
+    }
+
+    public String stamp() {
+        return stamp;
+    }
+
+    /**
+     * sheet 里的总行数（文件里出现的 &lt;row&gt; 个数，与 {@link XlsxSheetReader} 输出的行数一致）
+     */
+    public long rows() {
+        return rows;
+    }
+
+    /**
+     * 为 sheet 建索引并写入 xmlFile / indexFile（先写临时文件再改名，中途失败不会留下半成品）
+     *
+     * @param decoding 提供共享字符串和样式，之后读页时使用（zip 可以在建完后关闭）
+     */
+    public static SheetPageIndex build(XlsxSheetReader decoding, XlsxSheetReader.SheetInfo sheet, Path xmlFile,
+                                       Path indexFile, String stamp, int interval) throws IOException {
+        Files.createDirectories(xmlFile.getParent());
+        Files.createDirectories(indexFile.getParent());
+        Path xmlPartial = xmlFile.resolveSibling(xmlFile.getFileName() + ".part");
+        Path indexPartial = indexFile.resolveSibling(indexFile.getFileName() + ".part");
+        RowScanner scanner = new RowScanner(Math.max(1, interval));
+        try {
+            try (InputStream in = decoding.openPart(sheet);
+                 OutputStream out = Files.newOutputStream(xmlPartial)) {
+                byte[] buf = new byte[64 * 1024];
+                long position = 0;
+                for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                    out.write(buf, 0, n);
+                    scanner.feed(buf, n, position);
+                    position += n;
+                }
+            }
+            long headEnd = Math.max(scanner.headEnd, 0);
+            byte[] head = new byte[(int) headEnd];
+            try (InputStream in = Files.newInputStream(xmlPartial)) {
+                in.readNBytes(head, 0, head.length);
+            }
+            SheetPageIndex index = new SheetPageIndex(decoding, xmlFile, stamp, scanner.interval, scanner.rows, head,
+                    Arrays.copyOf(scanner.offsets, scanner.checkpoints),
+                    Arrays.copyOf(scanner.lastRowNums, scanner.checkpoints));
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexPartial)))) {
+                index.write(out);
+            }
+            // 先换 xml 再换索引：索引存在且 stamp 一致时 xml 一定是完整的
+            Files.move(xmlPartial, xmlFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(indexPartial, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return index;
+        } finally {
+            Files.deleteIfExists(xmlPartial);
+            Files.deleteIfExists(indexPartial);
+        }
+    }
+
+    /**
+     * 读取已有的索引；不存在、格式不对或 stamp / interval 不一致时返回 null
+     */
+    public static SheetPageIndex load(XlsxSheetReader decoding, Path xmlFile, Path indexFile, String stamp,
+                                      int interval) throws IOException {
+        if (!Files.isRegularFile(indexFile) || !Files.isRegularFile(xmlFile)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(stamp)
+                    || in.readInt() != Math.max(1, interval)) {
+                return null;
+            }
+            long rows = in.readLong();
+            byte[] head = new byte[in.readInt()];
+            in.readFully(head);
+            int checkpoints = in.readInt();
+            long[] offsets = new long[checkpoints];
+            int[] lastRowNums = new int[checkpoints];
+            for (int i = 0; i < checkpoints; i++) {
+                offsets[i] = in.readLong();
+                lastRowNums[i] = in.readInt();
+            }
+            return new SheetPageIndex(decoding, xmlFile, stamp, Math.max(1, interval), rows, head, offsets, lastRowNums);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(stamp);
+        out.writeInt(interval);
+        out.writeLong(rows);
+        out.writeInt(head.length);
+        out.write(head);
+        out.writeInt(offsets.length);
+        for (int i = 0; i < offsets.length; i++) {
+            out.writeLong(offsets[i]);
+            out.writeInt(lastRowNums[i]);
+        }
+    }
+
+    /**
+     * 读取第 offset 行（从 0 开始，按文件里的行顺序计）起的最多 limit 行（阻塞，worker 线程上使用）
+     */
+    public List<XlsxSheetReader.ParsedRow> page(long offset, int limit) throws IOException {
+        if (offset < 0 || limit <= 0 || offset >= rows || offsets.length == 0) {
+            return List.of();
+        }
+        int checkpoint = (int) Math.min(offset / interval, offsets.length - 1);
+        long skip = offset - (long) checkpoint * interval;
+        FileChannel channel = FileChannel.open(xmlFile, StandardOpenOption.READ);
+        InputStream xml;
+        try {
+            channel.position(offsets[checkpoint]);
+            xml = new SequenceInputStream(new ByteArrayInputStream(head), Channels.newInputStream(channel));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        try (XlsxSheetReader.SheetRows sheetRows = decoding.rows(xml, lastRowNums[checkpoint])) {
+            for (; skip > 0 && sheetRows.hasNext(); skip--) {
+                sheetRows.next();
+            }
+            List<XlsxSheetReader.ParsedRow> page = new ArrayList<>((int) Math.min(limit, rows - offset));
+            while (page.size() < limit && sheetRows.hasNext()) {
+                page.add(sheetRows.next());
+            }
+            return page;
+        }
+    }
+
+    /**
+     * 逐字节扫描 sheet XML（跨缓冲区保持状态）：找到 &lt;sheetData&gt; 开始标签的结束位置，
+     * 以及其后每个 &lt;row&gt; 开始标签的偏移和 r 属性
+     */
+    private static final class RowScanner {
+        private static final int TEXT = 0;
+        private static final int NAME = 1;
+        private static final int TAG = 2;
+
+        private final int interval;
+        private long headEnd = -1;
+        private long rows;
+        private int lastRowNum;
+        private long[] offsets = new long[64];
+        private int[] lastRowNums = new int[64];
+        private int checkpoints;
+
+        private int state = TEXT;
+        private long tagStart;
+        private final byte[] name = new byte[64];
+        private int nameLength;
+        private boolean row;
+        private boolean sheetData;
+        private byte quote;
+        private final byte[] attributes = new byte[512];
+        private int attributesLength;
+
+        RowScanner(int interval) {
+            this.interval = interval;
+        }
+
+        void feed(byte[] buf, int length, long position) {
+            for (int i = 0; i < length; i++) {
+                byte c = buf[i];
+                switch (state) {
+                    case TEXT -> {
+                        if (c == '<') {
+                            state = NAME;
+                            tagStart = position + i;
+                            nameLength = 0;
+                        }
+                    }
+                    case NAME -> {
+                        if (isNameChar(c)) {
+                            if (nameLength < name.length) {
+                                name[nameLength] = c;
+                            }
+                            nameLength++;
+                        } else {
+                            // 名称结束，当前字符按标签内容再处理一次
+                            classify();
+                            state = TAG;
+                            quote = 0;
+                            attributesLength = 0;
+                            i--;
+                        }
+                    }
+                    default -> {
+                        if (quote != 0) {
+                            if (c == quote) {
+                                quote = 0;
+                            }
+                        } else if (c == '"' || c == '\'') {
+                            quote = c;
+                        } else if (c == '>') {
+                            endTag(position + i);
+                            state = TEXT;
+                            continue;
+                        }
+                        if (row && attributesLength < attributes.length) {
+                            attributes[attributesLength++] = c;
+                        }
+                    }
+                }
+            }
+        }
+
+        private void classify() {
+            int start = 0;
+            int length = Math.min(nameLength, name.length);
+            for (int i = 0; i < length; i++) {
+                if (name[i] == ':') {
+                    start = i + 1;
+                }
+            }
+            row = headEnd >= 0 && localNameIs(start, length, "row");
+            sheetData = headEnd < 0 && localNameIs(start, length, "sheetData");
+        }
+
+        private boolean localNameIs(int start, int end, String local) {
+            if (end - start != local.length() || nameLength > name.length) {
+                return false;
+            }
+            for (int i = 0; i < local.length(); i++) {
+                if (name[start + i] != local.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void endTag(long position) {
+            if (sheetData) {
+                headEnd = position + 1;
+                sheetData = false;
+            } else if (row) {
+                if (rows % interval == 0) {
+                    if (checkpoints == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, checkpoints * 2);
+                        lastRowNums = Arrays.copyOf(lastRowNums, checkpoints * 2);
+                    }
+                    offsets[checkpoints] = tagStart;
+                    lastRowNums[checkpoints] = lastRowNum;
+                    checkpoints++;
+                }
+                int r = rowAttribute();
+                lastRowNum = r > 0 ? r : lastRowNum + 1;
+                rows++;
+                row = false;
+            }
+        }
+
+        /**
+         * 开始标签里 r="数字" 的值，没有时返回 -1
+         */
+        private int rowAttribute() {
+            for (int i = 1; i < attributesLength; i++) {
+                if (attributes[i] != 'r' || !isSpace(attributes[i - 1])) {
+                    continue;
+                }
+                int j = i + 1;
+                while (j < attributesLength && isSpace(attributes[j])) {
+                    j++;
+                }
+                if (j >= attributesLength || attributes[j] != '=') {
+                    continue;
+                }
+                j++;
+                while (j < attributesLength && isSpace(attributes[j])) {
+                    j++;
+                }
+                if (j >= attributesLength || (attributes[j] != '"' && attributes[j] != '\'')) {
+                    continue;
+                }
+                int value = 0;
+                boolean digits = false;
+                for (j++; j < attributesLength && attributes[j] >= '0' && attributes[j] <= '9'; j++) {
+                    value = value * 10 + (attributes[j] - '0');
+                    digits = true;
+                }
+                return digits ? value : -1;
+            }
+            return -1;
+        }
+
+        private static boolean isNameChar(byte c) {
+            return c != '/' && c != '!' && c != '?' && c != '>' && !isSpace(c) && c != '"' && c != '\'' && c != '=';
+        }
+
+        private static boolean isSpace(byte c) {
+            return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.ewancle.xlsx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * 对某个 sheet 的修改：在末尾追加行、按行号（从 0 开始，同 POI）整行替换
+ */
+public class SheetPatch {
+
+    private final int sheetIndex;
+    private final List<List<?>> appends = new ArrayList<>();
+    private final TreeMap<Integer, List<?>> replacements = new TreeMap<>();
+
+    public SheetPatch(int sheetIndex) {
+        this.sheetIndex = sheetIndex;
+    }
+
+    public SheetPatch append(List<?> values) {
+        appends.add(values);
+        return this;
+    }
+
+    public SheetPatch replace(int rowIndex, List<?> values) {
+        if (rowIndex < 0) {
+            throw new IllegalArgumentException("rowIndex must be >= 0");
+        }
+        replacements.put(rowIndex, values);
+        return this;
+    }
+
+    public int sheetIndex() {
+        return sheetIndex;
+    }
+
+    public List<List<?>> appends() {
+        return Collections.unmodifiableList(appends);
+    }
+
+    public NavigableMap<Integer, List<?>> replacements() {
+        return Collections.unmodifiableNavigableMap(replacements);
+    }
+}
@@ -0,0 +1,220 @@
+package com.ewancle.xlsx;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 直接输出 sheet XML 片段（行、单元格），字符串一律写成 inline string，不依赖 sharedStrings.xml
+ */
+public final class SheetXml {
+
+    public static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    public static final String REL_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    private static final int[] NO_STYLES = new int[0];
+
+    private SheetXml() {
+    }
+
+    /**
+     * 写一整行，rowNum 从 1 开始；null 值的单元格不输出
+     */
+    public static void row(Writer w, int rowNum, List<?> values) throws IOException {
+        row(w, rowNum, values, NO_STYLES);
+    }
+
+    /**
+     * 写一整行，styles[c] 为第 c 列单元格的样式，超出数组的列不指定样式
+     */
+    public static void row(Writer w, int rowNum, List<?> values, int[] styles) throws IOException {
+        w.write("<row r=\"");
+        w.write(Integer.toString(rowNum));
+        w.write("\">");
+        for (int c = 0; c < values.size(); c++) {
+            Object v = values.get(c);
+            if (v != null) {
+                cell(w, c, rowNum, v, c < styles.length ? styles[c] : -1);
+            }
+        }
+        w.write("</row>");
+    }
+
+    /**
+     * 写一个单元格；style 为 cellXfs 下标，-1 表示不指定。
+     * 日期只有指定了（日期格式的）style 才写成序列号，否则写 ISO 文本，避免显示成一个数字
+     */
+    public static void cell(Writer w, int col, int rowNum, Object value, int style) throws IOException {
+        w.write("<c r=\"");
+        w.write(CellReference.convertNumToColString(col));
+        w.write(Integer.toString(rowNum));
+        w.write('"');
+        if (style >= 0) {
+            w.write(" s=\"");
+            w.write(Integer.toString(style));
+            w.write('"');
+        }
+        if (value instanceof Number n && isFinite(n)) {
+            w.write("><v>");
+            w.write(number(n));
+            w.write("</v></c>");
+        } else if (value instanceof Boolean b) {
+            w.write(" t=\"b\"><v>");
+            w.write(b ? '1' : '0');
+            w.write("</v></c>");
+        } else if (style >= 0 && excelDate(value) >= 0) {
+            w.write("><v>");
+            w.write(number(excelDate(value)));
+            w.write("</v></c>");
+        } else {
+            w.write(" t=\"inlineStr\"><is>");
+            text(w, value.toString());
+            w.write("</is></c>");
+        }
+    }
+
+    /**
+     * 写一个引用共享字符串表的单元格，index 为 sharedStrings.xml 中 &lt;si&gt; 的下标
+     */
+    public static void sharedStringCell(Writer w, int col, int rowNum, int index, int style) throws IOException {
+        w.write("<c r=\"");
+        w.write(CellReference.convertNumToColString(col));
+        w.write(Integer.toString(rowNum));
+        w.write('"');
+        if (style >= 0) {
+            w.write(" s=\"");
+            w.write(Integer.toString(style));
+            w.write('"');
+        }
+        w.write(" t=\"s\"><v>");
+        w.write(Integer.toString(index));
+        w.write("</v></c>");
+    }
+
+    /**
+     * 写 &lt;t&gt; 文本元素（inline string 和 sharedStrings 的 &lt;si&gt; 共用），首尾有空白时保留空白
+     */
+    public static void text(Writer w, String text) throws IOException {
+        w.write("<t");
+        if (!text.isEmpty() && (Character.isWhitespace(text.charAt(0))
+                || Character.isWhitespace(text.charAt(text.length() - 1)))) {
+            w.write(" xml:space=\"preserve\"");
+        }
+        w.write('>');
+        escape(w, text, false);
+        w.write("</t>");
+    }
+
+    /**
+     * XML 转义，同时去掉 XML 1.0 不允许的控制字符
+     */
+    public static void escape(Writer w, CharSequence text, boolean attribute) throws IOException {
+        int start = 0;
+        int len = text.length();
+        for (int i = 0; i < len; i++) {
+            char ch = text.charAt(i);
+            String replacement;
+            if (ch == '&') {
+                replacement = "&amp;";
+            } else if (ch == '<') {
+                replacement = "&lt;";
+            } else if (ch == '>') {
+                replacement = "&gt;";
+            } else if (attribute && ch == '"') {
+                replacement = "&quot;";
+            } else if ((ch < 0x20 && ch != '\t' && ch != '\n' && ch != '\r') || ch == 0xFFFE || ch == 0xFFFF) {
+                replacement = "";
+            } else {
+                continue;
+            }
+            w.write(text.subSequence(start, i).toString());
+            w.write(replacement);
+            start = i + 1;
+        }
+        if (start == 0) {
+            w.write(text.toString());
+        } else {
+            w.write(text.subSequence(start, len).toString());
+        }
+    }
+
+    /**
+     * 字符数组版本（StAX 的 getTextCharacters），不产生中间字符串
+     */
+    public static void escape(Writer w, char[] text, int offset, int length) throws IOException {
+        int start = offset;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            char ch = text[i];
+            String replacement;
+            if (ch == '&') {
+                replacement = "&amp;";
+            } else if (ch == '<') {
+                replacement = "&lt;";
+            } else if (ch == '>') {
+                replacement = "&gt;";
+            } else if ((ch < 0x20 && ch != '\t' && ch != '\n' && ch != '\r') || ch == 0xFFFE || ch == 0xFFFF) {
+                replacement = "";
+            } else {
+                continue;
+            }
+            w.write(text, start, i - start);
+            w.write(replacement);
+            start = i + 1;
+        }
+        w.write(text, start, end - start);
+    }
+
+    /**
+     * 单元格引用（如 "AB12"）中的列号，从 0 开始
+     */
+    public static int column(String cellRef) {
+        int col = 0;
+        for (int i = 0; i < cellRef.length(); i++) {
+            char ch = cellRef.charAt(i);
+            if (ch >= 'A' && ch <= 'Z') {
+                col = col * 26 + (ch - 'A' + 1);
+            } else if (ch >= 'a' && ch <= 'z') {
+                col = col * 26 + (ch - 'a' + 1);
+            } else if (ch != '$') {
+                break;
+            }
+        }
+        return col - 1;
+    }
+
+    private static boolean isFinite(Number n) {
+        return !(n instanceof Double d && !Double.isFinite(d)) && !(n instanceof Float f && !Float.isFinite(f));
+    }
+
+    private static String number(Number n) {
+        if (n instanceof Double || n instanceof Float) {
+            double d = n.doubleValue();
+            // 整数值不带 ".0"
+            if (d == Math.rint(d) && Math.abs(d) < 1e15) {
+                return Long.toString((long) d);
+            }
+            return Double.toString(d);
+        }
+        return n.toString();
+    }
+
+    private static double excelDate(Object value) {
+        if (value instanceof LocalDateTime t) {
+            return DateUtil.getExcelDate(t);
+        }
+        if (value instanceof LocalDate d) {
+            return DateUtil.getExcelDate(d);
+        }
+        if (value instanceof Date d) {
+            return DateUtil.getExcelDate(d);
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,299 @@
+package com.ewancle.xlsx;
+
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.ExtendedFormatRecord;
+import org.apache.poi.hssf.record.FormatRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.MulRKRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.RKRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactoryInputStream;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaError;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 基于 HSSF 记录流的 .xls（BIFF8）只读解析，不创建 HSSFWorkbook：
+ *    - POIFS 按文件只读打开，Workbook 流用 {@link RecordFactoryInputStream} 逐条拉取记录，内存里只保留
+ *      共享字符串表（SST）、数字格式和当前一行
+ *    - 全局区的 XF / FORMAT 记录先按 {@link NumberFormatKind} 分类，单元格按所属 XF 的分类解码
+ *    - 公式单元格取文件里缓存的结果，字符串结果在其后的 STRING 记录里（共享 / 数组公式中间隔着 SHRFMLA / ARRAY）
+ *    - 同一个 sheet 里单元格记录按行排列，行号变化时输出上一行；没有任何单元格记录的行不输出
+ * 输出的行与 {@link XlsxSheetReader} 相同（rowNum 从 1 开始，values 按列下标排列，末尾的空单元格截掉）：
+ * text=false 时值为 String / Double / Boolean / LocalDateTime / 错误文本；
+ * text=true 时数字按格式分类转成文本（与 {@code CellDecoder.text} 一致）。
+ * 只在一个线程上使用；用完必须 close。
+ */
+public final class XlsEventReader implements Iterator<XlsxSheetReader.ParsedRow>, AutoCloseable {
+
+    private final POIFSFileSystem fs;
+    private final InputStream in;
+    private final RecordFactoryInputStream records;
+    private final int sheetIndex;
+    private final boolean text;
+
+    private final List<String> sheetNames = new ArrayList<>();
+    private final Map<Integer, String> customFormats = new HashMap<>();
+    private final List<Short> xfFormats = new ArrayList<>();
+    private NumberFormatKind[] kinds = new NumberFormatKind[0];
+    private SSTRecord sst;
+    private boolean date1904;
+
+    // 子流嵌套深度（工作表里嵌入的图表也有自己的 BOF/EOF）和已经读过的顶层子流数（第一个是全局区）
+    private int depth;
+    private int substreams;
+    private boolean inTargetSheet;
+    private boolean finished;
+
+    private int currentRow = -1;
+    private Object[] values = new Object[16];
+    private int width;
+    // 结果是字符串的公式：值在下一条 STRING 记录里
+    private int pendingStringRow = -1;
+    private int pendingStringColumn;
+    private XlsxSheetReader.ParsedRow next;
+
+    private XlsEventReader(POIFSFileSystem fs, InputStream in, int sheetIndex, boolean text) {
+        this.fs = fs;
+        this.in = in;
+        this.records = new RecordFactoryInputStream(in, false);
+        this.sheetIndex = sheetIndex;
+        this.text = text;
+    }
+
+    /**
+     * @param sheetIndex 从 0 开始的 sheet 序号（按工作簿里的 sheet 顺序）
+     * @param text       数字是否按格式转成文本
+     */
+    public static XlsEventReader open(Path file, int sheetIndex, boolean text) throws IOException {
+        POIFSFileSystem fs = new POIFSFileSystem(file.toFile(), true);
+        InputStream in = null;
+        try {
+            in = fs.createDocumentInputStream(HSSFWorkbook.getWorkbookDirEntryName(fs.getRoot()));
+            return new XlsEventReader(fs, in, sheetIndex, text);
+        } catch (IOException | RuntimeException e) {
+            if (in != null) {
+                in.close();
+            }
+            fs.close();
+            throw e instanceof IOException io ? io : new IOException("Not a readable xls workbook", e);
+        }
+    }
+
+    /**
+     * 工作簿里所有 sheet 的名称；读到第一行之前调用时可能还不完整
+     */
+    public List<String> sheetNames() {
+        return List.copyOf(sheetNames);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            next = readRow();
+        }
+        return next != null;
+    }
+
+    @Override
+    public XlsxSheetReader.ParsedRow next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        XlsxSheetReader.ParsedRow row = next;
+        next = null;
+        return row;
+    }
+
+    private XlsxSheetReader.ParsedRow readRow() {
+        Record record;
+        while ((record = records.nextRecord()) != null) {
+            if (record instanceof BOFRecord) {
+                if (depth++ == 0) {
+                    substreams++;
+                    // 第 1 个顶层子流是全局区，之后按顺序对应各个 sheet
+                    inTargetSheet = substreams - 2 == sheetIndex;
+                }
+                continue;
+            }
+            if (record instanceof EOFRecord) {
+                if (--depth == 0) {
+                    if (substreams == 1) {
+                        classifyFormats();
+                    } else if (inTargetSheet) {
+                        finished = true;
+                        return flush();
+                    }
+                }
+                continue;
+            }
+            if (substreams == 1) {
+                readGlobal(record);
+            } else if (inTargetSheet && depth == 1) {
+                XlsxSheetReader.ParsedRow row = readCell(record);
+                if (row != null) {
+                    return row;
+                }
+            }
+        }
+        finished = true;
+        return flush();
+    }
+
+    private void readGlobal(Record record) {
+        if (record instanceof BoundSheetRecord sheet) {
+            sheetNames.add(sheet.getSheetname());
+        } else if (record instanceof SSTRecord strings) {
+            sst = strings;
+        } else if (record instanceof FormatRecord format) {
+            customFormats.put(format.getIndexCode(), format.getFormatString());
+        } else if (record instanceof ExtendedFormatRecord xf) {
+            xfFormats.add(xf.getFormatIndex());
+        } else if (record instanceof DateWindow1904Record window) {
+            date1904 = window.getWindowing() == 1;
+        }
+    }
+
+    private void classifyFormats() {
+        kinds = new NumberFormatKind[xfFormats.size()];
+        for (int i = 0; i < kinds.length; i++) {
+            int id = xfFormats.get(i) & 0xFFFF;
+            String format = customFormats.getOrDefault(id, BuiltinFormats.getBuiltinFormat(id));
+            kinds[i] = NumberFormatKind.classify(id, format);
+        }
+    }
+
+    /**
+     * 处理一条单元格记录；行号变化时返回已完成的上一行
+     */
+    private XlsxSheetReader.ParsedRow readCell(Record record) {
+        if (record instanceof StringRecord string) {
+            if (pendingStringRow >= 0) {
+                int row = pendingStringRow;
+                pendingStringRow = -1;
+                return put(row, pendingStringColumn, string.getString());
+            }
+            return null;
+        }
+        if (record instanceof NumberRecord number) {
+            return put(number.getRow(), number.getColumn(), number(number.getValue(), number.getXFIndex()));
+        } else if (record instanceof RKRecord rk) {
+            return put(rk.getRow(), rk.getColumn(), number(rk.getRKNumber(), rk.getXFIndex()));
+        } else if (record instanceof MulRKRecord mulRk) {
+            XlsxSheetReader.ParsedRow done = null;
+            for (int i = 0; i < mulRk.getNumColumns(); i++) {
+                XlsxSheetReader.ParsedRow row = put(mulRk.getRow(), mulRk.getFirstColumn() + i,
+                        number(mulRk.getRKNumberAt(i), mulRk.getXFAt(i)));
+                done = done != null ? done : row;
+            }
+            return done;
+        } else if (record instanceof LabelSSTRecord label) {
+            return put(label.getRow(), label.getColumn(), sst != null ? sst.getString(label.getSSTIndex()).getString() : null);
+        } else if (record instanceof LabelRecord label) {
+            return put(label.getRow(), label.getColumn(), label.getValue());
+        } else if (record instanceof BoolErrRecord boolErr) {
+            Object value = boolErr.isBoolean()
+                    ? (Object) (text ? Boolean.toString(boolErr.getBooleanValue()) : boolErr.getBooleanValue())
+                    : FormulaError.forInt(boolErr.getErrorValue()).getString();
+            return put(boolErr.getRow(), boolErr.getColumn(), value);
+        } else if (record instanceof FormulaRecord formula) {
+            return readFormula(formula);
+        } else if (record instanceof BlankRecord blank) {
+            return put(blank.getRow(), blank.getColumn(), null);
+        } else if (record instanceof MulBlankRecord mulBlank) {
+            return put(mulBlank.getRow(), mulBlank.getFirstColumn(), null);
+        }
+        return null;
+    }
+
+    private XlsxSheetReader.ParsedRow readFormula(FormulaRecord formula) {
+        CellType type = formula.getCachedResultTypeEnum();
+        Object value;
+        if (type == CellType.STRING) {
+            // 字符串结果在下一条 STRING 记录里，这里先占住行
+            XlsxSheetReader.ParsedRow done = put(formula.getRow(), formula.getColumn(), null);
+            pendingStringRow = formula.getRow();
+            pendingStringColumn = formula.getColumn();
+            return done;
+        } else if (type == CellType.BOOLEAN) {
+            value = text ? Boolean.toString(formula.getCachedBooleanValue()) : formula.getCachedBooleanValue();
+        } else if (type == CellType.ERROR) {
+            value = FormulaError.forInt(formula.getCachedErrorValue()).getString();
+        } else {
+            value = number(formula.getValue(), formula.getXFIndex());
+        }
+        return put(formula.getRow(), formula.getColumn(), value);
+    }
+
+    private Object number(double value, short xfIndex) {
+        int xf = xfIndex & 0xFFFF;
+        NumberFormatKind kind = xf < kinds.length ? kinds[xf] : NumberFormatKind.GENERAL;
+        if (text) {
+            return kind.format(value, date1904);
+        }
+        return kind.isDate() && DateUtil.isValidExcelDate(value) ? DateUtil.getLocalDateTime(value, date1904) : value;
+    }
+
+    /**
+     * 记下一个单元格；如果它属于新的一行，先返回已完成的上一行
+     */
+    private XlsxSheetReader.ParsedRow put(int row, int column, Object value) {
+        // 只有下一个单元格才结束等待中的字符串公式：SHRFMLA / ARRAY / TABLE 会夹在 FORMULA 和 STRING 之间
+        pendingStringRow = -1;
+        XlsxSheetReader.ParsedRow done = row != currentRow ? flush() : null;
+        currentRow = row;
+        if (value != null) {
+            if (column >= values.length) {
+                values = Arrays.copyOf(values, Math.max(column + 1, values.length * 2));
+            }
+            values[column] = value;
+            width = Math.max(width, column + 1);
+        }
+        return done;
+    }
+
+    private XlsxSheetReader.ParsedRow flush() {
+        if (currentRow < 0) {
+            return null;
+        }
+        XlsxSheetReader.ParsedRow row = new XlsxSheetReader.ParsedRow(currentRow + 1, Arrays.copyOf(values, width));
+        Arrays.fill(values, 0, width, null);
+        width = 0;
+        currentRow = -1;
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            fs.close();
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.ewancle.xlsx;
+
+import com.ewancle.storage.TempFileManager;
+import com.ewancle.zip.ZipEntryInfo;
+import com.ewancle.zip.ZipStreamBuilder;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.subscription.UniEmitter;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.core.file.AsyncFile;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongFunction;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 大数据量 xlsx 导出（不经过 POI）：
+ *    - 行数超过 max-rows-per-sheet（默认即 Excel 上限 1048576，含表头）时自动拆成多个 sheet，每个 sheet 都带表头
+ *    - 各 sheet 的 XML 在 worker 线程上并行生成并 deflate 到各自的临时文件，最多 parallelism 个同时生成，
+ *      一个完成就开始下一个，不等同批的其他 sheet
+ *    - 按完成顺序到达的 sheet 恢复成 sheet 顺序写进 ZIP，写完即删除临时文件；
+ *      领先已写出的 sheet 超过 2 * parallelism 个时暂停开始新的，排在前面的 sheet 慢（或客户端读得慢）时
+ *      等待写出的临时文件数量有上限
+ * 数据源按行号随机访问（rowAt），这样不同 sheet 可以同时取数；字符串写成 inline string。
+ */
+@ApplicationScoped
+public class XlsxBulkExporter {
+
+    /** Excel 单个 sheet 的最大行数 */
+    public static final int EXCEL_MAX_ROWS = 1_048_576;
+
+    private static final int HEADER_STYLE = 1;
+    private static final int CANCEL_CHECK_ROWS = 4096;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    TempFileManager tempFiles;
+
+    @ConfigProperty(name = "app.export.max-rows-per-sheet", defaultValue = "1048576")
+    int maxRowsPerSheet;
+
+    /** 0 表示使用 CPU 核数 */
+    @ConfigProperty(name = "app.export.sheet-parallelism", defaultValue = "0")
+    int sheetParallelism;
+
+    @ConfigProperty(name = "app.export.level", defaultValue = "6")
+    int level;
+
+    private record SheetData(int index, TempFileManager.TempFile file, long crc, long compressedSize, long size) {}
+
+    /**
+     * @param sheetName sheet 名称前缀，拆分后依次为 name、name (2)、name (3) ...
+     * @param headers   表头，为空时不写表头
+     * @param rows      数据行数
+     * @param rowAt     按行号（从 0 开始）取一行的值，可能被多个线程同时调用
+     */
+    public Multi<Buffer> export(String sheetName, List<String> headers, long rows, LongFunction<List<?>> rowAt) {
+        int rowsPerSheet = Math.min(maxRowsPerSheet, EXCEL_MAX_ROWS) - (headers.isEmpty() ? 0 : 1);
+        if (rowsPerSheet <= 0) {
+            throw new IllegalStateException("app.export.max-rows-per-sheet too small: " + maxRowsPerSheet);
+        }
+        int sheets = (int) Math.max(1, (rows + rowsPerSheet - 1) / rowsPerSheet);
+        int parallelism = sheetParallelism > 0 ? sheetParallelism : Runtime.getRuntime().availableProcessors();
+        return Multi.createFrom().deferred(() -> {
+            AtomicBoolean cancelled = new AtomicBoolean();
+            ZipStreamBuilder zip = new ZipStreamBuilder(System.currentTimeMillis());
+            List<Multi<Buffer>> staticParts = List.of(
+                    zip.deflated("[Content_Types].xml", contentTypes(sheets), level),
+                    zip.deflated("_rels/.rels", bytes(ROOT_RELS), level),
+                    zip.deflated("xl/workbook.xml", workbook(sheetName, sheets), level),
+                    zip.deflated("xl/_rels/workbook.xml.rels", workbookRels(sheets), level),
+                    zip.deflated("xl/styles.xml", bytes(STYLES), level));
+            SheetWindow window = new SheetWindow(2 * parallelism);
+            Queue<SheetData> generated = new ConcurrentLinkedQueue<>();
+            TreeMap<Integer, SheetData> completed = new TreeMap<>();
+            int[] nextToWrite = {0};
+            Multi<Buffer> sheetParts = Multi.createFrom().range(0, sheets)
+                    .onItem().transformToUni(index -> window.enter(index)
+                            .onItem().transformToUni(ignore -> Uni.createFrom().item(() -> {
+                                        long from = (long) index * rowsPerSheet;
+                                        long to = Math.min(rows, from + rowsPerSheet);
+                                        SheetData sheet = writeSheet(index, headers, from, to, rowAt, cancelled);
+                                        generated.add(sheet);
+                                        if (cancelled.get()) {
+                                            // 导出已结束，下面的清理可能已经跑过
+                                            sheet.file().close();
+                                        }
+                                        return sheet;
+                                    })
+                                    .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())))
+                    .merge(parallelism)
+                    // 按完成顺序到达，攒到前面的 sheet 都完成后按 sheet 顺序放行
+                    .onItem().transformToIterable(sheet -> {
+                        completed.put(sheet.index(), sheet);
+                        List<SheetData> inOrder = new ArrayList<>();
+                        while (!completed.isEmpty() && completed.firstKey() == nextToWrite[0]) {
+                            inOrder.add(completed.pollFirstEntry().getValue());
+                            nextToWrite[0]++;
+                        }
+                        return inOrder;
+                    })
+                    .onItem().transformToMultiAndConcatenate(sheet -> zip.raw(
+                                    "xl/worksheets/sheet" + (sheet.index() + 1) + ".xml", ZipEntryInfo.DEFLATED,
+                                    sheet.crc(), sheet.compressedSize(), sheet.size(), content(sheet))
+                            .onCompletion().invoke(() -> {
+                                sheet.file().close();
+                                window.advance();
+                            }));
+            return Multi.createBy().concatenating().streams(
+                            Multi.createBy().concatenating().streams(staticParts), sheetParts, zip.centralDirectory())
+                    // 取消或失败时停止生成中的 sheet，删除已生成但还没写出的临时文件
+                    .onTermination().invoke(() -> {
+                        cancelled.set(true);
+                        generated.forEach(sheet -> sheet.file().close());
+                    });
+        });
+    }
+
+    /**
+     * 生成窗口：第 index 个 sheet 只有在 index &lt; 已写出的 sheet 数 + limit 时才开始生成，否则等前面的 sheet 写出。
+     * 下一个要写出的 sheet 总在窗口内，不会互相等待
+     */
+    private static final class SheetWindow {
+        private record Waiter(int index, UniEmitter<? super Void> emitter) {}
+
+        private final int limit;
+        private final List<Waiter> waiting = new ArrayList<>();
+        private int written;
+
+        SheetWindow(int limit) {
+            this.limit = limit;
+        }
+
+        Uni<Void> enter(int index) {
+            return Uni.createFrom().emitter(emitter -> {
+                synchronized (this) {
+                    if (index >= written + limit) {
+                        waiting.add(new Waiter(index, emitter));
+                        return;
+                    }
+                }
+                emitter.complete(null);
+            });
+        }
+
+        void advance() {
+            List<Waiter> ready = new ArrayList<>();
+            synchronized (this) {
+                written++;
+                waiting.removeIf(w -> w.index() < written + limit && ready.add(w));
+            }
+            ready.forEach(w -> w.emitter().complete(null));
+        }
+    }
+
+    /**
+     * 生成一个 sheet 的 XML 并直接 deflate 到临时文件（worker 线程，阻塞）
+     */
+    private SheetData writeSheet(int index, List<String> headers, long from, long to, LongFunction<List<?>> rowAt,
+                                 AtomicBoolean cancelled) {
+        TempFileManager.TempFile file = tempFiles.allocateBlocking("xlsx-sheet", ".xml.deflate", (to - from) * 32);
+        Deflater deflater = new Deflater(level, true);
+        CRC32 crc = new CRC32();
+        try {
+            try (OutputStream out = Files.newOutputStream(file.path());
+                 Writer w = new BufferedWriter(new OutputStreamWriter(new CheckedOutputStream(
+                         new DeflaterOutputStream(out, deflater, 64 * 1024), crc), StandardCharsets.UTF_8), 64 * 1024)) {
+                XmlCopier.declaration(w);
+                w.write("<worksheet xmlns=\"" + SheetXml.MAIN_NS + "\"><sheetData>");
+                int rowNum = 1;
+                if (!headers.isEmpty()) {
+                    int[] styles = new int[headers.size()];
+                    Arrays.fill(styles, HEADER_STYLE);
+                    SheetXml.row(w, rowNum++, headers, styles);
+                }
+                for (long i = from; i < to; i++) {
+                    if ((i - from) % CANCEL_CHECK_ROWS == 0 && cancelled.get()) {
+                        throw new CancellationException("export cancelled");
+                    }
+                    SheetXml.row(w, rowNum++, rowAt.apply(i));
+                }
+                w.write("</sheetData></worksheet>");
+            }
+            return new SheetData(index, file, crc.getValue(), deflater.getBytesWritten(), deflater.getBytesRead());
+        } catch (IOException e) {
+            file.close();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            file.close();
+            throw e;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private Multi<Buffer> content(SheetData sheet) {
+        return Multi.createFrom().resourceFromUni(
+                        () -> vertx.fileSystem().open(sheet.file().path().toString(), new OpenOptions().setRead(true).setCreate(false)),
+                        AsyncFile::toMulti)
+                .withFinalizer(AsyncFile::close);
+    }
+
+    private static final String ROOT_RELS = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">\
+            <Relationship Id="rId1" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument" Target="xl/workbook.xml"/>\
+            </Relationships>""";
+
+    // 0：默认样式；1：表头加粗
+    private static final String STYLES = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <styleSheet xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main">\
+            <fonts count="2"><font><sz val="11"/><name val="Calibri"/></font><font><b/><sz val="11"/><name val="Calibri"/></font></fonts>\
+            <fills count="2"><fill><patternFill patternType="none"/></fill><fill><patternFill patternType="gray125"/></fill></fills>\
+            <borders count="1"><border><left/><right/><top/><bottom/><diagonal/></border></borders>\
+            <cellStyleXfs count="1"><xf numFmtId="0" fontId="0" fillId="0" borderId="0"/></cellStyleXfs>\
+            <cellXfs count="2"><xf numFmtId="0" fontId="0" fillId="0" borderId="0" xfId="0"/>\
+            <xf numFmtId="0" fontId="1" fillId="0" borderId="0" xfId="0" applyFont="1"/></cellXfs>\
+            <cellStyles count="1"><cellStyle name="Normal" xfId="0" builtinId="0"/></cellStyles>\
+            </styleSheet>""";
+
+    private static byte[] contentTypes(int sheets) {
+        StringBuilder sb = new StringBuilder("""
+                <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+                <Types xmlns="http://schemas.openxmlformats.org/package/2006/content-types">\
+                <Default Extension="rels" ContentType="application/vnd.openxmlformats-package.relationships+xml"/>\
+                <Default Extension="xml" ContentType="application/xml"/>\
+                <Override PartName="/xl/workbook.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml"/>\
+                <Override PartName="/xl/styles.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml"/>""");
+        for (int i = 1; i <= sheets; i++) {
+            sb.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+                    .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        return bytes(sb.append("</Types>").toString());
+    }
+
+    private static byte[] workbook(String sheetName, int sheets) {
+        StringWriter w = new StringWriter();
+        try {
+            XmlCopier.declaration(w);
+            w.write("<workbook xmlns=\"" + SheetXml.MAIN_NS + "\" xmlns:r=\"" + SheetXml.REL_NS + "\"><sheets>");
+            for (int i = 1; i <= sheets; i++) {
+                w.write("<sheet name=\"");
+                SheetXml.escape(w, sheetTitle(sheetName, i), true);
+                w.write("\" sheetId=\"" + i + "\" r:id=\"rId" + i + "\"/>");
+            }
+            w.write("</sheets></workbook>");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);   // StringWriter 不会抛出
+        }
+        return bytes(w.toString());
+    }
+
+    private static byte[] workbookRels(int sheets) {
+        StringBuilder sb = new StringBuilder("""
+                <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+                <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">""");
+        for (int i = 1; i <= sheets; i++) {
+            sb.append("<Relationship Id=\"rId").append(i)
+                    .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet")
+                    .append(i).append(".xml\"/>");
+        }
+        sb.append("<Relationship Id=\"rId").append(sheets + 1)
+                .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\" Target=\"styles.xml\"/>");
+        return bytes(sb.append("</Relationships>").toString());
+    }
+
+    /**
+     * sheet 名最长 31 个字符，不能包含 : \ / ? * [ ]
+     */
+    static String sheetTitle(String base, int index) {
+        String clean = base.replaceAll("[:\\\\/?*\\[\\]]", "_");
+        String suffix = index == 1 ? "" : " (" + index + ")";
+        int max = 31 - suffix.length();
+        return (clean.length() > max ? clean.substring(0, max) : clean) + suffix;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
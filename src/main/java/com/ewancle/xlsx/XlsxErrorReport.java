@@ -0,0 +1,202 @@
+package com.ewancle.xlsx;
+
+import com.ewancle.zip.ZipStreamBuilder;
+import io.smallrye.mutiny.Multi;
+import io.vertx.mutiny.core.buffer.Buffer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 导入校验的错误报告 xlsx（不经过 POI，行数事先未知，边校验边输出）：
+ *    - 第一个 sheet「错误明细」：源表行号、原始各列、错误说明；出错的单元格标红。
+ *      列数以表头为准（表头在明细之前写出），错误说明固定在表头最后的「错误」列，超出表头的单元格不输出
+ *    - 第二个 sheet「汇总」：所有行输出完之后才生成，内容由调用方在那时给出（如各列错误数）
+ * 明细行按块生成 XML 并流式 deflate，内存里只有当前块。
+ */
+public final class XlsxErrorReport {
+
+    private static final int ROWS_PER_CHUNK = 256;
+    private static final int HEADER_STYLE = 1;
+    private static final int ERROR_STYLE = 2;
+
+    /**
+     * 一行错误明细
+     *
+     * @param rowNum     源表里的行号（从 1 开始）
+     * @param values     源表这一行的值（只输出表头范围内的列）
+     * @param badColumns 出错的列（源表的列下标，在表头范围内），对应单元格标红
+     * @param message    错误说明，写在「错误」列
+     */
+    public record Row(int rowNum, Object[] values, int[] badColumns, String message) {}
+
+    private XlsxErrorReport() {
+    }
+
+    /**
+     * @param headers 源表各列的名称
+     * @param rows    出错的行，按源表顺序
+     * @param summary rows 完成后调用一次，返回「汇总」sheet 的各行
+     */
+    public static Multi<Buffer> write(List<String> headers, Multi<Row> rows, Supplier<List<List<?>>> summary,
+                                      int level) {
+        return Multi.createFrom().deferred(() -> {
+            ZipStreamBuilder zip = new ZipStreamBuilder(System.currentTimeMillis());
+            int[] nextRow = {2};
+            Multi<Buffer> details = rows.group().intoLists().of(ROWS_PER_CHUNK)
+                    .map(chunk -> {
+                        StringWriter w = new StringWriter(chunk.size() * 256);
+                        try {
+                            for (Row row : chunk) {
+                                writeRow(w, nextRow[0]++, headers.size(), row);
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);   // StringWriter 不会抛出
+                        }
+                        return buffer(w.toString());
+                    });
+            Multi<Buffer> detailSheet = Multi.createBy().concatenating().streams(
+                    Multi.createFrom().item(() -> buffer(detailHead(headers))),
+                    details,
+                    Multi.createFrom().item(Buffer.buffer("</sheetData></worksheet>")));
+            // 汇总在明细全部写完后才生成
+            Multi<Buffer> summarySheet = Multi.createFrom().deferred(() ->
+                    zip.deflated("xl/worksheets/sheet2.xml", bytes(summarySheet(summary.get())), level));
+            return Multi.createBy().concatenating().streams(
+                    zip.deflated("[Content_Types].xml", bytes(CONTENT_TYPES), level),
+                    zip.deflated("_rels/.rels", bytes(ROOT_RELS), level),
+                    zip.deflated("xl/workbook.xml", bytes(WORKBOOK), level),
+                    zip.deflated("xl/_rels/workbook.xml.rels", bytes(WORKBOOK_RELS), level),
+                    zip.deflated("xl/styles.xml", bytes(STYLES), level),
+                    zip.deflated("xl/worksheets/sheet1.xml", detailSheet, level),
+                    summarySheet,
+                    zip.centralDirectory());
+        });
+    }
+
+    private static String detailHead(List<String> headers) {
+        StringWriter w = new StringWriter();
+        try {
+            XmlCopier.declaration(w);
+            // 冻结表头行
+            w.write("<worksheet xmlns=\"" + SheetXml.MAIN_NS + "\"><sheetViews><sheetView workbookViewId=\"0\">"
+                    + "<pane ySplit=\"1\" topLeftCell=\"A2\" activePane=\"bottomLeft\" state=\"frozen\"/>"
+                    + "</sheetView></sheetViews><sheetData><row r=\"1\">");
+            SheetXml.cell(w, 0, 1, "行号", HEADER_STYLE);
+            for (int c = 0; c < headers.size(); c++) {
+                SheetXml.cell(w, c + 1, 1, headers.get(c), HEADER_STYLE);
+            }
+            SheetXml.cell(w, headers.size() + 1, 1, "错误", HEADER_STYLE);
+            w.write("</row>");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);   // StringWriter 不会抛出
+        }
+        return w.toString();
+    }
+
+    private static void writeRow(Writer w, int rowNum, int headerColumns, Row row) throws IOException {
+        w.write("<row r=\"");
+        w.write(Integer.toString(rowNum));
+        w.write("\">");
+        SheetXml.cell(w, 0, rowNum, row.rowNum(), -1);
+        Object[] values = row.values();
+        for (int c = 0; c < headerColumns; c++) {
+            Object v = c < values.length ? values[c] : null;
+            boolean bad = contains(row.badColumns(), c);
+            if (v == null && !bad) {
+                continue;
+            }
+            // 标红的单元格有样式，日期要写成文本，否则会显示成序列号
+            Object out = v == null ? "" : v instanceof LocalDateTime ? v.toString() : v;
+            SheetXml.cell(w, c + 1, rowNum, out, bad ? ERROR_STYLE : -1);
+        }
+        SheetXml.cell(w, headerColumns + 1, rowNum, row.message(), -1);
+        w.write("</row>");
+    }
+
+    private static boolean contains(int[] columns, int column) {
+        for (int c : columns) {
+            if (c == column) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String summarySheet(List<List<?>> rows) {
+        StringWriter w = new StringWriter();
+        try {
+            XmlCopier.declaration(w);
+            w.write("<worksheet xmlns=\"" + SheetXml.MAIN_NS + "\"><sheetData>");
+            for (int r = 0; r < rows.size(); r++) {
+                SheetXml.row(w, r + 1, rows.get(r));
+            }
+            w.write("</sheetData></worksheet>");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);   // StringWriter 不会抛出
+        }
+        return w.toString();
+    }
+
+    private static final String CONTENT_TYPES = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <Types xmlns="http://schemas.openxmlformats.org/package/2006/content-types">\
+            <Default Extension="rels" ContentType="application/vnd.openxmlformats-package.relationships+xml"/>\
+            <Default Extension="xml" ContentType="application/xml"/>\
+            <Override PartName="/xl/workbook.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml"/>\
+            <Override PartName="/xl/styles.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml"/>\
+            <Override PartName="/xl/worksheets/sheet1.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml"/>\
+            <Override PartName="/xl/worksheets/sheet2.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml"/>\
+            </Types>""";
+
+    private static final String ROOT_RELS = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">\
+            <Relationship Id="rId1" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument" Target="xl/workbook.xml"/>\
+            </Relationships>""";
+
+    private static final String WORKBOOK = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <workbook xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main" \
+            xmlns:r="http://schemas.openxmlformats.org/officeDocument/2006/relationships"><sheets>\
+            <sheet name="错误明细" sheetId="1" r:id="rId1"/><sheet name="汇总" sheetId="2" r:id="rId2"/>\
+            </sheets></workbook>""";
+
+    private static final String WORKBOOK_RELS = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">\
+            <Relationship Id="rId1" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet" Target="worksheets/sheet1.xml"/>\
+            <Relationship Id="rId2" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet" Target="worksheets/sheet2.xml"/>\
+            <Relationship Id="rId3" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles" Target="styles.xml"/>\
+            </Relationships>""";
+
+    // 0：默认样式；1：表头加粗；2：出错的单元格（浅红底、深红字）
+    private static final String STYLES = """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <styleSheet xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main">\
+            <fonts count="3"><font><sz val="11"/><name val="Calibri"/></font><font><b/><sz val="11"/><name val="Calibri"/></font>\
+            <font><sz val="11"/><color rgb="FF9C0006"/><name val="Calibri"/></font></fonts>\
+            <fills count="3"><fill><patternFill patternType="none"/></fill><fill><patternFill patternType="gray125"/></fill>\
+            <fill><patternFill patternType="solid"><fgColor rgb="FFFFC7CE"/><bgColor indexed="64"/></patternFill></fill></fills>\
+            <borders count="1"><border><left/><right/><top/><bottom/><diagonal/></border></borders>\
+            <cellStyleXfs count="1"><xf numFmtId="0" fontId="0" fillId="0" borderId="0"/></cellStyleXfs>\
+            <cellXfs count="3"><xf numFmtId="0" fontId="0" fillId="0" borderId="0" xfId="0"/>\
+            <xf numFmtId="0" fontId="1" fillId="0" borderId="0" xfId="0" applyFont="1"/>\
+            <xf numFmtId="0" fontId="2" fillId="2" borderId="0" xfId="0" applyFont="1" applyFill="1"/></cellXfs>\
+            <cellStyles count="1"><cellStyle name="Normal" xfId="0" builtinId="0"/></cellStyles>\
+            </styleSheet>""";
+
+    private static Buffer buffer(String s) {
+        return Buffer.buffer(bytes(s));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,228 @@
+package com.ewancle.xlsx;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.poi.ss.util.CellReference;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式修改已有的 xlsx（不构建 POI 的 DOM）：
+ *    - 没改动的 zip 条目按原始压缩数据直接拷贝（不解压、不重新压缩）
+ *    - 目标 sheet 的 XML 读两遍：第一遍找出最后一行 / 最大列，第二遍逐事件复制，
+ *      同时更新 dimension、替换指定行、在 sheetData 末尾追加新行
+ *    - 新单元格的字符串写成 inline string，sharedStrings.xml 不需要改动
+ *    - 替换行时删除 calcChain.xml（及其在 [Content_Types].xml、workbook.xml.rels 中的登记），
+ *      由 Excel 打开时重建，避免计算链引用已不存在的公式
+ * 内存占用与文件大小无关，耗时主要在目标 sheet 的两次流式解析。
+ */
+public final class XlsxPatchEngine {
+
+    private static final String CONTENT_TYPES = "[Content_Types].xml";
+
+    public record Result(String sheetPart, int appendedRows, int replacedRows, int lastRow) {}
+
+    private record SheetScan(int firstRow, int lastRow, int firstCol, int lastCol) {}
+
+    private XlsxPatchEngine() {
+    }
+
+    public static Result apply(Path source, Path target, SheetPatch patch) throws IOException {
+        try (ZipFile zip = ZipFile.builder().setPath(source).get()) {
+            OoxmlPackage pkg = OoxmlPackage.open(zip, patch.sheetIndex());
+            String sheetPart = pkg.sheetPart();
+            String calcChainPart = pkg.calcChainPart();
+            String workbookRels = pkg.workbookRels();
+
+            SheetScan scan = scan(zip, sheetPart);
+            boolean dropCalcChain = !patch.replacements().isEmpty() && calcChainPart != null;
+
+            int lastRow;
+            try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(target)) {
+                lastRow = -1;
+                for (Enumeration<ZipArchiveEntry> entries = zip.getEntriesInPhysicalOrder(); entries.hasMoreElements(); ) {
+                    ZipArchiveEntry entry = entries.nextElement();
+                    String name = entry.getName();
+                    if (name.equals(sheetPart)) {
+                        out.putArchiveEntry(new ZipArchiveEntry(name));
+                        lastRow = rewriteSheet(zip, entry, out, scan, patch);
+                        out.closeArchiveEntry();
+                    } else if (dropCalcChain && name.equals(calcChainPart)) {
+                        // 丢弃
+                    } else if (dropCalcChain && (name.equals(CONTENT_TYPES) || name.equals(workbookRels))) {
+                        out.putArchiveEntry(new ZipArchiveEntry(name));
+                        Writer w = new BufferedWriter(new OutputStreamWriter(CloseShieldOutputStream.wrap(out), StandardCharsets.UTF_8));
+                        try (InputStream in = zip.getInputStream(entry)) {
+                            dropReferences(in, w, "/" + calcChainPart, calcChainPart.substring(pkg.workbookDir().length()));
+                        }
+                        w.flush();
+                        out.closeArchiveEntry();
+                    } else {
+                        out.addRawArchiveEntry(entry, zip.getRawInputStream(entry));
+                    }
+                }
+                out.finish();
+            }
+            return new Result(sheetPart, patch.appends().size(), patch.replacements().size(), lastRow);
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed workbook XML", e);
+        }
+    }
+
+    /**
+     * 第一遍：扫描 sheetData，得到实际使用的行列范围（行号从 1 开始，列从 0 开始）
+     */
+    private static SheetScan scan(ZipFile zip, String sheetPart) throws IOException, XMLStreamException {
+        int firstRow = Integer.MAX_VALUE, lastRow = 0, firstCol = Integer.MAX_VALUE, lastCol = -1;
+        try (InputStream in = zip.getInputStream(zip.getEntry(sheetPart))) {
+            XMLStreamReader r = XmlCopier.reader(in);
+            int row = 0, col = -1;
+            while (r.hasNext()) {
+                int event = r.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (XmlCopier.isMain(r, "row")) {
+                        String ref = r.getAttributeValue(null, "r");
+                        row = ref != null ? Integer.parseInt(ref) : row + 1;
+                        col = -1;
+                        firstRow = Math.min(firstRow, row);
+                        lastRow = Math.max(lastRow, row);
+                    } else if (XmlCopier.isMain(r, "c")) {
+                        String ref = r.getAttributeValue(null, "r");
+                        col = ref != null ? SheetXml.column(ref) : col + 1;
+                        firstCol = Math.min(firstCol, col);
+                        lastCol = Math.max(lastCol, col);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && XmlCopier.isMain(r, "sheetData")) {
+                    break;
+                }
+            }
+            r.close();
+        }
+        return new SheetScan(firstRow == Integer.MAX_VALUE ? 1 : firstRow, lastRow,
+                firstCol == Integer.MAX_VALUE ? 0 : firstCol, lastCol);
+    }
+
+    /**
+     * 第二遍：复制 sheet XML，返回修改后的最后一行（从 1 开始）
+     */
+    private static int rewriteSheet(ZipFile zip, ZipArchiveEntry entry, ZipArchiveOutputStream out,
+                                    SheetScan scan, SheetPatch patch) throws IOException, XMLStreamException {
+        // 替换行统一转成从 1 开始的行号
+        Map<Integer, List<?>> byRowNum = new java.util.TreeMap<>();
+        patch.replacements().forEach((index, values) -> byRowNum.put(index + 1, values));
+        Iterator<Map.Entry<Integer, List<?>>> pending = byRowNum.entrySet().iterator();
+        Map.Entry<Integer, List<?>> next = pending.hasNext() ? pending.next() : null;
+
+        int lastRow = scan.lastRow();
+        int lastCol = scan.lastCol();
+        for (Map.Entry<Integer, List<?>> e : byRowNum.entrySet()) {
+            lastRow = Math.max(lastRow, e.getKey());
+            lastCol = Math.max(lastCol, e.getValue().size() - 1);
+        }
+        int appendFrom = lastRow + 1;
+        for (List<?> values : patch.appends()) {
+            lastCol = Math.max(lastCol, values.size() - 1);
+        }
+        lastRow += patch.appends().size();
+        String dimension = lastRow == 0 || lastCol < 0 ? "A1"
+                : CellReference.convertNumToColString(scan.firstCol()) + Math.min(scan.firstRow(), lastRow) + ":"
+                + CellReference.convertNumToColString(lastCol) + lastRow;
+
+        Writer w = new BufferedWriter(new OutputStreamWriter(CloseShieldOutputStream.wrap(out), StandardCharsets.UTF_8),
+                64 * 1024);
+        try (InputStream in = zip.getInputStream(entry)) {
+            XMLStreamReader r = XmlCopier.reader(in);
+            XmlCopier.copy(r, w);   // START_DOCUMENT
+            int row = 0;
+            int skipDepth = 0;
+            while (r.hasNext()) {
+                int event = r.next();
+                if (skipDepth > 0) {
+                    // 被替换的原始行：丢弃直到它的结束标签
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        skipDepth++;
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        skipDepth--;
+                    }
+                    continue;
+                }
+                if (event == XMLStreamConstants.START_ELEMENT && XmlCopier.isMain(r, "dimension")) {
+                    XmlCopier.startElement(r, w, "ref", dimension);
+                } else if (event == XMLStreamConstants.START_ELEMENT && XmlCopier.isMain(r, "row")) {
+                    String ref = r.getAttributeValue(null, "r");
+                    row = ref != null ? Integer.parseInt(ref) : row + 1;
+                    // 行号更小的替换行插在当前行前面（原来不存在的行）
+                    while (next != null && next.getKey() < row) {
+                        SheetXml.row(w, next.getKey(), next.getValue());
+                        next = pending.hasNext() ? pending.next() : null;
+                    }
+                    if (next != null && next.getKey() == row) {
+                        SheetXml.row(w, row, next.getValue());
+                        next = pending.hasNext() ? pending.next() : null;
+                        skipDepth = 1;
+                    } else {
+                        XmlCopier.copy(r, w);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && XmlCopier.isMain(r, "sheetData")) {
+                    while (next != null) {
+                        SheetXml.row(w, next.getKey(), next.getValue());
+                        next = pending.hasNext() ? pending.next() : null;
+                    }
+                    int rowNum = appendFrom;
+                    for (List<?> values : patch.appends()) {
+                        SheetXml.row(w, rowNum++, values);
+                    }
+                    XmlCopier.copy(r, w);
+                } else {
+                    XmlCopier.copy(r, w);
+                }
+            }
+            r.close();
+        }
+        w.flush();
+        return lastRow;
+    }
+
+    /**
+     * 从 [Content_Types].xml / workbook.xml.rels 中去掉指向 calcChain 的 Override / Relationship
+     */
+    static void dropReferences(InputStream in, Writer w, String partName, String relativeTarget)
+            throws IOException, XMLStreamException {
+        XMLStreamReader r = XmlCopier.reader(in);
+        XmlCopier.copy(r, w);
+        boolean skipping = false;
+        while (r.hasNext()) {
+            int event = r.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String ref = "Override".equals(r.getLocalName()) ? r.getAttributeValue(null, "PartName")
+                        : "Relationship".equals(r.getLocalName()) ? r.getAttributeValue(null, "Target") : null;
+                if (ref != null && (ref.equals(partName) || ref.equals(relativeTarget))) {
+                    skipping = true;
+                    continue;
+                }
+            } else if (skipping && event == XMLStreamConstants.END_ELEMENT) {
+                skipping = false;
+                continue;
+            }
+            if (!skipping) {
+                XmlCopier.copy(r, w);
+            }
+        }
+        r.close();
+    }
+}
@@ -0,0 +1,470 @@
+package com.ewancle.xlsx;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 基于 StAX 的只读 xlsx 解析，不创建 POI Workbook：
+ *    - 打开时只读 workbook、关系、sharedStrings、styles 这些全局部件，共享字符串解析成只读数组
+ *    - 每个 sheet 的 XML 部件各自用一个 {@link SheetRows} 流式读取，互不共享可变状态，可以在多个线程上同时读不同的 sheet
+ *      （commons-compress 的 ZipFile 对文件通道按位置读取，多个条目可以并发打开）
+ * 单元格值与 {@link com.ewancle.service.CellDecoder#value} 一致：String / Double / Boolean / LocalDateTime /
+ * 错误文本 / null，公式单元格取文件里缓存的结果。
+ */
+public final class XlsxSheetReader implements AutoCloseable {
+
+    public record SheetInfo(int index, String name, String part) {}
+
+    private final ZipFile zip;
+    private final List<SheetInfo> sheets;
+    private final String[] sharedStrings;
+    private final boolean[] dateStyles;
+    private final boolean date1904;
+
+    private XlsxSheetReader(ZipFile zip, List<SheetInfo> sheets, String[] sharedStrings, boolean[] dateStyles,
+                            boolean date1904) {
+        this.zip = zip;
+        this.sheets = sheets;
+        this.sharedStrings = sharedStrings;
+        this.dateStyles = dateStyles;
+        this.date1904 = date1904;
+    }
+
+    public static XlsxSheetReader open(Path file) throws IOException {
+        ZipFile zip = ZipFile.builder().setPath(file).get();
+        try {
+            String workbookPart = OoxmlPackage.workbookPart(zip);
+            String workbookDir = OoxmlPackage.directoryOf(workbookPart);
+            Map<String, String> targetsById = new HashMap<>();
+            String sharedStringsPart = null;
+            String stylesPart = null;
+            for (OoxmlPackage.Relationship rel : OoxmlPackage.relationships(zip, OoxmlPackage.relsOf(workbookPart))) {
+                String target = OoxmlPackage.resolve(workbookDir, rel.target());
+                targetsById.put(rel.id(), target);
+                if (rel.type().endsWith("/sharedStrings")) {
+                    sharedStringsPart = target;
+                } else if (rel.type().endsWith("/styles")) {
+                    stylesPart = target;
+                }
+            }
+
+            WorkbookInfo workbook;
+            try (InputStream in = zip.getInputStream(zip.getEntry(workbookPart))) {
+                workbook = readWorkbook(in, targetsById);
+            }
+            List<SheetInfo> sheets = new ArrayList<>();
+            for (SheetInfo sheet : workbook.sheets()) {
+                if (zip.getEntry(sheet.part()) != null) {
+                    sheets.add(new SheetInfo(sheets.size(), sheet.name(), sheet.part()));
+                }
+            }
+            return new XlsxSheetReader(zip, List.copyOf(sheets), readSharedStrings(zip, sharedStringsPart),
+                    readDateStyles(zip, stylesPart), workbook.date1904());
+        } catch (IOException | RuntimeException e) {
+            zip.close();
+            throw e;
+        } catch (XMLStreamException e) {
+            zip.close();
+            throw new IOException("Malformed xlsx package", e);
+        }
+    }
+
+    record WorkbookInfo(List<SheetInfo> sheets, boolean date1904) {}
+
+    /**
+     * 解析 workbook.xml：工作表列表（按 workbook 中的顺序）和 1904 日期系统标记（不关闭 in）
+     *
+     * @param targetsById workbook 关系 id → 部件路径
+     */
+    static WorkbookInfo readWorkbook(InputStream in, Map<String, String> targetsById) throws XMLStreamException {
+        List<SheetInfo> sheets = new ArrayList<>();
+        boolean date1904 = false;
+        XMLStreamReader r = XmlCopier.reader(in);
+        while (r.hasNext()) {
+            if (r.next() != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            if (XmlCopier.isMain(r, "workbookPr")) {
+                String value = r.getAttributeValue(null, "date1904");
+                date1904 = "1".equals(value) || "true".equals(value);
+            } else if (XmlCopier.isMain(r, "sheet")) {
+                String part = targetsById.get(r.getAttributeValue(SheetXml.REL_NS, "id"));
+                // 图表页（chartsheet）等没有单元格数据的页也在 <sheets> 里，只保留工作表
+                if (part != null && part.contains("worksheets/")) {
+                    sheets.add(new SheetInfo(sheets.size(), r.getAttributeValue(null, "name"), part));
+                }
+            }
+        }
+        return new WorkbookInfo(List.copyOf(sheets), date1904);
+    }
+
+    public List<SheetInfo> sheets() {
+        return sheets;
+    }
+
+    /**
+     * 按名称或从 0 开始的序号选择 sheet；selectors 为空时返回全部，结果按 workbook 中的顺序排列、不重复
+     *
+     * @throws IllegalArgumentException 有找不到的 sheet
+     */
+    public List<SheetInfo> select(List<String> selectors) {
+        if (selectors == null || selectors.isEmpty()) {
+            return sheets;
+        }
+        boolean[] chosen = new boolean[sheets.size()];
+        for (String selector : selectors) {
+            chosen[find(selector.trim()).index()] = true;
+        }
+        List<SheetInfo> result = new ArrayList<>();
+        for (SheetInfo sheet : sheets) {
+            if (chosen[sheet.index()]) {
+                result.add(sheet);
+            }
+        }
+        return result;
+    }
+
+    private SheetInfo find(String selector) {
+        for (SheetInfo sheet : sheets) {
+            if (sheet.name().equals(selector)) {
+                return sheet;
+            }
+        }
+        if (!selector.isEmpty() && selector.chars().allMatch(Character::isDigit)) {
+            try {
+                int index = Integer.parseInt(selector);
+                if (index < sheets.size()) {
+                    return sheets.get(index);
+                }
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        throw new IllegalArgumentException("Unknown sheet: " + selector);
+    }
+
+    /**
+     * 流式读取一个 sheet 的行（文件里没有的空行跳过）；用完必须 close
+     */
+    public SheetRows rows(SheetInfo sheet) throws IOException {
+        ZipArchiveEntry entry = zip.getEntry(sheet.part());
+        if (entry == null) {
+            throw new IOException("Sheet part not found: " + sheet.part());
+        }
+        return SheetRows.open(zip.getInputStream(entry), sharedStrings, dateStyles, date1904);
+    }
+
+    /**
+     * sheet 部件解压后的原始 XML（建分页索引用）；用完必须 close
+     */
+    InputStream openPart(SheetInfo sheet) throws IOException {
+        ZipArchiveEntry entry = zip.getEntry(sheet.part());
+        if (entry == null) {
+            throw new IOException("Sheet part not found: " + sheet.part());
+        }
+        return zip.getInputStream(entry);
+    }
+
+    /**
+     * 从 sheet XML 的中间接着读（见 {@link SheetPageIndex}）：xml 是到 &lt;sheetData&gt; 开始标签为止的文件头
+     * 拼上某个 &lt;row&gt; 开始处之后的内容，lastRowNum 是它前一行的行号（没有 r 属性的行按它递增）。
+     * 只用到共享字符串和样式，reader 关闭后也可以调用
+     */
+    SheetRows rows(InputStream xml, int lastRowNum) throws IOException {
+        SheetRows rows = SheetRows.open(xml, sharedStrings, dateStyles, date1904);
+        rows.lastRowNum = lastRowNum;
+        return rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+
+    /**
+     * 一行解析结果；rowNum 从 1 开始（即 Excel 里显示的行号），values 按列下标排列，缺失的单元格为 null
+     */
+    public record ParsedRow(int rowNum, Object[] values) {}
+
+    /**
+     * 单个 sheet 的行迭代器，只在一个线程上使用；close 时关闭底层输入流
+     */
+    public static final class SheetRows implements Iterator<ParsedRow>, AutoCloseable {
+        private final InputStream in;
+        private final XMLStreamReader r;
+        private final String[] sharedStrings;
+        private final boolean[] dateStyles;
+        private final boolean date1904;
+        private final StringBuilder text = new StringBuilder();
+        private ParsedRow next;
+        private int lastRowNum;
+
+        private SheetRows(InputStream in, XMLStreamReader r, String[] sharedStrings, boolean[] dateStyles,
+                          boolean date1904) {
+            this.in = in;
+            this.r = r;
+            this.sharedStrings = sharedStrings;
+            this.dateStyles = dateStyles;
+            this.date1904 = date1904;
+        }
+
+        /**
+         * @param in sheet 部件的 XML（已解压）
+         */
+        static SheetRows open(InputStream in, String[] sharedStrings, boolean[] dateStyles, boolean date1904)
+                throws IOException {
+            try {
+                return new SheetRows(in, XmlCopier.reader(in), sharedStrings, dateStyles, date1904);
+            } catch (XMLStreamException e) {
+                in.close();
+                throw new IOException("Malformed sheet XML", e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = readRow();
+                } catch (XMLStreamException e) {
+                    throw new UncheckedIOException(new IOException("Malformed sheet XML", e));
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public ParsedRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ParsedRow row = next;
+            next = null;
+            return row;
+        }
+
+        private ParsedRow readRow() throws XMLStreamException {
+            while (r.hasNext()) {
+                if (r.next() == XMLStreamConstants.START_ELEMENT && XmlCopier.isMain(r, "row")) {
+                    String ref = r.getAttributeValue(null, "r");
+                    lastRowNum = ref != null ? Integer.parseInt(ref) : lastRowNum + 1;
+                    return new ParsedRow(lastRowNum, readCells());
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 读取 &lt;row&gt; 内的所有 &lt;c&gt;，停在 &lt;/row&gt;
+         */
+        private Object[] readCells() throws XMLStreamException {
+            Object[] values = new Object[16];
+            int width = 0;
+            int nextCol = 0;
+            while (r.hasNext()) {
+                int event = r.next();
+                if (event == XMLStreamConstants.END_ELEMENT && XmlCopier.isMain(r, "row")) {
+                    break;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT || !XmlCopier.isMain(r, "c")) {
+                    continue;
+                }
+                String ref = r.getAttributeValue(null, "r");
+                int col = ref != null ? columnOf(ref) : nextCol;
+                nextCol = col + 1;
+                String type = r.getAttributeValue(null, "t");
+                String style = r.getAttributeValue(null, "s");
+                Object value = readCell(type, style != null ? Integer.parseInt(style) : 0);
+                if (value != null) {
+                    if (col >= values.length) {
+                        values = Arrays.copyOf(values, Math.max(col + 1, values.length * 2));
+                    }
+                    values[col] = value;
+                    width = Math.max(width, col + 1);
+                }
+            }
+            return Arrays.copyOf(values, width);
+        }
+
+        /**
+         * 读取一个 &lt;c&gt; 的值，停在 &lt;/c&gt;
+         */
+        private Object readCell(String type, int style) throws XMLStreamException {
+            String raw = null;
+            String inline = null;
+            while (r.hasNext()) {
+                int event = r.next();
+                if (event == XMLStreamConstants.END_ELEMENT && XmlCopier.isMain(r, "c")) {
+                    break;
+                }
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (XmlCopier.isMain(r, "v")) {
+                        raw = r.getElementText();
+                    } else if (XmlCopier.isMain(r, "is")) {
+                        inline = readStringItem(r, text, "is");
+                    }
+                }
+            }
+            if (type == null || type.equals("n")) {
+                if (raw == null || raw.isEmpty()) {
+                    return null;
+                }
+                double number = Double.parseDouble(raw);
+                return style < dateStyles.length && dateStyles[style] && DateUtil.isValidExcelDate(number)
+                        ? DateUtil.getLocalDateTime(number, date1904)
+                        : number;
+            }
+            return switch (type) {
+                case "s" -> raw == null ? null : sharedString(Integer.parseInt(raw.trim()));
+                case "inlineStr" -> inline;
+                case "str", "e" -> raw;
+                case "b" -> raw == null ? null : "1".equals(raw.trim()) || "true".equals(raw.trim());
+                // t="d"：ISO 8601 日期文本（Strict 格式），保留原文
+                default -> raw;
+            };
+        }
+
+        private String sharedString(int index) {
+            return index >= 0 && index < sharedStrings.length ? sharedStrings[index] : null;
+        }
+
+        @Override
+        public void close() {
+            try {
+                r.close();
+            } catch (XMLStreamException ignore) {
+            }
+            try {
+                in.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    /**
+     * "BC12" 中的列字母转成从 0 开始的列下标
+     */
+    static int columnOf(String cellRef) {
+        int col = 0;
+        for (int i = 0; i < cellRef.length(); i++) {
+            char c = cellRef.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            col = col * 26 + (c - 'A' + 1);
+        }
+        return col - 1;
+    }
+
+    /**
+     * 读取一个 &lt;si&gt; / &lt;is&gt; 的文本：拼接普通文本和富文本 run 里的 &lt;t&gt;，跳过拼音（&lt;rPh&gt;）
+     */
+    private static String readStringItem(XMLStreamReader r, StringBuilder text, String element) throws XMLStreamException {
+        text.setLength(0);
+        int phonetic = 0;
+        while (r.hasNext()) {
+            int event = r.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (XmlCopier.isMain(r, "rPh")) {
+                    phonetic++;
+                } else if (phonetic == 0 && XmlCopier.isMain(r, "t")) {
+                    text.append(r.getElementText());
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (XmlCopier.isMain(r, "rPh")) {
+                    phonetic--;
+                } else if (XmlCopier.isMain(r, element)) {
+                    break;
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    private static String[] readSharedStrings(ZipFile zip, String part) throws IOException, XMLStreamException {
+        ZipArchiveEntry entry = part != null ? zip.getEntry(part) : null;
+        if (entry == null) {
+            return new String[0];
+        }
+        try (InputStream in = zip.getInputStream(entry)) {
+            return readSharedStrings(in);
+        }
+    }
+
+    /**
+     * 解析 sharedStrings.xml（不关闭 in）
+     */
+    static String[] readSharedStrings(InputStream in) throws XMLStreamException {
+        List<String> strings = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        XMLStreamReader r = XmlCopier.reader(in);
+        while (r.hasNext()) {
+            if (r.next() == XMLStreamConstants.START_ELEMENT && XmlCopier.isMain(r, "si")) {
+                strings.add(readStringItem(r, text, "si"));
+            }
+        }
+        return strings.toArray(String[]::new);
+    }
+
+    /**
+     * cellXfs 中每个样式是否是日期格式（按样式下标）
+     */
+    private static boolean[] readDateStyles(ZipFile zip, String part) throws IOException, XMLStreamException {
+        ZipArchiveEntry entry = part != null ? zip.getEntry(part) : null;
+        if (entry == null) {
+            return new boolean[0];
+        }
+        try (InputStream in = zip.getInputStream(entry)) {
+            return readDateStyles(in);
+        }
+    }
+
+    /**
+     * 解析 styles.xml 中每个单元格样式是否为日期格式（不关闭 in）
+     */
+    static boolean[] readDateStyles(InputStream in) throws XMLStreamException {
+        Map<Integer, String> customFormats = new HashMap<>();
+        List<Integer> xfFormats = new ArrayList<>();
+        XMLStreamReader r = XmlCopier.reader(in);
+        boolean inCellXfs = false;
+        while (r.hasNext()) {
+            int event = r.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (XmlCopier.isMain(r, "numFmt")) {
+                    customFormats.put(Integer.parseInt(r.getAttributeValue(null, "numFmtId")),
+                            r.getAttributeValue(null, "formatCode"));
+                } else if (XmlCopier.isMain(r, "cellXfs")) {
+                    inCellXfs = true;
+                } else if (inCellXfs && XmlCopier.isMain(r, "xf")) {
+                    String id = r.getAttributeValue(null, "numFmtId");
+                    xfFormats.add(id != null ? Integer.parseInt(id) : 0);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && XmlCopier.isMain(r, "cellXfs")) {
+                break;
+            }
+        }
+        boolean[] dates = new boolean[xfFormats.size()];
+        for (int i = 0; i < dates.length; i++) {
+            int id = xfFormats.get(i);
+            String format = customFormats.getOrDefault(id, BuiltinFormats.getBuiltinFormat(id));
+            dates[i] = NumberFormatKind.classify(id, format).isDate();
+        }
+        return dates;
+    }
+}
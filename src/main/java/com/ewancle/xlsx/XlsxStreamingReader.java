@@ -0,0 +1,407 @@
+package com.ewancle.xlsx;
+
+import com.ewancle.storage.TempFileManager;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.TeeInputStream;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 边接收边解析的 xlsx 读取（上传还没收完就开始输出行）：
+ *    - 用 ZipArchiveInputStream 按本地文件头的顺序读取条目，不需要等到文件末尾的中央目录
+ *    - [Content_Types].xml、.rels、workbook.xml 这些小部件读进内存，styles / sharedStrings 到达时直接解析
+ *    - 目标 sheet 到达时共享字符串和样式已经就绪（POI 和本服务导出的文件都是这个顺序），就直接边读边输出行；
+ *      否则（例如 Excel 把 sharedStrings.xml 写在 sheet 之后）先把 sheet XML 解压到临时文件，收齐后再解析
+ *    - 本地文件头无法顺序读取时（不支持的压缩方式、头信息不完整等），等上传收完后改用中央目录（{@link XlsxSheetReader}）；
+ *      为此原始上传数据同时镜像到一个临时文件，正常情况下只写不读
+ * 只在一个 worker 线程上使用，close 时删除所有临时文件。
+ */
+public final class XlsxStreamingReader implements Iterator<XlsxSheetReader.ParsedRow>, AutoCloseable {
+
+    private static final String CONTENT_TYPES = "[Content_Types].xml";
+    private static final String ROOT_RELS = "_rels/.rels";
+    // .rels、workbook.xml 等读进内存的部件大小上限
+    private static final int SMALL_PART_LIMIT = 8 * 1024 * 1024;
+    private static final int MIRROR_BUFFER = 64 * 1024;
+    // 本地文件头里没有解压后大小时（data descriptor），按压缩大小或整个上传大小的倍数估计暂存文件的配额
+    private static final int XML_INFLATE_RATIO = 8;
+
+    private enum Role { WORKBOOK, WORKSHEET, SHARED_STRINGS, STYLES, OTHER, UNKNOWN }
+
+    private record Layout(String sheetPart, String sharedStringsPart, String stylesPart) {}
+
+    private final InputStream upload;
+    private final TempFileManager tempFiles;
+    private final int sheetIndex;
+    private final long expectedBytes;
+    private final TempFileManager.TempFile mirror;
+    private final OutputStream mirrorOut;
+    private final ZipArchiveInputStream zip;
+
+    private final Map<String, String> contentTypes = new HashMap<>();
+    private final Map<String, byte[]> smallParts = new HashMap<>();
+    private final Map<String, TempFileManager.TempFile> spooled = new HashMap<>();
+    private Layout layout;
+    private String[] sharedStrings;
+    private boolean[] dateStyles;
+    private boolean date1904;
+
+    private XlsxSheetReader fallback;
+    private XlsxSheetReader.SheetRows rows;
+    private boolean finished;
+
+    /**
+     * @param upload        上传的原始字节（阻塞读取）
+     * @param sheetIndex    要解析的 sheet，从 0 开始
+     * @param expectedBytes 预计的上传大小（申请镜像文件配额用，未知时为 0）
+     */
+    public XlsxStreamingReader(InputStream upload, TempFileManager tempFiles, int sheetIndex, long expectedBytes)
+            throws IOException {
+        this.upload = upload;
+        this.tempFiles = tempFiles;
+        this.sheetIndex = sheetIndex;
+        this.expectedBytes = expectedBytes;
+        this.mirror = tempFiles.allocateBlocking("upload-mirror", ".xlsx", expectedBytes);
+        try {
+            this.mirrorOut = new BufferedOutputStream(Files.newOutputStream(mirror.path()), MIRROR_BUFFER);
+        } catch (IOException e) {
+            mirror.close();
+            throw e;
+        }
+        // 允许 STORED + data descriptor 的条目（按描述符签名查找条目结尾）
+        this.zip = new ZipArchiveInputStream(new TeeInputStream(upload, mirrorOut), "UTF-8", true, true);
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (true) {
+                if (rows != null) {
+                    if (rows.hasNext()) {
+                        return true;
+                    }
+                    rows.close();
+                    rows = null;
+                    finished = true;
+                }
+                if (finished) {
+                    // 目标 sheet 已读完，剩余的上传内容直接丢弃
+                    upload.close();
+                    return false;
+                }
+                advance();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (XMLStreamException e) {
+            throw new UncheckedIOException(new IOException("Malformed xlsx part", e));
+        }
+    }
+
+    @Override
+    public XlsxSheetReader.ParsedRow next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return rows.next();
+    }
+
+    /**
+     * 读取下一个条目；读到目标 sheet（或 zip 结束、转入回退方式）时设置 rows
+     */
+    private void advance() throws IOException, XMLStreamException {
+        ZipArchiveEntry entry;
+        try {
+            entry = zip.getNextEntry();
+        } catch (IOException e) {
+            openFallback(e);
+            return;
+        }
+        if (entry == null) {
+            openSpooledSheet();
+            return;
+        }
+        if (!zip.canReadEntryData(entry)) {
+            openFallback(new IOException("Cannot read entry sequentially: " + entry.getName()));
+            return;
+        }
+        String name = entry.getName();
+        if (name.equals(CONTENT_TYPES)) {
+            readContentTypes();
+            return;
+        }
+        if (name.endsWith(".rels")) {
+            smallParts.put(name, readSmall(name));
+            resolveLayout();
+            return;
+        }
+        switch (role(name)) {
+            case WORKBOOK -> {
+                smallParts.put(name, readSmall(name));
+                resolveLayout();
+            }
+            case STYLES -> dateStyles = XlsxSheetReader.readDateStyles(CloseShieldInputStream.wrap(zip));
+            case SHARED_STRINGS -> sharedStrings = XlsxSheetReader.readSharedStrings(CloseShieldInputStream.wrap(zip));
+            case WORKSHEET -> {
+                if (layout != null && !name.equals(layout.sheetPart())) {
+                    return;
+                }
+                if (layout != null && tablesReady()) {
+                    rows = XlsxSheetReader.SheetRows.open(CloseShieldInputStream.wrap(zip), strings(), styles(), date1904);
+                } else {
+                    spool(entry);
+                }
+            }
+            // 还不知道用途（没有 [Content_Types].xml 且 workbook 关系还没读到）的 XML 先留着
+            case UNKNOWN -> {
+                if (name.endsWith(".xml")) {
+                    spool(entry);
+                }
+            }
+            case OTHER -> {
+            }
+        }
+    }
+
+    private Role role(String name) {
+        if (layout != null) {
+            if (name.equals(layout.sheetPart())) {
+                return Role.WORKSHEET;
+            } else if (name.equals(layout.sharedStringsPart())) {
+                return Role.SHARED_STRINGS;
+            } else if (name.equals(layout.stylesPart())) {
+                return Role.STYLES;
+            }
+        }
+        String type = contentTypes.get(name);
+        if (type == null) {
+            return layout != null || !contentTypes.isEmpty() ? Role.OTHER : Role.UNKNOWN;
+        }
+        if (type.endsWith(".main+xml")) {
+            return Role.WORKBOOK;
+        } else if (type.endsWith(".worksheet+xml")) {
+            return Role.WORKSHEET;
+        } else if (type.endsWith(".sharedStrings+xml")) {
+            return Role.SHARED_STRINGS;
+        } else if (type.endsWith(".styles+xml")) {
+            return Role.STYLES;
+        }
+        return Role.OTHER;
+    }
+
+    private boolean tablesReady() {
+        return (layout.sharedStringsPart() == null || sharedStrings != null)
+                && (layout.stylesPart() == null || dateStyles != null);
+    }
+
+    private String[] strings() {
+        return sharedStrings != null ? sharedStrings : new String[0];
+    }
+
+    private boolean[] styles() {
+        return dateStyles != null ? dateStyles : new boolean[0];
+    }
+
+    private void readContentTypes() throws XMLStreamException {
+        XMLStreamReader r = XmlCopier.reader(CloseShieldInputStream.wrap(zip));
+        while (r.hasNext()) {
+            if (r.next() == XMLStreamConstants.START_ELEMENT && "Override".equals(r.getLocalName())) {
+                String part = r.getAttributeValue(null, "PartName");
+                String type = r.getAttributeValue(null, "ContentType");
+                if (part != null && type != null) {
+                    contentTypes.put(part.startsWith("/") ? part.substring(1) : part, type);
+                }
+            }
+        }
+    }
+
+    /**
+     * 根关系、workbook 及其关系都到齐后确定目标 sheet、共享字符串和样式部件
+     */
+    private void resolveLayout() throws IOException, XMLStreamException {
+        if (layout != null) {
+            return;
+        }
+        String workbookPart = null;
+        try (InputStream in = part(ROOT_RELS)) {
+            if (in == null) {
+                return;
+            }
+            for (OoxmlPackage.Relationship rel : OoxmlPackage.relationships(in)) {
+                if (rel.type().endsWith("/officeDocument")) {
+                    workbookPart = OoxmlPackage.resolve("", rel.target());
+                }
+            }
+        }
+        if (workbookPart == null) {
+            return;
+        }
+        String workbookDir = OoxmlPackage.directoryOf(workbookPart);
+        Map<String, String> targetsById = new HashMap<>();
+        String sharedStringsPart = null;
+        String stylesPart = null;
+        try (InputStream in = part(OoxmlPackage.relsOf(workbookPart))) {
+            if (in == null) {
+                return;
+            }
+            for (OoxmlPackage.Relationship rel : OoxmlPackage.relationships(in)) {
+                String target = OoxmlPackage.resolve(workbookDir, rel.target());
+                targetsById.put(rel.id(), target);
+                if (rel.type().endsWith("/sharedStrings")) {
+                    sharedStringsPart = target;
+                } else if (rel.type().endsWith("/styles")) {
+                    stylesPart = target;
+                }
+            }
+        }
+        XlsxSheetReader.WorkbookInfo workbook;
+        try (InputStream in = part(workbookPart)) {
+            if (in == null) {
+                return;
+            }
+            workbook = XlsxSheetReader.readWorkbook(in, targetsById);
+        }
+        if (sheetIndex >= workbook.sheets().size()) {
+            throw new IOException("Sheet index out of range: " + sheetIndex);
+        }
+        date1904 = workbook.date1904();
+        layout = new Layout(workbook.sheets().get(sheetIndex).part(), sharedStringsPart, stylesPart);
+        // 没有 [Content_Types].xml 时，先到的共享字符串 / 样式被当作未知部件暂存了
+        try (InputStream in = part(sharedStringsPart)) {
+            if (in != null && sharedStrings == null) {
+                sharedStrings = XlsxSheetReader.readSharedStrings(in);
+            }
+        }
+        try (InputStream in = part(stylesPart)) {
+            if (in != null && dateStyles == null) {
+                dateStyles = XlsxSheetReader.readDateStyles(in);
+            }
+        }
+    }
+
+    /**
+     * 已经收到的部件（内存中的或暂存到临时文件的），没有时返回 null
+     */
+    private InputStream part(String name) throws IOException {
+        if (name == null) {
+            return null;
+        }
+        byte[] bytes = smallParts.get(name);
+        if (bytes != null) {
+            return new ByteArrayInputStream(bytes);
+        }
+        TempFileManager.TempFile file = spooled.get(name);
+        return file != null ? Files.newInputStream(file.path()) : null;
+    }
+
+    private byte[] readSmall(String name) throws IOException {
+        byte[] bytes = zip.readNBytes(SMALL_PART_LIMIT + 1);
+        if (bytes.length > SMALL_PART_LIMIT) {
+            throw new IOException("Package part too large: " + name);
+        }
+        return bytes;
+    }
+
+    private void spool(ZipArchiveEntry entry) throws IOException {
+        String name = entry.getName();
+        TempFileManager.TempFile file = tempFiles.allocateBlocking("upload-part", ".xml", spoolEstimate(entry));
+        try {
+            Files.copy(zip, file.path(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        TempFileManager.TempFile previous = spooled.put(name, file);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * 暂存文件的预留字节数：优先用本地文件头里的解压后大小，没有时按压缩大小（再没有就按整个上传大小）乘以
+     * XML 的典型压缩比；都不知道时为 0，之后由 TempFileManager 的清理任务按实际大小补记
+     */
+    private long spoolEstimate(ZipArchiveEntry entry) {
+        if (entry.getSize() >= 0) {
+            return entry.getSize();
+        }
+        long compressed = entry.getCompressedSize() >= 0 ? entry.getCompressedSize() : expectedBytes;
+        return compressed > Long.MAX_VALUE / XML_INFLATE_RATIO ? Long.MAX_VALUE : compressed * XML_INFLATE_RATIO;
+    }
+
+    /**
+     * 所有条目都读完了，目标 sheet 之前被暂存：从临时文件解析
+     */
+    private void openSpooledSheet() throws IOException, XMLStreamException {
+        resolveLayout();
+        if (layout == null) {
+            // 本地文件头里没找到 workbook（如文件前面有其它数据），只能靠中央目录
+            openFallback(new IOException("Workbook part not found in local file headers"));
+            return;
+        }
+        TempFileManager.TempFile sheet = spooled.get(layout.sheetPart());
+        if (sheet == null) {
+            throw new IOException("Sheet part not found: " + layout.sheetPart());
+        }
+        rows = XlsxSheetReader.SheetRows.open(Files.newInputStream(sheet.path()), strings(), styles(), date1904);
+    }
+
+    /**
+     * 顺序读取失败：把剩余的上传数据也收进镜像文件，按中央目录重新打开
+     */
+    private void openFallback(IOException cause) throws IOException {
+        try {
+            upload.transferTo(mirrorOut);
+            mirrorOut.close();
+            fallback = XlsxSheetReader.open(mirror.path());
+        } catch (IOException e) {
+            e.addSuppressed(cause);
+            throw e;
+        }
+        if (sheetIndex >= fallback.sheets().size()) {
+            throw new IOException("Sheet index out of range: " + sheetIndex);
+        }
+        rows = fallback.rows(fallback.sheets().get(sheetIndex));
+    }
+
+    @Override
+    public void close() {
+        if (rows != null) {
+            rows.close();
+        }
+        if (fallback != null) {
+            try {
+                fallback.close();
+            } catch (IOException ignore) {
+            }
+        }
+        try {
+            // 同时关闭 upload
+            zip.close();
+        } catch (IOException ignore) {
+        }
+        try {
+            mirrorOut.close();
+        } catch (IOException ignore) {
+        }
+        mirror.close();
+        spooled.values().forEach(TempFileManager.TempFile::close);
+        spooled.clear();
+    }
+}
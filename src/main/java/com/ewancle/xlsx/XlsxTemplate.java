@@ -0,0 +1,367 @@
+package com.ewancle.xlsx;
+
+import com.ewancle.zip.ZipStreamBuilder;
+import io.smallrye.mutiny.Multi;
+import io.vertx.mutiny.core.buffer.Buffer;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 预编译的 xlsx 模板：
+ *    - 除数据 sheet 外的所有部件（styles.xml、theme、[Content_Types].xml、sharedStrings 等）
+ *      保存为模板文件里原始的压缩字节，导出时原样写出，不再解压 / 压缩 / 创建样式
+ *    - 数据 sheet 预先切成前缀（sheetData 之前 + 表头行）和后缀（sheetData 之后），导出时只生成数据行
+ *    - 模板最后一行如果只有格式没有值（设计师给第一行数据设置好的格式），作为数据行的样式原型，
+ *      各列数据单元格使用该行对应单元格的样式；没有原型行时使用 &lt;cols&gt; 上的列样式
+ *    - dimension 在导出前无法确定，直接去掉（可选元素，Excel 打开时自行计算）
+ *    - sharedStrings.xml 在数据 sheet 之后生成：模板原有的共享字符串在前（表头引用的下标不变），
+ *      导出时按列去重的字符串（见 SharedStrings）追加在后；模板没有该部件时编译阶段补上登记
+ * 编译后的模板不可变，可以被并发请求共享。
+ */
+public final class XlsxTemplate {
+
+    private static final String CONTENT_TYPES = "[Content_Types].xml";
+    private static final String SST_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sharedStrings+xml";
+    private static final String SST_REL_TYPE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships/sharedStrings";
+    private static final int ROWS_PER_CHUNK = 512;
+
+    private record Part(String name, int method, long crc, long compressedSize, long size, byte[] raw) {}
+
+    private final List<Part> parts;
+    private final String sheetPart;
+    private final byte[] sheetPrefix;
+    private final byte[] sheetSuffix;
+    private final int[] columnStyles;
+    private final int firstDataRow;
+    private final String sharedStringsPart;
+    private final byte[] existingStrings;
+    private final int existingStringCount;
+
+    private XlsxTemplate(List<Part> parts, String sheetPart, byte[] sheetPrefix, byte[] sheetSuffix,
+                         int[] columnStyles, int firstDataRow, String sharedStringsPart,
+                         byte[] existingStrings, int existingStringCount) {
+        this.parts = parts;
+        this.sheetPart = sheetPart;
+        this.sheetPrefix = sheetPrefix;
+        this.sheetSuffix = sheetSuffix;
+        this.columnStyles = columnStyles;
+        this.firstDataRow = firstDataRow;
+        this.sharedStringsPart = sharedStringsPart;
+        this.existingStrings = existingStrings;
+        this.existingStringCount = existingStringCount;
+    }
+
+    /**
+     * 编译模板；sheetIndex 是数据 sheet 的下标
+     */
+    public static XlsxTemplate compile(byte[] xlsx, int sheetIndex) throws IOException {
+        try (ZipFile zip = ZipFile.builder().setSeekableByteChannel(new SeekableInMemoryByteChannel(xlsx)).get()) {
+            OoxmlPackage pkg = OoxmlPackage.open(zip, sheetIndex);
+            List<Part> parts = new ArrayList<>();
+            SheetSplit split = null;
+            boolean addSharedStrings = pkg.sharedStringsPart() == null;
+            String sharedStringsPart = addSharedStrings ? pkg.workbookDir() + "sharedStrings.xml" : pkg.sharedStringsPart();
+            StringWriter existingStrings = new StringWriter();
+            int existingStringCount = 0;
+            for (Enumeration<ZipArchiveEntry> entries = zip.getEntriesInPhysicalOrder(); entries.hasMoreElements(); ) {
+                ZipArchiveEntry entry = entries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                if (entry.getName().equals(pkg.sheetPart())) {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        split = split(in);
+                    }
+                } else if (entry.getName().equals(pkg.calcChainPart())) {
+                    // calcChain 描述的是模板自身的公式单元格，数据行变化后可能失效，交给 Excel 重建
+                } else if (entry.getName().equals(sharedStringsPart)) {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        existingStringCount = copyStringItems(in, existingStrings);
+                    }
+                } else if ((pkg.calcChainPart() != null || addSharedStrings) && entry.getName().equals(CONTENT_TYPES)) {
+                    parts.add(rewrite(zip, entry, pkg, addSharedStrings
+                            ? "<Override PartName=\"/" + sharedStringsPart + "\" ContentType=\"" + SST_CONTENT_TYPE + "\"/>"
+                            : null));
+                } else if ((pkg.calcChainPart() != null || addSharedStrings) && entry.getName().equals(pkg.workbookRels())) {
+                    parts.add(rewrite(zip, entry, pkg, addSharedStrings
+                            ? "<Relationship Id=\"rIdSharedStrings\" Type=\"" + SST_REL_TYPE + "\" Target=\"sharedStrings.xml\"/>"
+                            : null));
+                } else {
+                    try (InputStream raw = zip.getRawInputStream(entry)) {
+                        parts.add(new Part(entry.getName(), entry.getMethod(), entry.getCrc(),
+                                entry.getCompressedSize(), entry.getSize(), raw.readAllBytes()));
+                    }
+                }
+            }
+            if (split == null) {
+                throw new IOException("Template sheet part missing: " + pkg.sheetPart());
+            }
+            return new XlsxTemplate(List.copyOf(parts), pkg.sheetPart(),
+                    split.prefix().getBytes(StandardCharsets.UTF_8), split.suffix().getBytes(StandardCharsets.UTF_8),
+                    split.columnStyles(), split.firstDataRow(), sharedStringsPart,
+                    existingStrings.toString().getBytes(StandardCharsets.UTF_8), existingStringCount);
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed template XML", e);
+        }
+    }
+
+    /**
+     * 第一行数据的行号（从 1 开始）
+     */
+    public int firstDataRow() {
+        return firstDataRow;
+    }
+
+    /**
+     * 输出完整的 xlsx，字符串全部写成 inline string
+     */
+    public Multi<Buffer> render(Multi<? extends List<?>> rows) {
+        return render(rows, null);
+    }
+
+    /**
+     * 输出完整的 xlsx：静态部件直接写出，数据行按块生成 XML 并流式压缩；
+     * strings 不为 null 时字符串按列决定写进共享字符串表还是 inline
+     */
+    public Multi<Buffer> render(Multi<? extends List<?>> rows, SharedStrings strings) {
+        return Multi.createFrom().deferred(() -> {
+            if (strings != null) {
+                strings.startAt(existingStringCount);
+            }
+            ZipStreamBuilder zip = new ZipStreamBuilder(System.currentTimeMillis());
+            List<Multi<Buffer>> segments = new ArrayList<>(parts.size() + 2);
+            for (Part part : parts) {
+                segments.add(zip.raw(part.name(), part.method(), part.crc(), part.compressedSize(), part.size(), part.raw()));
+            }
+            int[] nextRow = {firstDataRow};
+            Multi<Buffer> dataRows = rows.group().intoLists().of(ROWS_PER_CHUNK)
+                    .map(chunk -> {
+                        StringWriter w = new StringWriter(chunk.size() * 128);
+                        try {
+                            for (List<?> values : chunk) {
+                                writeRow(w, nextRow[0]++, values, strings);
+                            }
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                        return Buffer.buffer(w.toString().getBytes(StandardCharsets.UTF_8));
+                    });
+            Multi<Buffer> sheet = Multi.createBy().concatenating().streams(
+                    Multi.createFrom().item(Buffer.buffer(sheetPrefix)),
+                    dataRows,
+                    Multi.createFrom().item(Buffer.buffer(sheetSuffix)));
+            segments.add(zip.deflated(sheetPart, sheet, Deflater.DEFAULT_COMPRESSION));
+            // 共享字符串表在所有行写完后才完整，放在 sheet 之后
+            Multi<Buffer> sst = Multi.createBy().concatenating().streams(
+                    Multi.createFrom().item(() -> Buffer.buffer(sharedStringsHead(strings == null ? 0 : strings.size()))),
+                    Multi.createFrom().item(Buffer.buffer(existingStrings)),
+                    strings == null ? Multi.createFrom().empty() : strings.spilled(),
+                    Multi.createFrom().item(Buffer.buffer("</sst>")));
+            segments.add(zip.deflated(sharedStringsPart, sst, Deflater.DEFAULT_COMPRESSION));
+            segments.add(zip.centralDirectory());
+            return Multi.createBy().concatenating().streams(segments);
+        });
+    }
+
+    private void writeRow(Writer w, int rowNum, List<?> values, SharedStrings strings) throws IOException {
+        if (strings == null) {
+            SheetXml.row(w, rowNum, values, columnStyles);
+            return;
+        }
+        w.write("<row r=\"");
+        w.write(Integer.toString(rowNum));
+        w.write("\">");
+        for (int c = 0; c < values.size(); c++) {
+            Object v = values.get(c);
+            int style = c < columnStyles.length ? columnStyles[c] : -1;
+            if (v instanceof String text) {
+                int index = strings.indexOf(c, text);
+                if (index >= 0) {
+                    SheetXml.sharedStringCell(w, c, rowNum, index, style);
+                    continue;
+                }
+            }
+            if (v != null) {
+                SheetXml.cell(w, c, rowNum, v, style);
+            }
+        }
+        w.write("</row>");
+    }
+
+    private String sharedStringsHead(int added) {
+        int unique = existingStringCount + added;
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n<sst xmlns=\"" + SheetXml.MAIN_NS
+                + "\" uniqueCount=\"" + unique + "\">";
+    }
+
+    /**
+     * 把模板 sharedStrings.xml 中的 &lt;si&gt; 原样复制出来，返回条数
+     */
+    private static int copyStringItems(InputStream in, Writer w) throws IOException, XMLStreamException {
+        XMLStreamReader r = XmlCopier.reader(in);
+        int count = 0;
+        int depth = 0;
+        boolean inItem = false;
+        while (r.hasNext()) {
+            int event = r.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                if (depth == 2 && XmlCopier.isMain(r, "si")) {
+                    inItem = true;
+                    count++;
+                }
+            }
+            if (inItem) {
+                XmlCopier.copy(r, w);
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 2) {
+                    inItem = false;
+                }
+                depth--;
+            }
+        }
+        r.close();
+        return count;
+    }
+
+    private record SheetSplit(String prefix, String suffix, int[] columnStyles, int firstDataRow) {}
+
+    /**
+     * 把模板 sheet 切成 sheetData 结束标签前后两段，同时识别末尾的样式原型行
+     */
+    private static SheetSplit split(InputStream in) throws IOException, XMLStreamException {
+        StringWriter prefix = new StringWriter();
+        StringWriter suffix = new StringWriter();
+        XMLStreamReader r = XmlCopier.reader(in);
+        XmlCopier.copy(r, prefix);
+        Writer out = prefix;
+        int[] colStyles = new int[0];
+        // 当前行先写到 rowBuffer，行结束后才知道它是否是原型行
+        StringWriter rowBuffer = null;
+        String pendingRow = null;
+        int[] pendingStyles = null;
+        int pendingRowNum = 0;
+        int[] rowStyles = null;
+        boolean rowHasValue = false;
+        int row = 0, col = -1, lastRow = 0;
+        int skipDepth = 0;
+        while (r.hasNext()) {
+            int event = r.next();
+            if (skipDepth > 0) {
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    skipDepth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    skipDepth--;
+                }
+                continue;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT && XmlCopier.isMain(r, "dimension")) {
+                skipDepth = 1;
+                continue;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT && XmlCopier.isMain(r, "col")) {
+                String style = r.getAttributeValue(null, "style");
+                if (style != null) {
+                    int min = Integer.parseInt(r.getAttributeValue(null, "min")) - 1;
+                    int max = Math.min(Integer.parseInt(r.getAttributeValue(null, "max")), 1024) - 1;
+                    colStyles = ensure(colStyles, max + 1);
+                    Arrays.fill(colStyles, min, max + 1, Integer.parseInt(style));
+                }
+            }
+            if (event == XMLStreamConstants.START_ELEMENT && XmlCopier.isMain(r, "row")) {
+                if (pendingRow != null) {
+                    // 后面还有行，之前暂存的行只是普通的表头行
+                    out.write(pendingRow);
+                    pendingRow = null;
+                }
+                String ref = r.getAttributeValue(null, "r");
+                row = ref != null ? Integer.parseInt(ref) : row + 1;
+                col = -1;
+                lastRow = row;
+                rowBuffer = new StringWriter();
+                rowStyles = new int[0];
+                rowHasValue = false;
+                out = rowBuffer;
+            } else if (event == XMLStreamConstants.START_ELEMENT && XmlCopier.isMain(r, "c")) {
+                String ref = r.getAttributeValue(null, "r");
+                col = ref != null ? SheetXml.column(ref) : col + 1;
+                String style = r.getAttributeValue(null, "s");
+                rowStyles = ensure(rowStyles, col + 1);
+                rowStyles[col] = style != null ? Integer.parseInt(style) : 0;
+            } else if (event == XMLStreamConstants.START_ELEMENT
+                    && (XmlCopier.isMain(r, "v") || XmlCopier.isMain(r, "is") || XmlCopier.isMain(r, "f"))) {
+                rowHasValue = true;
+            }
+
+            if (event == XMLStreamConstants.END_ELEMENT && XmlCopier.isMain(r, "sheetData")) {
+                if (pendingRow != null && pendingStyles.length > 0) {
+                    // 最后一行只有格式：作为数据样式原型，不输出
+                    colStyles = pendingStyles;
+                    lastRow = pendingRowNum - 1;
+                } else if (pendingRow != null) {
+                    prefix.write(pendingRow);
+                }
+                out = suffix;
+            }
+            XmlCopier.copy(r, out);
+            if (event == XMLStreamConstants.END_ELEMENT && XmlCopier.isMain(r, "row")) {
+                String rowXml = rowBuffer.toString();
+                if (rowHasValue) {
+                    prefix.write(rowXml);
+                } else {
+                    pendingRow = rowXml;
+                    pendingStyles = rowStyles;
+                    pendingRowNum = row;
+                }
+                out = prefix;
+            }
+        }
+        r.close();
+        return new SheetSplit(prefix.toString(), suffix.toString(), colStyles, lastRow + 1);
+    }
+
+    /**
+     * 改写 [Content_Types].xml / workbook.xml.rels 后重新压缩（只在编译时做一次）：
+     * 去掉 calcChain 的登记，addition 不为 null 时插到根元素末尾
+     */
+    private static Part rewrite(ZipFile zip, ZipArchiveEntry entry, OoxmlPackage pkg, String addition)
+            throws IOException, XMLStreamException {
+        String calcChain = pkg.calcChainPart();
+        StringWriter w = new StringWriter();
+        try (InputStream in = zip.getInputStream(entry)) {
+            XlsxPatchEngine.dropReferences(in, w, calcChain == null ? null : "/" + calcChain,
+                    calcChain == null ? null : calcChain.substring(pkg.workbookDir().length()));
+        }
+        String xml = w.toString();
+        if (addition != null) {
+            int rootEnd = xml.lastIndexOf("</");
+            xml = xml.substring(0, rootEnd) + addition + xml.substring(rootEnd);
+        }
+        byte[] plain = xml.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(plain);
+        byte[] raw = ZipStreamBuilder.deflate(plain, Deflater.DEFAULT_COMPRESSION);
+        return new Part(entry.getName(), ZipArchiveEntry.DEFLATED, crc.getValue(), raw.length, plain.length, raw);
+    }
+
+    private static int[] ensure(int[] array, int size) {
+        return array.length >= size ? array : Arrays.copyOf(array, size);
+    }
+}
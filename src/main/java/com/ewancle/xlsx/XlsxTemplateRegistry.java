@@ -0,0 +1,98 @@
+package com.ewancle.xlsx;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.NotFoundException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * 按名称查找并缓存编译好的 xlsx 模板，查找顺序：
+ *    1. app.templates.dir 目录下的 &lt;name&gt;.xlsx（文件修改时间变化后重新编译，改模板不用重启）
+ *    2. classpath 下的 templates/&lt;name&gt;.xlsx
+ *    3. 调用方给的默认模板（代码生成，只生成一次）
+ * 编译在调用线程上进行（有 IO），调用方应在 worker 线程调用
+ */
+@ApplicationScoped
+public class XlsxTemplateRegistry {
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private record Compiled(long modifiedAt, XlsxTemplate template) {}
+
+    @ConfigProperty(name = "app.templates.dir", defaultValue = "templates")
+    String templatesDir;
+
+    private final ConcurrentMap<String, Compiled> cache = new ConcurrentHashMap<>();
+
+    public XlsxTemplate get(String name) {
+        return get(name, null);
+    }
+
+    /**
+     * @param fallback 目录和 classpath 里都没有时使用的模板内容，可以为 null
+     */
+    public XlsxTemplate get(String name, Supplier<byte[]> fallback) {
+        if (name == null || !NAME.matcher(name).matches()) {
+            throw new NotFoundException("Template not found: " + name);
+        }
+        Path file = Paths.get(templatesDir, name + ".xlsx");
+        long modifiedAt = lastModified(file);
+        Compiled cached = cache.get(name);
+        if (cached != null && cached.modifiedAt() == modifiedAt) {
+            return cached.template();
+        }
+        // 同名模板并发首次请求时只编译一次
+        return cache.compute(name, (key, current) -> {
+            if (current != null && current.modifiedAt() == modifiedAt) {
+                return current;
+            }
+            byte[] xlsx = load(name, file, modifiedAt, fallback);
+            try {
+                return new Compiled(modifiedAt, XlsxTemplate.compile(xlsx, 0));
+            } catch (IOException e) {
+                throw new UncheckedIOException("模板格式错误: " + name, e);
+            }
+        }).template();
+    }
+
+    private byte[] load(String name, Path file, long modifiedAt, Supplier<byte[]> fallback) {
+        try {
+            if (modifiedAt >= 0) {
+                return Files.readAllBytes(file);
+            }
+            try (InputStream in = Thread.currentThread().getContextClassLoader()
+                    .getResourceAsStream("templates/" + name + ".xlsx")) {
+                if (in != null) {
+                    return in.readAllBytes();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取模板失败: " + name, e);
+        }
+        if (fallback == null) {
+            throw new NotFoundException("Template not found: " + name);
+        }
+        return fallback.get();
+    }
+
+    /**
+     * 目录中模板文件的修改时间，不存在时为 -1（classpath / 默认模板不会变化）
+     */
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
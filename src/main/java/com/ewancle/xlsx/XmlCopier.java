@@ -0,0 +1,110 @@
+package com.ewancle.xlsx;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+
+/**
+ * 把 StAX 读到的当前事件原样写到 Writer（命名空间声明、前缀、属性都保留），
+ * 改写 OOXML 部件时逐事件复制，只在需要的位置插入 / 替换内容
+ */
+final class XmlCopier {
+
+    private static final XMLInputFactory INPUT = XMLInputFactory.newFactory();
+
+    static {
+        // 不解析 DTD / 外部实体（上传文件不可信）
+        INPUT.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        INPUT.setProperty(XMLInputFactory.IS_COALESCING, false);
+    }
+
+    private XmlCopier() {
+    }
+
+    static XMLStreamReader reader(InputStream in) throws XMLStreamException {
+        return INPUT.createXMLStreamReader(in);
+    }
+
+    static void declaration(Writer w) throws IOException {
+        w.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+    }
+
+    /**
+     * 复制当前事件；START_DOCUMENT 写 XML 声明，DTD 丢弃
+     */
+    static void copy(XMLStreamReader r, Writer w) throws IOException {
+        switch (r.getEventType()) {
+            case XMLStreamConstants.START_DOCUMENT -> declaration(w);
+            case XMLStreamConstants.START_ELEMENT -> startElement(r, w, null, null);
+            case XMLStreamConstants.END_ELEMENT -> endElement(r, w);
+            case XMLStreamConstants.CHARACTERS, XMLStreamConstants.SPACE, XMLStreamConstants.CDATA ->
+                    SheetXml.escape(w, r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+            case XMLStreamConstants.COMMENT -> {
+                w.write("<!--");
+                w.write(r.getText());
+                w.write("-->");
+            }
+            case XMLStreamConstants.PROCESSING_INSTRUCTION -> {
+                w.write("<?");
+                w.write(r.getPITarget());
+                if (r.getPIData() != null && !r.getPIData().isEmpty()) {
+                    w.write(' ');
+                    w.write(r.getPIData());
+                }
+                w.write("?>");
+            }
+            default -> {
+                // DTD、实体引用等在 OOXML 中不会出现
+            }
+        }
+    }
+
+    /**
+     * 写开始标签；overrideAttr 不为 null 时把该属性（无命名空间）的值替换成 overrideValue
+     */
+    static void startElement(XMLStreamReader r, Writer w, String overrideAttr, String overrideValue) throws IOException {
+        w.write('<');
+        writeName(w, r.getPrefix(), r.getLocalName());
+        for (int i = 0; i < r.getNamespaceCount(); i++) {
+            String prefix = r.getNamespacePrefix(i);
+            w.write(prefix == null || prefix.isEmpty() ? " xmlns" : " xmlns:" + prefix);
+            w.write("=\"");
+            SheetXml.escape(w, r.getNamespaceURI(i), true);
+            w.write('"');
+        }
+        for (int i = 0; i < r.getAttributeCount(); i++) {
+            String prefix = r.getAttributePrefix(i);
+            String name = r.getAttributeLocalName(i);
+            boolean override = overrideAttr != null && (prefix == null || prefix.isEmpty()) && overrideAttr.equals(name);
+            w.write(' ');
+            writeName(w, prefix, name);
+            w.write("=\"");
+            SheetXml.escape(w, override ? overrideValue : r.getAttributeValue(i), true);
+            w.write('"');
+        }
+        w.write('>');
+    }
+
+    static void endElement(XMLStreamReader r, Writer w) throws IOException {
+        w.write("</");
+        writeName(w, r.getPrefix(), r.getLocalName());
+        w.write('>');
+    }
+
+    static boolean isMain(XMLStreamReader r, String localName) {
+        return localName.equals(r.getLocalName()) && SheetXml.MAIN_NS.equals(r.getNamespaceURI());
+    }
+
+    private static void writeName(Writer w, String prefix, String localName) throws IOException {
+        if (prefix != null && !prefix.isEmpty()) {
+            w.write(prefix);
+            w.write(':');
+        }
+        w.write(localName);
+    }
+}
@@ -0,0 +1,65 @@
+package com.ewancle.zip;
+
+import io.vertx.mutiny.core.buffer.Buffer;
+
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 分块 raw deflate（ZIP 条目数据），同时累计原始内容的 CRC32 和长度。
+ * 取消时 end() 可能和 worker 线程上的 deflate 并发，统一加锁
+ */
+public final class StreamingDeflater {
+
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] out = new byte[64 * 1024];
+    private long size;
+    private boolean ended;
+
+    public StreamingDeflater(int level) {
+        this.deflater = new Deflater(level, true);
+    }
+
+    public synchronized Buffer deflate(Buffer chunk) {
+        byte[] input = chunk.getBytes();
+        crc.update(input);
+        size += input.length;
+        deflater.setInput(input);
+        Buffer result = Buffer.buffer();
+        while (!deflater.needsInput()) {
+            int n = deflater.deflate(out);
+            result.appendBytes(out, 0, n);
+        }
+        return result;
+    }
+
+    public synchronized Buffer finish() {
+        deflater.finish();
+        Buffer result = Buffer.buffer();
+        while (!deflater.finished()) {
+            int n = deflater.deflate(out);
+            result.appendBytes(out, 0, n);
+        }
+        return result;
+    }
+
+    public synchronized long crc() {
+        return crc.getValue();
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized long compressedSize() {
+        return deflater.getBytesWritten();
+    }
+
+    public synchronized void end() {
+        if (!ended) {
+            ended = true;
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.ewancle.zip;
+
+import com.ewancle.model.FileMetadata;
+import com.ewancle.storage.ContentTypes;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.core.file.AsyncFile;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * 边生成边输出的 ZIP 归档（不落临时文件）：
+ *    - 条目按请求顺序写出，每 parallelism 个分一组；组内的小文件在 worker 线程上并行读入并压缩，
+ *      按顺序依次写出，内存占用上限约为 parallelism × in-memory-entry-bytes
+ *    - 大文件通过 AsyncFile 按需读取（背压），边读边 deflate，大小和 CRC 写在 data descriptor 里
+ *    - 已压缩的类型（xlsx、pdf、图片等）直接 STORED，大文件的 CRC 取自上传时算好的元数据
+ *    - 以 gzip 存储的文件直接复用其中的 deflate 数据（去掉 10 字节头和 8 字节尾），不解压也不重新压缩
+ *    - 超过 4GB 的条目 / 偏移自动使用 ZIP64
+ */
+@ApplicationScoped
+public class ZipArchiveStreamer {
+
+    // UploadStore 写出的 gzip：固定 10 字节头，8 字节尾（CRC32 + ISIZE）
+    private static final int GZIP_HEADER = 10;
+    private static final int GZIP_TRAILER = 8;
+
+    @Inject
+    Vertx vertx;
+
+    @ConfigProperty(name = "app.zip.parallelism", defaultValue = "4")
+    int parallelism;
+
+    @ConfigProperty(name = "app.zip.in-memory-entry-bytes", defaultValue = "8388608")
+    long inMemoryEntryBytes;
+
+    @ConfigProperty(name = "app.zip.level", defaultValue = "6")
+    int level;
+
+    public record Source(FileMetadata meta, Path path) {}
+
+    private record Prepared(int method, long crc, long size, byte[] data) {}
+
+    public Multi<Buffer> stream(List<Source> sources) {
+        return Multi.createFrom().deferred(() -> {
+            // 偏移和中央目录由 builder 维护，只在按顺序输出的链路上修改
+            ZipStreamBuilder zip = new ZipStreamBuilder(System.currentTimeMillis());
+            List<String> names = entryNames(sources);
+            Multi<Buffer> entries = Multi.createFrom().range(0, sources.size())
+                    .group().intoLists().of(Math.max(1, parallelism))
+                    // 上一组写完才处理下一组，组内的小文件此时一起开始压缩
+                    .onItem().transformToMultiAndConcatenate(group -> {
+                        List<Multi<Buffer>> parts = new ArrayList<>(group.size());
+                        for (int i : group) {
+                            parts.add(entry(zip, names.get(i), sources.get(i)));
+                        }
+                        return Multi.createBy().concatenating().streams(parts);
+                    });
+            return Multi.createBy().concatenating().streams(entries, zip.centralDirectory());
+        });
+    }
+
+    private Multi<Buffer> entry(ZipStreamBuilder zip, String name, Source source) {
+        if (source.meta().gzipped()) {
+            return gzipEntry(zip, name, source);
+        } else if (source.meta().size() <= inMemoryEntryBytes) {
+            return inMemoryEntry(zip, name, source);
+        } else if (ContentTypes.isAlreadyCompressed(source.meta().mimeType(), source.meta().originalName())) {
+            return storedEntry(zip, name, source);
+        }
+        return deflatedEntry(zip, name, source);
+    }
+
+    /**
+     * 小文件：立即在 worker 线程开始读入 + 压缩，输出时只等待结果
+     */
+    private Multi<Buffer> inMemoryEntry(ZipStreamBuilder zip, String name, Source source) {
+        CompletableFuture<Prepared> prepared = Uni.createFrom().item(() -> prepare(source))
+                .runSubscriptionOn(Infrastructure.getDefaultExecutor())
+                .subscribeAsCompletionStage();
+        return Uni.createFrom().completionStage(prepared)
+                .onItem().transformToMulti(p -> zip.raw(name, source.meta().modifiedAt(), p.method(), p.crc(),
+                        p.data().length, p.size(), p.data()));
+    }
+
+    private Prepared prepare(Source source) {
+        byte[] raw;
+        try {
+            raw = Files.readAllBytes(source.path());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read " + source.meta().storedName(), e);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(raw);
+        if (!ContentTypes.isAlreadyCompressed(source.meta().mimeType(), source.meta().originalName())) {
+            byte[] compressed = ZipStreamBuilder.deflate(raw, level);
+            // 压缩无收益时退回 STORED
+            if (compressed.length < raw.length) {
+                return new Prepared(ZipEntryInfo.DEFLATED, crc.getValue(), raw.length, compressed);
+            }
+        }
+        return new Prepared(ZipEntryInfo.STORED, crc.getValue(), raw.length, raw);
+    }
+
+    /**
+     * 已压缩的大文件：大小和 CRC 已知，本地头直接写全，数据原样转发
+     */
+    private Multi<Buffer> storedEntry(ZipStreamBuilder zip, String name, Source source) {
+        FileMetadata meta = source.meta();
+        return Multi.createFrom().resourceFromUni(() -> open(source), file ->
+                        zip.raw(name, meta.modifiedAt(), ZipEntryInfo.STORED, meta.crc32(), meta.size(), meta.size(),
+                                file.toMulti()))
+                .withFinalizer(AsyncFile::close);
+    }
+
+    /**
+     * gzip 存储的文件：gzip 的数据部分就是 raw deflate，CRC32 和原始大小与 ZIP 条目要求的一致
+     */
+    private Multi<Buffer> gzipEntry(ZipStreamBuilder zip, String name, Source source) {
+        FileMetadata meta = source.meta();
+        long compressedSize = meta.storedSize() - GZIP_HEADER - GZIP_TRAILER;
+        return Multi.createFrom().resourceFromUni(() -> open(source), file ->
+                        zip.raw(name, meta.modifiedAt(), ZipEntryInfo.DEFLATED, meta.crc32(), compressedSize,
+                                meta.size(), file.setReadPos(GZIP_HEADER).setReadLength(compressedSize).toMulti()))
+                .withFinalizer(AsyncFile::close);
+    }
+
+    /**
+     * 可压缩的大文件：边读边 deflate（worker 线程），读完后写 data descriptor
+     */
+    private Multi<Buffer> deflatedEntry(ZipStreamBuilder zip, String name, Source source) {
+        FileMetadata meta = source.meta();
+        return Multi.createFrom().resourceFromUni(() -> open(source), file ->
+                        zip.deflated(name, meta.modifiedAt(), file.toMulti(), meta.size(), level))
+                .withFinalizer(AsyncFile::close);
+    }
+
+    /**
+     * 只读打开；OpenOptions 默认 create=true，文件不存在时会建出空文件并写进一个内容不符的条目，这里必须关掉
+     */
+    private Uni<AsyncFile> open(Source source) {
+        return vertx.fileSystem().open(source.path().toString(), new OpenOptions().setRead(true).setCreate(false));
+    }
+
+    /**
+     * 归档内的文件名用原始文件名，重名时追加序号：a.xlsx、a (1).xlsx ...
+     */
+    private static List<String> entryNames(List<Source> sources) {
+        Set<String> used = new HashSet<>();
+        List<String> names = new ArrayList<>(sources.size());
+        for (Source source : sources) {
+            String name = source.meta().originalName();
+            int dot = name.lastIndexOf('.');
+            String base = dot > 0 ? name.substring(0, dot) : name;
+            String ext = dot > 0 ? name.substring(dot) : "";
+            for (int n = 1; !used.add(name); n++) {
+                name = base + " (" + n + ")" + ext;
+            }
+            names.add(name);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,43 @@
+package com.ewancle.zip;
+
+/**
+ * 写入中的 ZIP 条目信息（本地头写出时确定偏移，数据写完后补齐大小和 CRC，最后用于生成中央目录）
+ */
+public class ZipEntryInfo {
+
+    public static final int STORED = 0;
+    public static final int DEFLATED = 8;
+
+    final String name;
+    final int method;
+    final long dosTime;
+    long crc;
+    long compressedSize;
+    long size;
+    long offset;
+    // 大小/CRC 写在数据之后的 data descriptor 里（通用标志位 3）
+    final boolean descriptor;
+    final boolean zip64;
+
+    public ZipEntryInfo(String name, int method, long modifiedAt, long crc, long compressedSize, long size,
+                        boolean descriptor, boolean zip64) {
+        this.name = name;
+        this.method = method;
+        this.dosTime = ZipFormat.dosTime(modifiedAt);
+        this.crc = crc;
+        this.compressedSize = compressedSize;
+        this.size = size;
+        this.descriptor = descriptor;
+        this.zip64 = zip64;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public void complete(long crc, long compressedSize, long size) {
+        this.crc = crc;
+        this.compressedSize = compressedSize;
+        this.size = size;
+    }
+}
@@ -0,0 +1,152 @@
+package com.ewancle.zip;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * ZIP 结构的字节生成（本地文件头、data descriptor、中央目录、ZIP64 结束记录），不涉及 I/O。
+ * 文件名一律按 UTF-8 写并置通用标志位 11。
+ */
+public final class ZipFormat {
+
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int DESCRIPTOR_SIG = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int EOCD_SIG = 0x06054b50;
+    private static final int ZIP64_EOCD_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final int FLAG_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+
+    static final long MAX_32 = 0xFFFFFFFFL;
+    private static final int MAX_16 = 0xFFFF;
+
+    private ZipFormat() {
+    }
+
+    public static byte[] localHeader(ZipEntryInfo e) {
+        byte[] name = e.name.getBytes(StandardCharsets.UTF_8);
+        int extraLen = e.zip64 ? 20 : 0;
+        ByteBuffer b = le(30 + name.length + extraLen);
+        b.putInt(LOCAL_HEADER_SIG);
+        b.putShort((short) (e.zip64 ? 45 : 20));
+        b.putShort((short) flags(e));
+        b.putShort((short) e.method);
+        b.putInt((int) e.dosTime);
+        if (e.descriptor) {
+            b.putInt(0).putInt(e.zip64 ? (int) MAX_32 : 0).putInt(e.zip64 ? (int) MAX_32 : 0);
+        } else {
+            b.putInt((int) e.crc);
+            b.putInt(e.zip64 ? (int) MAX_32 : (int) e.compressedSize);
+            b.putInt(e.zip64 ? (int) MAX_32 : (int) e.size);
+        }
+        b.putShort((short) name.length);
+        b.putShort((short) extraLen);
+        b.put(name);
+        if (e.zip64) {
+            b.putShort((short) ZIP64_EXTRA_ID).putShort((short) 16);
+            b.putLong(e.descriptor ? 0 : e.size).putLong(e.descriptor ? 0 : e.compressedSize);
+        }
+        return b.array();
+    }
+
+    public static byte[] dataDescriptor(ZipEntryInfo e) {
+        ByteBuffer b = le(e.zip64 ? 24 : 16);
+        b.putInt(DESCRIPTOR_SIG).putInt((int) e.crc);
+        if (e.zip64) {
+            b.putLong(e.compressedSize).putLong(e.size);
+        } else {
+            b.putInt((int) e.compressedSize).putInt((int) e.size);
+        }
+        return b.array();
+    }
+
+    /**
+     * 中央目录 + （需要时）ZIP64 结束记录和定位器 + 结束记录
+     */
+    public static byte[] centralDirectory(List<ZipEntryInfo> entries, long cdOffset) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(entries.size() * 96 + 128);
+        for (ZipEntryInfo e : entries) {
+            byte[] name = e.name.getBytes(StandardCharsets.UTF_8);
+            boolean bigSize = e.size >= MAX_32 || e.compressedSize >= MAX_32;
+            boolean bigOffset = e.offset >= MAX_32;
+            int extraLen = (bigSize ? 16 : 0) + (bigOffset ? 8 : 0);
+            ByteBuffer b = le(46 + name.length + (extraLen > 0 ? 4 + extraLen : 0));
+            b.putInt(CENTRAL_HEADER_SIG);
+            b.putShort((short) (45 | (3 << 8)));   // version made by：UNIX
+            b.putShort((short) (bigSize || bigOffset || e.zip64 ? 45 : 20));
+            b.putShort((short) flags(e));
+            b.putShort((short) e.method);
+            b.putInt((int) e.dosTime);
+            b.putInt((int) e.crc);
+            b.putInt(bigSize ? (int) MAX_32 : (int) e.compressedSize);
+            b.putInt(bigSize ? (int) MAX_32 : (int) e.size);
+            b.putShort((short) name.length);
+            b.putShort((short) (extraLen > 0 ? 4 + extraLen : 0));
+            b.putShort((short) 0);   // comment
+            b.putShort((short) 0);   // disk
+            b.putShort((short) 0);   // internal attrs
+            b.putInt(0100644 << 16); // external attrs：普通文件 rw-r--r--
+            b.putInt(bigOffset ? (int) MAX_32 : (int) e.offset);
+            b.put(name);
+            if (extraLen > 0) {
+                b.putShort((short) ZIP64_EXTRA_ID).putShort((short) extraLen);
+                if (bigSize) {
+                    b.putLong(e.size).putLong(e.compressedSize);
+                }
+                if (bigOffset) {
+                    b.putLong(e.offset);
+                }
+            }
+            out.writeBytes(b.array());
+        }
+        long cdSize = out.size();
+        boolean zip64 = entries.size() >= MAX_16 || cdOffset >= MAX_32 || cdSize >= MAX_32;
+        if (zip64) {
+            long zip64EocdOffset = cdOffset + cdSize;
+            ByteBuffer z = le(56 + 20);
+            z.putInt(ZIP64_EOCD_SIG).putLong(44);
+            z.putShort((short) 45).putShort((short) 45);
+            z.putInt(0).putInt(0);
+            z.putLong(entries.size()).putLong(entries.size());
+            z.putLong(cdSize).putLong(cdOffset);
+            z.putInt(ZIP64_LOCATOR_SIG).putInt(0).putLong(zip64EocdOffset).putInt(1);
+            out.writeBytes(z.array());
+        }
+        ByteBuffer end = le(22);
+        end.putInt(EOCD_SIG);
+        end.putShort((short) 0).putShort((short) 0);
+        end.putShort((short) Math.min(entries.size(), MAX_16));
+        end.putShort((short) Math.min(entries.size(), MAX_16));
+        end.putInt(zip64 ? (int) MAX_32 : (int) cdSize);
+        end.putInt(zip64 ? (int) MAX_32 : (int) cdOffset);
+        end.putShort((short) 0);
+        out.writeBytes(end.array());
+        return out.toByteArray();
+    }
+
+    static long dosTime(long epochMillis) {
+        LocalDateTime t = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+        if (t.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (t.getYear() - 1980) << 25) | ((long) t.getMonthValue() << 21) | ((long) t.getDayOfMonth() << 16)
+                | ((long) t.getHour() << 11) | ((long) t.getMinute() << 5) | (t.getSecond() >> 1);
+    }
+
+    private static int flags(ZipEntryInfo e) {
+        return FLAG_UTF8 | (e.descriptor ? FLAG_DESCRIPTOR : 0);
+    }
+
+    private static ByteBuffer le(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
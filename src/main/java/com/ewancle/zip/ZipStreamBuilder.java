@@ -0,0 +1,144 @@
+package com.ewancle.zip;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.mutiny.core.buffer.Buffer;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 按顺序拼装一个 ZIP 流：每个方法返回一段 Multi，调用方按顺序 concatenate，最后接上 centralDirectory()。
+ * 各段在被订阅时才确定本地头的偏移，所以必须串行订阅（concatenating），不能 merge。
+ * 条目的修改时间默认取构造参数，打包已有文件时可以逐个指定。
+ */
+public final class ZipStreamBuilder {
+
+    // 压缩后可能略大于原文件，留出余量再决定是否需要 ZIP64
+    private static final long ZIP64_THRESHOLD = 0xF0000000L;
+
+    private final List<ZipEntryInfo> entries = new ArrayList<>();
+    private final long modifiedAt;
+    private long written;
+
+    public ZipStreamBuilder(long modifiedAt) {
+        this.modifiedAt = modifiedAt;
+    }
+
+    /**
+     * 已压缩好的条目（如模板里缓存的原始 deflate 数据），大小和 CRC 已知
+     */
+    public Multi<Buffer> raw(String name, int method, long crc, long compressedSize, long size, byte[] data) {
+        return raw(name, modifiedAt, method, crc, compressedSize, size, data);
+    }
+
+    public Multi<Buffer> raw(String name, long modifiedAt, int method, long crc, long compressedSize, long size,
+                             byte[] data) {
+        return Multi.createFrom().item(() -> {
+            ZipEntryInfo e = new ZipEntryInfo(name, method, modifiedAt, crc, compressedSize, size, false,
+                    size >= ZipFormat.MAX_32 || compressedSize >= ZipFormat.MAX_32);
+            begin(e);
+            Buffer buffer = Buffer.buffer(ZipFormat.localHeader(e)).appendBytes(data);
+            written += buffer.length();
+            return buffer;
+        });
+    }
+
+    /**
+     * 已压缩好、数据在别处（如临时文件）的条目：大小和 CRC 已知，本地头写全后原样转发 data
+     */
+    public Multi<Buffer> raw(String name, int method, long crc, long compressedSize, long size, Multi<Buffer> data) {
+        return raw(name, modifiedAt, method, crc, compressedSize, size, data);
+    }
+
+    public Multi<Buffer> raw(String name, long modifiedAt, int method, long crc, long compressedSize, long size,
+                             Multi<Buffer> data) {
+        return Multi.createFrom().deferred(() -> {
+            ZipEntryInfo e = new ZipEntryInfo(name, method, modifiedAt, crc, compressedSize, size, false,
+                    size >= ZipFormat.MAX_32 || compressedSize >= ZipFormat.MAX_32);
+            Multi<Buffer> header = Multi.createFrom().item(() -> {
+                begin(e);
+                return Buffer.buffer(ZipFormat.localHeader(e));
+            });
+            return Multi.createBy().concatenating().streams(header, data)
+                    .invoke(buffer -> written += buffer.length());
+        });
+    }
+
+    /**
+     * 内存中的小部件（workbook.xml、styles.xml 等），订阅时一次性压缩
+     */
+    public Multi<Buffer> deflated(String name, byte[] content, int level) {
+        return Multi.createFrom().deferred(() -> {
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            byte[] compressed = deflate(content, level);
+            return raw(name, ZipEntryInfo.DEFLATED, crc.getValue(), compressed.length, content.length, compressed);
+        });
+    }
+
+    /**
+     * 边生成边压缩的条目：content 在 worker 线程上 deflate，结束后写 data descriptor
+     */
+    public Multi<Buffer> deflated(String name, Multi<Buffer> content, int level) {
+        return deflated(name, modifiedAt, content, 0, level);
+    }
+
+    /**
+     * @param expectedSize 预计的原始大小，接近 4GB 时本地头预先按 ZIP64 写
+     */
+    public Multi<Buffer> deflated(String name, long modifiedAt, Multi<Buffer> content, long expectedSize, int level) {
+        return Multi.createFrom().deferred(() -> {
+            ZipEntryInfo e = new ZipEntryInfo(name, ZipEntryInfo.DEFLATED, modifiedAt, 0, 0, 0, true,
+                    expectedSize >= ZIP64_THRESHOLD);
+            StreamingDeflater deflater = new StreamingDeflater(level);
+            Multi<Buffer> header = Multi.createFrom().item(() -> {
+                begin(e);
+                return Buffer.buffer(ZipFormat.localHeader(e));
+            });
+            Multi<Buffer> data = content
+                    .emitOn(Infrastructure.getDefaultWorkerPool())
+                    .map(deflater::deflate)
+                    .filter(buffer -> buffer.length() > 0);
+            Multi<Buffer> trailer = Multi.createFrom().item(() -> {
+                Buffer tail = deflater.finish();
+                e.complete(deflater.crc(), deflater.compressedSize(), deflater.size());
+                return tail.appendBytes(ZipFormat.dataDescriptor(e));
+            });
+            return Multi.createBy().concatenating().streams(header, data, trailer)
+                    .invoke(buffer -> written += buffer.length())
+                    .onTermination().invoke(deflater::end);
+        });
+    }
+
+    public Multi<Buffer> centralDirectory() {
+        return Multi.createFrom().item(() -> Buffer.buffer(ZipFormat.centralDirectory(entries, written)));
+    }
+
+    /**
+     * 一次性 raw deflate（条目数据，不带 zlib 头）
+     */
+    public static byte[] deflate(byte[] content, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, content.length / 2));
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void begin(ZipEntryInfo entry) {
+        entry.offset = written;
+        entries.add(entry);
+    }
+}
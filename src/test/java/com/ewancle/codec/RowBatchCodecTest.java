@@ -0,0 +1,80 @@
+package com.ewancle.codec;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowBatchCodecTest {
+
+    @Test
+    void testRoundTripAcrossArbitraryChunks() {
+        RowBatchWriter writer = new RowBatchWriter(List.of("ID", "部门", "薪资", "入职时间", "邮箱"));
+        LocalDateTime joined = LocalDateTime.of(2024, 3, 1, 9, 30);
+        List<Object[]> first = List.of(
+                new Object[]{1L, "技术部", 15000.0, joined, "zhangsan@company.com"},
+                new Object[]{2L, "产品部", null, joined, "lisi@company.com"},
+                new Object[]{3L, "技术部", 11000.5}
+        );
+        List<Object[]> second = List.<Object[]>of(
+                new Object[]{4L, "技术部", "面议", null, "zhaoliu@company.com"}
+        );
+
+        Buffer stream = Buffer.buffer()
+                .appendBuffer(writer.start())
+                .appendBuffer(writer.writeBatch(first))
+                .appendBuffer(writer.writeBatch(second))
+                .appendBuffer(writer.end());
+
+        // 以 7 字节为单位喂入，模拟网络分块
+        RowBatchReader reader = new RowBatchReader();
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < stream.length(); i += 7) {
+            rows.addAll(reader.feed(stream.getBuffer(i, Math.min(i + 7, stream.length()))));
+        }
+
+        assertTrue(reader.isEnded());
+        assertEquals(List.of("ID", "部门", "薪资", "入职时间", "邮箱"), reader.columns());
+        assertEquals(4, rows.size());
+        assertArrayEquals(new Object[]{1L, "技术部", 15000.0, joined, "zhangsan@company.com"}, rows.get(0));
+        assertArrayEquals(new Object[]{2L, "产品部", null, joined, "lisi@company.com"}, rows.get(1));
+        assertArrayEquals(new Object[]{3L, "技术部", 11000.5, null, null}, rows.get(2));
+        // 第二批薪资列是字符串，按批次退化为 UTF8
+        assertArrayEquals(new Object[]{4L, "技术部", "面议", null, "zhaoliu@company.com"}, rows.get(3));
+    }
+
+    @Test
+    void testExtendAppendsColumnsMidStream() {
+        RowBatchWriter writer = new RowBatchWriter(List.of("部门"));
+        List<Object[]> first = List.of(new Object[]{"技术部"}, new Object[]{"技术部"}, new Object[]{"技术部"},
+                new Object[]{"产品部"});
+        List<Object[]> second = List.of(new Object[]{"技术部", 3.5}, new Object[]{"产品部", null});
+
+        Buffer stream = Buffer.buffer()
+                .appendBuffer(writer.start())
+                .appendBuffer(writer.writeBatch(first))
+                .appendBuffer(writer.extend(List.of("部门", "B")))
+                .appendBuffer(writer.writeBatch(second))
+                .appendBuffer(writer.end());
+
+        RowBatchReader reader = new RowBatchReader();
+        List<Object[]> rows = reader.feed(stream);
+        assertEquals(List.of("部门", "B"), reader.columns());
+        assertEquals(6, rows.size());
+        assertArrayEquals(new Object[]{"产品部"}, rows.get(3));
+        // 第二批的部门列仍用第一批建立的字典
+        assertArrayEquals(new Object[]{"技术部", 3.5}, rows.get(4));
+        assertArrayEquals(new Object[]{"产品部", null}, rows.get(5));
+        assertThrows(IllegalArgumentException.class, () -> writer.extend(List.of("其它", "B")));
+    }
+
+    @Test
+    void testRejectsForeignStream() {
+        RowBatchReader reader = new RowBatchReader();
+        assertThrows(IllegalArgumentException.class, () -> reader.feed(Buffer.buffer("[{\"cells\":[]}]")));
+    }
+}
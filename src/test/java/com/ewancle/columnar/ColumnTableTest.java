@@ -0,0 +1,148 @@
+package com.ewancle.columnar;
+
+import com.ewancle.model.QueryResult;
+import com.ewancle.model.TableQuery;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnTableTest {
+
+    private static final String[] DEPARTMENTS = {"技术部", "产品部", "市场部"};
+
+    /**
+     * 工号、部门、薪资、入职时间；第 5 行薪资为空，第 7 行薪资是文本（薪资列升级为文本列之前的行不受影响）
+     */
+    private static ColumnTable table(int rows, boolean offHeap) {
+        ColumnBuilder id = new ColumnBuilder("工号");
+        ColumnBuilder dept = new ColumnBuilder("部门");
+        ColumnBuilder salary = new ColumnBuilder("薪资");
+        ColumnBuilder joined = new ColumnBuilder("入职时间");
+        for (int i = 0; i < rows; i++) {
+            id.add((double) i);
+            dept.add(DEPARTMENTS[i % DEPARTMENTS.length]);
+            salary.add(i == 5 ? null : 10000.0 + i * 100);
+            joined.add(LocalDateTime.of(2020, 1, 1, 0, 0).plusDays(i));
+        }
+        return new ColumnTable(List.of(id.build(offHeap), dept.build(offHeap), salary.build(offHeap),
+                joined.build(offHeap)), rows);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testFilterSortAndPage(boolean offHeap) {
+        TableQuery q = new TableQuery();
+        q.select = List.of("工号", "薪资");
+        q.filters = List.of(filter("部门", "eq", "技术部"), filter("薪资", "ge", "10300"));
+        q.sort = List.of(sort("薪资", true));
+        q.offset = 1;
+        q.limit = 2;
+
+        QueryResult result = table(30, offHeap).query(q);
+
+        assertEquals(List.of("工号", "薪资"), result.columns);
+        // 技术部：工号 0,3,...,27，薪资 >= 10300 的是 3 之后的 9 行
+        assertEquals(9, result.total);
+        assertEquals(List.of(List.of(24.0, 12400.0), List.of(21.0, 12100.0)), result.rows);
+    }
+
+    @Test
+    void testNullAndTimestampFilters() {
+        TableQuery q = new TableQuery();
+        q.filters = List.of(filter("薪资", "isNull", null));
+        QueryResult nulls = table(10, false).query(q);
+        assertEquals(1, nulls.total);
+        assertEquals("2020-01-06T00:00", nulls.rows.get(0).get(3));
+
+        q.filters = List.of(filter("入职时间", "lt", "2020-01-03T00:00"));
+        assertEquals(2, table(10, false).query(q).total);
+    }
+
+    @Test
+    void testGroupByAggregatesAcrossChunks() {
+        // 超过一个块，分块聚合后合并
+        int rows = ColumnTable.CHUNK_ROWS + 1000;
+        TableQuery q = new TableQuery();
+        q.groupBy = List.of("部门");
+        q.aggregates = List.of(aggregate("count", null, "人数"), aggregate("max", "薪资", null),
+                aggregate("avg", "工号", null));
+        q.sort = List.of(sort("人数", true), sort("部门", false));
+
+        QueryResult result = table(rows, true).query(q);
+
+        assertEquals(List.of("部门", "人数", "max(薪资)", "avg(工号)"), result.columns);
+        assertEquals(3, result.total);
+        long expected = 0;
+        List<String> order = new ArrayList<>();
+        for (List<Object> row : result.rows) {
+            expected += (Long) row.get(1);
+            order.add((String) row.get(0));
+        }
+        assertEquals(rows, expected);
+        // 66536 行：技术部、产品部各 22179 行，市场部 22178 行；人数相同时按部门名排序
+        assertEquals(List.of("产品部", "技术部", "市场部"), order);
+        // 技术部最后一行是倒数第 2 行
+        assertEquals(10000.0 + (rows - 2) * 100, result.rows.get(1).get(2));
+    }
+
+    @Test
+    void testUnknownColumnIsBadRequest() {
+        TableQuery q = new TableQuery();
+        q.select = List.of("不存在");
+        WebApplicationException e = assertThrows(WebApplicationException.class, () -> table(3, false).query(q));
+        assertEquals(400, e.getResponse().getStatus());
+
+        TableQuery bad = new TableQuery();
+        bad.aggregates = List.of(aggregate("median", "薪资", null));
+        assertThrows(WebApplicationException.class, () -> table(3, false).query(bad));
+
+        // op 缺失也是 400，不是 NPE
+        TableQuery missing = new TableQuery();
+        missing.aggregates = List.of(aggregate(null, "薪资", null));
+        e = assertThrows(WebApplicationException.class, () -> ColumnTable.checkAggregates(missing));
+        assertEquals(400, e.getResponse().getStatus());
+        assertThrows(WebApplicationException.class, () -> table(3, false).query(missing));
+    }
+
+    @Test
+    void testMixedColumnIsPromotedToText() {
+        ColumnBuilder mixed = new ColumnBuilder("备注");
+        mixed.add(1.0);
+        mixed.add("面议");
+        mixed.add(null);
+        ColumnTable table = new ColumnTable(List.of(mixed.build(false)), 3);
+        TableQuery q = new TableQuery();
+        q.filters = List.of(filter("备注", "contains", "议"));
+        assertEquals(List.of(List.of("面议")), table.query(q).rows);
+    }
+
+    private static TableQuery.Filter filter(String column, String op, String value) {
+        TableQuery.Filter f = new TableQuery.Filter();
+        f.column = column;
+        f.op = op;
+        f.value = value;
+        return f;
+    }
+
+    private static TableQuery.Sort sort(String column, boolean desc) {
+        TableQuery.Sort s = new TableQuery.Sort();
+        s.column = column;
+        s.desc = desc;
+        return s;
+    }
+
+    private static TableQuery.Aggregate aggregate(String op, String column, String as) {
+        TableQuery.Aggregate a = new TableQuery.Aggregate();
+        a.op = op;
+        a.column = column;
+        a.as = as;
+        return a;
+    }
+}
@@ -0,0 +1,225 @@
+package com.ewancle.diff;
+
+import com.ewancle.model.RowDiff;
+import com.ewancle.service.TestStoredWorkbooks;
+import com.ewancle.storage.TempFileManager;
+import com.ewancle.storage.TestTempFiles;
+import com.ewancle.storage.TestUploadStore;
+import io.vertx.mutiny.core.Vertx;
+import jakarta.ws.rs.BadRequestException;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SheetDiffTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final int ROWS = 3000;
+    private static final int ADDED = 50;
+    private static final String LEFT = "00aa-left.xlsx";
+    private static final String RIGHT = "00bb-right.xlsx";
+
+    @TempDir
+    Path dir;
+
+    private final Vertx vertx = Vertx.vertx();
+    private TempFileManager tempFiles;
+    private SheetDiff diff;
+
+    @BeforeEach
+    void start() throws Exception {
+        tempFiles = TestTempFiles.start(vertx, dir);
+        Path uploads = Files.createDirectories(dir.resolve("uploads"));
+        writeLeft(uploads.resolve(LEFT));
+        writeRight(uploads.resolve(RIGHT));
+        diff = new SheetDiff();
+        diff.workbooks = TestStoredWorkbooks.create(TestUploadStore.open(uploads), tempFiles);
+        diff.tempFiles = tempFiles;
+        diff.parallelism = 2;
+    }
+
+    @AfterEach
+    void stop() {
+        TestTempFiles.stop(tempFiles);
+        vertx.closeAndAwait();
+    }
+
+    private static void cells(Row row, Object... values) {
+        for (int c = 0; c < values.length; c++) {
+            if (values[c] instanceof String text) {
+                row.createCell(c).setCellValue(text);
+            } else if (values[c] instanceof Integer number) {
+                row.createCell(c).setCellValue(number);
+            }
+        }
+    }
+
+    private static void write(XSSFWorkbook wb, Path file) throws Exception {
+        try (wb; OutputStream out = Files.newOutputStream(file)) {
+            wb.write(out);
+        }
+    }
+
+    private static boolean removed(int i) {
+        return i % 10 == 3;
+    }
+
+    private static boolean salaryChanged(int i) {
+        return i % 10 == 5;
+    }
+
+    private static boolean departmentChanged(int i) {
+        return i % 10 == 7;
+    }
+
+    private static void writeLeft(Path file) throws Exception {
+        XSSFWorkbook wb = new XSSFWorkbook();
+        Sheet sheet = wb.createSheet("名单");
+        cells(sheet.createRow(0), "编号", "姓名", "部门", "薪资");
+        for (int i = 0; i < ROWS; i++) {
+            cells(sheet.createRow(i + 1), "K" + i, "名" + i, "部" + i % 7, 1000 + i);
+        }
+        write(wb, file);
+    }
+
+    /**
+     * 右边：列顺序不同并多一列备注，行倒序（修改行的配对顺序与左边相反），末尾是新增行
+     */
+    private static void writeRight(Path file) throws Exception {
+        XSSFWorkbook wb = new XSSFWorkbook();
+        Sheet sheet = wb.createSheet("名单");
+        cells(sheet.createRow(0), "编号", "部门", "姓名", "薪资", "备注");
+        int r = 1;
+        for (int i = ROWS - 1; i >= 0; i--) {
+            if (removed(i)) {
+                continue;
+            }
+            String department = departmentChanged(i) ? "新部门" : "部" + i % 7;
+            int salary = salaryChanged(i) ? 2000 + i : 1000 + i;
+            cells(sheet.createRow(r++), "K" + i, department, "名" + i, salary, departmentChanged(i) ? "调岗" : null);
+        }
+        for (int j = 0; j < ADDED; j++) {
+            cells(sheet.createRow(r++), "N" + j, "部0", "新人" + j, 500);
+        }
+        write(wb, file);
+    }
+
+    private List<RowDiff> run(String key, boolean header) {
+        return diff.diff(LEFT, RIGHT, 0, key, header).collect().asList().await().atMost(TIMEOUT);
+    }
+
+    private static Map<String, String> changes(RowDiff row) {
+        Map<String, String> changes = new LinkedHashMap<>();
+        for (RowDiff.CellChange change : row.changes) {
+            changes.put(change.column, change.from + "->" + change.to);
+        }
+        return changes;
+    }
+
+    @Test
+    void testKeyedDiffByColumnName() {
+        List<RowDiff> rows = run("编号", true);
+
+        // 先是删除的行（左边的顺序），再是新增和修改的行（右边的顺序）
+        List<Integer> expectedRemoved = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            if (removed(i)) {
+                expectedRemoved.add(i);
+            }
+        }
+        List<RowDiff> removed = rows.subList(0, expectedRemoved.size());
+        for (int k = 0; k < removed.size(); k++) {
+            int i = expectedRemoved.get(k);
+            assertEquals(RowDiff.REMOVED, removed.get(k).type);
+            assertEquals("K" + i, removed.get(k).key);
+            assertEquals(i + 2, removed.get(k).leftRow);
+            assertNull(removed.get(k).rightRow);
+        }
+        assertEquals(Map.of("编号", "K3", "姓名", "名3", "部门", "部3", "薪资", "1003.0"), removed.get(0).cells);
+
+        List<RowDiff> rest = rows.subList(expectedRemoved.size(), rows.size());
+        int changed = 0;
+        int r = 2;
+        int k = 0;
+        for (int n = ROWS - 1; n >= 0; n--) {
+            if (removed(n)) {
+                continue;
+            }
+            if (salaryChanged(n) || departmentChanged(n)) {
+                RowDiff row = rest.get(k++);
+                assertEquals(RowDiff.CHANGED, row.type);
+                assertEquals("K" + n, row.key);
+                assertEquals(n + 2, row.leftRow);
+                assertEquals(r, row.rightRow);
+                if (salaryChanged(n)) {
+                    assertEquals(Map.of("薪资", (1000.0 + n) + "->" + (2000.0 + n)), changes(row));
+                } else {
+                    assertEquals(Map.of("部门", "部" + n % 7 + "->新部门", "备注", "null->调岗"), changes(row));
+                }
+                changed++;
+            }
+            r++;
+        }
+        for (int j = 0; j < ADDED; j++) {
+            RowDiff row = rest.get(k++);
+            assertEquals(RowDiff.ADDED, row.type);
+            assertEquals("N" + j, row.key);
+            assertNull(row.leftRow);
+            assertEquals(r++, row.rightRow);
+            assertEquals("新人" + j, row.cells.get("姓名"));
+        }
+        assertEquals(ROWS / 10 * 2, changed);
+        assertEquals(k, rest.size());
+
+        // 修改行左边的内容写进了临时文件，结束后删除
+        assertEquals(1, tempFiles.stats().created());
+        assertEquals(0, tempFiles.stats().liveFiles());
+    }
+
+    @Test
+    void testWithoutHeaderByColumnLetter() {
+        List<RowDiff> rows = run("A", false);
+        // 不按列名对齐：右边的列顺序不同，除了表头以外每一行都有变化
+        long changed = rows.stream().filter(row -> RowDiff.CHANGED.equals(row.type)).count();
+        assertEquals(ROWS - ROWS / 10 + 1, changed);
+        RowDiff header = rows.stream().filter(row -> "编号".equals(row.key)).findFirst().orElseThrow();
+        assertEquals(Map.of("B", "姓名->部门", "C", "部门->姓名", "E", "null->备注"), changes(header));
+        assertEquals(0, tempFiles.stats().liveFiles());
+    }
+
+    @Test
+    void testNoChangesNeedsNoTempFile() {
+        assertEquals(List.of(), diff.diff(LEFT, LEFT, 0, "编号", true).collect().asList().await().atMost(TIMEOUT));
+        assertEquals(0, tempFiles.stats().created());
+    }
+
+    @Test
+    void testCancelReleasesTempFile() {
+        int removed = ROWS / 10;
+        List<RowDiff> first = diff.diff(LEFT, RIGHT, 0, "编号", true)
+                .select().first(removed + 5).collect().asList().await().atMost(TIMEOUT);
+        assertEquals(RowDiff.CHANGED, first.get(removed).type);
+        assertEquals(0, tempFiles.stats().liveFiles());
+    }
+
+    @Test
+    void testUnknownKey() {
+        assertThrows(BadRequestException.class, () -> run("不存在", true));
+        assertThrows(BadRequestException.class, () -> run("编号", false));
+    }
+}
@@ -0,0 +1,140 @@
+package com.ewancle.formula;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FormulaGraphTest {
+
+    private static Cell formula(Sheet sheet, int row, int col, String formula) {
+        Row r = sheet.getRow(row) != null ? sheet.getRow(row) : sheet.createRow(row);
+        Cell cell = r.createCell(col);
+        cell.setCellFormula(formula);
+        return cell;
+    }
+
+    private static void number(Sheet sheet, int row, int col, double value) {
+        Row r = sheet.getRow(row) != null ? sheet.getRow(row) : sheet.createRow(row);
+        r.createCell(col).setCellValue(value);
+    }
+
+    @Test
+    void testChainAcrossSheets() throws Exception {
+        try (Workbook wb = new XSSFWorkbook()) {
+            Sheet input = wb.createSheet("输入");
+            Sheet calc = wb.createSheet("计算");
+            number(input, 0, 0, 3);
+            number(input, 1, 0, 4);
+            Cell sum = formula(input, 2, 0, "SUM(A1:A2)");
+            Cell doubled = formula(calc, 0, 0, "'输入'!A3*2");
+            Cell last = formula(calc, 0, 1, "A1+1");
+            // 和上面无关的一个分量
+            Cell other = formula(calc, 5, 5, "10/4");
+
+            FormulaGraph graph = FormulaGraph.build(wb);
+            assertEquals(4, graph.size());
+            graph.evaluateAll();
+
+            assertEquals(7.0, graph.value(sum));
+            assertEquals(14.0, graph.value(doubled));
+            assertEquals(15.0, graph.value(last));
+            assertEquals(2.5, graph.value(other));
+        }
+    }
+
+    @Test
+    void testMemoOverridesStaleCachedValue() throws Exception {
+        try (Workbook wb = new XSSFWorkbook()) {
+            Sheet sheet = wb.createSheet();
+            number(sheet, 0, 0, 1);
+            Cell cell = formula(sheet, 0, 1, "A1*2");
+            cell.setCellValue(99);
+
+            FormulaGraph graph = FormulaGraph.build(wb);
+            // 求值之前只有文件里的缓存值
+            assertEquals(99.0, graph.value(cell));
+            graph.evaluateAll();
+            assertEquals(2.0, graph.value(cell));
+        }
+    }
+
+    @Test
+    void testErrorAndStringResults() throws Exception {
+        try (Workbook wb = new XSSFWorkbook()) {
+            Sheet sheet = wb.createSheet();
+            number(sheet, 0, 0, 0);
+            Cell div = formula(sheet, 0, 1, "1/A1");
+            Cell dependent = formula(sheet, 0, 2, "B1+1");
+            Cell text = formula(sheet, 0, 3, "IF(A1=0,\"零\",\"非零\")");
+
+            FormulaGraph graph = FormulaGraph.build(wb);
+            graph.evaluateAll();
+
+            assertEquals("#DIV/0!", graph.value(div));
+            assertEquals("#DIV/0!", graph.value(dependent));
+            assertEquals("零", graph.value(text));
+        }
+    }
+
+    @Test
+    void testCircularReferenceDoesNotHang() throws Exception {
+        try (Workbook wb = new XSSFWorkbook()) {
+            Sheet sheet = wb.createSheet();
+            Cell a = formula(sheet, 0, 0, "B1+1");
+            Cell b = formula(sheet, 0, 1, "A1+1");
+            Cell c = formula(sheet, 0, 2, "1+1");
+
+            FormulaGraph graph = FormulaGraph.build(wb);
+            graph.evaluateAll();
+
+            assertEquals(FormulaError.CIRCULAR_REF.getString(), graph.value(a));
+            assertEquals(FormulaError.CIRCULAR_REF.getString(), graph.value(b));
+            assertEquals(2.0, graph.value(c));
+        }
+    }
+
+    @Test
+    void testUpdateRecomputesOnlyTransitiveDependents() throws Exception {
+        try (Workbook wb = new XSSFWorkbook()) {
+            Sheet sheet = wb.createSheet("输入");
+            Sheet calc = wb.createSheet("计算");
+            number(sheet, 0, 0, 1);
+            number(sheet, 0, 4, 10);
+            Cell doubled = formula(sheet, 0, 1, "A1*2");
+            Cell next = formula(calc, 0, 0, "'输入'!B1+1");
+            Cell tripled = formula(sheet, 0, 7, "E1*3");
+            // 与 B1 同一个分量，但只经过 H1 依赖 E1
+            Cell mixed = formula(sheet, 0, 8, "H1+B1");
+            Cell range = formula(sheet, 1, 2, "SUM(A1:A5)");
+
+            FormulaGraph graph = FormulaGraph.build(wb);
+            graph.evaluateAll();
+            assertEquals(32.0, graph.value(mixed));
+
+            // 悄悄改 E1、不通知：之后 H1 仍是旧结果，说明没有被重算
+            sheet.getRow(0).getCell(4).setCellValue(100);
+            sheet.getRow(0).getCell(0).setCellValue(5);
+            List<Cell> updated = graph.update(sheet.getRow(0).getCell(0));
+
+            assertEquals(List.of(doubled, mixed, range, next), updated);
+            assertEquals(10.0, graph.value(doubled));
+            assertEquals(11.0, graph.value(next));
+            assertEquals(5.0, graph.value(range));
+            assertEquals(30.0, graph.value(tripled));
+            // H1 用 evaluator 缓存里的旧值，B1 用新值
+            assertEquals(40.0, graph.value(mixed));
+
+            // 修改的单元格没有被任何公式引用
+            sheet.createRow(9).createCell(9).setCellValue(1);
+            assertTrue(graph.update(sheet.getRow(9).getCell(9)).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.ewancle.perf;
+
+import com.ewancle.codec.RowBatchWriter;
+import com.ewancle.xlsx.XlsxBulkExporter;
+import com.ewancle.xlsx.XlsxTemplate;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Multi;
+import io.vertx.mutiny.core.buffer.Buffer;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 各导出引擎写同一份固定数据集，检查每行分配、堆峰值、临时磁盘和吞吐（预算见 perf-budgets.properties）
+ */
+@QuarkusTest
+@Tag("perf")
+class ExportPerfTest {
+
+    private static final int ROWS = 100_000;
+    private static final Duration TIMEOUT = Duration.ofMinutes(5);
+
+    @Inject
+    XlsxBulkExporter bulkExporter;
+
+    @ConfigProperty(name = "app.temp.dir")
+    String tempDir;
+
+    @Test
+    void testBulkExport() throws Exception {
+        PerfProbe.Result result = PerfProbe.measure("export.bulk", ROWS, Path.of(tempDir), () -> {
+            AtomicLong generated = new AtomicLong();
+            long bytes = drain(bulkExporter.export("员工信息", PerfData.HEADERS, ROWS, i -> {
+                generated.incrementAndGet();
+                return PerfData.row(i);
+            }).map(Buffer::length));
+            assertTrue(bytes > 0);
+            return generated.get();
+        });
+        PerfProbe.assertWithinBudget(result);
+    }
+
+    @Test
+    void testTemplateExport() throws Exception {
+        XlsxTemplate template = XlsxTemplate.compile(PerfData.template(), 0);
+        PerfProbe.Result result = PerfProbe.measure("export.template", ROWS, Path.of(tempDir), () -> {
+            AtomicLong generated = new AtomicLong();
+            long bytes = drain(template.render(PerfData.rows(ROWS).invoke(generated::incrementAndGet))
+                    .map(Buffer::length));
+            assertTrue(bytes > 0);
+            return generated.get();
+        });
+        PerfProbe.assertWithinBudget(result);
+    }
+
+    @Test
+    void testRowBatchExport() throws Exception {
+        PerfProbe.Result result = PerfProbe.measure("export.rowbatch", ROWS, Path.of(tempDir), () -> {
+            AtomicLong generated = new AtomicLong();
+            RowBatchWriter writer = new RowBatchWriter(PerfData.HEADERS);
+            long bytes = writer.start().length();
+            bytes += drain(PerfData.rows(ROWS)
+                    .invoke(generated::incrementAndGet)
+                    .map(List::toArray)
+                    .group().intoLists().of(4096)
+                    .map(batch -> writer.writeBatch(batch).length()));
+            bytes += writer.end().length();
+            assertTrue(bytes > 0);
+            return generated.get();
+        });
+        PerfProbe.assertWithinBudget(result);
+    }
+
+    private static long drain(Multi<Integer> lengths) {
+        return lengths.collect().with(Collectors.summingLong(Integer::longValue)).await().atMost(TIMEOUT);
+    }
+}
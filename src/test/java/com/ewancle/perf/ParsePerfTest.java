@@ -0,0 +1,104 @@
+package com.ewancle.perf;
+
+import com.ewancle.service.ExcelParseService;
+import com.ewancle.service.StoredWorkbooks;
+import com.ewancle.service.WorkbookRowCursor;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 各解析引擎读同一份固定数据集，检查每行分配、堆峰值、临时磁盘和吞吐（预算见 perf-budgets.properties）。
+ * 行数含表头。POI usermodel 会把整个工作簿读进内存，用小一些的文件。
+ */
+@QuarkusTest
+@Tag("perf")
+class ParsePerfTest {
+
+    private static final int ROWS = 100_000;
+    private static final int XLS_ROWS = 60_000;
+    private static final int POI_ROWS = 20_000;
+    private static final Duration TIMEOUT = Duration.ofMinutes(5);
+
+    private static Path fixtures;
+    private static Path xlsx;
+    private static Path xls;
+    private static Path smallXlsx;
+
+    @Inject
+    ExcelParseService parseService;
+
+    @ConfigProperty(name = "app.temp.dir")
+    String tempDir;
+
+    @BeforeAll
+    static void createFixtures() throws IOException {
+        fixtures = Files.createTempDirectory("perf-fixtures");
+        xlsx = PerfData.xlsx(fixtures, "employees.xlsx", ROWS);
+        xls = PerfData.xls(fixtures, "employees.xls", XLS_ROWS);
+        smallXlsx = PerfData.xlsx(fixtures, "employees-small.xlsx", POI_ROWS);
+    }
+
+    @AfterAll
+    static void deleteFixtures() throws IOException {
+        try (Stream<Path> files = Files.walk(fixtures)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    void testSheetReaderParse() throws Exception {
+        PerfProbe.Result result = PerfProbe.measure("parse.xlsx", ROWS + 1, Path.of(tempDir), () -> {
+            // parseSheets 结束时删除输入文件（与上传临时文件相同），每次用一份副本
+            Path upload = Files.copy(xlsx, fixtures.resolve("upload.xlsx"));
+            return parseService.parseSheets(upload.toFile(), List.of())
+                    .collect().with(Collectors.counting())
+                    .await().atMost(TIMEOUT);
+        });
+        PerfProbe.assertWithinBudget(result);
+    }
+
+    @Test
+    void testXlsEventParse() throws Exception {
+        PerfProbe.Result result = PerfProbe.measure("parse.xls", XLS_ROWS + 1, Path.of(tempDir), () -> {
+            long rows = 0;
+            try (StoredWorkbooks.SheetRowSource source = StoredWorkbooks.openFile(xls, 0)) {
+                while (source.hasNext()) {
+                    source.next();
+                    rows++;
+                }
+            }
+            return rows;
+        });
+        PerfProbe.assertWithinBudget(result);
+    }
+
+    @Test
+    void testPoiUsermodelParse() throws Exception {
+        PerfProbe.Result result = PerfProbe.measure("parse.poi", POI_ROWS + 1, Path.of(tempDir), () -> {
+            long rows = 0;
+            try (WorkbookRowCursor cursor = WorkbookRowCursor.open(smallXlsx.toFile(), 0)) {
+                for (List<Object[]> batch = cursor.nextBatch(4096); !batch.isEmpty(); batch = cursor.nextBatch(4096)) {
+                    rows += batch.size();
+                }
+            }
+            return rows;
+        });
+        PerfProbe.assertWithinBudget(result);
+    }
+}
@@ -0,0 +1,116 @@
+package com.ewancle.perf;
+
+import io.smallrye.mutiny.Multi;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 性能测试的固定数据集：员工表 5 列（工号、姓名、部门、薪资、邮箱），第 i 行的内容只由 i 决定，
+ * 每次运行、每台机器上生成的文件完全相同
+ */
+final class PerfData {
+
+    static final List<String> HEADERS = List.of("工号", "姓名", "部门", "薪资", "邮箱");
+
+    private static final String[] DEPARTMENTS = {"技术部", "产品部", "市场部", "人事部", "财务部", "运营部", "法务部", "客服部"};
+
+    private PerfData() {
+    }
+
+    /**
+     * 第 i 行（从 0 开始）
+     */
+    static List<Object> row(long i) {
+        return List.of((double) (i + 1), "员工" + i, DEPARTMENTS[(int) (i % DEPARTMENTS.length)],
+                8000.0 + (i * 37 % 12000), "user" + i + "@company.com");
+    }
+
+    static Multi<List<Object>> rows(long count) {
+        return Multi.createFrom().range(0, Math.toIntExact(count)).map(PerfData::row);
+    }
+
+    /**
+     * 表头 + rows 行数据的 xlsx（POI 流式写出，不依赖被测的导出引擎）
+     */
+    static Path xlsx(Path dir, String name, int rows) throws IOException {
+        Path file = dir.resolve(name);
+        // close() 同时删除 SXSSF 的临时文件
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(1000); OutputStream out = Files.newOutputStream(file)) {
+            fill(workbook, rows);
+            workbook.write(out);
+        }
+        return file;
+    }
+
+    /**
+     * 表头 + rows 行数据的 xls（rows 不能超过 65535）
+     */
+    static Path xls(Path dir, String name, int rows) throws IOException {
+        Path file = dir.resolve(name);
+        try (HSSFWorkbook workbook = new HSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            fill(workbook, rows);
+            workbook.write(out);
+        }
+        return file;
+    }
+
+    /**
+     * 导出模板：加粗表头 + 一行只有样式的原型行
+     */
+    static byte[] template() throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet("员工信息");
+            CellStyle header = workbook.createCellStyle();
+            Font bold = workbook.createFont();
+            bold.setBold(true);
+            header.setFont(bold);
+            Row row = sheet.createRow(0);
+            for (int c = 0; c < HEADERS.size(); c++) {
+                row.createCell(c).setCellValue(HEADERS.get(c));
+                row.getCell(c).setCellStyle(header);
+            }
+            CellStyle money = workbook.createCellStyle();
+            money.setDataFormat(workbook.createDataFormat().getFormat("#,##0.00"));
+            Row prototype = sheet.createRow(1);
+            for (int c = 0; c < HEADERS.size(); c++) {
+                prototype.createCell(c);
+            }
+            prototype.getCell(3).setCellStyle(money);
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static void fill(Workbook workbook, int rows) {
+        Sheet sheet = workbook.createSheet("员工信息");
+        Row header = sheet.createRow(0);
+        for (int c = 0; c < HEADERS.size(); c++) {
+            header.createCell(c).setCellValue(HEADERS.get(c));
+        }
+        for (int r = 0; r < rows; r++) {
+            List<Object> values = row(r);
+            Row row = sheet.createRow(r + 1);
+            for (int c = 0; c < values.size(); c++) {
+                Object v = values.get(c);
+                if (v instanceof Double d) {
+                    row.createCell(c).setCellValue(d);
+                } else {
+                    row.createCell(c).setCellValue(v.toString());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.ewancle.perf;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * 性能回归测试的测量和预算检查（mvn -Pperf verify）：
+ *    - 每行分配字节数：JVM 所有线程累计分配量的差值（ThreadMXBean#getTotalThreadAllocatedBytes），worker 线程上的分配也算在内
+ *    - 堆峰值：运行期间每隔 perf.gc-interval-ms 做一次 full GC，取 full GC 之后堆占用的最大值减去开始前（同样在 full GC 之后）的堆占用，
+ *      即场景本身存活数据的峰值。young GC 之后的占用含有已经晋升、还没回收的垃圾，不计入
+ *    - 临时磁盘：运行期间 app.temp.dir 下文件总大小的峰值（相对开始时），按行平均
+ *    - 相对吞吐：场景的 行 / 秒 除以同一次运行里参考负载（PerfData 行拼成 CSV 后 deflate）的 行 / 秒。
+ *      绝对吞吐随机器变化，只输出不检查；强制 GC 的停顿时间不计入场景耗时
+ * 先预热 perf.warmups 次，再跑 perf.runs 次，取相对吞吐居中的那一次，所有指标都来自这一次运行。
+ * 预算在 perf-budgets.properties 里，超过 预算 × (1 + tolerance) 即失败（相对吞吐低于 预算 × (1 - throughput-tolerance)）。
+ */
+final class PerfProbe {
+
+    private static final Properties BUDGETS = load("/perf-budgets.properties");
+
+    /** 参考负载的行数 */
+    private static final int REFERENCE_ROWS = 200_000;
+
+    record Result(String scenario, long rows, double allocBytesPerRow, long peakHeapBytes, double tempBytesPerRow,
+                  double rowsPerSec, double referenceRowsPerSec) {
+
+        double relativeThroughput() {
+            return rowsPerSec / referenceRowsPerSec;
+        }
+
+        /**
+         * 与预算文件相同的格式，调整预算时可以直接复制
+         */
+        String toProperties() {
+            return String.format(Locale.ROOT, "%1$s.alloc-bytes-per-row=%2$.0f%n%1$s.peak-heap-mb=%3$.1f%n"
+                            + "%1$s.temp-bytes-per-row=%4$.0f%n%1$s.relative-throughput=%5$.3f%n"
+                            + "# %6$.0f rows/s, reference %7$.0f rows/s",
+                    scenario, allocBytesPerRow, peakHeapBytes / (1024.0 * 1024.0), tempBytesPerRow, relativeThroughput(),
+                    rowsPerSec, referenceRowsPerSec);
+        }
+    }
+
+    private PerfProbe() {
+    }
+
+    /**
+     * @param work 跑一遍场景，返回处理的行数（用于核对数据量）
+     */
+    static Result measure(String scenario, long rows, Path tempDir, Callable<Long> work) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue(threads.isThreadAllocatedMemorySupported(), "allocation counters not supported by this JVM");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long gcInterval = Long.getLong("perf.gc-interval-ms", 50);
+        for (int i = 0; i < Integer.getInteger("perf.warmups", 1); i++) {
+            reference();
+            check(scenario, rows, work.call());
+        }
+        List<Result> runs = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, Integer.getInteger("perf.runs", 3)); i++) {
+            double referenceRowsPerSec = reference();
+            System.gc();
+            try (HeapWatcher heap = new HeapWatcher(gcInterval); TempWatcher temp = new TempWatcher(tempDir)) {
+                long allocated = threads.getTotalThreadAllocatedBytes();
+                long started = System.nanoTime();
+                check(scenario, rows, work.call());
+                long elapsed = System.nanoTime() - started - heap.pauseNanos();
+                allocated = threads.getTotalThreadAllocatedBytes() - allocated;
+                heap.stop();
+                runs.add(new Result(scenario, rows, (double) allocated / rows, heap.peak(),
+                        (double) temp.peak() / rows, rows * 1e9 / Math.max(1, elapsed), referenceRowsPerSec));
+            }
+        }
+        runs.sort(Comparator.comparingDouble(Result::relativeThroughput));
+        Result median = runs.get(runs.size() / 2);
+        System.out.println("[perf] run " + (runs.indexOf(median) + 1) + " of " + runs.size()
+                + " by relative throughput\n" + median.toProperties());
+        return median;
+    }
+
+    /**
+     * 参考负载：把 REFERENCE_ROWS 行 PerfData 拼成 CSV，每 64KB deflate 一次（与导出引擎的主要开销相同：
+     * 格式化、UTF-8 编码、压缩）。返回 行 / 秒，用来换算场景的相对吞吐，抵消机器快慢的差别
+     */
+    static double reference() {
+        Deflater deflater = new Deflater(6, true);
+        byte[] out = new byte[64 * 1024];
+        StringBuilder csv = new StringBuilder(80 * 1024);
+        long compressed = 0;
+        long started = System.nanoTime();
+        try {
+            for (int i = 0; i < REFERENCE_ROWS; i++) {
+                for (Object v : PerfData.row(i)) {
+                    csv.append(v).append(',');
+                }
+                csv.setCharAt(csv.length() - 1, '\n');
+                if (csv.length() >= 64 * 1024 || i == REFERENCE_ROWS - 1) {
+                    deflater.setInput(csv.toString().getBytes(StandardCharsets.UTF_8));
+                    while (!deflater.needsInput()) {
+                        compressed += deflater.deflate(out, 0, out.length, Deflater.NO_FLUSH);
+                    }
+                    csv.setLength(0);
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                compressed += deflater.deflate(out);
+            }
+        } finally {
+            deflater.end();
+        }
+        long elapsed = System.nanoTime() - started;
+        assertTrue(compressed > 0);
+        return REFERENCE_ROWS * 1e9 / Math.max(1, elapsed);
+    }
+
+    /**
+     * 与预算比较；所有超出的指标一起报告。预算文件里没有的指标不检查
+     */
+    static void assertWithinBudget(Result r) {
+        double tolerance = Double.parseDouble(System.getProperty("perf.tolerance",
+                BUDGETS.getProperty("tolerance", "0.25")));
+        double throughputTolerance = Double.parseDouble(System.getProperty("perf.throughput-tolerance",
+                BUDGETS.getProperty("throughput-tolerance", "0.5")));
+        List<String> failures = new ArrayList<>();
+        ceiling(failures, r.scenario() + ".alloc-bytes-per-row", r.allocBytesPerRow(), tolerance);
+        ceiling(failures, r.scenario() + ".peak-heap-mb", r.peakHeapBytes() / (1024.0 * 1024.0), tolerance);
+        ceiling(failures, r.scenario() + ".temp-bytes-per-row", r.tempBytesPerRow(), tolerance);
+        String key = r.scenario() + ".relative-throughput";
+        String floor = BUDGETS.getProperty(key);
+        if (floor != null && r.relativeThroughput() < Double.parseDouble(floor) * (1 - throughputTolerance)) {
+            failures.add(String.format(Locale.ROOT, "%s: %.3f < %s (-%.0f%%)", key, r.relativeThroughput(), floor,
+                    throughputTolerance * 100));
+        }
+        if (!failures.isEmpty()) {
+            fail("Performance budget exceeded:\n  " + String.join("\n  ", failures)
+                    + "\nMeasured:\n" + r.toProperties());
+        }
+    }
+
+    private static void ceiling(List<String> failures, String key, double actual, double tolerance) {
+        String budget = BUDGETS.getProperty(key);
+        if (budget != null && actual > Double.parseDouble(budget) * (1 + tolerance)) {
+            failures.add(String.format(Locale.ROOT, "%s: %.1f > %s (+%.0f%%)", key, actual, budget, tolerance * 100));
+        }
+    }
+
+    private static void check(String scenario, long expected, long actual) {
+        if (expected != actual) {
+            fail(scenario + ": expected " + expected + " rows, processed " + actual);
+        }
+    }
+
+    private static Properties load(String resource) {
+        Properties properties = new Properties();
+        try (InputStream in = PerfProbe.class.getResourceAsStream(resource)) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return properties;
+    }
+
+    /**
+     * 每隔 interval 毫秒做一次 full GC（System.gc()），监听 GC 通知，记录 full GC 之后的堆占用的最大值（相对创建时）。
+     * young GC 的通知忽略
+     */
+    private static final class HeapWatcher implements NotificationListener, AutoCloseable {
+        private static final String MAJOR_GC = "end of major GC";
+
+        private final long baseline = heapUsed();
+        private final AtomicLong peak = new AtomicLong(-1);
+        private final AtomicLong pauseNanos = new AtomicLong();
+        private final List<NotificationEmitter> emitters = new ArrayList<>();
+        private final Set<String> heapPools = new HashSet<>();
+        private final Thread collector;
+        private volatile boolean running = true;
+
+        HeapWatcher(long interval) {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    heapPools.add(pool.getName());
+                }
+            }
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (gc instanceof NotificationEmitter emitter) {
+                    emitter.addNotificationListener(this, null, null);
+                    emitters.add(emitter);
+                }
+            }
+            this.collector = Thread.ofPlatform().daemon().name("perf-full-gc").start(() -> {
+                while (running) {
+                    try {
+                        Thread.sleep(interval);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long started = System.nanoTime();
+                    System.gc();
+                    pauseNanos.addAndGet(System.nanoTime() - started);
+                }
+            });
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            if (!MAJOR_GC.equals(info.getGcAction())) {
+                return;
+            }
+            long used = 0;
+            // 通知里还有 Metaspace、CodeCache 等非堆内存池，只算堆
+            for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+                if (heapPools.contains(pool.getKey())) {
+                    used += pool.getValue().getUsed();
+                }
+            }
+            peak.accumulateAndGet(used, Math::max);
+        }
+
+        /**
+         * 强制 GC 的累计耗时（停顿期间场景也停着，从场景耗时里扣除）
+         */
+        long pauseNanos() {
+            return pauseNanos.get();
+        }
+
+        /**
+         * 停止定时 GC（场景结束后调用）。场景太短、一次都没采到时，以这时 full GC 之后的占用为准
+         */
+        void stop() throws InterruptedException {
+            running = false;
+            collector.interrupt();
+            collector.join();
+            if (peak.get() < 0) {
+                System.gc();
+                peak.accumulateAndGet(heapUsed(), Math::max);
+            }
+        }
+
+        long peak() {
+            return Math.max(0, peak.get() - baseline);
+        }
+
+        private static long heapUsed() {
+            return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+
+        @Override
+        public void close() {
+            try {
+                stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (NotificationEmitter emitter : emitters) {
+                try {
+                    emitter.removeNotificationListener(this);
+                } catch (Exception ignore) {
+                }
+            }
+        }
+    }
+
+    /**
+     * 每 5ms 统计一次目录下文件的总大小
+     */
+    private static final class TempWatcher implements AutoCloseable {
+        private final Path dir;
+        private final long baseline;
+        private final AtomicLong peak = new AtomicLong();
+        private final Thread sampler;
+        private volatile boolean running = true;
+
+        TempWatcher(Path dir) {
+            this.dir = dir;
+            this.baseline = size(dir);
+            this.sampler = Thread.ofPlatform().daemon().name("perf-temp-sampler").start(() -> {
+                while (running) {
+                    sample();
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+        }
+
+        private void sample() {
+            peak.accumulateAndGet(Math.max(0, size(dir) - baseline), Math::max);
+        }
+
+        long peak() {
+            return peak.get();
+        }
+
+        @Override
+        public void close() {
+            running = false;
+            try {
+                sampler.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sample();
+        }
+
+        private static long size(Path dir) {
+            if (dir == null || !Files.isDirectory(dir)) {
+                return 0;
+            }
+            try (Stream<Path> files = Files.walk(dir)) {
+                return files.mapToLong(file -> {
+                    try {
+                        return Files.isRegularFile(file) ? Files.size(file) : 0;
+                    } catch (NoSuchFileException e) {
+                        return 0;   // 统计期间被删除
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }).sum();
+            } catch (IOException | UncheckedIOException e) {
+                return 0;   // 遍历期间目录内容变化，跳过这一次采样
+            }
+        }
+    }
+}
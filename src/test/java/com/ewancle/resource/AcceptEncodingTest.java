@@ -0,0 +1,25 @@
+package com.ewancle.resource;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AcceptEncodingTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"gzip", "GZIP", "deflate, gzip", "gzip;q=0.5", "br;q=1.0, gzip ; q = 0.8", "*", "*;q=0.1"})
+    void testAccepted(String header) {
+        assertTrue(FileResource.acceptsGzip(header));
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(strings = {"", "identity", "deflate, br", "gzip;q=0", "gzip;q=0.000", "*;q=0",
+            // 无法解析的 q 值按不接受处理，而不是抛异常变成 500
+            "gzip;q=abc", "gzip;q=", "gzip;q=NaN", "gzip;q=-1"})
+    void testNotAccepted(String header) {
+        assertFalse(FileResource.acceptsGzip(header));
+    }
+}
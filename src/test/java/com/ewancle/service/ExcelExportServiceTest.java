@@ -0,0 +1,37 @@
+package com.ewancle.service;
+
+import com.ewancle.codec.RowBatchReader;
+import io.vertx.core.buffer.Buffer;
+import jakarta.ws.rs.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExcelExportServiceTest {
+
+    private final ExcelExportService service = new ExcelExportService();
+
+    @Test
+    void testRowBatchesDecodeBackToGeneratedRows() {
+        RowBatchReader reader = new RowBatchReader();
+        List<Object[]> rows = new ArrayList<>();
+        for (Buffer b : service.streamAsRowBatches(10, 3).collect().asList().await().atMost(Duration.ofSeconds(30))) {
+            rows.addAll(reader.feed(b));
+        }
+        assertTrue(reader.isEnded());
+        assertEquals(List.of("ID", "Name", "Email", "Age", "Created At"), reader.columns());
+        assertEquals(10, rows.size());
+        assertEquals(10L, rows.get(9)[0]);
+        assertEquals("user10@example.com", rows.get(9)[2]);
+    }
+
+    @Test
+    void testRejectsBadArguments() {
+        assertThrows(BadRequestException.class, () -> service.streamAsRowBatches(10, 0));
+        assertThrows(BadRequestException.class, () -> service.streamAsRowBatches(-1, 10));
+    }
+}
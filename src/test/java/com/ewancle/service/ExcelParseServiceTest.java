@@ -0,0 +1,140 @@
+package com.ewancle.service;
+
+import com.ewancle.codec.RowBatchReader;
+import io.smallrye.mutiny.Multi;
+import io.vertx.core.buffer.Buffer;
+import jakarta.ws.rs.BadRequestException;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExcelParseServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    @TempDir
+    Path dir;
+
+    private final ExcelParseService service = new ExcelParseService();
+
+    @Test
+    void testXlsxRowBatchesWidenSchemaForWiderRows() throws IOException {
+        Path file = write(new XSSFWorkbook(), "upload.xlsx");
+        RowBatchReader reader = new RowBatchReader();
+        List<Object[]> rows = decode(service.parseAsRowBatches(file.toFile(), true, 2), reader);
+
+        // 表头 2 列，第 2 批里有第 4 列：补发 SCHEMA 追加列（列名为列字母），之前的批次仍是 2 列
+        assertEquals(List.of("姓名", "薪资", "C", "D"), reader.columns());
+        assertEquals(3, rows.size());
+        assertArrayEquals(new Object[]{"张三", 15000.0}, rows.get(0));
+        assertArrayEquals(new Object[]{"李四", 12000.0}, rows.get(1));
+        assertArrayEquals(new Object[]{"王五", null, null, "备注"}, rows.get(2));
+        assertFalse(Files.exists(file), "upload temp file should be deleted");
+    }
+
+    @Test
+    void testXlsWithoutHeader() throws IOException {
+        Path file = write(new HSSFWorkbook(), "upload.xls");
+        RowBatchReader reader = new RowBatchReader();
+        List<Object[]> rows = decode(service.parseAsRowBatches(file.toFile(), false, 4096), reader);
+
+        assertEquals(List.of("A", "B", "C", "D"), reader.columns());
+        assertEquals(4, rows.size());
+        assertArrayEquals(new Object[]{"姓名", "薪资", null, null}, rows.get(0));
+    }
+
+    @Test
+    void testRejectsNonPositiveBatchSize() throws IOException {
+        Path file = write(new XSSFWorkbook(), "upload.xlsx");
+        assertThrows(BadRequestException.class, () -> service.parseAsRowBatches(file.toFile(), true, 0));
+    }
+
+    @Test
+    void testRejectsNonWorkbook() throws IOException {
+        Path file = Files.writeString(dir.resolve("upload.xlsx"), "not a workbook");
+        Multi<Buffer> stream = service.parseAsRowBatches(file.toFile(), true, 100);
+        assertThrows(BadRequestException.class, () -> stream.collect().asList().await().atMost(TIMEOUT));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void testParseSheetsKeepsRowOrderWithinEachSheet() throws IOException {
+        service.sheetParallelism = 2;
+        Path file = dir.resolve("sheets.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            for (int s = 0; s < 3; s++) {
+                Sheet sheet = workbook.createSheet("S" + s);
+                for (int i = 0; i < 2000; i++) {
+                    sheet.createRow(i).createCell(0).setCellValue(i);
+                }
+            }
+            workbook.write(out);
+        }
+
+        List<ExcelParseService.SheetRow> rows = service.parseSheets(file.toFile(), List.of("S2", "0"))
+                .collect().asList().await().atMost(TIMEOUT);
+
+        assertEquals(4000, rows.size());
+        for (String name : List.of("S0", "S2")) {
+            List<ExcelParseService.SheetRow> sheetRows = rows.stream().filter(r -> r.sheet().equals(name)).toList();
+            assertEquals(2000, sheetRows.size());
+            for (int i = 0; i < sheetRows.size(); i++) {
+                assertEquals(i + 1, sheetRows.get(i).rowNum());
+                assertEquals((double) i, sheetRows.get(i).values()[0]);
+            }
+        }
+        assertFalse(Files.exists(file), "upload temp file should be deleted");
+    }
+
+    @Test
+    void testParseSheetsRejectsUnknownSheet() throws IOException {
+        Path file = write(new XSSFWorkbook(), "upload.xlsx");
+        Multi<ExcelParseService.SheetRow> stream = service.parseSheets(file.toFile(), List.of("不存在"));
+        assertThrows(BadRequestException.class, () -> stream.collect().asList().await().atMost(TIMEOUT));
+        assertFalse(Files.exists(file));
+    }
+
+    private Path write(Workbook workbook, String name) throws IOException {
+        Path file = dir.resolve(name);
+        try (workbook; OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("员工");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("姓名");
+            header.createCell(1).setCellValue("薪资");
+            Row first = sheet.createRow(1);
+            first.createCell(0).setCellValue("张三");
+            first.createCell(1).setCellValue(15000);
+            Row second = sheet.createRow(2);
+            second.createCell(0).setCellValue("李四");
+            second.createCell(1).setCellValue(12000);
+            Row third = sheet.createRow(3);
+            third.createCell(0).setCellValue("王五");
+            third.createCell(3).setCellValue("备注");
+            workbook.write(out);
+        }
+        return file;
+    }
+
+    private static List<Object[]> decode(Multi<Buffer> stream, RowBatchReader reader) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Buffer chunk : stream.collect().asList().await().atMost(TIMEOUT)) {
+            rows.addAll(reader.feed(chunk));
+        }
+        assertTrue(reader.isEnded());
+        return rows;
+    }
+}
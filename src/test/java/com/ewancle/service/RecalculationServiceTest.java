@@ -0,0 +1,70 @@
+package com.ewancle.service;
+
+import com.ewancle.model.SheetCell;
+import jakarta.ws.rs.BadRequestException;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecalculationServiceTest {
+
+    /**
+     * 输入!B1 单价、输入!B2 数量；计算!A1 金额、计算!A2 含税；计算!A3 只依赖 输入!B3
+     */
+    private static Workbook workbook() {
+        Workbook wb = new XSSFWorkbook();
+        Sheet input = wb.createSheet("输入");
+        Sheet calc = wb.createSheet("计算");
+        for (int r = 0; r < 3; r++) {
+            input.createRow(r).createCell(1).setCellValue(r + 2);
+        }
+        Row amount = calc.createRow(0);
+        amount.createCell(0).setCellFormula("'输入'!B1*'输入'!B2");
+        calc.createRow(1).createCell(0).setCellFormula("A1*1.1");
+        calc.createRow(2).createCell(0).setCellFormula("IF('输入'!B3>0,\"有\",\"无\")");
+        return wb;
+    }
+
+    private static List<String> values(List<SheetCell> cells) {
+        return cells.stream().map(c -> c.sheet + "!" + c.cell + "=" + c.value).toList();
+    }
+
+    @Test
+    void testReturnsOnlyAffectedFormulas() throws Exception {
+        try (Workbook wb = workbook()) {
+            List<SheetCell> results = RecalculationService.recalculate(wb, List.of(
+                    new SheetCell("输入", "B1", "10"),
+                    new SheetCell("0", "b2", "4")));
+
+            assertEquals(List.of("计算!A1=40.0", "计算!A2=44.0"), values(results));
+        }
+    }
+
+    @Test
+    void testTextAndBlankValues() throws Exception {
+        try (Workbook wb = workbook()) {
+            assertEquals(List.of("计算!A3=无"), values(RecalculationService.recalculate(wb,
+                    List.of(new SheetCell(null, "B3", "")))));
+            assertEquals(List.of("计算!A1=#VALUE!", "计算!A2=#VALUE!"), values(RecalculationService.recalculate(wb,
+                    List.of(new SheetCell("输入", "B1", "十")))));
+        }
+    }
+
+    @Test
+    void testRejectsUnknownSheetAndCell() throws Exception {
+        try (Workbook wb = workbook()) {
+            assertThrows(BadRequestException.class,
+                    () -> RecalculationService.recalculate(wb, List.of(new SheetCell("汇总", "A1", "1"))));
+            assertThrows(BadRequestException.class,
+                    () -> RecalculationService.recalculate(wb, List.of(new SheetCell("输入", "1A", "1"))));
+            assertThrows(BadRequestException.class,
+                    () -> RecalculationService.recalculate(wb, List.of(new SheetCell("输入", null, "1"))));
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.ewancle.service;
+
+import com.ewancle.model.RowPage;
+import com.ewancle.storage.TempFileManager;
+import com.ewancle.storage.TestTempFiles;
+import com.ewancle.storage.TestUploadStore;
+import com.ewancle.storage.UploadStore;
+import io.vertx.mutiny.core.Vertx;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.WebApplicationException;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SheetPageServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final String BOOK = "00aa-book.xlsx";
+    private static final int SHEETS = 4;
+    private static final int ROWS = 1000;
+
+    @TempDir
+    Path dir;
+
+    private final Vertx vertx = Vertx.vertx();
+    private TempFileManager tempFiles;
+    private UploadStore uploadStore;
+
+    @BeforeEach
+    void start() throws Exception {
+        tempFiles = TestTempFiles.start(vertx, dir);
+        Path uploads = Files.createDirectories(dir.resolve("uploads"));
+        writeWorkbook(uploads.resolve(BOOK));
+        uploadStore = TestUploadStore.open(uploads);
+    }
+
+    @AfterEach
+    void stop() {
+        TestTempFiles.stop(tempFiles);
+        vertx.closeAndAwait();
+    }
+
+    /**
+     * 每个 sheet 的行宽和取值位数相同，解压后的 XML 大小一致
+     */
+    private static void writeWorkbook(Path file) throws Exception {
+        try (XSSFWorkbook wb = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            for (int s = 0; s < SHEETS; s++) {
+                Sheet sheet = wb.createSheet("表" + s);
+                for (int i = 0; i < ROWS; i++) {
+                    Row row = sheet.createRow(i);
+                    row.createCell(0).setCellValue((s + 1) * 100_000 + i);
+                    row.createCell(1).setCellValue("部门");
+                }
+            }
+            wb.write(out);
+        }
+    }
+
+    private SheetPageService service(int cacheEntries, long maxBytes) {
+        SheetPageService service = new SheetPageService();
+        service.uploadStore = uploadStore;
+        service.tempFiles = tempFiles;
+        service.interval = 100;
+        service.cacheEntries = cacheEntries;
+        service.maxBytes = maxBytes;
+        return service;
+    }
+
+    private static RowPage page(SheetPageService service, int sheet, long offset, int limit) {
+        return service.page(BOOK, sheet, offset, limit).await().atMost(TIMEOUT);
+    }
+
+    private Path xml(int sheet) {
+        return uploadStore.derivedPath(BOOK, "-sheet" + sheet + ".xml");
+    }
+
+    private Path rowIndex(int sheet) {
+        return uploadStore.derivedPath(BOOK, "-sheet" + sheet + ".rowidx");
+    }
+
+    private long derivedBytes() throws Exception {
+        try (Stream<Path> files = Files.list(xml(0).getParent())) {
+            return files.mapToLong(f -> f.toFile().length()).sum();
+        }
+    }
+
+    private static void assertPage(RowPage page, int sheet, long offset, int count) {
+        assertEquals(ROWS, page.total);
+        assertEquals(offset, page.offset);
+        assertEquals(count, page.rows.size());
+        for (int i = 0; i < count; i++) {
+            long r = offset + i;
+            assertEquals(r + 1, page.rows.get(i).row);
+            assertEquals(List.of(String.valueOf((double) ((sheet + 1) * 100_000 + r)), "部门"), page.rows.get(i).cells);
+        }
+    }
+
+    @Test
+    void testPages() {
+        SheetPageService service = service(16, Long.MAX_VALUE);
+        assertPage(page(service, 1, 0, 10), 1, 0, 10);
+        // 检查点之间、跨检查点、末尾不足一页
+        assertPage(page(service, 1, 555, 20), 1, 555, 20);
+        assertPage(page(service, 1, 190, 30), 1, 190, 30);
+        assertPage(page(service, 1, 995, 100), 1, 995, 5);
+        assertPage(page(service, 1, ROWS, 10), 1, ROWS, 0);
+
+        assertThrows(BadRequestException.class, () -> page(service, -1, 0, 10));
+        assertThrows(BadRequestException.class, () -> page(service, 0, 0, 0));
+        assertThrows(BadRequestException.class, () -> page(service, SHEETS, 0, 10));
+        WebApplicationException missing = assertThrows(WebApplicationException.class,
+                () -> service.page("missing.xlsx", 0, 0, 10).await().atMost(TIMEOUT));
+        assertEquals(404, missing.getResponse().getStatus());
+    }
+
+    @Test
+    void testIndexReusedAfterRestart() throws Exception {
+        assertPage(page(service(16, Long.MAX_VALUE), 2, 300, 10), 2, 300, 10);
+        FileTime built = FileTime.fromMillis(1_000_000);
+        Files.setLastModifiedTime(rowIndex(2), built);
+        Files.setLastModifiedTime(xml(2), built);
+
+        // 新实例（内存缓存为空）直接载入磁盘上的索引，并把 XML 的修改时间更新为最近使用时间
+        assertPage(page(service(16, Long.MAX_VALUE), 2, 700, 10), 2, 700, 10);
+        assertEquals(built, Files.getLastModifiedTime(rowIndex(2)));
+        assertTrue(Files.getLastModifiedTime(xml(2)).compareTo(built) > 0);
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedSheets() throws Exception {
+        SheetPageService service = service(1, Long.MAX_VALUE);
+        page(service, 0, 0, 1);
+        long sheetBytes = derivedBytes();
+        page(service, 1, 0, 1);
+        page(service, 2, 0, 1);
+        long now = System.currentTimeMillis();
+        for (int s = 0; s < 3; s++) {
+            Files.setLastModifiedTime(xml(s), FileTime.fromMillis(now - (3 - s) * 100_000L));
+        }
+        // 再用一次 sheet 0（内存缓存只有 1 个，从磁盘载入）：最久未用的变成 sheet 1
+        assertPage(page(service, 0, 50, 5), 0, 50, 5);
+
+        // 放得下 3.5 个 sheet：建 sheet 3 之后只删 sheet 1
+        service.maxBytes = sheetBytes * 7 / 2;
+        assertPage(page(service, 3, 900, 10), 3, 900, 10);
+        assertFalse(Files.exists(xml(1)));
+        assertFalse(Files.exists(rowIndex(1)));
+        for (int s : new int[]{0, 2, 3}) {
+            assertTrue(Files.exists(xml(s)), "sheet " + s);
+            assertTrue(Files.exists(rowIndex(s)), "sheet " + s);
+        }
+        assertTrue(derivedBytes() <= service.maxBytes);
+
+        // 被删的 sheet 下次分页时重建
+        assertPage(page(service, 1, 420, 10), 1, 420, 10);
+        assertTrue(Files.exists(xml(1)));
+    }
+
+    @Test
+    void testRebuildsWhenDerivedFilesVanishBeforeRead() throws Exception {
+        SheetPageService service = service(16, Long.MAX_VALUE);
+        page(service, 0, 0, 1);
+        // 模拟另一个请求的 evict：索引还在内存里，派生文件已被删掉
+        Files.delete(rowIndex(0));
+        Files.delete(xml(0));
+
+        assertPage(page(service, 0, 300, 10), 0, 300, 10);
+        assertTrue(Files.exists(xml(0)));
+        assertTrue(Files.exists(rowIndex(0)));
+    }
+
+    @Test
+    void testKeepsSheetsInUseOverLimit() throws Exception {
+        SheetPageService service = service(16, 1);
+        page(service, 0, 0, 1);
+        page(service, 1, 0, 1);
+        // 都在内存缓存里，超过上限也不删
+        assertTrue(Files.exists(xml(0)));
+        assertTrue(Files.exists(xml(1)));
+        assertPage(page(service, 0, 100, 10), 0, 100, 10);
+    }
+}
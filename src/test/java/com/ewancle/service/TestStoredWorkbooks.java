@@ -0,0 +1,20 @@
+package com.ewancle.service;
+
+import com.ewancle.storage.TempFileManager;
+import com.ewancle.storage.UploadStore;
+
+/**
+ * 其他包的测试使用的 StoredWorkbooks
+ */
+public final class TestStoredWorkbooks {
+
+    private TestStoredWorkbooks() {
+    }
+
+    public static StoredWorkbooks create(UploadStore uploadStore, TempFileManager tempFiles) {
+        StoredWorkbooks workbooks = new StoredWorkbooks();
+        workbooks.uploadStore = uploadStore;
+        workbooks.tempFiles = tempFiles;
+        return workbooks;
+    }
+}
@@ -0,0 +1,140 @@
+package com.ewancle.sort;
+
+import com.ewancle.storage.TempFileManager;
+import com.ewancle.storage.TestTempFiles;
+import io.smallrye.mutiny.Multi;
+import io.vertx.mutiny.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExternalSorterTest {
+
+    @TempDir
+    Path dir;
+
+    private final Vertx vertx = Vertx.vertx();
+    private TempFileManager tempFiles;
+
+    private ExternalSorter sorter(int runRows, int fanIn) throws Exception {
+        tempFiles = TestTempFiles.start(vertx, dir);
+        ExternalSorter sorter = new ExternalSorter();
+        sorter.tempFiles = tempFiles;
+        sorter.runRows = runRows;
+        sorter.mergeFanIn = fanIn;
+        return sorter;
+    }
+
+    @AfterEach
+    void stop() {
+        if (tempFiles != null) {
+            TestTempFiles.stop(tempFiles);
+        }
+        vertx.closeAndAwait();
+    }
+
+    /**
+     * 第 0 列是输入顺序，第 1 列是排序键（重复很多），第 2 列是部门
+     */
+    private static List<Object[]> input(int rows) {
+        Random random = new Random(42);
+        List<Object[]> list = new ArrayList<>(rows);
+        for (long i = 0; i < rows; i++) {
+            list.add(new Object[]{i, (long) random.nextInt(50), "dept-" + random.nextInt(5)});
+        }
+        return list;
+    }
+
+    private List<Object[]> sort(ExternalSorter sorter, List<Object[]> rows, Comparator<Object[]> order) {
+        return sorter.sort(Multi.createFrom().iterable(rows), List.of("seq", "key", "dept"), order)
+                .collect().asList().await().indefinitely();
+    }
+
+    private static void assertSortedAndStable(List<Object[]> input, List<Object[]> sorted) {
+        List<Object[]> expected = new ArrayList<>(input);
+        // List.sort 是稳定排序
+        expected.sort(ExternalSorter.by(1));
+        assertEquals(expected.size(), sorted.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(((Number) expected.get(i)[0]).longValue(), ((Number) sorted.get(i)[0]).longValue(), "row " + i);
+        }
+    }
+
+    @Test
+    void testSingleRunStaysInMemory() throws Exception {
+        ExternalSorter sorter = sorter(1000, 64);
+        List<Object[]> input = input(500);
+
+        assertSortedAndStable(input, sort(sorter, input, ExternalSorter.by(1)));
+        assertEquals(0, tempFiles.stats().created());
+    }
+
+    @Test
+    void testSpilledRunsMergeStably() throws Exception {
+        ExternalSorter sorter = sorter(100, 64);
+        List<Object[]> input = input(1050);
+
+        List<Object[]> sorted = sort(sorter, input, ExternalSorter.by(1));
+
+        assertSortedAndStable(input, sorted);
+        assertEquals(11, tempFiles.stats().created());
+        assertEquals(0, tempFiles.stats().liveFiles());
+        // 落盘后的字符串列照常还原
+        assertTrue(sorted.get(0)[2].toString().startsWith("dept-"));
+    }
+
+    @Test
+    void testMultiLevelMerge() throws Exception {
+        // 50 段，fan-in 3：先逐层归并到不超过 3 段
+        ExternalSorter sorter = sorter(20, 3);
+        List<Object[]> input = input(1000);
+
+        assertSortedAndStable(input, sort(sorter, input, ExternalSorter.by(1)));
+        assertTrue(tempFiles.stats().created() > 50);
+        assertEquals(0, tempFiles.stats().liveFiles());
+    }
+
+    @Test
+    void testCompoundOrder() throws Exception {
+        ExternalSorter sorter = sorter(64, 4);
+        List<Object[]> input = input(400);
+
+        List<Object[]> sorted = sort(sorter, input, ExternalSorter.by(2).thenComparing(ExternalSorter.by(1).reversed()));
+
+        for (int i = 1; i < sorted.size(); i++) {
+            Object[] a = sorted.get(i - 1);
+            Object[] b = sorted.get(i);
+            int dept = a[2].toString().compareTo(b[2].toString());
+            assertTrue(dept < 0 || dept == 0 && (Long) a[1] >= (Long) b[1], "row " + i);
+        }
+    }
+
+    @Test
+    void testEmptyInput() throws Exception {
+        ExternalSorter sorter = sorter(10, 2);
+        assertTrue(sort(sorter, List.of(), ExternalSorter.by(0)).isEmpty());
+    }
+
+    @Test
+    void testCompareValues() {
+        assertTrue(ExternalSorter.compareValues(1, 2L) < 0);
+        assertTrue(ExternalSorter.compareValues(2.5, 2L) > 0);
+        assertEquals(0, ExternalSorter.compareValues(3, 3L));
+        // null 排在最后
+        assertTrue(ExternalSorter.compareValues(null, "a") > 0);
+        assertTrue(ExternalSorter.compareValues("a", null) < 0);
+        assertEquals(0, ExternalSorter.compareValues(null, null));
+        assertTrue(ExternalSorter.compareValues("b", "a") > 0);
+        // 类型不同又不是数值时按字符串比较
+        assertTrue(ExternalSorter.compareValues(true, "x") < 0);
+        assertTrue(ExternalSorter.by(5).compare(new Object[]{1}, new Object[]{1, 2, 3, 4, 5, 6}) > 0);
+    }
+}
@@ -0,0 +1,48 @@
+package com.ewancle.sort;
+
+import io.smallrye.mutiny.Multi;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupByTest {
+
+    private static List<Object[]> subtotals(Object[]... rows) {
+        return GroupBy.subtotals(Multi.createFrom().items(rows), 0, new int[]{1, 2}, "小计")
+                .collect().asList().await().indefinitely();
+    }
+
+    @Test
+    void testSubtotalAfterEachGroup() {
+        List<Object[]> out = subtotals(
+                new Object[]{"技术部", 100, 1.5},
+                new Object[]{"技术部", 200L, 2.5},
+                new Object[]{"市场部", 50, null});
+
+        assertEquals(5, out.size());
+        assertArrayEquals(new Object[]{"技术部", 100, 1.5}, out.get(0));
+        assertArrayEquals(new Object[]{"技术部 小计", 300.0, 4.0}, out.get(2));
+        assertArrayEquals(new Object[]{"市场部", 50, null}, out.get(3));
+        assertArrayEquals(new Object[]{"市场部 小计", 50.0, 0.0}, out.get(4));
+    }
+
+    @Test
+    void testNullKeyAndShortRows() {
+        List<Object[]> out = subtotals(
+                new Object[]{"A", 1},
+                new Object[]{null, 2, 3},
+                new Object[]{null});
+
+        assertEquals(5, out.size());
+        // 小计行的宽度取该组最宽的一行，求和列超出宽度时不输出
+        assertArrayEquals(new Object[]{"A 小计", 1.0}, out.get(1));
+        assertArrayEquals(new Object[]{"小计", 2.0, 3.0}, out.get(4));
+    }
+
+    @Test
+    void testEmptyInput() {
+        assertTrue(subtotals().isEmpty());
+    }
+}
@@ -0,0 +1,88 @@
+package com.ewancle.storage;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferPipeInputStreamTest {
+
+    private final AtomicInteger pauses = new AtomicInteger();
+    private final AtomicInteger resumes = new AtomicInteger();
+
+    private BufferPipeInputStream pipe(long highWater) {
+        return new BufferPipeInputStream(highWater, pauses::incrementAndGet, resumes::incrementAndGet);
+    }
+
+    @Test
+    void testPausesAtHighWaterAndResumesBelowHalf() throws Exception {
+        BufferPipeInputStream pipe = pipe(100);
+        pipe.write(Buffer.buffer(new byte[60]));
+        assertEquals(0, pauses.get());
+        pipe.write(Buffer.buffer(new byte[60]));
+        assertEquals(1, pauses.get());
+        // 已经暂停时不重复调用
+        pipe.write(Buffer.buffer(new byte[10]));
+        assertEquals(1, pauses.get());
+        assertEquals(130, pipe.available());
+
+        byte[] buf = new byte[200];
+        assertEquals(60, pipe.read(buf, 0, 60));
+        assertEquals(0, resumes.get());
+        assertEquals(30, pipe.read(buf, 0, 30));
+        // 剩 40 字节，低于 highWater / 2
+        assertEquals(1, resumes.get());
+        assertEquals(40, pipe.available());
+    }
+
+    @Test
+    void testReaderWaitsForDataThenEnd() throws Exception {
+        BufferPipeInputStream pipe = pipe(1024);
+        CompletableFuture<byte[]> read = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pipe.readAllBytes();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(read.isDone());
+        pipe.write(Buffer.buffer("abc"));
+        pipe.write(Buffer.buffer("def"));
+        pipe.end();
+        assertEquals("abcdef", new String(read.get(5, TimeUnit.SECONDS)));
+        // end 之后写入的数据忽略
+        pipe.write(Buffer.buffer("x"));
+        assertEquals(-1, pipe.read());
+    }
+
+    @Test
+    void testFailureAfterBufferedData() throws Exception {
+        BufferPipeInputStream pipe = pipe(1024);
+        pipe.write(Buffer.buffer("ab"));
+        pipe.fail(new IllegalStateException("connection reset"));
+        assertEquals('a', pipe.read());
+        assertEquals('b', pipe.read());
+        IOException e = assertThrows(IOException.class, pipe::read);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    @Test
+    void testCloseDiscardsAndResumes() throws Exception {
+        BufferPipeInputStream pipe = pipe(10);
+        pipe.write(Buffer.buffer(new byte[20]));
+        assertEquals(1, pauses.get());
+        pipe.close();
+        assertEquals(1, resumes.get());
+        assertEquals(0, pipe.available());
+        pipe.write(Buffer.buffer(new byte[20]));
+        assertEquals(0, pipe.available());
+        assertEquals(1, pauses.get());
+        assertThrows(IOException.class, pipe::read);
+    }
+}
@@ -0,0 +1,85 @@
+package com.ewancle.storage;
+
+import io.smallrye.mutiny.Multi;
+import io.vertx.mutiny.core.buffer.Buffer;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GzipDecoderTest {
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] decode(byte[] gzip, int chunkSize) {
+        List<Buffer> chunks = new ArrayList<>();
+        for (int i = 0; i < gzip.length; i += chunkSize) {
+            chunks.add(Buffer.buffer(Arrays.copyOfRange(gzip, i, Math.min(gzip.length, i + chunkSize))));
+        }
+        Buffer all = Buffer.buffer();
+        GzipDecoder.decode(Multi.createFrom().iterable(chunks))
+                .collect().in(() -> all, Buffer::appendBuffer)
+                .await().atMost(Duration.ofSeconds(30));
+        return all.getBytes();
+    }
+
+    /**
+     * 分块大小：头部被拆开、单字节、典型的 AsyncFile 块、一次全部
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 8192, 1 << 20})
+    void testTextRoundTrip(int chunkSize) throws Exception {
+        byte[] data = "工号,姓名,部门,薪资\n1001,张三,技术部,12000\n".repeat(5000).getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(data, decode(gzip(data), chunkSize));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 512, 1 << 20})
+    void testHighlyCompressibleData(int chunkSize) throws Exception {
+        // 极高压缩比：少量输入解出远超输出缓冲区的数据，输入耗尽后仍有待输出的内容
+        byte[] data = new byte[5 * 1024 * 1024];
+        assertArrayEquals(data, decode(gzip(data), chunkSize));
+    }
+
+    @Test
+    void testIncompressibleData() throws Exception {
+        byte[] data = new byte[300_000];
+        new Random(1).nextBytes(data);
+        assertArrayEquals(data, decode(gzip(data), 65536));
+    }
+
+    @Test
+    void testEmptyContent() throws Exception {
+        assertEquals(0, decode(gzip(new byte[0]), 4).length);
+    }
+
+    @Test
+    void testRejectsNonGzip() {
+        byte[] notGzip = "PK\3\4 not a gzip stream".getBytes(StandardCharsets.ISO_8859_1);
+        assertThrows(IllegalStateException.class, () -> decode(notGzip, 64));
+    }
+
+    @Test
+    void testRejectsTruncatedStream() throws Exception {
+        byte[] data = "内容".repeat(10_000).getBytes(StandardCharsets.UTF_8);
+        byte[] gz = gzip(data);
+        assertThrows(IllegalStateException.class, () -> decode(Arrays.copyOf(gz, gz.length / 2), 1024));
+    }
+}
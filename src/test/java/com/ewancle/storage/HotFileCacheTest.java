@@ -0,0 +1,159 @@
+package com.ewancle.storage;
+
+import com.ewancle.model.FileMetadata;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotFileCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private static HotFileCache cache(long maxBytes, long maxEntryBytes) {
+        HotFileCache cache = new HotFileCache();
+        cache.maxBytes = maxBytes;
+        cache.maxEntryBytes = maxEntryBytes;
+        return cache;
+    }
+
+    private Path file(String name, int size) throws IOException {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (name.hashCode() + i);
+        }
+        return Files.write(dir.resolve(name), data);
+    }
+
+    private static FileMetadata meta(String name, long size, long modifiedAt) {
+        return new FileMetadata(name, name, size, "application/octet-stream", null, 0, modifiedAt, null, size);
+    }
+
+    /**
+     * 第二次未命中才在后台加载，等加载完成后的下一次访问
+     */
+    private static ByteBuffer getAfterLoad(HotFileCache cache, FileMetadata meta, Path path) throws InterruptedException {
+        long loads = cache.stats().loads();
+        assertNull(cache.get(meta, path));
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (cache.stats().loads() == loads && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        return cache.get(meta, path);
+    }
+
+    @Test
+    void testOnlyRepeatedMissesLoad() throws Exception {
+        HotFileCache cache = cache(1 << 20, 1 << 16);
+        Path path = file("a.bin", 1000);
+        FileMetadata meta = meta("a.bin", 1000, 1);
+
+        assertNull(cache.get(meta, path));
+        assertEquals(0, cache.stats().loads());
+
+        ByteBuffer hit = getAfterLoad(cache, meta, path);
+        assertNotNull(hit);
+        assertTrue(hit.isDirect());
+        assertTrue(hit.isReadOnly());
+        assertEquals(ByteBuffer.wrap(Files.readAllBytes(path)), hit);
+        // 每次命中是独立的视图
+        hit.position(500);
+        assertEquals(0, cache.get(meta, path).position());
+
+        HotFileCache.Stats stats = cache.stats();
+        assertEquals(1, stats.entries());
+        assertEquals(1000, stats.usedBytes());
+        assertEquals(2, stats.hits());
+    }
+
+    @Test
+    void testModifiedFileAndInvalidateDropEntry() throws Exception {
+        HotFileCache cache = cache(1 << 20, 1 << 16);
+        Path path = file("b.bin", 100);
+        FileMetadata meta = meta("b.bin", 100, 1);
+        cache.get(meta, path);
+        assertNotNull(getAfterLoad(cache, meta, path));
+
+        // 覆盖写：modifiedAt 变化后不再返回旧内容，文件仍然热，按新版本重新加载
+        FileMetadata updated = meta("b.bin", 100, 2);
+        assertNotNull(getAfterLoad(cache, updated, path));
+        assertEquals(1, cache.stats().entries());
+        assertEquals(100, cache.stats().usedBytes());
+        cache.invalidate("b.bin");
+        assertEquals(0, cache.stats().entries());
+    }
+
+    @Test
+    void testOversizedOrChangedOnDiskNotLoaded() throws Exception {
+        HotFileCache cache = cache(1 << 20, 1000);
+        Path big = file("big.bin", 2000);
+        FileMetadata bigMeta = meta("big.bin", 2000, 1);
+        for (int i = 0; i < 5; i++) {
+            assertNull(cache.get(bigMeta, big));
+        }
+        // 元数据记录的大小和磁盘不一致（写到一半等）时不缓存
+        Path small = file("small.bin", 100);
+        FileMetadata stale = meta("small.bin", 50, 1);
+        cache.get(stale, small);
+        cache.get(stale, small);
+        Thread.sleep(100);
+        assertNull(cache.get(stale, small));
+        assertEquals(0, cache.stats().entries());
+    }
+
+    @Test
+    void testStaysWithinByteBudget() throws Exception {
+        HotFileCache cache = cache(10_000, 1000);
+        for (int i = 0; i < 30; i++) {
+            String name = "f" + i + ".bin";
+            Path path = file(name, 1000);
+            FileMetadata meta = meta(name, 1000, 1);
+            cache.get(meta, path);
+            getAfterLoad(cache, meta, path);
+            assertTrue(cache.stats().usedBytes() <= 10_000, "used " + cache.stats().usedBytes());
+        }
+        assertTrue(cache.stats().evictions() + cache.stats().rejections() > 0);
+    }
+
+    @Test
+    void testFrequentFileSurvivesScan() throws Exception {
+        HotFileCache cache = cache(10_000, 1000);
+        Path hotPath = file("hot.bin", 1000);
+        FileMetadata hot = meta("hot.bin", 1000, 1);
+        cache.get(hot, hotPath);
+        getAfterLoad(cache, hot, hotPath);
+        for (int i = 0; i < 10; i++) {
+            cache.get(hot, hotPath);
+        }
+        // 一遍只访问两次的大量文件不应把热点挤出去
+        for (int i = 0; i < 50; i++) {
+            String name = "scan" + i + ".bin";
+            Path path = file(name, 1000);
+            FileMetadata meta = meta(name, 1000, 1);
+            cache.get(meta, path);
+            getAfterLoad(cache, meta, path);
+        }
+        assertNotNull(cache.get(hot, hotPath));
+    }
+
+    @Test
+    void testSketchSaturatesAndAges() {
+        HotFileCache.FrequencySketch sketch = new HotFileCache.FrequencySketch(1024);
+        for (int i = 0; i < 20; i++) {
+            sketch.increment("k");
+        }
+        assertEquals(15, sketch.frequency("k"));
+        // 累计 640 次增量时整体减半；其它键均匀分布，不会把计数器全部打满
+        for (int i = 0; i < 640 - 15; i++) {
+            sketch.increment("other" + i);
+        }
+        assertEquals(7, sketch.frequency("k"));
+        assertTrue(sketch.frequency("never-seen") <= 3);
+    }
+}
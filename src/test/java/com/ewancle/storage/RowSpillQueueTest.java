@@ -0,0 +1,149 @@
+package com.ewancle.storage;
+
+import io.vertx.mutiny.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowSpillQueueTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final LocalDateTime DATE = LocalDateTime.of(2024, 1, 2, 3, 4, 5);
+
+    @TempDir
+    Path dir;
+
+    private final Vertx vertx = Vertx.vertx();
+    private TempFileManager tempFiles;
+
+    @BeforeEach
+    void start() throws Exception {
+        tempFiles = TestTempFiles.start(vertx, dir);
+    }
+
+    @AfterEach
+    void stop() {
+        TestTempFiles.stop(tempFiles);
+        vertx.closeAndAwait();
+    }
+
+    /**
+     * 行宽各不相同，值类型覆盖段文件支持的几种
+     */
+    private static Object[] row(long i) {
+        return switch ((int) (i % 4)) {
+            case 0 -> new Object[]{i, "行" + i};
+            case 1 -> new Object[]{i, null, 1.5 * i};
+            case 2 -> new Object[]{i, "x", null, DATE};
+            default -> new Object[]{i};
+        };
+    }
+
+    private static void assertRows(List<Object[]> rows, int count) {
+        assertEquals(count, rows.size());
+        for (int i = 0; i < count; i++) {
+            assertArrayEquals(row(i), rows.get(i), "row " + i);
+        }
+    }
+
+    @Test
+    void testSmallQueueStaysInMemory() {
+        RowSpillQueue queue = new RowSpillQueue(tempFiles, 100, 10);
+        for (long i = 0; i < 100; i++) {
+            assertTrue(queue.offer(row(i)));
+        }
+        queue.complete();
+
+        assertRows(queue.drain(7).collect().asList().await().atMost(TIMEOUT), 100);
+        assertEquals(0, tempFiles.stats().created());
+    }
+
+    @Test
+    void testSlowConsumerSpillsInOrder() {
+        RowSpillQueue queue = new RowSpillQueue(tempFiles, 50, 100);
+        // 消费者还没开始读：50 行留在内存，之后每 100 行一个段文件，最后 30 行留在 tail
+        for (long i = 0; i < 1080; i++) {
+            assertTrue(queue.offer(row(i)));
+        }
+        queue.complete();
+        assertEquals(10, tempFiles.stats().liveFiles());
+
+        assertRows(queue.drain(64).collect().asList().await().atMost(TIMEOUT), 1080);
+        assertEquals(10, tempFiles.stats().created());
+        assertEquals(0, tempFiles.stats().liveFiles());
+    }
+
+    @Test
+    void testConcurrentProducerAndConsumer() throws Exception {
+        RowSpillQueue queue = new RowSpillQueue(tempFiles, 100, 250);
+        Thread producer = new Thread(() -> {
+            for (long i = 0; i < 20_000; i++) {
+                queue.offer(row(i));
+            }
+            queue.complete();
+        });
+        producer.start();
+
+        List<Object[]> rows = queue.drain(33).collect().asList().await().atMost(TIMEOUT);
+
+        producer.join();
+        assertRows(rows, 20_000);
+        assertEquals(0, tempFiles.stats().liveFiles());
+    }
+
+    @Test
+    void testFailurePropagates() {
+        RowSpillQueue queue = new RowSpillQueue(tempFiles, 10, 10);
+        for (long i = 0; i < 5; i++) {
+            queue.offer(row(i));
+        }
+        queue.fail(new IOException("bad upload"));
+
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> queue.drain(10).collect().asList().await().atMost(TIMEOUT));
+        assertInstanceOf(IOException.class, e.getCause());
+        assertEquals("bad upload", e.getCause().getMessage());
+    }
+
+    @Test
+    void testCancelDeletesSegmentsAndStopsProducer() {
+        RowSpillQueue queue = new RowSpillQueue(tempFiles, 10, 20);
+        for (long i = 0; i < 200; i++) {
+            queue.offer(row(i));
+        }
+        assertTrue(tempFiles.stats().liveFiles() > 0);
+
+        List<Object[]> first = queue.drain(5).select().first(12).collect().asList().await().atMost(TIMEOUT);
+
+        assertRows(first, 12);
+        assertEquals(0, tempFiles.stats().liveFiles());
+        assertFalse(queue.offer(row(200)));
+        assertEquals(0, tempFiles.stats().liveFiles());
+    }
+
+    @Test
+    void testConsumerWaitsForProducer() throws Exception {
+        RowSpillQueue queue = new RowSpillQueue(tempFiles, 10, 10);
+        CompletableFuture<List<Object[]>> drained = queue.drain(4).collect().asList().subscribeAsCompletionStage();
+        Thread.sleep(50);
+        assertFalse(drained.isDone());
+
+        for (long i = 0; i < 3; i++) {
+            queue.offer(row(i));
+        }
+        queue.complete();
+
+        assertRows(drained.get(), 3);
+    }
+}
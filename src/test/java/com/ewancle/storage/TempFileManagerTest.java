@@ -0,0 +1,237 @@
+package com.ewancle.storage;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.Cancellable;
+import io.vertx.mutiny.core.Vertx;
+import jakarta.ws.rs.ServiceUnavailableException;
+import org.apache.poi.util.DefaultTempFileCreationStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TempFileManagerTest {
+
+    @TempDir
+    Path dir;
+
+    private final Vertx vertx = Vertx.vertx();
+    private TempFileManager manager;
+
+    private TempFileManager start(long quotaBytes, Duration maxAge) throws Exception {
+        manager = new TempFileManager();
+        manager.vertx = vertx;
+        manager.dir = dir.resolve("temp").toString();
+        manager.quotaBytes = quotaBytes;
+        manager.smallDir = Optional.empty();
+        manager.smallMaxBytes = 0;
+        manager.smallQuotaBytes = 0;
+        manager.maxAge = maxAge;
+        // 测试里手动调用 reap()
+        manager.reapInterval = Duration.ofHours(1);
+        manager.acquireTimeout = Duration.ofMillis(300);
+        manager.uploadsDirectory = dir.resolve("uploads").toString();
+        manager.onStart(null);
+        return manager;
+    }
+
+    @AfterEach
+    void stop() {
+        if (manager != null) {
+            manager.onStop(null);
+        }
+        vertx.closeAndAwait();
+        org.apache.poi.util.TempFile.setTempFileCreationStrategy(new DefaultTempFileCreationStrategy());
+    }
+
+    @Test
+    void testQueuesUntilQuotaReleased() throws Exception {
+        start(1000, Duration.ofMinutes(30));
+        TempFileManager.TempFile first = manager.allocateBlocking("a", ".tmp", 600);
+        CompletableFuture<TempFileManager.TempFile> second = manager.allocate("b", ".tmp", 600)
+                .subscribeAsCompletionStage();
+        Thread.sleep(50);
+        assertFalse(second.isDone());
+        assertEquals(1, manager.stats().waiting());
+
+        Files.writeString(first.path(), "x");
+        first.close();
+        assertFalse(Files.exists(first.path()));
+        TempFileManager.TempFile granted = second.get(1, TimeUnit.SECONDS);
+        assertEquals("b", granted.owner());
+        assertEquals(600, manager.stats().reservedBytes());
+        // 重复 close 不会重复归还
+        first.close();
+        assertEquals(600, manager.stats().reservedBytes());
+        granted.close();
+        assertEquals(0, manager.stats().reservedBytes());
+    }
+
+    @Test
+    void testTimesOutWith503() throws Exception {
+        start(1000, Duration.ofMinutes(30));
+        try (TempFileManager.TempFile held = manager.allocateBlocking("a", ".tmp", 900)) {
+            Uni<TempFileManager.TempFile> blocked = manager.allocate("b", ".tmp", 200);
+            assertThrows(ServiceUnavailableException.class, () -> blocked.await().atMost(Duration.ofSeconds(5)));
+            assertEquals(1, manager.stats().rejected());
+            assertEquals(0, manager.stats().waiting());
+            assertNotNull(held.path());
+        }
+    }
+
+    @Test
+    void testCancelledWaitersGiveUpTheirPlace() throws Exception {
+        start(1000, Duration.ofMinutes(30));
+        TempFileManager.TempFile held = manager.allocateBlocking("a", ".tmp", 900);
+        // 排队中的客户端断开：移出队列，归还后不会把配额分给它们
+        for (int i = 0; i < 5; i++) {
+            Cancellable queued = manager.allocate("gone", ".tmp", 500).subscribe().with(f -> fail("cancelled"));
+            queued.cancel();
+        }
+        assertEquals(0, manager.stats().waiting());
+        CompletableFuture<TempFileManager.TempFile> next = manager.allocate("b", ".tmp", 600)
+                .subscribeAsCompletionStage();
+
+        held.close();
+
+        TempFileManager.TempFile granted = next.get(1, TimeUnit.SECONDS);
+        assertEquals(600, manager.stats().reservedBytes());
+        granted.close();
+        assertEquals(0, manager.stats().reservedBytes());
+        assertEquals(0, manager.stats().rejected());
+    }
+
+    @Test
+    void testCancelledHeadUnblocksQueue() throws Exception {
+        start(1000, Duration.ofMinutes(30));
+        try (TempFileManager.TempFile held = manager.allocateBlocking("a", ".tmp", 300)) {
+            // 队首申请 800 放不下，后面的 100 排在它后面；队首取消后 100 立即拿到
+            Cancellable head = manager.allocate("big", ".tmp", 800).subscribe().with(f -> fail("cancelled"));
+            CompletableFuture<TempFileManager.TempFile> small = manager.allocate("small", ".tmp", 100)
+                    .subscribeAsCompletionStage();
+            Thread.sleep(50);
+            assertFalse(small.isDone());
+
+            head.cancel();
+
+            small.get(1, TimeUnit.SECONDS).close();
+            assertEquals(300, manager.stats().reservedBytes());
+            assertNotNull(held.path());
+        }
+    }
+
+    @Test
+    void testOversizedRequestAllowedWhenIdle() throws Exception {
+        start(1000, Duration.ofMinutes(30));
+        try (TempFileManager.TempFile big = manager.allocateBlocking("big", ".tmp", 5000)) {
+            assertEquals(5000, manager.stats().reservedBytes());
+            assertEquals(5000L, manager.stats().bytesByOwner().get("big"));
+            assertTrue(big.path().getFileName().toString().startsWith("big-"));
+        }
+    }
+
+    @Test
+    void testReapKeepsFilesStillInUse() throws Exception {
+        start(1 << 20, Duration.ZERO);
+        TempFileManager.TempFile held = manager.allocateBlocking("export", ".xml", 10);
+        Files.write(held.path(), new byte[100]);
+        Thread.sleep(5);
+
+        manager.reap();
+
+        // 超过 max-age 但仍被持有：不删，只按实际大小补记配额
+        assertTrue(Files.exists(held.path()));
+        assertEquals(100, manager.stats().reservedBytes());
+        assertEquals(0, manager.stats().reaped());
+        held.close();
+    }
+
+    @Test
+    void testReapsAbandonedFiles() throws Exception {
+        start(1 << 20, Duration.ZERO);
+        Path abandoned = abandon(manager);
+        Thread.sleep(5);
+
+        for (int i = 0; i < 20 && Files.exists(abandoned); i++) {
+            System.gc();
+            Thread.sleep(10);
+            manager.reap();
+        }
+
+        assertFalse(Files.exists(abandoned));
+        assertEquals(0, manager.stats().liveFiles());
+        assertEquals(0, manager.stats().reservedBytes());
+        assertEquals(1, manager.stats().reaped());
+    }
+
+    /**
+     * 只把路径交出去、不再持有 TempFile
+     */
+    private static Path abandon(TempFileManager manager) throws Exception {
+        TempFileManager.TempFile file = manager.allocateBlocking("leak", ".tmp", 10);
+        Files.write(file.path(), new byte[10]);
+        return file.path();
+    }
+
+    @Test
+    void testSweepsOnlyOrphansFromBeforeStartInPoiDir() throws Exception {
+        Path poi = Files.createDirectories(dir.resolve("temp").resolve("poi"));
+        Path orphan = Files.writeString(poi.resolve("orphan"), "上次运行遗留");
+        Files.setLastModifiedTime(orphan, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        start(1 << 20, Duration.ZERO);
+        // 文件系统时间戳取自粗粒度时钟，可能比 currentTimeMillis 慢几毫秒
+        Thread.sleep(50);
+        Path inProgress = Files.writeString(poi.resolve("in-progress"), "SXSSF 溢写中");
+        Thread.sleep(5);
+
+        manager.reap();
+
+        assertFalse(Files.exists(orphan));
+        // 本进程运行期间创建的 POI 文件即使超过 max-age 也不删，由 POI 自己清理
+        assertTrue(Files.exists(inProgress));
+        assertEquals(Files.size(inProgress), manager.stats().untrackedBytes());
+    }
+
+    @Test
+    void testSweepsAbandonedUploadsAfterMaxAge() throws Exception {
+        Path uploads = Files.createDirectories(dir.resolve("uploads"));
+        Path orphan = Files.writeString(uploads.resolve("orphan"), "上次运行遗留");
+        Files.setLastModifiedTime(orphan, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        start(1 << 20, Duration.ofSeconds(1));
+        Thread.sleep(50);
+        // 运行期间遗留的上传（客户端断开、参数校验失败等没走到删除），超过 max-age
+        Path abandoned = Files.writeString(uploads.resolve("abandoned"), "没人删除的上传");
+        Thread.sleep(1100);
+        Path inProgress = Files.writeString(uploads.resolve("in-progress"), "正在处理的上传");
+
+        manager.reap();
+
+        assertFalse(Files.exists(orphan));
+        assertFalse(Files.exists(abandoned));
+        assertTrue(Files.exists(inProgress));
+        assertEquals(Files.size(inProgress), manager.stats().untrackedBytes());
+    }
+
+    @Test
+    void testSweepsExpiredUntrackedFilesInOwnDir() throws Exception {
+        start(1 << 20, Duration.ofMinutes(30));
+        Path base = dir.resolve("temp");
+        Path stale = Files.writeString(base.resolve("stale.tmp"), "过期");
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(System.currentTimeMillis() - 3_600_000));
+        Path fresh = Files.writeString(base.resolve("fresh.tmp"), "新");
+
+        manager.reap();
+
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(fresh));
+    }
+}
@@ -0,0 +1,49 @@
+package com.ewancle.storage;
+
+import io.vertx.mutiny.core.Vertx;
+import org.apache.poi.util.DefaultTempFileCreationStrategy;
+import org.eclipse.microprofile.context.spi.ContextManagerProvider;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * 其他包的测试使用的 TempFileManager：临时目录在 dir 下，不自动清理，配额足够大
+ */
+public final class TestTempFiles {
+
+    private TestTempFiles() {
+    }
+
+    public static TempFileManager start(Vertx vertx, Path dir) throws Exception {
+        return start(vertx, dir, 1L << 32);
+    }
+
+    public static TempFileManager start(Vertx vertx, Path dir, long quotaBytes) throws Exception {
+        // Quarkus 启动时就注册了 ContextManagerProvider；这里没有 Quarkus，先在当前线程注册，
+        // 否则两个线程第一次同时创建 Uni 时并发注册会失败（ContextManagerProvider already set）
+        ContextManagerProvider.instance();
+        TempFileManager manager = new TempFileManager();
+        manager.vertx = vertx;
+        manager.dir = dir.resolve("temp").toString();
+        manager.quotaBytes = quotaBytes;
+        manager.smallDir = Optional.empty();
+        manager.smallMaxBytes = 0;
+        manager.smallQuotaBytes = 0;
+        manager.maxAge = Duration.ofMinutes(30);
+        manager.reapInterval = Duration.ofHours(1);
+        manager.acquireTimeout = Duration.ofSeconds(5);
+        manager.uploadsDirectory = dir.resolve("uploads").toString();
+        manager.onStart(null);
+        return manager;
+    }
+
+    /**
+     * 删除所有登记的临时文件，恢复 POI 默认的临时文件位置
+     */
+    public static void stop(TempFileManager manager) {
+        manager.onStop(null);
+        org.apache.poi.util.TempFile.setTempFileCreationStrategy(new DefaultTempFileCreationStrategy());
+    }
+}
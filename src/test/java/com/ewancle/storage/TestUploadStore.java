@@ -0,0 +1,28 @@
+package com.ewancle.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.file.Path;
+
+/**
+ * 其他包的测试使用的 UploadStore：文件和索引日志都在 uploadsDir 下
+ */
+public final class TestUploadStore {
+
+    private TestUploadStore() {
+    }
+
+    public static UploadStore open(Path uploadsDir) {
+        UploadStore store = new UploadStore();
+        store.uploadsDir = uploadsDir.toString();
+        store.compressMinBytes = 4096;
+        store.compressLevel = 6;
+        store.objectMapper = new ObjectMapper();
+        HotFileCache cache = new HotFileCache();
+        cache.maxBytes = 1 << 20;
+        cache.maxEntryBytes = 1 << 16;
+        store.hotFileCache = cache;
+        store.init();
+        return store;
+    }
+}
@@ -0,0 +1,102 @@
+package com.ewancle.storage;
+
+import com.ewancle.model.FileMetadata;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private UploadStore store() {
+        return TestUploadStore.open(dir);
+    }
+
+    private static String read(UploadStore store, FileMetadata meta) throws IOException {
+        try (InputStream in = store.openDecoded(meta)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void testLegacyFlatFileDownloadedTwice() throws Exception {
+        String name = "0b7e-legacy.txt";
+        Files.writeString(dir.resolve(name), "旧版平铺目录里的内容");
+        UploadStore store = store();
+
+        // 第一次：探测并补录元数据，文件搬进分片目录
+        FileMetadata first = store.metadataOrProbe(name).await().indefinitely();
+        assertEquals("legacy.txt", first.originalName());
+        assertEquals("旧版平铺目录里的内容", read(store, first));
+        assertEquals(store.shardedPath(name), store.resolve(name));
+        assertFalse(Files.exists(dir.resolve(name)));
+
+        // 第二次：直接用内存里的元数据，仍能读到内容
+        FileMetadata second = store.metadataOrProbe(name).await().indefinitely();
+        assertSame(first, second);
+        assertEquals("旧版平铺目录里的内容", read(store, second));
+
+        // 重启后从索引日志恢复
+        assertEquals("旧版平铺目录里的内容", read(store(), second));
+    }
+
+    @Test
+    void testResolveFallsBackToFlatFileWithMetadata() throws Exception {
+        String name = "1c2d-unmoved.txt";
+        UploadStore store = store();
+        Files.writeString(dir.resolve(name), "内容");
+        FileMetadata meta = store.metadataOrProbe(name).await().indefinitely();
+        // 模拟搬迁失败：文件回到平铺目录，索引里已有元数据
+        Files.move(store.shardedPath(name), dir.resolve(name));
+
+        assertEquals(dir.resolve(name), store.resolve(name));
+        assertEquals("内容", read(store, meta));
+    }
+
+    @Test
+    void testMissingFile() {
+        UploadStore store = store();
+        assertNull(store.metadataOrProbe("missing.txt").await().indefinitely());
+        assertEquals(store.shardedPath("missing.txt"), store.resolve("missing.txt"));
+    }
+
+    @Test
+    void testStoreShardsAndCompressesText() throws Exception {
+        UploadStore store = store();
+        String text = "姓名,部门\n".repeat(2000);
+        Path upload = Files.writeString(dir.resolve("upload.tmp"), text);
+
+        FileMetadata meta = store.store(upload.toFile(), "9f00-staff.csv", "staff.csv").await().indefinitely();
+
+        assertFalse(Files.exists(upload));
+        Path stored = store.resolve("9f00-staff.csv");
+        assertEquals(store.shardedPath("9f00-staff.csv"), stored);
+        assertTrue(meta.gzipped());
+        assertEquals(text.getBytes(StandardCharsets.UTF_8).length, meta.size());
+        assertEquals(Files.size(stored), meta.storedBytes());
+        assertTrue(meta.storedBytes() < meta.size() / 10);
+        assertEquals(text, read(store, meta));
+        assertSame(meta, store.metadata("9f00-staff.csv"));
+    }
+
+    @Test
+    void testStoreKeepsCompressedFormatsAsIs() throws Exception {
+        UploadStore store = store();
+        byte[] zip = new byte[8192];
+        Path upload = Files.write(dir.resolve("upload.tmp"), zip);
+
+        FileMetadata meta = store.store(upload.toFile(), "aa11-report.xlsx", "report.xlsx").await().indefinitely();
+
+        assertFalse(meta.gzipped());
+        assertEquals(8192, meta.storedBytes());
+    }
+}
@@ -0,0 +1,166 @@
+package com.ewancle.validation;
+
+import com.ewancle.model.ValidationRule;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.buffer.Buffer;
+import jakarta.ws.rs.BadRequestException;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImportValidatorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final int ERROR_STYLE = 2;
+
+    @TempDir
+    Path dir;
+
+    private final ImportValidator validator = new ImportValidator();
+
+    ImportValidatorTest() {
+        validator.batchRows = 2;
+        validator.parallelism = 2;
+        validator.level = 6;
+    }
+
+    private File write(Object[]... rows) throws Exception {
+        Path file = dir.resolve("upload.xlsx");
+        try (XSSFWorkbook wb = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = wb.createSheet("名单");
+            for (int r = 0; r < rows.length; r++) {
+                Row row = sheet.createRow(r);
+                for (int c = 0; c < rows[r].length; c++) {
+                    if (rows[r][c] instanceof String text) {
+                        row.createCell(c).setCellValue(text);
+                    } else if (rows[r][c] instanceof Integer number) {
+                        row.createCell(c).setCellValue(number);
+                    }
+                }
+            }
+            wb.write(out);
+        }
+        return file.toFile();
+    }
+
+    private static ValidationRule rule(String column, String type, boolean required, boolean unique) {
+        ValidationRule rule = new ValidationRule();
+        rule.column = column;
+        rule.type = type;
+        rule.required = required;
+        rule.unique = unique;
+        return rule;
+    }
+
+    private XSSFWorkbook validate(File file, boolean header, List<ValidationRule> rules) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Buffer b : validator.validate(file, 0, header, rules).await().atMost(TIMEOUT).collect().asList().await().atMost(TIMEOUT)) {
+            out.write(b.getBytes());
+        }
+        assertFalse(file.exists(), "upload temp file should be deleted");
+        return new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static List<String> texts(Row row) {
+        DataFormatter formatter = new DataFormatter();
+        List<String> texts = new ArrayList<>();
+        for (int c = 0; c < row.getLastCellNum(); c++) {
+            Cell cell = row.getCell(c);
+            texts.add(cell != null ? formatter.formatCellValue(cell) : null);
+        }
+        return texts;
+    }
+
+    private static boolean marked(Row row, int column) {
+        Cell cell = row.getCell(column);
+        return cell != null && cell.getCellStyle().getIndex() == ERROR_STYLE;
+    }
+
+    @Test
+    void testReportAlignsMessageWithHeader() throws Exception {
+        File file = write(
+                new Object[]{"工号", "姓名", "邮箱"},
+                new Object[]{1, "张三", "a@b.com"},
+                new Object[]{"x", "李四", "bad"},
+                // 比表头宽的行：多出来的列不输出，错误说明仍在「错误」列
+                new Object[]{1, "王五", "c@d.com", "额外1", "额外2"},
+                new Object[]{null, "赵六", "e@f.com"});
+        try (XSSFWorkbook report = validate(file, true, List.of(
+                rule("工号", "integer", true, true), rule("邮箱", "email", false, false)))) {
+            Sheet details = report.getSheet("错误明细");
+            assertEquals(List.of("行号", "工号", "姓名", "邮箱", "错误"), texts(details.getRow(0)));
+            assertEquals(3, details.getLastRowNum());
+
+            Row badTypes = details.getRow(1);
+            assertEquals(5, badTypes.getLastCellNum());
+            assertEquals(List.of("3", "x", "李四", "bad"), texts(badTypes).subList(0, 4));
+            assertTrue(marked(badTypes, 1));
+            assertFalse(marked(badTypes, 2));
+            assertTrue(marked(badTypes, 3));
+            assertTrue(texts(badTypes).get(4).contains("工号"));
+            assertTrue(texts(badTypes).get(4).contains("邮箱"));
+
+            Row duplicate = details.getRow(2);
+            assertEquals(5, duplicate.getLastCellNum());
+            assertEquals(List.of("4", "1", "王五", "c@d.com"), texts(duplicate).subList(0, 4));
+            assertTrue(marked(duplicate, 1));
+            assertTrue(texts(duplicate).get(4).contains("与第 2 行重复"));
+
+            Row missing = details.getRow(3);
+            assertEquals(5, missing.getLastCellNum());
+            assertEquals("5", texts(missing).get(0));
+            assertTrue(marked(missing, 1));
+            assertTrue(texts(missing).get(4).contains("工号"));
+
+            Sheet summary = report.getSheet("汇总");
+            assertEquals(List.of("检查行数", "4"), texts(summary.getRow(0)));
+            assertEquals(List.of("出错行数", "3"), texts(summary.getRow(1)));
+        }
+    }
+
+    @Test
+    void testRuleBeyondFirstRowWithoutHeader() throws Exception {
+        File file = write(
+                new Object[]{"a", "b"},
+                new Object[]{"c", "d", null, null, "not a number"},
+                new Object[]{"e", "f", null, null, 5});
+        try (XSSFWorkbook report = validate(file, false, List.of(rule("E", "number", false, false)))) {
+            Sheet details = report.getSheet("错误明细");
+            // 表头补到规则所在的 E 列
+            assertEquals(List.of("行号", "A", "B", "C", "D", "E", "错误"), texts(details.getRow(0)));
+            assertEquals(1, details.getLastRowNum());
+            Row row = details.getRow(1);
+            assertEquals(7, row.getLastCellNum());
+            assertEquals(Arrays.asList("2", "c", "d", null, null, "not a number"), texts(row).subList(0, 6));
+            assertTrue(marked(row, 5));
+            assertTrue(texts(row).get(6).contains("E"));
+        }
+    }
+
+    @Test
+    void testUnknownColumn() throws Exception {
+        File file = write(new Object[]{"工号"}, new Object[]{1});
+        // 绑定失败要在拿到响应体之前就暴露出来，并且上传的临时文件已删除
+        Uni<Multi<Buffer>> pending = validator.validate(file, 0, true, List.of(rule("不存在", "text", true, false)));
+        assertThrows(BadRequestException.class, () -> pending.await().atMost(TIMEOUT));
+        assertFalse(file.exists());
+    }
+}
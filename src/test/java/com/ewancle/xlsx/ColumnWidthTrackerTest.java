@@ -0,0 +1,74 @@
+package com.ewancle.xlsx;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnWidthTrackerTest {
+
+    @Test
+    void testDisplayWidth() {
+        assertEquals(5, ColumnWidthTracker.displayWidth("hello"));
+        // 全角字符算 2 个字符宽
+        assertEquals(4, ColumnWidthTracker.displayWidth("部门"));
+        assertEquals(6, ColumnWidthTracker.displayWidth("ab研发"));
+        // 多行文本取最长的一行，控制字符不计
+        assertEquals(9, ColumnWidthTracker.displayWidth("短\n长一些的\tx"));
+        assertEquals(0, ColumnWidthTracker.displayWidth(""));
+        // 代理对按一个字符处理
+        assertEquals(2, ColumnWidthTracker.displayWidth(new String(Character.toChars(0x20000))));
+    }
+
+    @Test
+    void testValuesWithPaddingAndLimits() {
+        ColumnWidthTracker tracker = new ColumnWidthTracker(4, 20);
+        tracker.track(0, "员工姓名");
+        tracker.track(0, "张三");
+        tracker.track(1, 12345);
+        tracker.track(2, 1.0 / 3);
+        tracker.track(3, "x".repeat(100));
+        tracker.track(4, true);
+        tracker.track(6, null);
+
+        assertEquals((8 + 2) * 256, tracker.width(0));
+        assertEquals((5 + 2) * 256, tracker.width(1));
+        // "常规" 格式数值最多 11 个字符
+        assertEquals((11 + 2) * 256, tracker.width(2));
+        assertEquals(20 * 256, tracker.width(3));
+        // 不足最小宽度时取最小宽度
+        assertEquals((4 + 2) * 256, tracker.width(4));
+        assertEquals(-1, tracker.width(5));
+        assertEquals(-1, tracker.width(6));
+        assertEquals(-1, tracker.width(100));
+    }
+
+    @Test
+    void testApplyToSheetBeyondRowWindow() throws Exception {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(10)) {
+            SXSSFSheet sheet = wb.createSheet("数据");
+            CellStyle dateStyle = wb.createCellStyle();
+            dateStyle.setDataFormat(wb.createDataFormat().getFormat("yyyy-mm-dd"));
+            ColumnWidthTracker tracker = new ColumnWidthTracker();
+            int defaultWidth = sheet.getColumnWidth(2);
+            for (int i = 0; i < 100; i++) {
+                Row row = sheet.createRow(i);
+                // 最长的值在第一行，早已被刷出 SXSSF 的行窗口
+                row.createCell(0).setCellValue(i == 0 ? "这是一段比较长的说明文字" : "短");
+                row.createCell(1).setCellValue(new Date());
+                row.getCell(1).setCellStyle(dateStyle);
+                tracker.track(row);
+            }
+            tracker.applyTo(sheet);
+
+            assertEquals((24 + 2) * 256, sheet.getColumnWidth(0));
+            assertEquals((10 + 2) * 256, sheet.getColumnWidth(1));
+            assertEquals(defaultWidth, sheet.getColumnWidth(2));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.ewancle.xlsx;
+
+import org.junit.jupiter.api.Test;
+
+import static com.ewancle.xlsx.NumberFormatKind.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NumberFormatKindTest {
+
+    @Test
+    void testClassify() {
+        assertEquals(GENERAL, classify(0, null));
+        assertEquals(GENERAL, classify(0, "General"));
+        assertEquals(INTEGER, classify(1, "0"));
+        assertEquals(INTEGER, classify(3, "#,##0"));
+        assertEquals(DECIMAL, classify(2, "0.00"));
+        assertEquals(DECIMAL, classify(11, "0.00E+00"));
+        assertEquals(PERCENT, classify(9, "0%"));
+        assertEquals(TEXT, classify(49, "@"));
+        assertEquals(DATE, classify(14, "yyyy-mm-dd"));
+        assertEquals(TIME, classify(21, "h:mm:ss"));
+        assertEquals(TIME, classify(46, "[h]:mm:ss"));
+        assertEquals(DATETIME, classify(22, "yyyy-mm-dd hh:mm"));
+        // 只看正数部分，引号文本和 [颜色] 不参与判断
+        assertEquals(DECIMAL, classify(164, "[Red]\"¥\"#,##0.00;-\"¥\"#,##0.00"));
+        assertEquals(INTEGER, classify(165, "0;\"0.00\""));
+    }
+
+    @Test
+    void testFormatNumbers() {
+        assertEquals("3", GENERAL.format(3.0, false));
+        assertEquals("-42", INTEGER.format(-42.0, false));
+        assertEquals("2.5", GENERAL.format(2.5, false));
+        assertEquals("1.0E16", GENERAL.format(1e16, false));
+        assertEquals("3.0", DECIMAL.format(3.0, false));
+        assertEquals("0.25", PERCENT.format(0.25, false));
+    }
+
+    @Test
+    void testFormatDates() {
+        assertEquals("2024-01-01", DATE.format(45292, false));
+        assertEquals("2024-01-01T12:00:00", DATETIME.format(45292.5, false));
+        assertEquals("2024-01-01", DATE.format(45292 - 1462, true));
+        assertEquals("18:00:00", TIME.format(0.75, false));
+        // 四舍五入到秒
+        assertEquals("00:00:01", TIME.format(0.6 / 86_400, false));
+        // 1900 日期系统把不存在的 1900-02-29 算作第 60 天
+        assertEquals("1900-01-01", DATE.format(1, false));
+        assertEquals("1900-02-28", DATE.format(59, false));
+        assertEquals("1900-03-01", DATE.format(61, false));
+        // 不是合法日期时按数字输出
+        assertEquals("-1.0", DATE.format(-1, false));
+    }
+}
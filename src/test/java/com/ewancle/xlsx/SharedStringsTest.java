@@ -0,0 +1,102 @@
+package com.ewancle.xlsx;
+
+import io.vertx.mutiny.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedStringsTest {
+
+    @TempDir
+    Path dir;
+
+    private static String spilled(SharedStrings strings) {
+        return strings.spilled().collect().asList().await().indefinitely().stream()
+                .map(Buffer::toString)
+                .collect(Collectors.joining());
+    }
+
+    @Test
+    void testSharedAndInlineColumns() throws Exception {
+        try (SharedStrings strings = new SharedStrings(dir.resolve("sst.xml"), 100, 1000,
+                SharedStrings.Mode.SHARED, SharedStrings.Mode.INLINE)) {
+            // 模板已有 2 个共享字符串，新下标从 2 开始
+            strings.startAt(2);
+            assertEquals(2, strings.indexOf(0, "研发"));
+            assertEquals(3, strings.indexOf(0, "销售"));
+            assertEquals(2, strings.indexOf(0, "研发"));
+            assertEquals(-1, strings.indexOf(1, "a@example.com"));
+            assertEquals(2, strings.size());
+            assertEquals("<si><t>研发</t></si><si><t>销售</t></si>", spilled(strings));
+        }
+    }
+
+    @Test
+    void testEscapingAndWhitespace() throws Exception {
+        try (SharedStrings strings = new SharedStrings(dir.resolve("sst.xml"), 100, 1000, SharedStrings.Mode.SHARED)) {
+            strings.indexOf(0, "R&D <1>");
+            strings.indexOf(0, " 前导空格");
+            assertEquals("<si><t>R&amp;D &lt;1&gt;</t></si><si><t xml:space=\"preserve\"> 前导空格</t></si>",
+                    spilled(strings));
+        }
+    }
+
+    @Test
+    void testAutoSwitchesUniqueColumnToInline() throws Exception {
+        try (SharedStrings strings = new SharedStrings(dir.resolve("sst.xml"), 100_000, 10_000_000)) {
+            for (int i = 0; i < 1000; i++) {
+                // 第 0 列几乎不重复，第 1 列只有 3 个取值
+                assertTrue(strings.indexOf(0, "unique-" + i) >= 0);
+                assertTrue(strings.indexOf(1, "dept-" + i % 3) >= 0);
+            }
+            // 采样结束后第 0 列改为 inline，已进表的字符串仍然命中
+            assertEquals(-1, strings.indexOf(0, "unique-1000"));
+            assertEquals(-1, strings.indexOf(0, "unique-0"));
+            assertTrue(strings.indexOf(1, "dept-4") >= 0);
+            assertEquals(1004, strings.size());
+        }
+    }
+
+    @Test
+    void testLimitsFallBackToInline() throws Exception {
+        try (SharedStrings strings = new SharedStrings(dir.resolve("sst.xml"), 2, 10, SharedStrings.Mode.SHARED)) {
+            assertEquals(0, strings.indexOf(0, "aaaa"));
+            // 超过字符数上限
+            assertEquals(-1, strings.indexOf(0, "bbbbbbbbbbbb"));
+            assertEquals(1, strings.indexOf(0, "cccc"));
+            // 超过条目数上限，已有的仍然命中
+            assertEquals(-1, strings.indexOf(0, "d"));
+            assertEquals(0, strings.indexOf(0, "aaaa"));
+            assertEquals(2, strings.size());
+        }
+    }
+
+    @Test
+    void testNothingSpilled() {
+        try (SharedStrings strings = new SharedStrings(dir.resolve("sst.xml"), 100, 1000, SharedStrings.Mode.INLINE)) {
+            assertEquals("", spilled(strings));
+            assertFalse(Files.exists(dir.resolve("sst.xml")));
+        }
+    }
+
+    @Test
+    void testSpillStaysWithinReservedBytes() throws Exception {
+        int maxEntries = 50;
+        long maxChars = 400;
+        Path file = dir.resolve("sst.xml");
+        try (SharedStrings strings = new SharedStrings(file, maxEntries, maxChars, SharedStrings.Mode.SHARED)) {
+            // 接近最坏情况：需要转义的字符和三字节的汉字，首尾空白带 xml:space，一直写到去重表满
+            for (int i = 0; i < 1000; i++) {
+                strings.indexOf(0, i % 2 == 0 ? " &&&" + i + " " : "汉字" + i);
+            }
+            spilled(strings);
+            assertTrue(strings.size() > 0);
+            assertTrue(Files.size(file) <= SharedStrings.maxSpillBytes(maxEntries, maxChars));
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.ewancle.xlsx;
+
+import org.apache.poi.hssf.record.ArrayRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.SharedFormulaRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.util.LittleEndian;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XlsEventReaderTest {
+
+    private static final String STREAM = "Workbook";
+
+    @TempDir
+    Path dir;
+
+    /**
+     * 第 2 个 sheet：第 1 行各种类型，第 2 行缺失，第 3 行只有 C3，第 5、6 行是数组公式 {=UPPER(A5:A6)}
+     */
+    private static byte[] workbook() throws Exception {
+        try (HSSFWorkbook wb = new HSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            wb.createSheet("封面").createRow(0).createCell(0).setCellValue("跳过");
+            HSSFSheet sheet = wb.createSheet("数据");
+            CellStyle dateStyle = wb.createCellStyle();
+            dateStyle.setDataFormat(wb.createDataFormat().getFormat("yyyy-mm-dd hh:mm"));
+            HSSFRow row = sheet.createRow(0);
+            row.createCell(0).setCellValue("文本");
+            row.createCell(1).setCellValue(12.5);
+            row.createCell(2).setCellValue(true);
+            row.createCell(3).setCellValue(LocalDateTime.of(2024, 3, 1, 8, 30));
+            row.getCell(3).setCellStyle(dateStyle);
+            row.createCell(4).setCellFormula("B1*2");
+            row.getCell(4).setCellValue(25.0);
+            row.createCell(5).setCellErrorValue(FormulaError.DIV0);
+            row.createCell(6).setCellFormula("A1&\"!\"");
+            row.getCell(6).setCellValue("文本!");
+            sheet.createRow(2).createCell(2).setCellValue("C3");
+
+            sheet.createRow(4).createCell(0).setCellValue("ab");
+            sheet.createRow(5).createCell(0).setCellValue("cd");
+            sheet.setArrayFormula("UPPER(A5:A6)", CellRangeAddress.valueOf("B5:B6"));
+            sheet.getRow(4).getCell(1).setCellValue("AB");
+            sheet.getRow(5).getCell(1).setCellValue("CD");
+            wb.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    private Path write(byte[] xls) throws Exception {
+        return Files.write(dir.resolve("book.xls"), xls);
+    }
+
+    private static byte[] stream(byte[] xls) throws Exception {
+        try (POIFSFileSystem fs = new POIFSFileSystem(new ByteArrayInputStream(xls))) {
+            return fs.createDocumentInputStream(STREAM).readAllBytes();
+        }
+    }
+
+    /**
+     * Workbook 流里按顺序排列的记录 sid
+     */
+    private static List<Short> sids(byte[] stream) {
+        List<Short> sids = new ArrayList<>();
+        for (int off = 0; off + 4 <= stream.length; off += 4 + LittleEndian.getUShort(stream, off + 2)) {
+            sids.add(LittleEndian.getShort(stream, off));
+        }
+        return sids;
+    }
+
+    /**
+     * 在每条 FORMULA 记录后面插入一条 SHRFMLA，模拟 Excel 写出的共享公式布局（读取时不看记录偏移）
+     */
+    private static byte[] withSharedFormulas(byte[] xls) throws Exception {
+        byte[] stream = stream(xls);
+        byte[] shared = new SharedFormulaRecord().serialize();
+        ByteArrayOutputStream patched = new ByteArrayOutputStream();
+        for (int off = 0; off + 4 <= stream.length; ) {
+            int end = off + 4 + LittleEndian.getUShort(stream, off + 2);
+            patched.write(stream, off, end - off);
+            if (LittleEndian.getShort(stream, off) == FormulaRecord.sid) {
+                patched.write(shared);
+            }
+            off = end;
+        }
+        try (POIFSFileSystem fs = new POIFSFileSystem(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            fs.createDocument(new ByteArrayInputStream(patched.toByteArray()), STREAM);
+            fs.writeFilesystem(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static List<XlsxSheetReader.ParsedRow> readAll(Path file, int sheet, boolean text) throws Exception {
+        List<XlsxSheetReader.ParsedRow> rows = new ArrayList<>();
+        try (XlsEventReader reader = XlsEventReader.open(file, sheet, text)) {
+            reader.forEachRemaining(rows::add);
+        }
+        return rows;
+    }
+
+    private static void assertDataRows(List<XlsxSheetReader.ParsedRow> rows) {
+        assertEquals(List.of(1, 3, 5, 6), rows.stream().map(XlsxSheetReader.ParsedRow::rowNum).toList());
+        assertArrayEquals(new Object[]{"文本", 12.5, true, LocalDateTime.of(2024, 3, 1, 8, 30), 25.0,
+                FormulaError.DIV0.getString(), "文本!"}, rows.get(0).values());
+        assertArrayEquals(new Object[]{null, null, "C3"}, rows.get(1).values());
+        assertArrayEquals(new Object[]{"ab", "AB"}, rows.get(2).values());
+        assertArrayEquals(new Object[]{"cd", "CD"}, rows.get(3).values());
+    }
+
+    @Test
+    void testCellTypes() throws Exception {
+        assertDataRows(readAll(write(workbook()), 1, false));
+    }
+
+    @Test
+    void testTextMode() throws Exception {
+        List<XlsxSheetReader.ParsedRow> rows = readAll(write(workbook()), 1, true);
+        assertArrayEquals(new Object[]{"文本", "12.5", "true", "2024-03-01T08:30:00", "25",
+                FormulaError.DIV0.getString(), "文本!"}, rows.get(0).values());
+    }
+
+    @Test
+    void testSheetSelection() throws Exception {
+        Path file = write(workbook());
+        List<XlsxSheetReader.ParsedRow> first = readAll(file, 0, false);
+        assertEquals(1, first.size());
+        assertArrayEquals(new Object[]{"跳过"}, first.get(0).values());
+        assertTrue(readAll(file, 2, false).isEmpty());
+
+        try (XlsEventReader reader = XlsEventReader.open(file, 1, false)) {
+            assertTrue(reader.hasNext());
+            assertEquals(List.of("封面", "数据"), reader.sheetNames());
+        }
+    }
+
+    @Test
+    void testArrayFormulaStringResult() throws Exception {
+        byte[] xls = workbook();
+        // 数组公式区域的第一个单元格：FORMULA、ARRAY、STRING
+        List<Short> sids = sids(stream(xls));
+        int array = sids.indexOf(ArrayRecord.sid);
+        assertEquals(List.of(FormulaRecord.sid, ArrayRecord.sid, StringRecord.sid), sids.subList(array - 1, array + 2));
+
+        assertDataRows(readAll(write(xls), 1, false));
+    }
+
+    @Test
+    void testSharedFormulaStringResult() throws Exception {
+        byte[] xls = withSharedFormulas(workbook());
+        List<Short> sids = sids(stream(xls));
+        int shared = sids.indexOf(SharedFormulaRecord.sid);
+        assertTrue(shared > 0);
+        assertTrue(sids.subList(shared, sids.size()).contains(StringRecord.sid));
+
+        assertDataRows(readAll(write(xls), 1, false));
+        assertEquals("文本!", readAll(write(xls), 1, true).get(0).values()[6]);
+    }
+
+    @Test
+    void testRejectsNonWorkbook() throws Exception {
+        Path file = Files.writeString(dir.resolve("bad.xls"), "not an ole2 file");
+        assertThrows(Exception.class, () -> XlsEventReader.open(file, 0, false));
+    }
+}
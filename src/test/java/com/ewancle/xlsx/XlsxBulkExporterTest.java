@@ -0,0 +1,155 @@
+package com.ewancle.xlsx;
+
+import com.ewancle.storage.TempFileManager;
+import com.ewancle.storage.TestTempFiles;
+import io.smallrye.mutiny.Multi;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XlsxBulkExporterTest {
+
+    @TempDir
+    Path dir;
+
+    private final Vertx vertx = Vertx.vertx();
+    private TempFileManager tempFiles;
+
+    private XlsxBulkExporter exporter(int maxRowsPerSheet, int parallelism) throws Exception {
+        tempFiles = TestTempFiles.start(vertx, dir);
+        XlsxBulkExporter exporter = new XlsxBulkExporter();
+        exporter.vertx = vertx;
+        exporter.tempFiles = tempFiles;
+        exporter.maxRowsPerSheet = maxRowsPerSheet;
+        exporter.sheetParallelism = parallelism;
+        exporter.level = 1;
+        return exporter;
+    }
+
+    @AfterEach
+    void stop() {
+        if (tempFiles != null) {
+            TestTempFiles.stop(tempFiles);
+        }
+        vertx.closeAndAwait();
+    }
+
+    private static byte[] collect(Multi<Buffer> output) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Buffer b : output.collect().asList().await().indefinitely()) {
+            out.writeBytes(b.getBytes());
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void testSplitsIntoSheetsWithHeaders() throws Exception {
+        XlsxBulkExporter exporter = exporter(10, 2);
+
+        // 每个 sheet 9 行数据 + 表头：9 + 9 + 7
+        byte[] xlsx = collect(exporter.export("员工", List.of("ID", "名称"), 25, i -> List.of(i, "n" + i)));
+
+        try (XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(xlsx))) {
+            assertEquals(3, wb.getNumberOfSheets());
+            assertEquals("员工", wb.getSheetName(0));
+            assertEquals("员工 (2)", wb.getSheetName(1));
+            assertEquals("员工 (3)", wb.getSheetName(2));
+            long expected = 0;
+            for (int s = 0; s < 3; s++) {
+                XSSFSheet sheet = wb.getSheetAt(s);
+                assertEquals("ID", sheet.getRow(0).getCell(0).getStringCellValue());
+                assertTrue(sheet.getRow(0).getCell(0).getCellStyle().getFont().getBold());
+                for (int r = 1; r <= sheet.getLastRowNum(); r++) {
+                    assertEquals(expected, (long) sheet.getRow(r).getCell(0).getNumericCellValue());
+                    assertEquals("n" + expected, sheet.getRow(r).getCell(1).getStringCellValue());
+                    expected++;
+                }
+            }
+            assertEquals(25, expected);
+            assertEquals(7, wb.getSheetAt(2).getLastRowNum());
+        }
+        assertEquals(0, tempFiles.stats().liveFiles());
+    }
+
+    @Test
+    void testSlowFirstSheetKeepsOrderAndBoundsLookahead() throws Exception {
+        XlsxBulkExporter exporter = exporter(20, 2);
+        AtomicLong peakLiveFiles = new AtomicLong();
+
+        byte[] xlsx = collect(exporter.export("Data", List.of(), 200, i -> {
+            if (i < 20) {
+                // 第一个 sheet 明显慢于其他 sheet
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            peakLiveFiles.accumulateAndGet(tempFiles.stats().liveFiles(), Math::max);
+            return List.of(i);
+        }));
+
+        try (XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(xlsx))) {
+            assertEquals(10, wb.getNumberOfSheets());
+            for (int s = 0; s < 10; s++) {
+                XSSFSheet sheet = wb.getSheetAt(s);
+                assertEquals(19, sheet.getLastRowNum());
+                assertEquals(s * 20, (long) sheet.getRow(0).getCell(0).getNumericCellValue());
+            }
+        }
+        // 领先已写出的 sheet 最多 2 * parallelism 个
+        assertTrue(peakLiveFiles.get() <= 4, "peak temp files " + peakLiveFiles.get());
+        assertEquals(0, tempFiles.stats().liveFiles());
+    }
+
+    @Test
+    void testEmptyExportHasOneSheet() throws Exception {
+        XlsxBulkExporter exporter = exporter(XlsxBulkExporter.EXCEL_MAX_ROWS, 0);
+
+        byte[] xlsx = collect(exporter.export("Empty", List.of("A"), 0, i -> List.of()));
+
+        try (XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(xlsx))) {
+            assertEquals(1, wb.getNumberOfSheets());
+            assertEquals(0, wb.getSheetAt(0).getLastRowNum());
+        }
+    }
+
+    @Test
+    void testCancelDeletesGeneratedSheets() throws Exception {
+        XlsxBulkExporter exporter = exporter(100, 2);
+
+        List<Buffer> first = exporter.export("Data", List.of(), 2000, i -> List.of(i))
+                .select().first(3)
+                .collect().asList().await().indefinitely();
+
+        assertEquals(3, first.size());
+        for (int i = 0; i < 100 && tempFiles.stats().liveFiles() > 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, tempFiles.stats().liveFiles());
+    }
+
+    @Test
+    void testSheetTitle() {
+        assertEquals("a_b_c", XlsxBulkExporter.sheetTitle("a/b?c", 1));
+        assertEquals("x".repeat(27) + " (2)", XlsxBulkExporter.sheetTitle("x".repeat(40), 2));
+    }
+
+    @Test
+    void testRejectsTooSmallSheetLimit() throws Exception {
+        XlsxBulkExporter exporter = exporter(1, 1);
+        assertThrows(IllegalStateException.class, () -> exporter.export("Data", List.of("A"), 10, i -> List.of()));
+    }
+}
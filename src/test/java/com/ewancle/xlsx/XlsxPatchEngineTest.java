@@ -0,0 +1,109 @@
+package com.ewancle.xlsx;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XlsxPatchEngineTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * 第一个 sheet：表头 + 两行数据 + 第 6 行（中间空 3 行）；第二个 sheet 不应被改动
+     */
+    private Path source() throws Exception {
+        Path file = dir.resolve("source.xlsx");
+        try (XSSFWorkbook wb = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            Sheet data = wb.createSheet("数据");
+            Row header = data.createRow(0);
+            header.createCell(0).setCellValue("姓名");
+            header.createCell(1).setCellValue("薪资");
+            for (int i = 1; i <= 2; i++) {
+                Row row = data.createRow(i);
+                row.createCell(0).setCellValue("员工" + i);
+                row.createCell(1).setCellValue(10000 + i);
+            }
+            data.createRow(5).createCell(0).setCellValue("末行");
+            wb.createSheet("其它").createRow(0).createCell(0).setCellValue("不变");
+            wb.write(out);
+        }
+        return file;
+    }
+
+    @Test
+    void testReplaceAndAppend() throws Exception {
+        Path target = dir.resolve("target.xlsx");
+        SheetPatch patch = new SheetPatch(0)
+                .replace(1, List.of("改名", 20000))
+                // 原来不存在的行：插在第 6 行前面
+                .replace(3, List.of("插入", true))
+                .append(List.of("新增1", 1.5))
+                .append(Arrays.asList("新增2", null, "第三列"));
+
+        XlsxPatchEngine.Result result = XlsxPatchEngine.apply(source(), target, patch);
+
+        assertEquals(2, result.appendedRows());
+        assertEquals(2, result.replacedRows());
+        assertEquals(8, result.lastRow());
+        try (InputStream in = Files.newInputStream(target); XSSFWorkbook wb = new XSSFWorkbook(in)) {
+            XSSFSheet sheet = wb.getSheetAt(0);
+            assertEquals("改名", sheet.getRow(1).getCell(0).getStringCellValue());
+            assertEquals(20000, sheet.getRow(1).getCell(1).getNumericCellValue());
+            assertEquals("员工2", sheet.getRow(2).getCell(0).getStringCellValue());
+            assertEquals("插入", sheet.getRow(3).getCell(0).getStringCellValue());
+            assertTrue(sheet.getRow(3).getCell(1).getBooleanCellValue());
+            assertEquals("末行", sheet.getRow(5).getCell(0).getStringCellValue());
+            assertEquals("新增1", sheet.getRow(6).getCell(0).getStringCellValue());
+            assertEquals(1.5, sheet.getRow(6).getCell(1).getNumericCellValue());
+            assertEquals("新增2", sheet.getRow(7).getCell(0).getStringCellValue());
+            assertNull(sheet.getRow(7).getCell(1));
+            assertEquals("第三列", sheet.getRow(7).getCell(2).getStringCellValue());
+            assertEquals("A1:C8", sheet.getCTWorksheet().getDimension().getRef());
+            assertEquals("不变", wb.getSheetAt(1).getRow(0).getCell(0).getStringCellValue());
+        }
+    }
+
+    @Test
+    void testPatchSecondSheet() throws Exception {
+        Path target = dir.resolve("target.xlsx");
+        XlsxPatchEngine.apply(source(), target, new SheetPatch(1).append(List.of("追加")));
+
+        try (InputStream in = Files.newInputStream(target); XSSFWorkbook wb = new XSSFWorkbook(in)) {
+            assertEquals("追加", wb.getSheetAt(1).getRow(1).getCell(0).getStringCellValue());
+            assertEquals(5, wb.getSheetAt(0).getLastRowNum());
+        }
+    }
+
+    @Test
+    void testDropCalcChainReferences() throws Exception {
+        String rels = """
+                <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+                <Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">\
+                <Relationship Id="rId1" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet" Target="worksheets/sheet1.xml"/>\
+                <Relationship Id="rId9" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/calcChain" Target="calcChain.xml"/>\
+                </Relationships>""";
+        StringWriter out = new StringWriter();
+        XlsxPatchEngine.dropReferences(new ByteArrayInputStream(rels.getBytes(StandardCharsets.UTF_8)), out,
+                "/xl/calcChain.xml", "calcChain.xml");
+
+        String xml = out.toString();
+        assertTrue(xml.contains("worksheets/sheet1.xml"));
+        assertFalse(xml.contains("calcChain"));
+    }
+}
@@ -0,0 +1,137 @@
+package com.ewancle.xlsx;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XlsxSheetReaderTest {
+
+    @TempDir
+    Path dir;
+
+    private Path workbook() throws Exception {
+        Path file = dir.resolve("book.xlsx");
+        try (XSSFWorkbook wb = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            XSSFSheet types = wb.createSheet("类型");
+            CellStyle dateStyle = wb.createCellStyle();
+            dateStyle.setDataFormat(wb.createDataFormat().getFormat("yyyy-mm-dd hh:mm"));
+            Row row = types.createRow(0);
+            row.createCell(0).setCellValue("文本");
+            row.createCell(1).setCellValue(12.5);
+            row.createCell(2).setCellValue(true);
+            row.createCell(3).setCellValue(LocalDateTime.of(2024, 3, 1, 8, 30));
+            row.getCell(3).setCellStyle(dateStyle);
+            row.createCell(4).setCellFormula("B1*2");
+            row.createCell(5).setCellErrorValue(FormulaError.DIV0.getCode());
+            XSSFRichTextString rich = new XSSFRichTextString("富文本");
+            rich.applyFont(0, 1, wb.createFont());
+            row.createCell(6).setCellValue(rich);
+            // 第 2 行缺失，第 3 行只有第 3 列
+            types.createRow(2).createCell(2).setCellValue("C3");
+            wb.getCreationHelper().createFormulaEvaluator().evaluateAll();
+
+            for (int s = 1; s <= 2; s++) {
+                XSSFSheet sheet = wb.createSheet("数据" + s);
+                for (int i = 0; i < 1000; i++) {
+                    Row r = sheet.createRow(i);
+                    r.createCell(0).setCellValue(s * 10000 + i);
+                    r.createCell(1).setCellValue("s" + s + "-" + i);
+                }
+            }
+            wb.write(out);
+        }
+        return file;
+    }
+
+    private static List<XlsxSheetReader.ParsedRow> readAll(XlsxSheetReader reader, XlsxSheetReader.SheetInfo sheet)
+            throws Exception {
+        List<XlsxSheetReader.ParsedRow> rows = new ArrayList<>();
+        try (XlsxSheetReader.SheetRows it = reader.rows(sheet)) {
+            it.forEachRemaining(rows::add);
+        }
+        return rows;
+    }
+
+    @Test
+    void testCellTypes() throws Exception {
+        try (XlsxSheetReader reader = XlsxSheetReader.open(workbook())) {
+            List<XlsxSheetReader.ParsedRow> rows = readAll(reader, reader.sheets().get(0));
+
+            assertEquals(2, rows.size());
+            assertEquals(1, rows.get(0).rowNum());
+            assertArrayEquals(new Object[]{"文本", 12.5, true, LocalDateTime.of(2024, 3, 1, 8, 30), 25.0,
+                    FormulaError.DIV0.getString(), "富文本"}, rows.get(0).values());
+            assertEquals(3, rows.get(1).rowNum());
+            assertArrayEquals(new Object[]{null, null, "C3"}, rows.get(1).values());
+        }
+    }
+
+    @Test
+    void testSelectByNameOrIndex() throws Exception {
+        try (XlsxSheetReader reader = XlsxSheetReader.open(workbook())) {
+            assertEquals(List.of("类型", "数据1", "数据2"), reader.sheets().stream().map(XlsxSheetReader.SheetInfo::name).toList());
+            assertEquals(reader.sheets(), reader.select(List.of()));
+            // 结果按 workbook 顺序、去重
+            assertEquals(List.of(reader.sheets().get(0), reader.sheets().get(2)),
+                    reader.select(List.of("数据2", "0", " 类型 ")));
+            assertThrows(IllegalArgumentException.class, () -> reader.select(List.of("不存在")));
+            assertThrows(IllegalArgumentException.class, () -> reader.select(List.of("3")));
+        }
+    }
+
+    @Test
+    void testSheetsReadConcurrently() throws Exception {
+        try (XlsxSheetReader reader = XlsxSheetReader.open(workbook())) {
+            // 两个 sheet 在不同线程上交替读取
+            List<CompletableFuture<List<XlsxSheetReader.ParsedRow>>> futures = new ArrayList<>();
+            for (XlsxSheetReader.SheetInfo sheet : reader.select(List.of("1", "2"))) {
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return readAll(reader, sheet);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }));
+            }
+            for (int s = 1; s <= 2; s++) {
+                List<XlsxSheetReader.ParsedRow> rows = futures.get(s - 1).get();
+                assertEquals(1000, rows.size());
+                for (int i = 0; i < rows.size(); i++) {
+                    assertEquals(i + 1, rows.get(i).rowNum());
+                    assertEquals((double) (s * 10000 + i), rows.get(i).values()[0]);
+                    assertEquals("s" + s + "-" + i, rows.get(i).values()[1]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testColumnOf() {
+        assertEquals(0, XlsxSheetReader.columnOf("A1"));
+        assertEquals(25, XlsxSheetReader.columnOf("Z9"));
+        assertEquals(26, XlsxSheetReader.columnOf("AA1"));
+        assertEquals(54, XlsxSheetReader.columnOf("BC12"));
+    }
+
+    @Test
+    void testRejectsNonWorkbook() throws Exception {
+        Path file = Files.writeString(dir.resolve("bad.xlsx"), "not a zip");
+        assertThrows(IOException.class, () -> XlsxSheetReader.open(file));
+    }
+}
@@ -0,0 +1,197 @@
+package com.ewancle.xlsx;
+
+import com.ewancle.storage.BufferPipeInputStream;
+import com.ewancle.storage.TempFileManager;
+import com.ewancle.storage.TestTempFiles;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.mutiny.core.Vertx;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XlsxStreamingReaderTest {
+
+    private static final int ROWS = 20_000;
+
+    @TempDir
+    Path dir;
+
+    private final Vertx vertx = Vertx.vertx();
+    private TempFileManager tempFiles;
+
+    @AfterEach
+    void stop() {
+        if (tempFiles != null) {
+            TestTempFiles.stop(tempFiles);
+        }
+        vertx.closeAndAwait();
+    }
+
+    /**
+     * POI 写出的顺序：sharedStrings、styles、workbook 在 sheet 之前
+     */
+    private static byte[] workbook() throws Exception {
+        try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            wb.createSheet("封面").createRow(0).createCell(0).setCellValue("跳过");
+            Sheet sheet = wb.createSheet("数据");
+            for (int i = 0; i < ROWS; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue("部门" + (i % 10));
+                row.createCell(1).setCellValue(i);
+            }
+            wb.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * 把 sharedStrings.xml 挪到所有 sheet 之后（Excel 有时这样写）
+     */
+    private static byte[] sharedStringsLast(byte[] xlsx) throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(xlsx))) {
+            for (ZipEntry e = in.getNextEntry(); e != null; e = in.getNextEntry()) {
+                entries.put(e.getName(), in.readAllBytes());
+            }
+        }
+        byte[] sst = entries.remove("xl/sharedStrings.xml");
+        entries.put("xl/sharedStrings.xml", sst);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(e.getKey()));
+                zip.write(e.getValue());
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private XlsxStreamingReader reader(BufferPipeInputStream pipe, int sheetIndex, long expectedBytes) throws Exception {
+        tempFiles = TestTempFiles.start(vertx, dir);
+        return new XlsxStreamingReader(pipe, tempFiles, sheetIndex, expectedBytes);
+    }
+
+    private static BufferPipeInputStream pipe() {
+        return new BufferPipeInputStream(1 << 20, () -> {}, () -> {});
+    }
+
+    /**
+     * 在另一个线程上按 8KB 一块写入 [from, to)
+     */
+    private static Thread feed(BufferPipeInputStream pipe, byte[] data, int from, int to, CountDownLatch before,
+                               boolean end) {
+        Thread t = new Thread(() -> {
+            try {
+                if (before != null && !before.await(10, TimeUnit.SECONDS)) {
+                    pipe.fail(new IllegalStateException("rows were not parsed before the upload finished"));
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (int off = from; off < to; off += 8192) {
+                pipe.write(Buffer.buffer(Arrays.copyOfRange(data, off, Math.min(to, off + 8192))));
+            }
+            if (end) {
+                pipe.end();
+            }
+        });
+        t.start();
+        return t;
+    }
+
+    private static void assertRows(List<XlsxSheetReader.ParsedRow> rows) {
+        assertEquals(ROWS, rows.size());
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(i + 1, rows.get(i).rowNum());
+            assertArrayEquals(new Object[]{"部门" + (i % 10), (double) i}, rows.get(i).values());
+        }
+    }
+
+    @Test
+    void testRowsParsedBeforeUploadEnds() throws Exception {
+        byte[] xlsx = workbook();
+        BufferPipeInputStream pipe = pipe();
+        CountDownLatch firstRow = new CountDownLatch(1);
+        int half = xlsx.length / 2;
+        // 后一半要等第一行解析出来才开始发送
+        feed(pipe, xlsx, 0, half, null, false);
+        feed(pipe, xlsx, half, xlsx.length, firstRow, true);
+
+        List<XlsxSheetReader.ParsedRow> rows = new ArrayList<>();
+        try (XlsxStreamingReader reader = reader(pipe, 1, xlsx.length)) {
+            assertTrue(reader.hasNext());
+            rows.add(reader.next());
+            firstRow.countDown();
+            reader.forEachRemaining(rows::add);
+        }
+
+        assertRows(rows);
+        assertEquals(0, tempFiles.stats().liveFiles());
+    }
+
+    @Test
+    void testSheetBeforeSharedStringsIsSpooled() throws Exception {
+        byte[] xlsx = sharedStringsLast(workbook());
+        BufferPipeInputStream pipe = pipe();
+        feed(pipe, xlsx, 0, xlsx.length, null, true);
+
+        List<XlsxSheetReader.ParsedRow> rows = new ArrayList<>();
+        try (XlsxStreamingReader reader = reader(pipe, 1, 0)) {
+            reader.forEachRemaining(rows::add);
+        }
+
+        assertRows(rows);
+        assertEquals(0, tempFiles.stats().liveFiles());
+    }
+
+    @Test
+    void testSpooledSheetReservesQuota() throws Exception {
+        byte[] xlsx = sharedStringsLast(workbook());
+        BufferPipeInputStream pipe = pipe();
+        feed(pipe, xlsx, 0, xlsx.length, null, true);
+
+        List<XlsxSheetReader.ParsedRow> rows = new ArrayList<>();
+        try (XlsxStreamingReader reader = reader(pipe, 1, xlsx.length)) {
+            reader.forEachRemaining(rows::add);
+            // 镜像文件按上传大小预留；暂存的 sheet XML（条目大小在 data descriptor 里）按上传大小的倍数预留
+            assertTrue(tempFiles.stats().reservedBytes() > 2L * xlsx.length);
+        }
+
+        assertRows(rows);
+        assertEquals(0, tempFiles.stats().reservedBytes());
+    }
+
+    @Test
+    void testTruncatedUploadFails() throws Exception {
+        byte[] xlsx = workbook();
+        BufferPipeInputStream pipe = pipe();
+        feed(pipe, xlsx, 0, xlsx.length * 2 / 3, null, true);
+
+        try (XlsxStreamingReader reader = reader(pipe, 1, 0)) {
+            assertThrows(UncheckedIOException.class, () -> reader.forEachRemaining(row -> {}));
+        }
+        assertEquals(0, tempFiles.stats().liveFiles());
+    }
+}
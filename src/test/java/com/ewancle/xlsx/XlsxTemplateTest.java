@@ -0,0 +1,122 @@
+package com.ewancle.xlsx;
+
+import io.smallrye.mutiny.Multi;
+import io.vertx.mutiny.core.buffer.Buffer;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XlsxTemplateTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * 表头一行 + 只有格式的原型行（第二列设置了数字格式）
+     */
+    private static byte[] template(boolean prototypeRow) throws Exception {
+        try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = wb.createSheet("员工");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("部门");
+            header.createCell(1).setCellValue("薪资");
+            if (prototypeRow) {
+                CellStyle money = wb.createCellStyle();
+                money.setDataFormat(wb.createDataFormat().getFormat("#,##0.00"));
+                Row proto = sheet.createRow(1);
+                proto.createCell(0);
+                proto.createCell(1).setCellStyle(money);
+            }
+            wb.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] collect(Multi<Buffer> output) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Buffer b : output.collect().asList().await().indefinitely()) {
+            out.writeBytes(b.getBytes());
+        }
+        return out.toByteArray();
+    }
+
+    private static Multi<List<?>> rows(int count) {
+        List<List<?>> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(Arrays.asList(i % 2 == 0 ? "研发" : "销售", 1000.5 + i));
+        }
+        return Multi.createFrom().iterable(rows);
+    }
+
+    @Test
+    void testPrototypeRowStylesData() throws Exception {
+        XlsxTemplate template = XlsxTemplate.compile(template(true), 0);
+        assertEquals(2, template.firstDataRow());
+
+        byte[] xlsx = collect(template.render(rows(1500)));
+
+        try (XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(xlsx))) {
+            XSSFSheet sheet = wb.getSheetAt(0);
+            assertEquals("部门", sheet.getRow(0).getCell(0).getStringCellValue());
+            // 原型行本身不输出，数据从第二行开始
+            assertEquals(1500, sheet.getLastRowNum());
+            assertEquals("研发", sheet.getRow(1).getCell(0).getStringCellValue());
+            assertEquals("销售", sheet.getRow(1500).getCell(0).getStringCellValue());
+            assertEquals(1000.5 + 1499, sheet.getRow(1500).getCell(1).getNumericCellValue());
+            assertEquals("#,##0.00", sheet.getRow(1).getCell(1).getCellStyle().getDataFormatString());
+        }
+    }
+
+    @Test
+    void testSharedStringsAppendAfterTemplateStrings() throws Exception {
+        XlsxTemplate template = XlsxTemplate.compile(template(false), 0);
+
+        byte[] xlsx;
+        try (SharedStrings strings = new SharedStrings(dir.resolve("sst.xml"), 1000, 100_000,
+                SharedStrings.Mode.SHARED)) {
+            xlsx = collect(template.render(rows(10), strings));
+            assertEquals(2, strings.size());
+        }
+
+        try (XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(xlsx))) {
+            // 模板的两个表头字符串在前，新增的两个追加在后
+            assertEquals(4, wb.getSharedStringSource().getUniqueCount());
+            XSSFSheet sheet = wb.getSheetAt(0);
+            assertEquals("薪资", sheet.getRow(0).getCell(1).getStringCellValue());
+            assertEquals("研发", sheet.getRow(1).getCell(0).getStringCellValue());
+            assertEquals("销售", sheet.getRow(10).getCell(0).getStringCellValue());
+        }
+    }
+
+    @Test
+    void testEmptyData() throws Exception {
+        XlsxTemplate template = XlsxTemplate.compile(template(true), 0);
+
+        byte[] xlsx = collect(template.render(Multi.createFrom().empty()));
+
+        try (XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(xlsx))) {
+            assertEquals(0, wb.getSheetAt(0).getLastRowNum());
+            assertEquals("薪资", wb.getSheetAt(0).getRow(0).getCell(1).getStringCellValue());
+        }
+    }
+
+    @Test
+    void testMissingSheet() throws Exception {
+        byte[] xlsx = template(false);
+        assertThrows(IOException.class, () -> XlsxTemplate.compile(xlsx, 3));
+    }
+}
@@ -0,0 +1,192 @@
+package com.ewancle.zip;
+
+import com.ewancle.model.FileMetadata;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZipArchiveStreamerTest {
+
+    @TempDir
+    Path dir;
+
+    private final Vertx vertx = Vertx.vertx();
+
+    @AfterEach
+    void close() {
+        vertx.closeAndAwait();
+    }
+
+    private ZipArchiveStreamer streamer(int parallelism) {
+        ZipArchiveStreamer streamer = new ZipArchiveStreamer();
+        streamer.vertx = vertx;
+        streamer.parallelism = parallelism;
+        // 超过 1000 字节的走 AsyncFile 流式路径
+        streamer.inMemoryEntryBytes = 1000;
+        streamer.level = 6;
+        return streamer;
+    }
+
+    private static byte[] text(int size) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append("第").append(i).append("行,张三,技术部\n");
+        }
+        return sb.substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    private ZipArchiveStreamer.Source plain(String storedName, String originalName, String mime, byte[] data)
+            throws IOException {
+        Path path = Files.write(dir.resolve(storedName), data);
+        FileMetadata meta = new FileMetadata(storedName, originalName, data.length, mime, null, crc(data),
+                1_700_000_000_000L, null, data.length);
+        return new ZipArchiveStreamer.Source(meta, path);
+    }
+
+    /**
+     * 和 UploadStore 一样以 gzip 落盘
+     */
+    private ZipArchiveStreamer.Source gzipped(String storedName, String originalName, byte[] data) throws IOException {
+        Path path = dir.resolve(storedName);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(path))) {
+            out.write(data);
+        }
+        FileMetadata meta = new FileMetadata(storedName, originalName, data.length, "text/csv", null, crc(data),
+                1_700_000_000_000L, FileMetadata.GZIP, Files.size(path));
+        return new ZipArchiveStreamer.Source(meta, path);
+    }
+
+    private static byte[] collect(ZipArchiveStreamer streamer, List<ZipArchiveStreamer.Source> sources) {
+        Buffer all = Buffer.buffer();
+        streamer.stream(sources).subscribe().asStream().forEach(all::appendBuffer);
+        return all.getBytes();
+    }
+
+    private Map<String, byte[]> readWithCentralDirectory(byte[] zip) throws IOException {
+        Path file = Files.write(dir.resolve("out.zip"), zip);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipFile zf = new ZipFile(file.toFile(), StandardCharsets.UTF_8)) {
+            for (ZipEntry e : zf.stream().toList()) {
+                entries.put(e.getName(), zf.getInputStream(e).readAllBytes());
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    void testAllEntryKindsRoundTrip() throws Exception {
+        byte[] small = text(500);
+        byte[] largeText = text(200_000);
+        byte[] largeXlsx = random(50_000);
+        byte[] gzipText = text(30_000);
+        List<ZipArchiveStreamer.Source> sources = List.of(
+                plain("1-small.txt", "小文件.txt", "text/plain", small),
+                plain("2-large.csv", "大文件.csv", "text/csv", largeText),
+                plain("3-report.xlsx", "报表.xlsx",
+                        "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", largeXlsx),
+                gzipped("4-gzipped.csv", "压缩存储.csv", gzipText));
+
+        byte[] zip = collect(streamer(2), sources);
+        Map<String, byte[]> entries = readWithCentralDirectory(zip);
+
+        assertEquals(List.of("小文件.txt", "大文件.csv", "报表.xlsx", "压缩存储.csv"), new ArrayList<>(entries.keySet()));
+        assertArrayEquals(small, entries.get("小文件.txt"));
+        assertArrayEquals(largeText, entries.get("大文件.csv"));
+        assertArrayEquals(largeXlsx, entries.get("报表.xlsx"));
+        assertArrayEquals(gzipText, entries.get("压缩存储.csv"));
+
+        try (ZipFile zf = new ZipFile(dir.resolve("out.zip").toFile(), StandardCharsets.UTF_8)) {
+            assertEquals(ZipEntry.DEFLATED, zf.getEntry("大文件.csv").getMethod());
+            assertEquals(ZipEntry.STORED, zf.getEntry("报表.xlsx").getMethod());
+            assertEquals(ZipEntry.DEFLATED, zf.getEntry("压缩存储.csv").getMethod());
+            assertEquals(crc(largeXlsx), zf.getEntry("报表.xlsx").getCrc());
+        }
+    }
+
+    @Test
+    void testReadableAsStream() throws Exception {
+        // 顺序读取（只看本地头和 data descriptor），流式客户端的解包方式
+        byte[] small = text(300);
+        byte[] large = text(100_000);
+        byte[] zip = collect(streamer(4), List.of(
+                plain("a", "a.txt", "text/plain", small),
+                plain("b", "b.txt", "text/plain", large)));
+
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip), StandardCharsets.UTF_8)) {
+            for (ZipEntry e = in.getNextEntry(); e != null; e = in.getNextEntry()) {
+                entries.put(e.getName(), in.readAllBytes());
+            }
+        }
+        assertArrayEquals(small, entries.get("a.txt"));
+        assertArrayEquals(large, entries.get("b.txt"));
+    }
+
+    @Test
+    void testDuplicateNamesAndOrderAcrossGroups() throws Exception {
+        List<ZipArchiveStreamer.Source> sources = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            sources.add(plain("s" + i, "导出.txt", "text/plain", ("内容" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+        sources.add(plain("n", "说明", "text/plain", new byte[0]));
+        sources.add(plain("n2", "说明", "text/plain", new byte[0]));
+
+        Map<String, byte[]> entries = readWithCentralDirectory(collect(streamer(3), sources));
+
+        assertEquals(List.of("导出.txt", "导出 (1).txt", "导出 (2).txt", "导出 (3).txt", "导出 (4).txt",
+                "导出 (5).txt", "导出 (6).txt", "说明", "说明 (1)"), new ArrayList<>(entries.keySet()));
+        assertEquals("内容6", new String(entries.get("导出 (6).txt"), StandardCharsets.UTF_8));
+        assertEquals(0, entries.get("说明 (1)").length);
+    }
+
+    @Test
+    void testEmptyArchive() throws Exception {
+        byte[] zip = collect(streamer(4), List.of());
+        assertEquals(22, zip.length);
+        assertTrue(readWithCentralDirectory(zip).isEmpty());
+    }
+
+    @Test
+    void testMissingFileFailsStream() throws Exception {
+        ZipArchiveStreamer.Source missing = plain("gone", "gone.csv", "text/csv", text(5000));
+        Files.delete(missing.path());
+        assertThrows(Exception.class, () -> streamer(2).stream(List.of(missing))
+                .collect().asList().await().atMost(Duration.ofSeconds(10)));
+        // 不能在存储目录里留下空文件
+        assertFalse(Files.exists(missing.path()));
+    }
+}
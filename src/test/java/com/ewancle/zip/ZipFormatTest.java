@@ -0,0 +1,94 @@
+package com.ewancle.zip;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZipFormatTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testDosTime() {
+        long millis = LocalDateTime.of(2024, 3, 15, 10, 30, 45).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long t = ZipFormat.dosTime(millis);
+        assertEquals(2024 - 1980, t >>> 25);
+        assertEquals(3, (t >>> 21) & 0xF);
+        assertEquals(15, (t >>> 16) & 0x1F);
+        assertEquals(10, (t >>> 11) & 0x1F);
+        assertEquals(30, (t >>> 5) & 0x3F);
+        // 秒按 2 秒精度
+        assertEquals(22, t & 0x1F);
+        // 1980 年以前统一为 1980-01-01
+        assertEquals((1 << 21) | (1 << 16), ZipFormat.dosTime(0));
+    }
+
+    @Test
+    void testZip64DescriptorEntry() throws Exception {
+        byte[] raw = "ZIP64 条目，大小写在 data descriptor 里".repeat(50).getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(6, true);
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] buf = new byte[raw.length + 64];
+        int n = deflater.deflate(buf);
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(raw);
+
+        ZipEntryInfo e = new ZipEntryInfo("大文件.txt", ZipEntryInfo.DEFLATED, System.currentTimeMillis(),
+                0, 0, 0, true, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        e.offset = 0;
+        out.writeBytes(ZipFormat.localHeader(e));
+        out.write(buf, 0, n);
+        e.complete(crc.getValue(), n, raw.length);
+        out.writeBytes(ZipFormat.dataDescriptor(e));
+        long cdOffset = out.size();
+        out.writeBytes(ZipFormat.centralDirectory(List.of(e), cdOffset));
+        byte[] zip = out.toByteArray();
+
+        // 按中央目录读取；顺序读取的解压器按实际字节数判断 data descriptor 的宽度，小条目强制 ZIP64 时不适用
+        Path file = Files.write(dir.resolve("zip64.zip"), zip);
+        try (ZipFile zf = new ZipFile(file.toFile(), StandardCharsets.UTF_8)) {
+            ZipEntry entry = zf.getEntry("大文件.txt");
+            assertEquals(raw.length, entry.getSize());
+            assertEquals(crc.getValue(), entry.getCrc());
+            assertArrayEquals(raw, zf.getInputStream(entry).readAllBytes());
+        }
+    }
+
+    @Test
+    void testZip64EndRecordForManyEntries() throws Exception {
+        int count = 0xFFFF + 10;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<ZipEntryInfo> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ZipEntryInfo e = new ZipEntryInfo("e" + i, ZipEntryInfo.STORED, 0, 0, 0, 0, false, false);
+            e.offset = out.size();
+            out.writeBytes(ZipFormat.localHeader(e));
+            entries.add(e);
+        }
+        out.writeBytes(ZipFormat.centralDirectory(entries, out.size()));
+
+        Path file = Files.write(dir.resolve("many.zip"), out.toByteArray());
+        try (ZipFile zf = new ZipFile(file.toFile())) {
+            assertEquals(count, zf.size());
+            assertNotNull(zf.getEntry("e" + (count - 1)));
+        }
+    }
+}